@@ -99,6 +99,7 @@ public class TransferHandler extends javax.swing.TransferHandler {
     	if (c instanceof WordMLTextPane) {
     		WordMLTextPane editor = (WordMLTextPane) c;
 			editor.saveCaretText();
+			editor.expandSelectedPlaceholders();
 			WordMLDocument doc = (WordMLDocument) editor.getDocument();
 			int start = editor.getSelectionStart();
 			int length = editor.getSelectionEnd() - start;
@@ -121,6 +121,10 @@ public class FetchRemoteEditsWorker extends SwingWorker<Void, Void> implements I
     		
     		plutextClient.applyRemoteChanges(this);
     		
+    		if (this.wmlEditor != null) {
+    			this.wmlEditor.getToolbarStates().setRemoteChangesAvailable(editor, false);
+    		}
+    		
     		if (plutextClient.getChangeSets() != null
     			&& !plutextClient.getChangeSets().isEmpty()) {
     			createChangesetsTable(plutextClient.getChangeSets());
@@ -239,6 +239,32 @@ public class WordMLTextPane extends JEditorPane {
     	getWordMLEditorKit().saveCaretText();
     }
     
+    /**
+     * Expands those placeholders that are within the current selection
+     * and stretches the selection over the expanded content.
+     * Must not be called while holding the document's read lock.
+     * 
+     * See: WordMLDocument.expandPlaceholders()
+     */
+    public void expandSelectedPlaceholders() {
+    	int start = getSelectionStart();
+    	int end = getSelectionEnd();
+    	WordMLDocument doc = (WordMLDocument) getDocument();
+    	if (start == end || !doc.hasPlaceholders(start, end - start)) {
+    		return;
+    	}
+    	
+    	boolean forward = (getCaret().getMark() <= getCaret().getDot());
+    	end += doc.expandPlaceholders(start, end - start);
+    	if (forward) {
+    		setCaretPosition(start);
+    		moveCaretPosition(end);
+    	} else {
+    		setCaretPosition(end);
+    		moveCaretPosition(start);
+    	}
+    }
+    
     public WordMLEditorKit getWordMLEditorKit() {
     	return (WordMLEditorKit) getEditorKit();
     }
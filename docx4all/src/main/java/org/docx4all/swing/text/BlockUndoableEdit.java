@@ -0,0 +1,610 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.text.Element;
+import javax.swing.undo.AbstractUndoableEdit;
+import javax.swing.undo.CannotRedoException;
+import javax.swing.undo.CannotUndoException;
+
+import org.docx4all.swing.event.WordMLDocumentEvent;
+import org.docx4all.util.DocUtil;
+import org.docx4all.xml.BodyML;
+import org.docx4all.xml.ElementML;
+import org.docx4all.xml.ObjectFactory;
+import org.docx4all.xml.RunContentML;
+import org.docx4all.xml.WordMLCopier;
+import org.docx4j.wml.CTSdtEndPr;
+import org.docx4j.wml.SdtBlock;
+import org.docx4j.wml.SdtContentBlock;
+import org.docx4j.wml.SdtPr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An edit of consecutive body level elements of a WordMLDocument.
+ *
+ * Only the edited body level elements are kept.  Before the edit they
+ * are copied.  Undoing puts the copies back into the body in place of
+ * the edited elements, which are then kept for redoing.  The unedited
+ * rest of the body is never copied.
+ *
+ * Of a content control only the edited children are copied.
+ * Its unedited children are taken from the document when the edit is
+ * undone or redone.  This is right because edits are undone and redone
+ * in order, so the document is then as it was right after or right
+ * before this edit.  See: PartialSdtBlock
+ *
+ * Consecutive typing or deletion within the same body level elements
+ * extends the same edit.  See: WordMLDocument.beginBlockEdit()
+ *
+ * An edit can no longer be undone once the document has been changed
+ * without being recorded, eg: by a remote update.
+ */
+public class BlockUndoableEdit extends AbstractUndoableEdit {
+	private static Logger log = LoggerFactory.getLogger(BlockUndoableEdit.class);
+
+	public final static String TYPING = "typing";
+	public final static String DELETION = "deletion";
+	public final static String REPLACEMENT = "replacement";
+	public final static String FORMATTING = "formatting";
+	public final static String PASTE = "paste";
+
+	//Rough sizes of the JAXB objects behind an element
+	private final static int BRANCH_SIZE = 160;
+	private final static int LEAF_SIZE = 96;
+
+	private final WordMLDocument doc;
+	private final ElementML bodyML;
+	private final String name;
+	private final int stamp;
+
+	//Index of the first edited element in bodyML
+	private final int firstIdx;
+	//Root element index of the first edited element.
+	//Used as a hint only.
+	private int firstRootIdx;
+
+	private final int bodyCountBefore;
+	//Number of edited body level elements before and after the edit
+	private final int oldCount;
+	private int newCount;
+
+	//The docx objects of those body level elements that are not in
+	//the document: the ones before the edit when the edit can be undone
+	//and the ones after the edit when it can be redone.
+	//A content control of which only some children are kept
+	//is a PartialSdtBlock.
+	private List<Object> blocks;
+	private long estimatedSize;
+
+	/**
+	 * Records the body level elements within [offset, offset + length]
+	 * of 'doc' before they are edited.
+	 *
+	 * @return null if those elements cannot be recorded
+	 */
+	static BlockUndoableEdit record(WordMLDocument doc, int offset, int length, String name) {
+		DocumentElement rootE = (DocumentElement) doc.getDefaultRootElement();
+		ElementML bodyML = rootE.getElementML().getChild(0);
+
+		int firstRootIdx = rootE.getElementIndex(offset);
+		int lastRootIdx = rootE.getElementIndex(offset + Math.max(length, 1) - 1);
+		//The last paragraph is an extra one that is never saved.
+		//Its edits create or change the paragraph before it.
+		lastRootIdx = Math.min(lastRootIdx, rootE.getElementCount() - 2);
+		firstRootIdx = Math.min(firstRootIdx, Math.max(lastRootIdx, 0));
+
+		int firstIdx = bodyML.getChildIndex(getElementML(rootE, firstRootIdx));
+		if (firstIdx < 0) {
+			return null;
+		}
+
+		List<Object> blocks = new ArrayList<Object>(lastRootIdx - firstRootIdx + 1);
+		for (int i = firstRootIdx; i <= lastRootIdx; i++) {
+			ElementML ml = getElementML(rootE, i);
+			if (bodyML.getChild(firstIdx + blocks.size()) != ml
+				|| ml.getDocxObject() == null) {
+				//Not a plain sequence of body level elements
+				return null;
+			}
+			DocumentElement elem = (DocumentElement) rootE.getElement(i);
+			saveTextContent(elem);
+			
+			PartialSdtBlock partial = PartialSdtBlock.record(elem, offset, length);
+			if (partial != null) {
+				blocks.add(partial);
+			} else {
+				blocks.add(WordMLCopier.copy(ml.getDocxObject()));
+			}
+		}
+
+		return new BlockUndoableEdit(
+			doc, bodyML, name, firstIdx, firstRootIdx, blocks,
+			estimateSize(rootE, firstRootIdx, blocks));
+	}
+
+	private BlockUndoableEdit(
+		WordMLDocument doc,
+		ElementML bodyML,
+		String name,
+		int firstIdx,
+		int firstRootIdx,
+		List<Object> blocks,
+		long estimatedSize) {
+
+		this.doc = doc;
+		this.bodyML = bodyML;
+		this.name = name;
+		this.stamp = doc.getUnrecordedChangeCount();
+		this.firstIdx = firstIdx;
+		this.firstRootIdx = firstRootIdx;
+		this.bodyCountBefore = bodyML.getChildrenCount();
+		this.oldCount = blocks.size();
+		this.newCount = this.oldCount;
+		this.blocks = blocks;
+		this.estimatedSize = estimatedSize;
+	}
+
+	/**
+	 * Called once the edit has been made.
+	 */
+	void end() {
+		this.newCount = 
+			this.oldCount + (this.bodyML.getChildrenCount() - this.bodyCountBefore);
+		
+		//A PartialSdtBlock needs its content control to be still
+		//in the same place with the same unedited children.
+		for (int i = 0; i < this.blocks.size(); i++) {
+			Object block = this.blocks.get(i);
+			if (block instanceof PartialSdtBlock) {
+				PartialSdtBlock partial = (PartialSdtBlock) block;
+				if (this.newCount != this.oldCount
+					|| !partial.isInPlace(this.bodyML.getChild(this.firstIdx + i))) {
+					this.blocks.set(i, partial.toSdtBlock());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if an edit named 'name' within [offset, offset + length]
+	 * can be recorded by this edit instead of a new one.
+	 */
+	boolean canExtend(int offset, int length, String name) {
+		if (!canUndo()
+			|| !this.name.equals(name)
+			|| !(TYPING.equals(name) || DELETION.equals(name))) {
+			return false;
+		}
+
+		DocumentElement rootE = (DocumentElement) this.doc.getDefaultRootElement();
+		int rootIdx = findRootIndex(rootE, this.bodyML.getChild(this.firstIdx));
+		if (rootIdx < 0) {
+			return false;
+		}
+
+		int first = rootE.getElementIndex(offset);
+		int last = rootE.getElementIndex(offset + Math.max(length, 1) - 1);
+		if (first < rootIdx || rootIdx + this.newCount <= last) {
+			return false;
+		}
+		
+		for (int i = 0; i < this.blocks.size(); i++) {
+			Object block = this.blocks.get(i);
+			if (block instanceof PartialSdtBlock
+				&& !((PartialSdtBlock) block).isKept(
+						rootE.getElement(rootIdx + i), offset, length)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if this edit is still in line with the document.
+	 */
+	boolean isCurrent() {
+		DocumentElement rootE = (DocumentElement) this.doc.getDefaultRootElement();
+		return this.stamp == this.doc.getUnrecordedChangeCount()
+			&& rootE.getElementML().getChild(0) == this.bodyML;
+	}
+
+	/**
+	 * @return the estimated number of bytes taken by the body level elements
+	 * kept by this edit.
+	 */
+	public long getEstimatedSize() {
+		return this.estimatedSize;
+	}
+
+	public String getPresentationName() {
+		return this.name;
+	}
+
+	public boolean canUndo() {
+		return super.canUndo() && isCurrent();
+	}
+
+	public boolean canRedo() {
+		return super.canRedo() && isCurrent();
+	}
+
+	public void undo() throws CannotUndoException {
+		super.undo();
+		swap(this.newCount);
+	}
+
+	public void redo() throws CannotRedoException {
+		super.redo();
+		swap(this.oldCount);
+	}
+
+	public void die() {
+		super.die();
+		this.blocks = null;
+		this.estimatedSize = 0;
+	}
+
+	/**
+	 * Replaces the 'liveCount' body level elements in the document
+	 * with those in 'blocks'.
+	 */
+	private void swap(int liveCount) {
+		this.doc.lockWrite();
+		this.doc.setUndoingBlockEdit(true);
+		try {
+			DocumentElement rootE = (DocumentElement) this.doc.getDefaultRootElement();
+			int rootIdx = findRootIndex(rootE, this.bodyML.getChild(this.firstIdx));
+			this.firstRootIdx = rootIdx;
+
+			int startOffset = rootE.getElement(rootIdx).getStartOffset();
+			int endOffset = startOffset;
+			if (liveCount > 0) {
+				endOffset = rootE.getElement(rootIdx + liveCount - 1).getEndOffset();
+			}
+
+			Map<BigInteger, SdtBlock> snapshots = null;
+			int blockEnd = this.doc.getLength() - endOffset;
+			if (!this.doc.isSnapshotFireBan()) {
+				snapshots = this.doc.getSnapshots(startOffset, endOffset - startOffset);
+			}
+
+			for (int i = rootIdx; i < rootIdx + liveCount; i++) {
+				saveTextContent(rootE.getElement(i));
+			}
+			
+			//A PartialSdtBlock is only kept when 'liveCount'
+			//equals blocks.size().  See: end()
+			List<Object> removed = new ArrayList<Object>(liveCount);
+			List<Object> restored = new ArrayList<Object>(this.blocks.size());
+			for (int i = 0; i < liveCount; i++) {
+				Object live = this.bodyML.getChild(this.firstIdx + i).getDocxObject();
+				Object block = (i < this.blocks.size()) ? this.blocks.get(i) : null;
+				if (block instanceof PartialSdtBlock) {
+					PartialSdtBlock partial = (PartialSdtBlock) block;
+					removed.add(partial.takeFrom((SdtBlock) live));
+					restored.add(partial.putInto((SdtBlock) live));
+				} else {
+					removed.add(live);
+				}
+			}
+			for (int i = restored.size(); i < this.blocks.size(); i++) {
+				restored.add(this.blocks.get(i));
+			}
+			
+			long size = estimateSize(rootE, rootIdx, removed);
+			for (int i = 0; i < liveCount; i++) {
+				this.bodyML.getChild(this.firstIdx).delete();
+			}
+			for (int i = 0; i < restored.size(); i++) {
+				this.bodyML.addChild(this.firstIdx + i, BodyML.createChildML(restored.get(i)));
+			}
+			this.blocks = removed;
+			this.estimatedSize = size;
+
+			this.doc.refreshParagraphs(startOffset, endOffset - startOffset);
+
+			if (!this.doc.isSnapshotFireBan()) {
+				WordMLDocument.WordMLDefaultDocumentEvent evt =
+					this.doc.new WordMLDefaultDocumentEvent(
+						startOffset,
+						(this.doc.getLength() - blockEnd) - startOffset,
+						null,
+						WordMLDocumentEvent.SNAPSHOT_CHANGED_EVT_NAME);
+				evt.setInitialSnapshots(snapshots);
+				this.doc.fireSnapshotChanged(evt);
+			}
+
+			if (log.isDebugEnabled()) {
+				log.debug("swap(): name=" + this.name
+					+ " firstIdx=" + this.firstIdx
+					+ " replaced=" + liveCount
+					+ " with=" + removed.size());
+			}
+		} finally {
+			this.doc.setUndoingBlockEdit(false);
+			this.doc.unlockWrite();
+		}
+	}
+
+	private int findRootIndex(DocumentElement rootE, ElementML ml) {
+		int count = rootE.getElementCount();
+		int guess = Math.max(0, Math.min(this.firstRootIdx, count - 1));
+		for (int d = 0; d < count; d++) {
+			int i = guess + d;
+			if (i < count && getElementML(rootE, i) == ml) {
+				return i;
+			}
+			i = guess - d;
+			if (d > 0 && 0 <= i && getElementML(rootE, i) == ml) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private final static ElementML getElementML(DocumentElement rootE, int idx) {
+		return ((DocumentElement) rootE.getElement(idx)).getElementML();
+	}
+
+	/**
+	 * Typed text is kept in the document until it is saved
+	 * to its ElementML.  See: WordMLEditorKit.saveCaretText()
+	 */
+	private final static void saveTextContent(Element elem) {
+		if (elem.isLeaf()) {
+			if (elem instanceof WordMLDocument.TextElement
+				&& ((DocumentElement) elem).getElementML() instanceof RunContentML) {
+				DocUtil.saveTextContentToElementML((WordMLDocument.TextElement) elem);
+			}
+		} else {
+			for (int i = 0; i < elem.getElementCount(); i++) {
+				saveTextContent(elem.getElement(i));
+			}
+		}
+	}
+
+	/**
+	 * Estimates the size of 'blocks' which are those of the body level
+	 * elements starting at 'firstRootIdx'.
+	 */
+	private final static long estimateSize(
+		DocumentElement rootE, 
+		int firstRootIdx, 
+		List<Object> blocks) {
+		
+		long size = 0;
+		for (int i = 0; i < blocks.size(); i++) {
+			Element elem = rootE.getElement(firstRootIdx + i);
+			if (blocks.get(i) instanceof PartialSdtBlock) {
+				PartialSdtBlock partial = (PartialSdtBlock) blocks.get(i);
+				size += BRANCH_SIZE;
+				int end = elem.getElementCount() - partial.suffix;
+				for (int k = partial.prefix; k < end; k++) {
+					size += estimateSize(elem.getElement(k));
+				}
+			} else {
+				size += estimateSize(elem);
+			}
+		}
+		return size;
+	}
+
+	private final static long estimateSize(Element elem) {
+		if (elem.isLeaf()) {
+			return LEAF_SIZE + 2 * (elem.getEndOffset() - elem.getStartOffset());
+		}
+		long size = BRANCH_SIZE;
+		for (int i = 0; i < elem.getElementCount(); i++) {
+			size += estimateSize(elem.getElement(i));
+		}
+		return size;
+	}
+
+	/**
+	 * The kept part of a content control: its sdtPr and the children
+	 * between the first 'prefix' and the last 'suffix' ones.  The children
+	 * in the prefix and the suffix are those of the content control 
+	 * in the document.
+	 */
+	private final static class PartialSdtBlock {
+		private final SdtPr sdtPr;
+		private final int prefix, suffix;
+		private final List<Object> middle;
+		
+		//The recorded content control and its children.
+		//Only used until the edit ends.  See: BlockUndoableEdit.end()
+		private SdtBlock original;
+		private List<Object> originalContent;
+		
+		/**
+		 * Copies the sdtPr of the content control of 'sdtE' and those of
+		 * its children that are within or adjacent to [offset, offset + length].
+		 * 
+		 * @return null if 'sdtE' is not a content control or if all of 
+		 * its children are within or adjacent to the given range.
+		 */
+		static PartialSdtBlock record(DocumentElement sdtE, int offset, int length) {
+			Object obj = sdtE.getElementML().getDocxObject();
+			if (!(obj instanceof SdtBlock)
+				|| ((SdtBlock) obj).getSdtContent() == null) {
+				return null;
+			}
+			
+			SdtBlock sdt = (SdtBlock) obj;
+			List<Object> content = sdt.getSdtContent().getContent();
+			int count = content.size();
+			if (sdtE.getElementCount() != count) {
+				return null;
+			}
+			
+			int first = count;
+			int last = -1;
+			for (int i = 0; i < count; i++) {
+				DocumentElement childE = (DocumentElement) sdtE.getElement(i);
+				if (childE.getElementML().getDocxObject() != content.get(i)) {
+					//Children are not in line with the document.
+					return null;
+				}
+				if (isTouched(childE, offset, length)) {
+					first = Math.min(first, i);
+					last = i;
+				}
+			}
+			if (last < 0 || (first == 0 && last == count - 1)) {
+				return null;
+			}
+			
+			List<Object> middle = new ArrayList<Object>(last - first + 1);
+			for (int i = first; i <= last; i++) {
+				middle.add(WordMLCopier.copy(content.get(i)));
+			}
+			
+			PartialSdtBlock theBlock = 
+				new PartialSdtBlock(
+					WordMLCopier.copy(sdt.getSdtPr()), first, count - 1 - last, middle);
+			theBlock.original = sdt;
+			theBlock.originalContent = new ArrayList<Object>(content);
+			return theBlock;
+		}
+		
+		private final static boolean isTouched(Element elem, int offset, int length) {
+			return offset <= elem.getEndOffset() 
+				&& elem.getStartOffset() <= offset + length;
+		}
+		
+		private PartialSdtBlock(SdtPr sdtPr, int prefix, int suffix, List<Object> middle) {
+			this.sdtPr = sdtPr;
+			this.prefix = prefix;
+			this.suffix = suffix;
+			this.middle = middle;
+		}
+		
+		/**
+		 * @return true if the recorded content control is still 'ml'
+		 * with the same unedited children.
+		 */
+		boolean isInPlace(ElementML ml) {
+			if (ml == null || ml.getDocxObject() != this.original) {
+				return false;
+			}
+			
+			List<Object> content = this.original.getSdtContent().getContent();
+			int count = content.size();
+			int originalCount = this.originalContent.size();
+			if (count < this.prefix + this.suffix) {
+				return false;
+			}
+			for (int i = 0; i < this.prefix; i++) {
+				if (content.get(i) != this.originalContent.get(i)) {
+					return false;
+				}
+			}
+			for (int i = 1; i <= this.suffix; i++) {
+				if (content.get(count - i) != this.originalContent.get(originalCount - i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * @return true if [offset, offset + length] only touches the kept 
+		 * children of 'sdtE' which is the content control in the document.
+		 */
+		boolean isKept(Element sdtE, int offset, int length) {
+			int end = sdtE.getElementCount() - this.suffix;
+			for (int i = 0; i < sdtE.getElementCount(); i++) {
+				if ((i < this.prefix || end <= i)
+					&& isTouched(sdtE.getElement(i), offset, length)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * Makes a whole content control out of this one, copying the
+		 * recorded unedited children.  Called when the content control
+		 * cannot be found in the document anymore.  The unedited children
+		 * are still as they were before the edit.
+		 */
+		SdtBlock toSdtBlock() {
+			int count = this.originalContent.size();
+			List<Object> content = new ArrayList<Object>(count);
+			for (int i = 0; i < this.prefix; i++) {
+				content.add(WordMLCopier.copy(this.originalContent.get(i)));
+			}
+			content.addAll(this.middle);
+			for (int i = count - this.suffix; i < count; i++) {
+				content.add(WordMLCopier.copy(this.originalContent.get(i)));
+			}
+			return createSdtBlock(this.sdtPr, null, content);
+		}
+		
+		/**
+		 * @return the part of 'live' that is replaced by putInto(live).
+		 */
+		PartialSdtBlock takeFrom(SdtBlock live) {
+			List<Object> content = live.getSdtContent().getContent();
+			List<Object> theMiddle = 
+				new ArrayList<Object>(
+					content.subList(this.prefix, content.size() - this.suffix));
+			return new PartialSdtBlock(live.getSdtPr(), this.prefix, this.suffix, theMiddle);
+		}
+		
+		/**
+		 * @return a new content control made of this one and 
+		 * the unedited children of 'live'.
+		 */
+		SdtBlock putInto(SdtBlock live) {
+			List<Object> content = live.getSdtContent().getContent();
+			int count = content.size();
+			List<Object> theContent = 
+				new ArrayList<Object>(this.prefix + this.middle.size() + this.suffix);
+			theContent.addAll(content.subList(0, this.prefix));
+			theContent.addAll(this.middle);
+			theContent.addAll(content.subList(count - this.suffix, count));
+			return createSdtBlock(this.sdtPr, live.getSdtEndPr(), theContent);
+		}
+		
+		private final static SdtBlock createSdtBlock(
+			SdtPr sdtPr, 
+			CTSdtEndPr sdtEndPr, 
+			List<Object> content) {
+			
+			SdtContentBlock sdtContent = ObjectFactory.createSdtContentBlock();
+			sdtContent.getContent().addAll(content);
+			
+			SdtBlock theBlock = ObjectFactory.createSdtBlock();
+			theBlock.setSdtPr(sdtPr);
+			theBlock.setSdtEndPr(sdtEndPr);
+			theBlock.setSdtContent(sdtContent);
+			return theBlock;
+		}
+	}// PartialSdtBlock inner class
+
+}// BlockUndoableEdit class
@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.util.LinkedList;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.AsyncBoxView;
+import javax.swing.text.Element;
+import javax.swing.text.LayoutQueue;
+import javax.swing.text.View;
+
+/**
+ * The view of the document root element.
+ *
+ * Body level elements are laid out by the tasks of AsyncBoxView rather
+ * than all at once.  Those that are painted or asked for modelToView() 
+ * before their task has run are laid out there and then.  An edit 
+ * therefore only lays out the edited elements and the visible ones 
+ * before it is painted, however long the document is.
+ *
+ * The child views (eg: TableView, ImpliedParagraphView, NumberingView)
+ * are not safe to be laid out while being painted or edited.  Therefore,
+ * the tasks are not run by the layout thread of LayoutQueue but on the 
+ * event dispatching thread, a few milliseconds at a time, in between
+ * the other events.  See: EventThreadLayoutQueue
+ *
+ * Elements that have not been laid out yet are given a height estimated
+ * from their length.  modelToView(), viewToModel() and the allocations
+ * of the children use the same heights as the height of the document
+ * does, so that they agree with each other.
+ */
+public class DocumentView extends AsyncBoxView {
+	//Used to estimate the height of an element
+	//that has not been laid out yet.
+	private final static int ESTIMATED_CHARS_PER_LINE = 80;
+	private final static float ESTIMATED_LINE_SPAN = 16f;
+
+	private final static LayoutQueue LAYOUT_QUEUE = new EventThreadLayoutQueue();
+
+	private final Object estimateLock = new Object();
+	//Total estimated height of the children that have not been laid out
+	private float estimatedSpan = 0f;
+
+	public DocumentView(Element elem) {
+		super(elem, View.Y_AXIS);
+	}
+
+	public float getPreferredSpan(int axis) {
+		float span = super.getPreferredSpan(axis);
+		if (axis == getMajorAxis()) {
+			synchronized (this.estimateLock) {
+				span += this.estimatedSpan;
+			}
+		}
+		return span;
+	}
+
+	public void replace(int offset, int length, View[] views) {
+		synchronized (this.estimateLock) {
+			for (int i = 0; i < length; i++) {
+				((DocumentChildState) getChildState(offset + i)).discount();
+			}
+		}
+		super.replace(offset, length, views);
+	}
+
+	protected LayoutQueue getLayoutQueue() {
+		return LAYOUT_QUEUE;
+	}
+
+	protected ChildState createChildState(View v) {
+		return new DocumentChildState(v);
+	}
+
+	private class DocumentChildState extends ChildState {
+		private final float estimate;
+		//Whether this child has been laid out or removed. Until then
+		//its estimated height is counted in estimatedSpan.
+		private boolean laidOut = false;
+		private boolean removed = false;
+
+		DocumentChildState(View v) {
+			super(v);
+			int length = v.getEndOffset() - v.getStartOffset();
+			this.estimate = 
+				(1 + length / ESTIMATED_CHARS_PER_LINE) * ESTIMATED_LINE_SPAN;
+			synchronized (estimateLock) {
+				estimatedSpan += this.estimate;
+			}
+		}
+
+		public void run() {
+			super.run();
+
+			synchronized (estimateLock) {
+				if (!this.laidOut && !this.removed && isLayoutValid()) {
+					this.laidOut = true;
+					estimatedSpan -= this.estimate;
+				}
+			}
+		}
+
+		/**
+		 * @return the estimated height of this child 
+		 * until it has been laid out.
+		 */
+		public float getMajorSpan() {
+			synchronized (estimateLock) {
+				return this.laidOut ? super.getMajorSpan() : this.estimate;
+			}
+		}
+
+		/**
+		 * Called with estimateLock held when this child is removed.
+		 */
+		void discount() {
+			if (!this.laidOut && !this.removed) {
+				estimatedSpan -= this.estimate;
+			}
+			this.removed = true;
+		}
+	}// DocumentChildState inner class
+
+	/**
+	 * Runs layout tasks on the event dispatching thread.  Each turn
+	 * runs tasks for at most TIME_SLICE milliseconds and then lets 
+	 * the other events be dispatched before the next turn.
+	 */
+	private final static class EventThreadLayoutQueue 
+		extends LayoutQueue implements Runnable {
+		
+		private final static long TIME_SLICE = 20;
+		
+		private final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		private boolean scheduled = false;
+		
+		public synchronized void addTask(Runnable task) {
+			this.tasks.addLast(task);
+			if (!this.scheduled) {
+				this.scheduled = true;
+				SwingUtilities.invokeLater(this);
+			}
+		}
+		
+		protected synchronized Runnable waitForWork() {
+			//Does not wait as there is no layout thread.
+			return this.tasks.isEmpty() ? null : this.tasks.removeFirst();
+		}
+		
+		public void run() {
+			long end = System.currentTimeMillis() + TIME_SLICE;
+			Runnable task = waitForWork();
+			while (task != null) {
+				task.run();
+				task = (System.currentTimeMillis() < end) ? waitForWork() : null;
+			}
+			
+			synchronized (this) {
+				if (this.tasks.isEmpty()) {
+					this.scheduled = false;
+				} else {
+					SwingUtilities.invokeLater(this);
+				}
+			}
+		}
+	}// EventThreadLayoutQueue inner class
+
+}// DocumentView class
@@ -26,7 +26,6 @@ import java.util.Stack;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
-import javax.swing.text.Style;
 import javax.swing.text.DefaultStyledDocument.ElementSpec;
 
 import org.docx4all.ui.main.Constants;
@@ -41,6 +40,7 @@ import org.docx4all.xml.RunContentML;
 import org.docx4all.xml.RunDelML;
 import org.docx4all.xml.RunInsML;
 import org.docx4all.xml.RunML;
+import org.docx4all.xml.RunPropertiesML;
 import org.docx4all.xml.SdtBlockML;
 import org.docx4all.xml.TableCellML;
 import org.docx4all.xml.TableML;
@@ -50,6 +50,9 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 	public final static String SHOW_FLD_COMPLEX_INSTR = "1";
 	public final static String SHOW_FLD_COMPLEX_VALUE = "2";
 	
+	//Used to estimate the number of lines of a placeholder
+	private final static int ESTIMATED_CHARS_PER_LINE = 80;
+	
 	private List<ElementSpec> _elementSpecs = new ArrayList<ElementSpec>();
 	private MutableAttributeSet _paragraphAttrs, _runAttrs;
 	
@@ -61,6 +64,14 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 		ElementMLIteratorCallback.SHOW_FLD_COMPLEX_INSTR;
 	private Stack<FldComplexML> _fldComplexes = new Stack<FldComplexML>();
 	private Stack<ElementML> _ignoredElements = new Stack<ElementML>();
+	
+	//Body level elements from _placeholderIndex onwards are
+	//given placeholder ElementSpecs. See setPlaceholderIndex().
+	private int _placeholderIndex = Integer.MAX_VALUE;
+	private int _bodyChildIndex = 0;
+	private ElementML _placeholderML;
+	private MutableAttributeSet _placeholderAttrs;
+	private int _placeholderParagraphs, _placeholderChars;
 		
 	public void setFldComplexMode(String mode) {
 		_fldComplexMode = 
@@ -69,7 +80,59 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 				: ElementMLIteratorCallback.SHOW_FLD_COMPLEX_VALUE;
 	}
 	
+	/**
+	 * Body level elements, except the last one, whose index is 
+	 * at least 'idx' will be given placeholder ElementSpecs.
+	 * A placeholder looks like an empty paragraph whose ElementML 
+	 * is the body level element.  Its real structure is built later
+	 * by WordMLDocument.expandPlaceholders().
+	 * 
+	 * @param idx
+	 */
+	public void setPlaceholderIndex(int idx) {
+		_placeholderIndex = idx;
+	}
+	
+	/**
+	 * Sets the index of the first body level element to be iterated.
+	 * Needed when body level elements are iterated in several parts.
+	 * See: ParallelElementSpecBuilder
+	 * 
+	 * @param idx
+	 */
+	void setBodyChildIndex(int idx) {
+		_bodyChildIndex = idx;
+	}
+	
+	/**
+	 * @return true if a complex field has been opened 
+	 * but not closed yet.
+	 */
+	boolean hasOpenFldComplex() {
+		return !_fldComplexes.empty();
+	}
+	
 	public void handleStartElement(ElementML elem) {
+		if (_placeholderML != null) {
+			//Only estimate the size of placeholder
+			if (elem instanceof ParagraphML) {
+				_placeholderParagraphs++;
+			} else if (elem instanceof RunContentML) {
+				String text = ((RunContentML) elem).getTextContent();
+				_placeholderChars += (text == null) ? 0 : text.length();
+			}
+			return;
+		}
+		
+		if (elem.getParent() instanceof BodyML) {
+			int idx = _bodyChildIndex++;
+			if (idx >= _placeholderIndex
+				&& idx < elem.getParent().getChildrenCount() - 1) {
+				openPlaceholderSpec(elem);
+				return;
+			}
+		}
+		
 		//TODO: Find a better handler
 		if (!_ignoredElements.empty()) {
 			//An indication that elem's ancestor
@@ -122,6 +185,13 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 	}
 	
 	public void handleEndElement(ElementML elem) {		
+		if (_placeholderML != null) {
+			if (_placeholderML == elem) {
+				closePlaceholderSpec();
+			}
+			return;
+		}
+		
 		//TODO: Find a better handler
 		if (!_ignoredElements.empty()) {
 			if (_ignoredElements.peek() == elem) {
@@ -212,28 +282,99 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 		_elementSpecs.add(es);
 	}
 	
-	private void openElementSpec(ParagraphML paragraphML) {
-		_paragraphAttrs = new SimpleAttributeSet();
+	private void openPlaceholderSpec(ElementML elem) {
+		_placeholderML = elem;
+		_placeholderParagraphs = 0;
+		_placeholderChars = 0;
+		
+		_placeholderAttrs = new SimpleAttributeSet();
+		WordMLStyleConstants.setElementML(_placeholderAttrs, elem);
+		WordMLStyleConstants.setPlaceholderLines(_placeholderAttrs, 1);
+		openElementSpec(_placeholderAttrs);
+		
+		//Give the placeholder the structure of an empty paragraph
+		SimpleAttributeSet elemAttrs = new SimpleAttributeSet();
+		WordMLStyleConstants.setElementML(elemAttrs, ElementML.IMPLIED_PARAGRAPH);
+		openElementSpec(elemAttrs);
+		
+		elemAttrs = new SimpleAttributeSet();
+		WordMLStyleConstants.setElementML(elemAttrs, ElementML.IMPLIED_RUN);
+		openElementSpec(elemAttrs);
+		
+		RunContentML rcML = (RunContentML) ElementML.IMPLIED_NEWLINE;
+		elemAttrs = new SimpleAttributeSet();
+		WordMLStyleConstants.setElementML(elemAttrs, rcML);
+		addContentElementSpec(elemAttrs, rcML.getTextContent());
+		
+		//Close IMPLIED_RUN and IMPLIED_PARAGRAPH
+		closeElementSpec((AttributeSet) null);
+		closeElementSpec((AttributeSet) null);
+	}
+	
+	private void closePlaceholderSpec() {
+		int lines = 
+			Math.max(1, 
+				_placeholderParagraphs + _placeholderChars / ESTIMATED_CHARS_PER_LINE);
+		//The ElementSpec opened in openPlaceholderSpec() still refers
+		//to _placeholderAttrs.
+		WordMLStyleConstants.setPlaceholderLines(_placeholderAttrs, lines);
+		closeElementSpec((AttributeSet) null);
+		
+		_placeholderML = null;
+		_placeholderAttrs = null;
+	}
+	
+	/**
+	 * @param paragraphML
+	 * @return the attributes of the element that represents 'paragraphML'
+	 */
+	final static MutableAttributeSet createParagraphAttributes(ParagraphML paragraphML) {
+		SimpleAttributeSet theAttrs = new SimpleAttributeSet();
 		
 		PropertiesContainerML pc = paragraphML.getParagraphProperties();
 		if (pc != null) {
 			AttributeSet pcAttrs = pc.getAttributeSet();
-			_paragraphAttrs.addAttributes(pcAttrs);
 			String pStyle = 
 				(String) pcAttrs.getAttribute(WordMLStyleConstants.PStyleAttribute);
-			if (pStyle != null) {
-				StyleSheet styleSheet = paragraphML.getStyleSheet();
-				if (styleSheet != null) {
-					Style s = styleSheet.getIDStyle(pStyle);
-					if (s != null) {
-						((SimpleAttributeSet) _paragraphAttrs)
-								.setResolveParent(s);
-					}
-				}
+			StyleSheet styleSheet = paragraphML.getStyleSheet();
+			if (styleSheet != null) {
+				//Carries pStyle as resolve parent
+				pcAttrs = styleSheet.getSharedFormatting(pStyle, pcAttrs);
 			}
+			theAttrs.addAttributes(pcAttrs);
 		}
 		
-		WordMLStyleConstants.setElementML(_paragraphAttrs, paragraphML);
+		WordMLStyleConstants.setElementML(theAttrs, paragraphML);
+		return theAttrs;
+	}
+	
+	/**
+	 * @param runML
+	 * @return the attributes of the element that represents 'runML'
+	 */
+	final static MutableAttributeSet createRunAttributes(RunML runML) {
+		SimpleAttributeSet theAttrs = new SimpleAttributeSet();
+
+		PropertiesContainerML pc = runML.getRunProperties();
+		if (pc != null) {
+			//No need for a copy of the attributes.
+			AttributeSet pcAttrs = ((RunPropertiesML) pc).getSharedAttributeSet();
+			String rStyle = (String) pcAttrs
+					.getAttribute(WordMLStyleConstants.RStyleAttribute);
+			StyleSheet styleSheet = runML.getStyleSheet();
+			if (styleSheet != null) {
+				//Carries rStyle as resolve parent
+				pcAttrs = styleSheet.getSharedFormatting(rStyle, pcAttrs);
+			}
+			theAttrs.addAttributes(pcAttrs);
+		}
+
+		WordMLStyleConstants.setElementML(theAttrs, runML);
+		return theAttrs;
+	}
+	
+	private void openElementSpec(ParagraphML paragraphML) {
+		_paragraphAttrs = createParagraphAttributes(paragraphML);
 		openElementSpec(_paragraphAttrs);
 		
 		//Insert IMPLIED_PARAGRAPH inside every ParagraphML BLOCK
@@ -338,27 +479,7 @@ public class ElementMLIteratorCallback extends ElementMLIterator.Callback {
 		}
 		
 		if (createSpec) {
-			_runAttrs = new SimpleAttributeSet();
-
-			PropertiesContainerML pc = runML.getRunProperties();
-			if (pc != null) {
-				AttributeSet pcAttrs = pc.getAttributeSet();
-				_runAttrs.addAttributes(pcAttrs);
-				String rStyle = (String) pcAttrs
-						.getAttribute(WordMLStyleConstants.RStyleAttribute);
-				if (rStyle != null) {
-					StyleSheet styleSheet = runML.getStyleSheet();
-					if (styleSheet != null) {
-						Style s = styleSheet.getIDStyle(rStyle);
-						if (s != null) {
-							((SimpleAttributeSet) _runAttrs)
-									.setResolveParent(s);
-						}
-					}
-				}
-			}
-
-			WordMLStyleConstants.setElementML(_runAttrs, runML);
+			_runAttrs = createRunAttributes(runML);
 			openElementSpec(_runAttrs);
 		} else {
 			_ignoredElements.push(runML);
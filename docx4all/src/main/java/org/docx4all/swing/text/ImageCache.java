@@ -0,0 +1,353 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+import javax.swing.text.Document;
+
+import org.docx4all.xml.InlineDrawingML;
+import org.docx4all.xml.drawing.Graphic;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The decoded images of a document.
+ *
+ * Images are kept by image part name and display size, so views that are
+ * recreated (eg: by refreshParagraphs()) do not extract and decode their
+ * image again.  Decoding and scaling to the display size is done by a
+ * background thread.  Until it is done getImage() answers PENDING.
+ * Large images are subsampled while being read so that their full
+ * resolution pixels are never held in memory.
+ *
+ * The least recently used images are discarded once the decoded pixels
+ * exceed a byte budget.  The budget can be set with the
+ * "docx4all.imageCacheBytes" system property.
+ */
+public class ImageCache {
+	private static Logger log = LoggerFactory.getLogger(ImageCache.class);
+
+	/**
+	 * Document property for image cache.
+	 */
+	private final static String IMAGE_CACHE_PROPERTY = "imageCache";
+
+	private final static long DEFAULT_BYTE_BUDGET = 32 * 1024 * 1024;
+
+	/**
+	 * Answered by getImage() while the image is being decoded.
+	 */
+	public final static Image PENDING = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+	private static ExecutorService executor;
+
+	private final long byteBudget;
+	private long usage = 0;
+
+	//In least recently used order
+	private final LinkedHashMap<Key, Image> images =
+		new LinkedHashMap<Key, Image>(16, 0.75f, true);
+	//Images that are being decoded and what to run once they are
+	private final Map<Key, List<Runnable>> pending =
+		new HashMap<Key, List<Runnable>>();
+	private final Set<Key> failed = new HashSet<Key>();
+
+	/**
+	 * @param doc
+	 * @return the ImageCache of 'doc'
+	 */
+	public synchronized final static ImageCache getImageCache(Document doc) {
+		ImageCache cache = (ImageCache) doc.getProperty(IMAGE_CACHE_PROPERTY);
+		if (cache == null) {
+			cache = new ImageCache(
+				Long.getLong("docx4all.imageCacheBytes", DEFAULT_BYTE_BUDGET));
+			doc.putProperty(IMAGE_CACHE_PROPERTY, cache);
+		}
+		return cache;
+	}
+
+	public ImageCache(long byteBudget) {
+		this.byteBudget = byteBudget;
+	}
+
+	/**
+	 * @param drawingML
+	 * @param width display width in pixels; zero or less for the image width
+	 * @param height display height in pixels; zero or less for the image height
+	 * @param whenDecoded run on the event dispatching thread once the image
+	 *        has been decoded, when PENDING is answered
+	 * @return the decoded image; PENDING if it is being decoded;
+	 *         null if it cannot be decoded
+	 */
+	public synchronized Image getImage(
+		InlineDrawingML drawingML,
+		int width,
+		int height,
+		Runnable whenDecoded) {
+
+		final WordprocessingMLPackage wmlPkg = drawingML.getWordprocessingMLPackage();
+		final Graphic graphic = drawingML.getGraphic();
+		if (wmlPkg == null || graphic == null) {
+			return null;
+		}
+
+		String partName = graphic.getImagePartName(wmlPkg);
+		if (partName == null) {
+			return null;
+		}
+
+		final Key key = new Key(wmlPkg, partName, Math.max(width, 0), Math.max(height, 0));
+		Image theImage = this.images.get(key);
+		if (theImage != null) {
+			return theImage;
+		}
+		if (this.failed.contains(key)) {
+			return null;
+		}
+
+		List<Runnable> waiting = this.pending.get(key);
+		if (waiting == null) {
+			waiting = new ArrayList<Runnable>(1);
+			this.pending.put(key, waiting);
+			getExecutor().execute(new Runnable() {
+				public void run() {
+					decoded(key, decode(wmlPkg, graphic, key.width, key.height));
+				}
+			});
+		}
+		if (whenDecoded != null) {
+			waiting.add(whenDecoded);
+		}
+		return PENDING;
+	}
+
+	public synchronized long getMemoryUsage() {
+		return this.usage;
+	}
+
+	public synchronized void clear() {
+		this.images.clear();
+		this.failed.clear();
+		this.usage = 0;
+	}
+
+	private void decoded(Key key, BufferedImage image) {
+		final List<Runnable> waiting;
+		synchronized (this) {
+			waiting = this.pending.remove(key);
+			if (image == null) {
+				this.failed.add(key);
+			} else {
+				this.images.put(key, image);
+				this.usage += getSize(image);
+				trimForBudget(key);
+			}
+		}
+
+		if (waiting != null && !waiting.isEmpty()) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					for (Runnable r: waiting) {
+						r.run();
+					}
+				}
+			});
+		}
+	}
+
+	private void trimForBudget(Key latest) {
+		Iterator<Map.Entry<Key, Image>> it = this.images.entrySet().iterator();
+		while (this.usage > this.byteBudget && it.hasNext()) {
+			Map.Entry<Key, Image> entry = it.next();
+			if (entry.getKey().equals(latest)) {
+				//The latest image is kept even if it is over budget on its own
+				continue;
+			}
+			this.usage -= getSize(entry.getValue());
+			it.remove();
+		}
+	}
+
+	private final static BufferedImage decode(
+		WordprocessingMLPackage wmlPkg,
+		Graphic graphic,
+		int width,
+		int height) {
+
+		BufferedImage theImage = null;
+		try {
+			byte[] bytes = graphic.getImageData(wmlPkg);
+			if (bytes != null) {
+				theImage = read(bytes, width, height);
+			}
+		} catch (IOException exc) {
+			log.error("decode(): Cannot decode image.", exc);
+		} catch (RuntimeException exc) {
+			log.error("decode(): Cannot decode image.", exc);
+		}
+
+		if (theImage != null
+			&& width > 0
+			&& height > 0
+			&& (theImage.getWidth() != width || theImage.getHeight() != height)) {
+			theImage = scale(theImage, width, height);
+		}
+		return theImage;
+	}
+
+	/**
+	 * Reads no more pixels than needed for a display size of
+	 * 'width' x 'height'.  The reader skips the rows and columns
+	 * that are more than twice as dense as the display.
+	 * The image bytes themselves are left as they are.
+	 */
+	private final static BufferedImage read(byte[] bytes, int width, int height)
+		throws IOException {
+
+		ImageInputStream in =
+			ImageIO.createImageInputStream(new ByteArrayInputStream(bytes));
+		if (in == null) {
+			return null;
+		}
+
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+			if (!readers.hasNext()) {
+				return null;
+			}
+
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(in, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				if (width > 0 && height > 0) {
+					int subsampling = Math.max(1,
+						Math.min(
+							reader.getWidth(0) / width,
+							reader.getHeight(0) / height));
+					if (subsampling > 1) {
+						param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+					}
+
+					if (log.isDebugEnabled()) {
+						log.debug("read(): " + reader.getWidth(0) + "x" + reader.getHeight(0)
+							+ " image read for " + width + "x" + height
+							+ " display. Subsampling=" + subsampling);
+					}
+				}
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private final static BufferedImage scale(BufferedImage image, int width, int height) {
+		BufferedImage theImage =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = theImage.createGraphics();
+		try {
+			g.setRenderingHint(
+				RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(image, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return theImage;
+	}
+
+	private final static long getSize(Image image) {
+		return 4L * image.getWidth(null) * image.getHeight(null);
+	}
+
+	private synchronized final static ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					//A daemon thread does not keep the application alive.
+					Thread t = new Thread(r, "ImageDecoder");
+					t.setDaemon(true);
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private static class Key {
+		final WordprocessingMLPackage wmlPkg;
+		final String partName;
+		final int width;
+		final int height;
+
+		Key(WordprocessingMLPackage wmlPkg, String partName, int width, int height) {
+			this.wmlPkg = wmlPkg;
+			this.partName = partName;
+			this.width = width;
+			this.height = height;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return this.wmlPkg == other.wmlPkg
+				&& this.width == other.width
+				&& this.height == other.height
+				&& this.partName.equals(other.partName);
+		}
+
+		public int hashCode() {
+			int h = this.partName.hashCode();
+			h = 31 * h + this.width;
+			h = 31 * h + this.height;
+			return h;
+		}
+	}// Key inner class
+
+}// ImageCache class
@@ -25,6 +25,7 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.font.TextAttribute;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Vector;
 
@@ -53,7 +54,6 @@ import javax.swing.text.ViewFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4all.xml.ElementML;
-import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
 import org.docx4j.wml.PPrBase;
 
@@ -134,6 +134,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 	 */
 	protected void setPropertiesFromAttributes() {
 		this.numberingView = null;
+		clearRowBreaks();
 		
 		AttributeSet attr = getAttributes();
 		if (attr != null) {
@@ -177,17 +178,12 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 					ilvl = numPr.getIlvl().getVal().toString();
 				}
 				
-				DocumentElement paraE = 
-					(DocumentElement) getElement().getParentElement();
-				WordprocessingMLPackage p = 
-					paraE.getElementML().getWordprocessingMLPackage();
 				// Get the Ind value
 				NumberingDefinitionsPart ndp = 
-					p.getMainDocumentPart().getNumberingDefinitionsPart();
-				// Force initialisation of maps
-				ndp.getEmulator();
+					((WordMLDocument) getDocument()).getNumberingIndex()
+						.getNumberingDefinitionsPart();
 				
-				if (numId != null && ilvl != null) {
+				if (ndp != null && numId != null && ilvl != null) {
 					indByNumPr = ndp.getInd(numId, ilvl);
 				}
 			}
@@ -838,6 +834,44 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 		super.changedUpdate(changes, a, f);
 	}
 
+	/**
+	 * A child whose preferred span has changed may no longer fit
+	 * where the rows were broken before.
+	 */
+	public void preferenceChanged(View child, boolean width, boolean height) {
+		if (child != null) {
+			clearRowBreaks();
+		}
+		super.preferenceChanged(child, width, height);
+	}
+
+	private RowBreaks getRowBreaks(int span) {
+		for (int i = 0; i < rowBreaks.size(); i++) {
+			RowBreaks breaks = rowBreaks.get(i);
+			if (breaks.fits(span)) {
+				if (i > 0) {
+					rowBreaks.remove(i);
+					rowBreaks.add(0, breaks);
+				}
+				return breaks;
+			}
+		}
+		return null;
+	}
+
+	private void putRowBreaks(RowBreaks breaks) {
+		rowBreaks.add(0, breaks);
+		while (rowBreaks.size() > MAX_ROW_BREAKS) {
+			rowBreaks.remove(rowBreaks.size() - 1);
+		}
+	}
+
+	private void clearRowBreaks() {
+		if (rowBreaks != null) {
+			rowBreaks.clear();
+		}
+	}
+
 	// --- variables -----------------------------------------------
 
 	private int justification;
@@ -857,6 +891,13 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 
 	private View numberingView;
 	
+	/**
+	 * Row breaks of the latest layouts that were done from scratch.
+	 * Most recently used first.  See: FlowStrategy.layout()
+	 */
+	private final static int MAX_ROW_BREAKS = 4;
+	private ArrayList<RowBreaks> rowBreaks = new ArrayList<RowBreaks>(MAX_ROW_BREAKS);
+	
 	/**
 	 * Used to create an i18n-based layout strategy
 	 */
@@ -1408,9 +1449,57 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 	    
 	} //Row inner class
 	
+	/**
+	 * The end offsets of the rows that a layout span broke a paragraph into.
+	 * Offsets are relative to the start of the paragraph.
+	 * 
+	 * When no row was wrapped, ie: every row ended with either a forced 
+	 * break or the paragraph end, any span at which every row still fits
+	 * breaks the paragraph at the same places, however wide it is.
+	 */
+	static class RowBreaks {
+		private final int layoutSpan;
+		private int[] rowEnds = new int[4];
+		private int rowCount = 0;
+		private boolean wrapped = false;
+		//The least span left unused by a row
+		private float minSlack = Float.MAX_VALUE;
+		
+		RowBreaks(int layoutSpan) {
+			this.layoutSpan = layoutSpan;
+		}
+		
+		void addRow(int rowEnd, boolean rowWrapped, float slack) {
+			if (rowCount == rowEnds.length) {
+				rowEnds = Arrays.copyOf(rowEnds, rowCount * 2);
+			}
+			rowEnds[rowCount++] = rowEnd;
+			wrapped |= rowWrapped;
+			minSlack = Math.min(minSlack, Math.max(slack, 0f));
+		}
+		
+		int getRowCount() {
+			return rowCount;
+		}
+		
+		int getRowEnd(int rowIndex) {
+			return rowEnds[rowIndex];
+		}
+		
+		boolean fits(int span) {
+			if (span == layoutSpan) {
+				return true;
+			}
+			return !wrapped && span >= layoutSpan - minSlack;
+		}
+	}// RowBreaks inner class
+	
 	static class FlowStrategy extends javax.swing.text.FlowView.FlowStrategy {
 		int damageStart = Integer.MAX_VALUE;
 		Vector<View> viewBuffer;
+		//Set by layoutRow()
+		boolean rowWrapped;
+		float rowSlack;
 
 		void setDamageStart(FlowView fv, int offset) {
 			if (offset >= fv.getStartOffset() && offset < fv.getEndOffset()) {
@@ -1437,6 +1526,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 		 * @see View#insertUpdate
 		 */
 		public void insertUpdate(FlowView fv, DocumentEvent e, Rectangle alloc) {
+			((ImpliedParagraphView) fv).clearRowBreaks();
 			// FlowView.loadChildren() makes a synthetic call into this,
 			// passing null as e
 			if (e != null) {
@@ -1464,6 +1554,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 		 * @see View#removeUpdate
 		 */
 		public void removeUpdate(FlowView fv, DocumentEvent e, Rectangle alloc) {
+			((ImpliedParagraphView) fv).clearRowBreaks();
 			setDamageStart(fv, e.getOffset());
 			if (alloc != null) {
 				Component host = fv.getContainer();
@@ -1489,6 +1580,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 		 * @see View#changedUpdate
 		 */
 		public void changedUpdate(FlowView fv, DocumentEvent e, Rectangle alloc) {
+			((ImpliedParagraphView) fv).clearRowBreaks();
 			setDamageStart(fv, e.getOffset());
 			if (alloc != null) {
 				Component host = fv.getContainer();
@@ -1514,6 +1606,10 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 		 * for each row. This is called by a FlowView.layout to update the child
 		 * views in the flow.
 		 * 
+		 * A layout from scratch whose content has not changed since an 
+		 * earlier one reuses the row breaks of the earlier one if they 
+		 * fit the current layout span.  See: RowBreaks
+		 * 
 		 * @param fv
 		 *            the view to reflow
 		 */
@@ -1521,6 +1617,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 			View pool = getLogicalView(fv);
 			int rowIndex, p0;
 			int p1 = fv.getEndOffset();
+			RowBreaks breaks = null;
 
 			if (((ImpliedParagraphView) fv).isLayoutValid(Y_AXIS)) {
 				if (damageStart == Integer.MAX_VALUE) {
@@ -1538,6 +1635,12 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 			} else {
 				rowIndex = 0;
 				p0 = fv.getStartOffset();
+				
+				if (layoutFromRowBreaks((ImpliedParagraphView) fv, pool)) {
+					resetDamageStart();
+					return;
+				}
+				breaks = new RowBreaks(((ImpliedParagraphView) fv).layoutSpan);
 			}
 			reparentPoolViews(pool, p0);
 
@@ -1552,6 +1655,9 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 					row = fv.getView(rowIndex);
 				}
 				p0 = layoutRow(fv, rowIndex, p0);
+				if (breaks != null) {
+					breaks.addRow(p0 - fv.getStartOffset(), rowWrapped, rowSlack);
+				}
 				rowIndex++;
 			}
 			viewBuffer = null;
@@ -1559,9 +1665,86 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 			if (rowIndex < rowCount) {
 				fv.replace(rowIndex, rowCount - rowIndex, null);
 			}
+			if (breaks != null) {
+				((ImpliedParagraphView) fv).putRowBreaks(breaks);
+			}
 			resetDamageStart();
 		}
 
+		/**
+		 * Rebuilds the rows of 'pv' at the row breaks that an earlier
+		 * layout found for the current layout span, without measuring
+		 * any view.
+		 * 
+		 * @return false if there are no such row breaks
+		 */
+		private boolean layoutFromRowBreaks(ImpliedParagraphView pv, View pool) {
+			RowBreaks breaks = pv.getRowBreaks(pv.layoutSpan);
+			if (breaks == null) {
+				return false;
+			}
+			
+			int start = pv.getStartOffset();
+			int n = breaks.getRowCount();
+			if ((n == 0 ? start : start + breaks.getRowEnd(n - 1)) < pv.getEndOffset()) {
+				//Inconsistent with content
+				pv.clearRowBreaks();
+				return false;
+			}
+			
+			reparentPoolViews(pool, start);
+			
+			viewBuffer = new Vector<View>(10, 10);
+			int rowCount = pv.getViewCount();
+			int p0 = start;
+			for (int rowIndex = 0; rowIndex < n; rowIndex++) {
+				View row;
+				if (rowIndex >= rowCount) {
+					row = pv.createRow();
+					pv.append(row);
+				} else {
+					row = pv.getView(rowIndex);
+				}
+				
+				viewBuffer.clear();
+				if (rowIndex == 0 && pv.numberingView != null) {
+					viewBuffer.add(pv.numberingView);
+				}
+				
+				int p1 = start + breaks.getRowEnd(rowIndex);
+				while (p0 < p1) {
+					int childIndex = pool.getViewIndex(p0, Position.Bias.Forward);
+					View v = (childIndex >= 0) ? pool.getView(childIndex) : null;
+					if (v instanceof RunView) {
+						v = ((RunView) v).getTextView(p0);
+					}
+					if (v != null 
+						&& (v.getStartOffset() != p0 || v.getEndOffset() > p1)) {
+						v = v.createFragment(p0, Math.min(v.getEndOffset(), p1));
+					}
+					if (v == null || v.getEndOffset() <= p0) {
+						//Inconsistent with content.
+						//The rows are rebuilt by the caller.
+						viewBuffer = null;
+						pv.clearRowBreaks();
+						return false;
+					}
+					viewBuffer.add(v);
+					p0 = v.getEndOffset();
+				}
+				
+				View[] views = new View[viewBuffer.size()];
+				viewBuffer.toArray(views);
+				row.replace(0, row.getViewCount(), views);
+			}
+			viewBuffer = null;
+			
+			if (n < rowCount) {
+				pv.replace(n, rowCount - n, null);
+			}
+			return true;
+		}
+
 		/**
 		 * Creates a row of views that will fit within the layout span of the
 		 * row. This is called by the layout method. This is implemented to fill
@@ -1594,7 +1777,9 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 			float breakSpan = 0f;
 			int breakIndex = -1;
 			int n = 0;
-
+			boolean forcedBreak = false;
+			
+			rowWrapped = false;
 			viewBuffer.clear();
 			
 			View numberingView = ((ImpliedParagraphView) fv).numberingView;
@@ -1616,11 +1801,14 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 					View w = v.breakView(flowAxis, pos, x, spanLeft);
 					if (w != null) {
 						viewBuffer.add(w);
+						spanLeft -= w.getPreferredSpan(flowAxis);
 					} else if (n == 0) {
 						// if the view does not break, and it is the only view
 						// in a row, use the whole view
 						viewBuffer.add(v);
+						spanLeft -= v.getPreferredSpan(flowAxis);
 					}
+					forcedBreak = true;
 					break;
 				} else if (bw >= breakWeight && bw > BadBreakWeight) {
 					breakWeight = bw;
@@ -1646,6 +1834,7 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 					}
 					v = v.breakView(flowAxis, v.getStartOffset(), breakX,
 							breakSpan);
+					rowWrapped = true;
 				}
 
 				spanLeft -= chunkSpan;
@@ -1655,6 +1844,11 @@ public class ImpliedParagraphView extends FlowView implements TabExpander {
 				n++;
 			}
 
+			if (!forcedBreak && pos < end) {
+				rowWrapped = true;
+			}
+			rowSlack = spanLeft;
+			
 			if (rowIndex == 0 && numberingView != null) {
 				viewBuffer.add(0, numberingView);
 			}
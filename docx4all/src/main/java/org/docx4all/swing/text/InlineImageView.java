@@ -47,7 +47,6 @@ import javax.swing.text.View;
 import javax.swing.text.ViewFactory;
 
 import org.docx4all.xml.InlineDrawingML;
-import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 
 /**
  * This class is based on javax.swing.text.html.ImageView class downloaded from 
@@ -76,11 +75,6 @@ public class InlineImageView extends View {
      */
     private static final String MISSING_IMAGE = "html.missingImage";
     
-    /**
-     * Document property for image cache.
-     */
-    private static final String IMAGE_CACHE_PROPERTY = "imageCache";
-    
     // Height/width to use before we know the real size, these should at least
     // the size of <code>sMissingImageIcon</code> and
     // <code>sPendingImageIcon</code>
@@ -99,6 +93,7 @@ public class InlineImageView extends View {
     private static final int RELOAD_FLAG = 16;
     private static final int RELOAD_IMAGE_FLAG = 32;
     private static final int SYNC_LOAD_FLAG = 64;
+    private static final int PENDING_FLAG = 128;
 
     private AttributeSet attr;
     private Image image;
@@ -298,6 +293,15 @@ public class InlineImageView extends View {
                             width, height, imageObserver);
             }
         }
+        else if ((state & PENDING_FLAG) != 0) {
+            // Still being decoded by ImageCache
+            Icon icon = getLoadingImageIcon();
+
+            if (icon != null) {
+                icon.paintIcon(getContainer(), g, rect.x + leftInset,
+                               rect.y + topInset);
+            }
+        }
         else {
             Icon icon = getNoImageIcon();
 
@@ -577,13 +581,38 @@ public class InlineImageView extends View {
     }
 
     /**
-     * Loads the image from the URL <code>getImageURL</code>. This should
+     * Loads the image from the ImageCache of the document. This should
      * only be invoked from <code>refreshImage</code>.
      */
     private void loadImage() {
-    	WordprocessingMLPackage wmlPkg = 
-    		getInlineDrawingML().getWordprocessingMLPackage();
-    	image = getInlineDrawingML().getGraphic().getImage(wmlPkg);
+    	Dimension extent = getInlineDrawingML().getExtentInPixels();
+    	Image newImage = 
+    		ImageCache.getImageCache(getDocument()).getImage(
+    			getInlineDrawingML(), 
+    			extent.width, 
+    			extent.height,
+    			new Runnable() {
+    				public void run() {
+    					// Decoded on another thread. Reload it from the cache.
+    					synchronized(InlineImageView.this) {
+    						state |= RELOAD_IMAGE_FLAG;
+    					}
+    					if (getParent() != null) {
+    						safePreferenceChanged();
+    						repaint(0);
+    					}
+    				}
+    			});
+    	
+    	synchronized(this) {
+    		if (newImage == ImageCache.PENDING) {
+    			image = null;
+    			state |= PENDING_FLAG;
+    		} else {
+    			image = newImage;
+    			state = (state | PENDING_FLAG) ^ PENDING_FLAG;
+    		}
+    	}
     }
 
     /**
@@ -665,6 +694,11 @@ public class InlineImageView extends View {
                 // Only reset if this thread determined image is null
                 updateAltTextView();
             }
+        } else if ((state & PENDING_FLAG) != 0) {
+        	// Take the display size while the image is being decoded
+        	Dimension extent = getInlineDrawingML().getExtentInPixels();
+        	width = (extent.width > 0) ? extent.width : DEFAULT_WIDTH;
+        	height = (extent.height > 0) ? extent.height : DEFAULT_HEIGHT;
         } else {
             width = height = DEFAULT_HEIGHT;
             updateAltTextView();
@@ -0,0 +1,349 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.Element;
+
+import org.docx4all.xml.ElementML;
+import org.docx4all.xml.ParagraphML;
+import org.docx4all.xml.RunML;
+import org.docx4j.model.listnumbering.Emulator;
+import org.docx4j.model.listnumbering.Emulator.ResultTriple;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.wml.PPrBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The list numbering of the numbered paragraphs in a WordMLDocument.
+ *
+ * Emulator.getNumber() advances the counters of the list it is asked
+ * about.  Rather than calling it whenever a NumberingView is created,
+ * the numbers of all numbered paragraphs are computed in document order
+ * and kept by their ParagraphML.
+ *
+ * The document tells this index about every change (see:
+ * WordMLDocument.fireInsertUpdate()).  Typing within a paragraph does
+ * not affect numbering.  When body level elements are replaced only
+ * the numbered paragraphs in those elements are listed again.  A CHANGE
+ * only lists again the paragraphs in its range and is ignored when their
+ * numId, ilvl and pStyle stay the same.  Numbers are then recomputed
+ * from the first numbered paragraph whose numId, ilvl or pStyle differs.
+ */
+public class NumberingIndex {
+	private static Logger log = LoggerFactory.getLogger(NumberingIndex.class);
+
+	private final WordMLDocument doc;
+
+	//Numbered paragraphs in document order
+	private List<Entry> entries = new ArrayList<Entry>(0);
+	private Map<ElementML, ResultTriple> numbers =
+		new IdentityHashMap<ElementML, ResultTriple>();
+	//True when 'entries' has to be listed again from scratch
+	private boolean stale = true;
+	//Index in 'entries' of the first entry to be numbered again
+	private int renumberFrom = Integer.MAX_VALUE;
+
+	NumberingIndex(WordMLDocument doc) {
+		this.doc = doc;
+	}
+
+	/**
+	 * Called by the document before its listeners are notified of 'e'.
+	 */
+	synchronized void documentChanged(DocumentEvent e) {
+		if (this.stale) {
+			return;
+		}
+
+		Element root = this.doc.getDefaultRootElement();
+		DocumentEvent.ElementChange ec = e.getChange(root);
+		if (ec != null) {
+			//Body level elements have been added or removed.
+			Element[] added = ec.getChildrenAdded();
+			replaceEntries(
+				ec.getIndex(), 
+				ec.getChildrenRemoved().length, 
+				ec.getIndex(), 
+				added.length);
+			
+		} else if (e.getType() == DocumentEvent.EventType.CHANGE) {
+			//Paragraphs may have been restyled.
+			int first = root.getElementIndex(e.getOffset());
+			int last = root.getElementIndex(e.getOffset() + Math.max(e.getLength(), 1) - 1);
+			replaceEntries(first, last - first + 1, first, last - first + 1);
+		}
+		//Plain typing only changes leaf elements.
+	}
+
+	/**
+	 * @param paraE a paragraph element of the document
+	 * @return the numbering of 'paraE' or null if it is not numbered
+	 */
+	public synchronized ResultTriple getNumber(Element paraE) {
+		update();
+		return this.numbers.get(((DocumentElement) paraE).getElementML());
+	}
+
+	/**
+	 * Ensures that the numbering definitions of the document are ready
+	 * for NumberingDefinitionsPart.getInd().
+	 *
+	 * @return the NumberingDefinitionsPart of the document if any;
+	 *         null, otherwise.
+	 */
+	public synchronized NumberingDefinitionsPart getNumberingDefinitionsPart() {
+		update();
+		NumberingDefinitionsPart ndp =
+			getNumberingDefinitionsPart(getWordprocessingMLPackage());
+		if (ndp != null) {
+			//Force initialisation of maps
+			ndp.getEmulator();
+		}
+		return ndp;
+	}
+
+	/**
+	 * Replaces the entries of the 'oldCount' body level elements from
+	 * 'oldIdx' with those of the 'newCount' elements from 'newIdx' which
+	 * are the root's children now.
+	 */
+	private void replaceEntries(int oldIdx, int oldCount, int newIdx, int newCount) {
+		Element root = this.doc.getDefaultRootElement();
+		if (newIdx + newCount > root.getElementCount()) {
+			this.stale = true;
+			return;
+		}
+		
+		List<Entry> newEntries = new ArrayList<Entry>();
+		for (int i = newIdx; i < newIdx + newCount; i++) {
+			ElementML ml = ((DocumentElement) root.getElement(i)).getElementML();
+			collectEntries(ml, i, newEntries);
+		}
+		
+		int from = indexOf(oldIdx);
+		int to = indexOf(oldIdx + oldCount);
+		List<Entry> oldEntries = this.entries.subList(from, to);
+		
+		if (isSameNumbering(oldEntries, newEntries)) {
+			//Numbers stay as they are.
+			//Only the paragraphs holding them may have been replaced.
+			for (int i = 0; i < newEntries.size(); i++) {
+				Entry entry = oldEntries.get(i);
+				this.numbers.remove(entry.paragraphML);
+				entry.paragraphML = newEntries.get(i).paragraphML;
+				entry.rootIdx = newEntries.get(i).rootIdx;
+				this.numbers.put(entry.paragraphML, entry.number);
+			}
+		} else {
+			for (Entry entry: oldEntries) {
+				this.numbers.remove(entry.paragraphML);
+			}
+			oldEntries.clear();
+			oldEntries.addAll(newEntries);
+			this.renumberFrom = Math.min(this.renumberFrom, from);
+		}
+		
+		//Entries of the elements that follow have moved along.
+		int shift = newCount - oldCount;
+		if (shift != 0) {
+			for (int i = from + newEntries.size(); i < this.entries.size(); i++) {
+				this.entries.get(i).rootIdx += shift;
+			}
+		}
+	}
+	
+	/**
+	 * @return the index of the first entry in a root's child 
+	 * whose index is at least 'rootIdx'.
+	 */
+	private int indexOf(int rootIdx) {
+		int low = 0;
+		int high = this.entries.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (this.entries.get(mid).rootIdx < rootIdx) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+	
+	private void update() {
+		if (this.stale) {
+			//Placeholders (see: WordMLDocument.expandPlaceholders()) have no
+			//paragraph elements yet but their paragraphs count all the same.
+			//Hence, the ElementML tree is walked rather than the element tree.
+			DocumentElement root = (DocumentElement) this.doc.getDefaultRootElement();
+			ElementML bodyML = root.getElementML().getChild(0);
+			List<Entry> newEntries = new ArrayList<Entry>(this.entries.size() + 16);
+			for (int i = 0; i < bodyML.getChildrenCount(); i++) {
+				collectEntries(bodyML.getChild(i), i, newEntries);
+			}
+			this.entries = newEntries;
+			this.numbers = new IdentityHashMap<ElementML, ResultTriple>(newEntries.size());
+			this.stale = false;
+			this.renumberFrom = 0;
+		}
+		
+		if (this.renumberFrom >= this.entries.size()) {
+			this.renumberFrom = Integer.MAX_VALUE;
+			return;
+		}
+
+		WordprocessingMLPackage wmlPackage = getWordprocessingMLPackage();
+		NumberingDefinitionsPart ndp = getNumberingDefinitionsPart(wmlPackage);
+		if (ndp != null) {
+			//Restart every list counter and bring the counters of the lists
+			//being renumbered to where they were at 'renumberFrom'.
+			ndp.initialiseMaps();
+			ndp.getEmulator();
+			
+			Set<String> numIds = new HashSet<String>();
+			for (int i = this.renumberFrom; i < this.entries.size(); i++) {
+				numIds.add(this.entries.get(i).numId);
+			}
+			//A paragraph without numId is numbered by its style's list.
+			boolean replayAll = numIds.contains(null);
+			for (int i = 0; i < this.renumberFrom; i++) {
+				Entry entry = this.entries.get(i);
+				if (replayAll || entry.numId == null || numIds.contains(entry.numId)) {
+					Emulator.getNumber(wmlPackage, entry.pStyle, entry.numId, entry.ilvl);
+				}
+			}
+			
+			for (int i = this.renumberFrom; i < this.entries.size(); i++) {
+				Entry entry = this.entries.get(i);
+				entry.number =
+					Emulator.getNumber(wmlPackage, entry.pStyle, entry.numId, entry.ilvl);
+				this.numbers.put(entry.paragraphML, entry.number);
+			}
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("update(): Numbered " 
+				+ (this.entries.size() - this.renumberFrom) 
+				+ " of " + this.entries.size() + " paragraph(s).");
+		}
+		this.renumberFrom = Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Lists the numbered paragraphs in 'elem', which is 
+	 * the ElementML of the root's child at 'rootIdx'.
+	 */
+	private void collectEntries(ElementML elem, int rootIdx, List<Entry> list) {
+		if (elem instanceof ParagraphML) {
+			if (elem.isImplied()) {
+				return;
+			}
+			//The attributes its paragraph element has or will have
+			AttributeSet attr =
+				ElementMLIteratorCallback.createParagraphAttributes((ParagraphML) elem);
+			PPrBase.NumPr numPr =
+				(PPrBase.NumPr) attr.getAttribute(WordMLStyleConstants.NumPrAttribute);
+			if (numPr != null) {
+				list.add(
+					new Entry(
+						elem,
+						rootIdx,
+						numPr,
+						(String) attr.getAttribute(WordMLStyleConstants.PStyleAttribute)));
+			}
+		} else if (!(elem instanceof RunML)) {
+			//Tables, cells and content controls hold paragraphs
+			for (int i = 0; i < elem.getChildrenCount(); i++) {
+				collectEntries(elem.getChild(i), rootIdx, list);
+			}
+		}
+	}
+
+	private WordprocessingMLPackage getWordprocessingMLPackage() {
+		DocumentElement root = (DocumentElement) this.doc.getDefaultRootElement();
+		return root.getElementML().getWordprocessingMLPackage();
+	}
+
+	private final static NumberingDefinitionsPart getNumberingDefinitionsPart(
+		WordprocessingMLPackage wmlPackage) {
+		if (wmlPackage == null) {
+			return null;
+		}
+		return wmlPackage.getMainDocumentPart().getNumberingDefinitionsPart();
+	}
+
+	private final static boolean isSameNumbering(List<Entry> list1, List<Entry> list2) {
+		if (list1.size() != list2.size()) {
+			return false;
+		}
+		for (int i = 0; i < list1.size(); i++) {
+			if (!list1.get(i).hasSameKey(list2.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final static boolean isEqual(String s1, String s2) {
+		return (s1 == null) ? s2 == null : s1.equals(s2);
+	}
+
+	private static class Entry {
+		ElementML paragraphML;
+		//Index of the root's child holding the paragraph
+		int rootIdx;
+		final String numId;
+		final String ilvl;
+		final String pStyle;
+		ResultTriple number;
+
+		Entry(ElementML paragraphML, int rootIdx, PPrBase.NumPr numPr, String pStyle) {
+			this.paragraphML = paragraphML;
+			this.rootIdx = rootIdx;
+			this.numId =
+				(numPr.getNumId() != null && numPr.getNumId().getVal() != null)
+					? numPr.getNumId().getVal().toString()
+					: null;
+			this.ilvl =
+				(numPr.getIlvl() != null && numPr.getIlvl().getVal() != null)
+					? numPr.getIlvl().getVal().toString()
+					: null;
+			this.pStyle = pStyle;
+		}
+
+		boolean hasSameKey(Entry other) {
+			return isEqual(this.numId, other.numId)
+				&& isEqual(this.ilvl, other.ilvl)
+				&& isEqual(this.pStyle, other.pStyle);
+		}
+	}// Entry inner class
+
+}// NumberingIndex class
@@ -349,28 +349,38 @@ public class NumberingView extends View {
 			(PPrBase.NumPr) 
 				attr.getAttribute(
 						WordMLStyleConstants.NumPrAttribute);
-		ElementML elemML = 
-			(ElementML) 
-				attr.getAttribute(
-					WordMLStyleConstants.ElementMLAttribute);
-		String pStyle = 
-			(String)
-				attr.getAttribute(
-					WordMLStyleConstants.PStyleAttribute);
-		String numId = null;
-		if (numPr.getNumId() != null) {
-			numId = numPr.getNumId().getVal().toString();
+		Element paraE = getElement().getParentElement();
+		if (paraE.getDocument() instanceof WordMLDocument) {
+			//Numbers are computed once for the whole document.
+			//See: NumberingIndex
+			WordMLDocument doc = (WordMLDocument) paraE.getDocument();
+			this.numbering = doc.getNumberingIndex().getNumber(paraE);
 		}
-		String ilvl = null;
-		if (numPr.getIlvl() != null) {
-			ilvl = numPr.getIlvl().getVal().toString();
+		
+		if (this.numbering == null) {
+			ElementML elemML = 
+				(ElementML) 
+					attr.getAttribute(
+						WordMLStyleConstants.ElementMLAttribute);
+			String pStyle = 
+				(String)
+					attr.getAttribute(
+						WordMLStyleConstants.PStyleAttribute);
+			String numId = null;
+			if (numPr.getNumId() != null) {
+				numId = numPr.getNumId().getVal().toString();
+			}
+			String ilvl = null;
+			if (numPr.getIlvl() != null) {
+				ilvl = numPr.getIlvl().getVal().toString();
+			}
+			this.numbering = 
+				Emulator.getNumber(
+					elemML.getWordprocessingMLPackage(), 
+					pStyle, 
+					numId, 
+					ilvl);
 		}
-		this.numbering = 
-			Emulator.getNumber(
-				elemML.getWordprocessingMLPackage(), 
-				pStyle, 
-				numId, 
-				ilvl);
 		
 		this.firstLineIndent = (int) StyleConstants.getFirstLineIndent(attr);
 		
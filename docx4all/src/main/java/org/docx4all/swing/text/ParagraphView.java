@@ -27,8 +27,6 @@ import javax.swing.text.View;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.docx4all.xml.ElementML;
-import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
 import org.docx4j.wml.PPrBase;
 
@@ -104,15 +102,12 @@ public class ParagraphView extends BoxView {
 				ilvl = numPr.getIlvl().getVal().toString();
 			}
 			
-			ElementML elemML = WordMLStyleConstants.getElementML(attr);
-			WordprocessingMLPackage p = elemML.getWordprocessingMLPackage();
 			// Get the Ind value
 			NumberingDefinitionsPart ndp = 
-				p.getMainDocumentPart().getNumberingDefinitionsPart();
-			// Force initialisation of maps
-			ndp.getEmulator();
+				((WordMLDocument) getDocument()).getNumberingIndex()
+					.getNumberingDefinitionsPart();
 			
-			if (numId != null && ilvl != null) {
+			if (ndp != null && numId != null && ilvl != null) {
 				indByNumPr = ndp.getInd(numId, ilvl);
 			}
 		}
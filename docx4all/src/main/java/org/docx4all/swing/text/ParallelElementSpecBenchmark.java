@@ -0,0 +1,197 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.swing.text.DefaultStyledDocument.ElementSpec;
+
+import org.docx4all.xml.DocumentML;
+import org.docx4all.xml.ElementMLFactory;
+import org.docx4all.xml.ElementMLIterator;
+import org.docx4all.xml.ObjectFactory;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.STFldCharType;
+
+/**
+ * Measures how ParallelElementSpecBuilder scales with the number of
+ * threads on a generated document.
+ *
+ * The document has a complex field spanning many paragraphs so that
+ * the sequential iteration of parts is exercised too.  The ElementSpecs
+ * of each run are checked against those of a sequential iteration.
+ *
+ * Usage: ParallelElementSpecBenchmark [paragraphs] [rounds] [maxThreads]
+ *
+ * To test properly, make sure logging is quiet, eg:
+ *    -Dlog4j.configuration=conf/log4j.properties
+ */
+public class ParallelElementSpecBenchmark {
+
+	private final static int WARM_UP_ROUNDS = 5;
+	private final static int RUNS_PER_PARAGRAPH = 6;
+	private final static int FIELD_START = 100;
+	private final static int FIELD_LENGTH = 300;
+
+	private final static org.docx4j.wml.ObjectFactory wmlFactory =
+		new org.docx4j.wml.ObjectFactory();
+
+	public static void main(String[] args) throws Exception {
+		int paragraphs = (args.length > 0) ? Integer.parseInt(args[0]) : 20000;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+		int maxThreads =
+			(args.length > 2)
+				? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		System.out.println("Paragraphs=" + paragraphs
+			+ " rounds=" + rounds
+			+ " cores=" + Runtime.getRuntime().availableProcessors());
+
+		DocumentML docML = ElementMLFactory.createDocumentML(createDocument(paragraphs));
+		List<ElementSpec> expected = sequential(docML);
+
+		for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+			sequential(docML);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			sequential(docML);
+		}
+		long sequentialNanos = System.nanoTime() - start;
+		report("Sequential", sequentialNanos, rounds, sequentialNanos);
+
+		for (int nThreads = 1; nThreads <= maxThreads; nThreads *= 2) {
+			run(docML, expected, nThreads, rounds, sequentialNanos);
+			if (nThreads < maxThreads && nThreads * 2 > maxThreads) {
+				//Always include maxThreads itself
+				run(docML, expected, maxThreads, rounds, sequentialNanos);
+			}
+		}
+		System.exit(0);
+	}
+
+	private static void run(
+		DocumentML docML,
+		List<ElementSpec> expected,
+		int nThreads,
+		int rounds,
+		long sequentialNanos) {
+
+		ExecutorService executor =
+			Executors.newFixedThreadPool(nThreads, new ParallelElementSpecBuilder.WorkerFactory());
+		try {
+			int maxParts = nThreads * 4;
+			List<ElementSpec> actual =
+				ParallelElementSpecBuilder.getElementSpecs(docML, Integer.MAX_VALUE, executor, maxParts);
+			verify(expected, actual);
+
+			for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+				ParallelElementSpecBuilder.getElementSpecs(docML, Integer.MAX_VALUE, executor, maxParts);
+			}
+			long start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				ParallelElementSpecBuilder.getElementSpecs(docML, Integer.MAX_VALUE, executor, maxParts);
+			}
+			report(nThreads + " thread(s)", System.nanoTime() - start, rounds, sequentialNanos);
+
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<ElementSpec> sequential(DocumentML docML) {
+		ElementMLIteratorCallback callback = new ElementMLIteratorCallback();
+		new ElementMLIterator(docML).cruise(callback);
+		return callback.getElementSpecs();
+	}
+
+	private static void verify(List<ElementSpec> expected, List<ElementSpec> actual) {
+		if (expected.size() != actual.size()) {
+			fail("Expected " + expected.size() + " ElementSpecs but got " + actual.size());
+		}
+		for (int i = 0; i < expected.size(); i++) {
+			ElementSpec e = expected.get(i);
+			ElementSpec a = actual.get(i);
+			boolean same =
+				e.getType() == a.getType()
+				&& e.getLength() == a.getLength()
+				&& (e.getAttributes() == null) == (a.getAttributes() == null)
+				&& (e.getAttributes() == null
+					|| WordMLStyleConstants.getElementML(e.getAttributes())
+						== WordMLStyleConstants.getElementML(a.getAttributes()));
+			if (!same) {
+				fail("ElementSpec " + i + " differs: expected=" + e + " actual=" + a);
+			}
+		}
+	}
+
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(1);
+	}
+
+	private static void report(String name, long nanos, int rounds, long sequentialNanos) {
+		System.out.println(name
+			+ ": perRound=" + (nanos / rounds / 1000000) + "ms"
+			+ " speedUp=" + String.format("%.2fx", (double) sequentialNanos / nanos));
+	}
+
+	private static org.docx4j.wml.Document createDocument(int paragraphs) {
+		org.docx4j.wml.Document doc = ObjectFactory.createEmptyDocument();
+		List<Object> body = doc.getBody().getEGBlockLevelElts();
+		body.clear();
+
+		for (int i = 0; i < paragraphs; i++) {
+			P p = ObjectFactory.createP(null);
+			if (i == FIELD_START) {
+				p.getParagraphContent().add(createFldCharRun(STFldCharType.BEGIN));
+				R instr = wmlFactory.createR();
+				org.docx4j.wml.Text text = wmlFactory.createText();
+				text.setValue(" TOC \\o \"1-3\" ");
+				instr.getRunContent().add(wmlFactory.createRInstrText(text));
+				p.getParagraphContent().add(instr);
+				p.getParagraphContent().add(createFldCharRun(STFldCharType.SEPARATE));
+			}
+			for (int j = 0; j < RUNS_PER_PARAGRAPH; j++) {
+				p.getParagraphContent().add(
+					ObjectFactory.createR("Paragraph " + i + ", run " + j + ". "));
+			}
+			if (i == FIELD_START + FIELD_LENGTH) {
+				p.getParagraphContent().add(createFldCharRun(STFldCharType.END));
+			}
+			body.add(p);
+		}
+
+		return doc;
+	}
+
+	private static R createFldCharRun(STFldCharType type) {
+		org.docx4j.wml.FldChar fldChar = wmlFactory.createFldChar();
+		fldChar.setFldCharType(type);
+		R r = wmlFactory.createR();
+		r.getRunContent().add(wmlFactory.createRFldChar(fldChar));
+		return r;
+	}
+
+}// ParallelElementSpecBenchmark class
@@ -0,0 +1,263 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.DefaultStyledDocument.ElementSpec;
+
+import org.docx4all.xml.BodyML;
+import org.docx4all.xml.DocumentML;
+import org.docx4all.xml.ElementML;
+import org.docx4all.xml.ElementMLIterator;
+import org.docx4all.xml.ImpliedContainerML;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates the ElementSpecs of a body in parallel.
+ *
+ * Body level elements are split into consecutive parts. Each part is
+ * iterated by its own ElementMLIteratorCallback in a worker thread and
+ * the resulting ElementSpecs are concatenated in document order.
+ *
+ * The only iteration state that crosses body level elements is that of
+ * complex fields (eg: a TOC spanning several paragraphs).  When a part
+ * ends inside a complex field the next part is iterated again,
+ * sequentially, by the callback of the part before it.
+ *
+ * The parallel way is used by DocUtil.getElementSpecs() when there are
+ * at least getThreshold() body level elements.  The threshold can be
+ * set with the "docx4all.parallelSpecThreshold" system property.
+ */
+public class ParallelElementSpecBuilder {
+	private static Logger log = LoggerFactory.getLogger(ParallelElementSpecBuilder.class);
+
+	private final static int DEFAULT_THRESHOLD = 400;
+
+	//Parts smaller than this are not worth a task
+	private final static int MIN_PART_SIZE = 25;
+	//Several parts per thread even out uneven part sizes
+	private final static int PARTS_PER_THREAD = 4;
+
+	private static int threshold =
+		Integer.getInteger("docx4all.parallelSpecThreshold", DEFAULT_THRESHOLD);
+
+	private static ExecutorService executor;
+
+	public final static int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @param count the minimum number of body level elements
+	 * that makes getElementSpecs() work in parallel.
+	 * Integer.MAX_VALUE disables it.
+	 */
+	public final static void setThreshold(int count) {
+		threshold = count;
+	}
+
+	/**
+	 * @param elem either a DocumentML or an ImpliedContainerML
+	 * holding body level elements
+	 * @return true if getElementSpecs() should be used for 'elem'
+	 */
+	public final static boolean isWorthIt(ElementML elem) {
+		ElementML container = getBodyLevelContainer(elem);
+		return container != null
+			&& container.getChildrenCount() >= threshold
+			&& Runtime.getRuntime().availableProcessors() > 1;
+	}
+
+	/**
+	 * Parallel equivalent of DocUtil.getElementSpecs(elem, placeholderIndex).
+	 */
+	public final static List<ElementSpec> getElementSpecs(
+		ElementML elem,
+		int placeholderIndex) {
+
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		return getElementSpecs(elem, placeholderIndex, getExecutor(), nThreads * PARTS_PER_THREAD);
+	}
+
+	/**
+	 * @param elem either a DocumentML or an ImpliedContainerML
+	 * holding body level elements
+	 * @param placeholderIndex See: ElementMLIteratorCallback.setPlaceholderIndex()
+	 * @param executor runs the iteration of each part
+	 * @param maxParts the maximum number of parts
+	 * @return the same ElementSpecs as DocUtil.getElementSpecs() does
+	 */
+	public final static List<ElementSpec> getElementSpecs(
+		ElementML elem,
+		final int placeholderIndex,
+		ExecutorService executor,
+		int maxParts) {
+
+		ElementML container = getBodyLevelContainer(elem);
+		if (container == null) {
+			throw new IllegalArgumentException("Not a body level container: " + elem);
+		}
+
+		int count = container.getChildrenCount();
+		int parts = Math.max(1, Math.min(maxParts, count / MIN_PART_SIZE));
+		int partSize = (count + parts - 1) / Math.max(parts, 1);
+
+		//StyleSheet is created lazily.  Create it before the workers need it.
+		if (count > 0) {
+			container.getChild(0).getStyleSheet();
+		}
+
+		List<ImpliedContainerML> partMLs = new ArrayList<ImpliedContainerML>(parts);
+		List<Future<ElementMLIteratorCallback>> futures =
+			new ArrayList<Future<ElementMLIteratorCallback>>(parts);
+		for (int start = 0; start < count; start += partSize) {
+			final ImpliedContainerML partML = new ImpliedContainerML();
+			int end = Math.min(start + partSize, count);
+			for (int i = start; i < end; i++) {
+				//Keep the parent of each body level element
+				partML.addChild(container.getChild(i), false);
+			}
+			partMLs.add(partML);
+
+			final int bodyChildIndex = start;
+			futures.add(executor.submit(new Callable<ElementMLIteratorCallback>() {
+				public ElementMLIteratorCallback call() {
+					ElementMLIteratorCallback callback = new ElementMLIteratorCallback();
+					callback.setPlaceholderIndex(placeholderIndex);
+					callback.setBodyChildIndex(bodyChildIndex);
+					new ElementMLIterator(partML).cruise(callback);
+					return callback;
+				}
+			}));
+		}
+
+		List<ElementSpec> theSpecs = new ArrayList<ElementSpec>(count * 16);
+
+		//The opening and closing ElementSpecs of 'elem'
+		//are the same as those created by ElementMLIteratorCallback.
+		SimpleAttributeSet elemAttrs = new SimpleAttributeSet();
+		WordMLStyleConstants.setElementML(elemAttrs, elem);
+		theSpecs.add(new ElementSpec(elemAttrs, ElementSpec.StartTagType));
+
+		ElementMLIteratorCallback previous = null;
+		for (int i = 0; i < futures.size(); i++) {
+			ElementMLIteratorCallback callback = null;
+			List<ElementSpec> specs = null;
+
+			if (previous != null && previous.hasOpenFldComplex()) {
+				//A complex field spans the two parts.
+				//Iterate this part again with the state of the previous part
+				//once its worker has left it alone.
+				waitFor(futures.get(i));
+				callback = previous;
+				int size = callback.getElementSpecs().size();
+				new ElementMLIterator(partMLs.get(i)).cruise(callback);
+				specs = callback.getElementSpecs();
+				specs = specs.subList(size, specs.size());
+
+				if (log.isDebugEnabled()) {
+					log.debug("getElementSpecs(): Part " + i + " iterated sequentially.");
+				}
+			} else {
+				callback = getResult(futures.get(i));
+				specs = callback.getElementSpecs();
+			}
+
+			//Excludes the opening and closing specs of part container
+			theSpecs.addAll(specs.subList(1, specs.size() - 1));
+			previous = callback;
+		}
+
+		theSpecs.add(new ElementSpec(null, ElementSpec.EndTagType));
+
+		return theSpecs;
+	}
+
+	private final static ElementMLIteratorCallback getResult(
+		Future<ElementMLIteratorCallback> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(exc);
+		} catch (ExecutionException exc) {
+			if (exc.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) exc.getCause();
+			}
+			throw new RuntimeException(exc.getCause());
+		}
+	}
+
+	private final static void waitFor(Future<ElementMLIteratorCallback> future) {
+		try {
+			future.get();
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(exc);
+		} catch (ExecutionException exc) {
+			;//The part was iterated without the state it needed.
+		}
+	}
+
+	private final static ElementML getBodyLevelContainer(ElementML elem) {
+		ElementML container = null;
+		if (elem instanceof DocumentML) {
+			container = elem.getChild(0);
+		} else if (elem instanceof ImpliedContainerML
+				&& elem.getChildrenCount() > 0
+				&& elem.getChild(0).getParent() instanceof BodyML) {
+			container = elem;
+		}
+		return container;
+	}
+
+	private synchronized final static ExecutorService getExecutor() {
+		if (executor == null) {
+			int nThreads = Runtime.getRuntime().availableProcessors();
+			executor = Executors.newFixedThreadPool(nThreads, new WorkerFactory());
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates daemon threads so that the pool does not keep
+	 * the application alive.
+	 */
+	public static class WorkerFactory implements ThreadFactory {
+		private int count = 0;
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ElementSpecBuilder-" + (++count));
+			t.setDaemon(true);
+			return t;
+		}
+	}// WorkerFactory inner class
+
+}// ParallelElementSpecBuilder class
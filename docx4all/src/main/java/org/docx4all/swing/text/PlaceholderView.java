@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+	Docx4all is free software: you can redistribute it and/or modify
+	it under the terms of version 3 of the GNU General Public License
+	as published by the Free Software Foundation.
+
+	Docx4all is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License
+	along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.awt.Container;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.Shape;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Position;
+import javax.swing.text.View;
+
+/**
+ * The view of a body level element whose structure has not been built.
+ * It takes the estimated height of the element and asks WordMLDocument
+ * to build the element, and a few of those that follow, as soon as
+ * it is painted or the caret is put on it.
+ *
+ * See: WordMLDocument.expandPlaceholders()
+ */
+public class PlaceholderView extends View {
+	//The number of body level elements following this placeholder
+	//that are expanded together with it.
+	private final static int EXPANSION_LOOKAHEAD = 20;
+	private final static int DEFAULT_LINE_HEIGHT = 16;
+
+	private int lineHeight = -1;
+	private boolean expansionRequested = false;
+
+	public PlaceholderView(Element elem) {
+		super(elem);
+	}
+
+	public float getPreferredSpan(int axis) {
+		if (axis == View.X_AXIS) {
+			return 0;
+		}
+		int lines = WordMLStyleConstants.getPlaceholderLines(getAttributes());
+		return Math.max(lines, 1) * getLineHeight();
+	}
+
+	public float getMaximumSpan(int axis) {
+		if (axis == View.X_AXIS) {
+			return Integer.MAX_VALUE;
+		}
+		return getPreferredSpan(axis);
+	}
+
+	public void paint(Graphics g, Shape allocation) {
+		//Only painted when in the visible area.
+		requestExpansion();
+	}
+
+	public Shape modelToView(int pos, Shape a, Position.Bias b)
+		throws BadLocationException {
+
+		requestExpansion();
+
+		Rectangle alloc = a.getBounds();
+		return new Rectangle(alloc.x, alloc.y, 0, getLineHeight());
+	}
+
+	public int viewToModel(float x, float y, Shape a, Position.Bias[] biasReturn) {
+		biasReturn[0] = Position.Bias.Forward;
+		return getStartOffset();
+	}
+
+	private int getLineHeight() {
+		if (this.lineHeight < 0) {
+			Container c = getContainer();
+			if (c == null) {
+				return DEFAULT_LINE_HEIGHT;
+			}
+			WordMLDocument doc = (WordMLDocument) getDocument();
+			FontMetrics fm = c.getFontMetrics(doc.getFont(getAttributes()));
+			this.lineHeight = fm.getHeight();
+		}
+		return this.lineHeight;
+	}
+
+	private void requestExpansion() {
+		if (this.expansionRequested) {
+			return;
+		}
+		this.expansionRequested = true;
+
+		//Views must not change the document while painting.
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				expand();
+			}
+		});
+	}
+
+	private void expand() {
+		final WordMLDocument doc = (WordMLDocument) getDocument();
+		final int[] range = new int[] {-1, 0};
+
+		doc.render(new Runnable() {
+			public void run() {
+				Element rootE = doc.getDefaultRootElement();
+				int idx = rootE.getElementIndex(getStartOffset());
+				if (rootE.getElement(idx) == getElement()) {
+					//Not expanded yet.
+					int lastIdx =
+						Math.min(idx + EXPANSION_LOOKAHEAD, rootE.getElementCount() - 1);
+					range[0] = getStartOffset();
+					range[1] = rootE.getElement(lastIdx).getEndOffset() - range[0];
+				}
+			}
+		});
+
+		if (range[0] >= 0) {
+			doc.expandPlaceholders(range[0], range[1]);
+		}
+	}
+
+}// PlaceholderView class
@@ -27,9 +27,11 @@ import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.swing.SwingUtilities;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.BoxView;
 import javax.swing.text.Element;
+import javax.swing.text.JTextComponent;
 import javax.swing.text.Position;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.View;
@@ -46,6 +48,8 @@ public class SdtBlockView extends BoxView {
 	private final static short INSET_BOTTOM = 15;
 	
 	private boolean isBorderVisible;
+	//The border outline last painted
+	private Polygon paintedOutline;
 	
 	public SdtBlockView(Element elem) {
 		super(elem, View.Y_AXIS);
@@ -66,15 +70,11 @@ public class SdtBlockView extends BoxView {
     	
     	if (isBorderVisible()) {
     		try {
-    			Shape border = getBorderOutline(allocation);
+    			Polygon border = getBorderOutline(allocation);
+    			paintedOutline = border;
     			Color orig = g.getColor();
     			g.setColor(Color.BLUE);
-    			if (border instanceof Polygon) {
-    				g.drawPolygon((Polygon) border);
-    			} else {
-    				Rectangle rect = SwingUtil.getBounds(border);
-    				g.drawRect(rect.x, rect.y, rect.width, rect.height);
-    			}
+    			g.drawPolygon(border);
     			g.setColor(orig);
     		} catch (BadLocationException exc) {
     			;//ignore
@@ -82,6 +82,70 @@ public class SdtBlockView extends BoxView {
     	}
     }
     
+    /**
+     * Repaints the border of this view but not its content.
+     * 
+     * A visible border is repainted where it is now.  A hidden one
+     * is repainted where it was last painted.  Only the visible part of
+     * the thin strips along the edges of the border is repainted.
+     * Those strips are painted one by one rather than left to the
+     * RepaintManager which would merge them into one large region.
+     * 
+     * @param c the component hosting this view
+     * @return false if the border could not be worked out;
+     *         true, otherwise.
+     */
+    public boolean damageBorder(final JTextComponent c) {
+    	Polygon outline = paintedOutline;
+    	if (isBorderVisible()) {
+    		Shape alloc = SwingUtil.getAllocation(this, c);
+    		if (alloc == null) {
+    			return false;
+    		}
+    		try {
+    			outline = getBorderOutline(alloc);
+    		} catch (BadLocationException exc) {
+    			return false;
+    		}
+    	} else {
+    		paintedOutline = null;
+    	}
+    	
+    	if (outline == null) {
+    		//Nothing painted
+    		return true;
+    	}
+    	
+    	Rectangle visible = c.getVisibleRect();
+    	final List<Rectangle> strips = new ArrayList<Rectangle>(outline.npoints);
+    	for (int i=0; i < outline.npoints; i++) {
+    		int j = (i + 1) % outline.npoints;
+    		Rectangle strip = 
+    			new Rectangle(
+    				Math.min(outline.xpoints[i], outline.xpoints[j]),
+    				Math.min(outline.ypoints[i], outline.ypoints[j]),
+    				Math.abs(outline.xpoints[j] - outline.xpoints[i]) + 1,
+    				Math.abs(outline.ypoints[j] - outline.ypoints[i]) + 1);
+    		strip = strip.intersection(visible);
+    		if (!strip.isEmpty()) {
+    			strips.add(strip);
+    		}
+    	}
+    	
+    	if (!strips.isEmpty()) {
+    		//Painted once the current event is over 
+    		//and the view hierarchy is up to date.
+    		SwingUtilities.invokeLater(new Runnable() {
+    			public void run() {
+    				for (Rectangle strip: strips) {
+    					c.paintImmediately(strip);
+    				}
+    			}
+    		});
+    	}
+    	return true;
+    }
+    
     /**
 	 * Construct a Polygon that represents the border of this view.
 	 * 
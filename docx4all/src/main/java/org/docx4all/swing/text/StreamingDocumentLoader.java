@@ -0,0 +1,371 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.xml.bind.JAXBIntrospector;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import net.sf.vfsjfilechooser.utils.VFSUtils;
+
+import org.apache.commons.vfs.FileObject;
+import org.apache.commons.vfs.FileSystemException;
+import org.docx4all.ui.main.Constants;
+import org.docx4all.util.DocUtil;
+import org.docx4all.xml.BodyML;
+import org.docx4all.xml.DocumentML;
+import org.docx4all.xml.ElementML;
+import org.docx4all.xml.ObjectFactory;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.io.LoadFromVFSZipFile;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.SectPr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads a .docx file into a WordMLDocument that is already displayed.
+ *
+ * The body of the main document part is parsed with StAX and each body
+ * level element is unmarshalled on its own.  The elements are handed to
+ * the event dispatching thread in batches, the first of which is about
+ * a screenful, so that the top of the document can be read while the
+ * rest is still being parsed.  Each batch is appended under a short
+ * write lock.  See: WordMLDocument.appendBodyChildren()
+ *
+ * Once the body has been streamed the whole package is loaded for its
+ * other parts (numbering, images, etc) and the streamed body becomes
+ * its body.  See: WordMLDocument.adoptDocumentML()
+ *
+ * The document should not be edited until loaded() is called.
+ */
+public class StreamingDocumentLoader extends SwingWorker<DocumentML, Void> {
+	private static Logger log = LoggerFactory.getLogger(StreamingDocumentLoader.class);
+
+	//Smaller .docx files are quick enough to read in one go.
+	private final static long STREAMING_THRESHOLD = 512 * 1024;
+
+	private final static int FIRST_BATCH_SIZE = 30;
+	private final static int BATCH_SIZE = 100;
+
+	private final static String MAIN_DOCUMENT_ENTRY = "word/document.xml";
+	private final static String STYLES_ENTRY = "word/styles.xml";
+
+	private final FileObject file;
+	private final WordMLDocument doc;
+
+	private DocumentML previewDocML;
+	private SectPr sectPr;
+
+	/**
+	 * @param f a local .docx file
+	 * @return true if 'f' is worth loading with a StreamingDocumentLoader
+	 */
+	public final static boolean canStream(FileObject f) {
+		boolean canStream = false;
+		try {
+			canStream =
+				"file".equals(f.getName().getScheme())
+				&& Constants.DOCX_STRING.equalsIgnoreCase(f.getName().getExtension())
+				&& f.getContent().getSize() > STREAMING_THRESHOLD;
+		} catch (FileSystemException exc) {
+			;//cannot stream
+		}
+		return canStream;
+	}
+
+	/**
+	 * @param f the .docx file to load
+	 * @param doc an empty WordMLDocument created by WordMLEditorKit
+	 */
+	public StreamingDocumentLoader(FileObject f, WordMLDocument doc) {
+		this.file = f;
+		this.doc = doc;
+	}
+
+	public WordMLDocument getDocument() {
+		return this.doc;
+	}
+
+	/**
+	 * Called on the event dispatching thread when loading has finished.
+	 *
+	 * @param failure null if the document has been completely loaded;
+	 * otherwise the reason why it has not been.
+	 */
+	protected void loaded(Exception failure) {
+		;//Subclasses make the document editable.
+	}
+
+	@Override
+	protected DocumentML doInBackground() throws Exception {
+		if (log.isDebugEnabled()) {
+			log.debug("doInBackground(): File = "
+				+ VFSUtils.getFriendlyName(file.getName().getURI()));
+		}
+
+		WordprocessingMLPackage previewPackage = createPreviewPackage();
+
+		long size = file.getContent().getSize();
+		CountingInputStream counter =
+			new CountingInputStream(file.getContent().getInputStream());
+		ZipInputStream zip = new ZipInputStream(new BufferedInputStream(counter));
+		try {
+			if (nextEntry(zip, MAIN_DOCUMENT_ENTRY) == null) {
+				throw new IOException("No " + MAIN_DOCUMENT_ENTRY + " found.");
+			}
+
+			XMLStreamReader reader =
+				XMLInputFactory.newInstance().createXMLStreamReader(zip);
+			Unmarshaller u = Context.jc.createUnmarshaller();
+			u.setEventHandler(new org.docx4j.jaxb.JaxbValidationEventHandler());
+
+			boolean inBody = false;
+			while (!inBody && reader.hasNext()) {
+				inBody =
+					(reader.next() == XMLStreamConstants.START_ELEMENT
+					&& "body".equals(reader.getLocalName()));
+			}
+			if (!inBody) {
+				throw new IOException("No body found in " + MAIN_DOCUMENT_ENTRY);
+			}
+
+			org.docx4j.wml.Document previewDoc =
+				(org.docx4j.wml.Document)
+					previewPackage.getMainDocumentPart().getJaxbElement();
+			List<Object> firstBatch = previewDoc.getBody().getEGBlockLevelElts();
+			List<Object> batch = null;
+
+			reader.nextTag();
+			while (reader.getEventType() == XMLStreamConstants.START_ELEMENT
+					&& !isCancelled()) {
+				//Unmarshalling leaves 'reader' right after the element's end tag
+				Object obj = u.unmarshal(reader);
+				if (JAXBIntrospector.getValue(obj) instanceof SectPr) {
+					this.sectPr = (SectPr) JAXBIntrospector.getValue(obj);
+
+				} else if (this.previewDocML == null) {
+					firstBatch.add(obj);
+					if (firstBatch.size() == FIRST_BATCH_SIZE) {
+						showFirstBatch(previewPackage);
+					}
+				} else {
+					if (batch == null) {
+						batch = new ArrayList<Object>(BATCH_SIZE);
+					}
+					ElementML ml = BodyML.createChildML(obj);
+					batch.add((ml == null) ? obj : ml);
+					if (batch.size() == BATCH_SIZE) {
+						showBatch(batch);
+						batch = null;
+					}
+				}
+
+				if (reader.getEventType() != XMLStreamConstants.START_ELEMENT
+					&& reader.getEventType() != XMLStreamConstants.END_ELEMENT) {
+					reader.nextTag();
+				}
+
+				if (size > 0) {
+					setProgress((int) Math.min(99, counter.getCount() * 100 / size));
+				}
+			}
+			reader.close();
+
+			if (this.previewDocML == null) {
+				showFirstBatch(previewPackage);
+			} else if (batch != null) {
+				showBatch(batch);
+			}
+		} finally {
+			zip.close();
+		}
+
+		if (isCancelled()) {
+			return null;
+		}
+
+		//Load the other parts.  The body has been streamed.
+		LoadFromVFSZipFile loader = new LoadFromVFSZipFile(true);
+		WordprocessingMLPackage wmlPackage =
+			(WordprocessingMLPackage) loader.getPackageFromFileObject(file);
+		org.docx4j.wml.Document wmlDoc =
+			(org.docx4j.wml.Document)
+				wmlPackage.getMainDocumentPart().getJaxbElement();
+		wmlDoc.setBody(null);
+
+		setProgress(100);
+
+		return new DocumentML(wmlPackage);
+	}
+
+	@Override
+	protected void done() {
+		if (isCancelled()) {
+			return;
+		}
+
+		Exception failure = null;
+		try {
+			DocumentML docML = get();
+
+			DocumentElement rootE = (DocumentElement) this.doc.getDefaultRootElement();
+			org.docx4j.wml.Body body =
+				(org.docx4j.wml.Body) rootE.getElementML().getChild(0).getDocxObject();
+			if (this.sectPr != null) {
+				body.setSectPr(this.sectPr);
+			}
+			this.doc.adoptDocumentML(docML);
+
+		} catch (InterruptedException exc) {
+			failure = exc;
+		} catch (ExecutionException exc) {
+			failure =
+				(exc.getCause() instanceof Exception)
+					? (Exception) exc.getCause()
+					: exc;
+		}
+
+		if (failure != null) {
+			log.error("done(): Failed to load "
+				+ VFSUtils.getFriendlyName(file.getName().getURI()), failure);
+		}
+
+		loaded(failure);
+	}
+
+	/**
+	 * Creates a package having an empty body and
+	 * the styles of the file being loaded.
+	 */
+	private WordprocessingMLPackage createPreviewPackage() throws Exception {
+		org.docx4j.wml.Document wmlDoc = ObjectFactory.createEmptyDocument();
+		wmlDoc.getBody().getEGBlockLevelElts().clear();
+		WordprocessingMLPackage previewPackage =
+			ObjectFactory.createDocumentPackage(wmlDoc);
+
+		//Styles are usually stored after the main document part
+		//and are read in a separate pass.
+		ZipInputStream zip =
+			new ZipInputStream(
+				new BufferedInputStream(file.getContent().getInputStream()));
+		try {
+			if (nextEntry(zip, STYLES_ENTRY) != null) {
+				previewPackage.getMainDocumentPart().getStyleDefinitionsPart().unmarshal(zip);
+			}
+		} finally {
+			zip.close();
+		}
+
+		return previewPackage;
+	}
+
+	private void showFirstBatch(WordprocessingMLPackage previewPackage) {
+		//The first batch is already in the body of previewPackage.
+		this.previewDocML = new DocumentML(previewPackage);
+		ElementML bodyML = this.previewDocML.getChild(0);
+		for (int i = 0; i < bodyML.getChildrenCount(); i++) {
+			bodyML.getChild(i).setDocxParent(bodyML.getDocxObject());
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (isCancelled()) {
+					return;
+				}
+
+				List<ElementSpec> specs = DocUtil.getElementSpecs(previewDocML);
+				doc.createElementStructure(specs);
+			}
+		});
+	}
+
+	private void showBatch(final List<Object> batch) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				if (isCancelled()) {
+					return;
+				}
+
+				//Runs after showFirstBatch()'s Runnable.
+				//The first batch fills the screen.
+				//The others are built when displayed.
+				doc.appendBodyChildren(batch, 0);
+			}
+		});
+	}
+
+	private ZipEntry nextEntry(ZipInputStream zip, String name) throws IOException {
+		ZipEntry entry = zip.getNextEntry();
+		while (entry != null && !name.equals(entry.getName())) {
+			entry = zip.getNextEntry();
+		}
+		return entry;
+	}
+
+	private static class CountingInputStream extends FilterInputStream {
+		private volatile long count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		long getCount() {
+			return this.count;
+		}
+
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				this.count++;
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				this.count += n;
+			}
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			this.count += skipped;
+			return skipped;
+		}
+	}// CountingInputStream inner class
+
+}// StreamingDocumentLoader class
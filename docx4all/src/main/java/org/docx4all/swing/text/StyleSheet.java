@@ -26,9 +26,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.text.AttributeSet;
 import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyleContext;
@@ -688,12 +694,25 @@ public class StyleSheet extends StyleContext {
 	
 	private WordprocessingMLPackage docPackage;
 	
+	//Shared formatting by style id and direct formatting, and
+	//referred styles by name. Both are cleared whenever a style changes.
+	private final Map<FormattingKey, AttributeSet> sharedFormatting = 
+		new HashMap<FormattingKey, AttributeSet>();
+	private final Map<String, Style> referredStyles = 
+		new HashMap<String, Style>();
+	private final ChangeListener styleChangeListener = new ChangeListener() {
+		public void stateChanged(ChangeEvent e) {
+			clearSharedFormatting();
+		}
+	};
+	
 	public StyleSheet() {
 		super();
 	}
 	
 	public void setWordprocessingMLPackage(WordprocessingMLPackage docPackage) {
 		this.docPackage = docPackage;
+		clearSharedFormatting();
 		
 		//Supply font info before initialising styles
 		FontManager.getInstance().addFontsInUse(docPackage);
@@ -749,16 +768,62 @@ public class StyleSheet extends StyleContext {
 		return getChildStyle(s, styleId);
 	}
 	
-	public Style getReferredStyle(String name) {
-		Style s = getUIStyle(name);
-		if (s == null) {
-			s = getIDStyle(name);
+	public synchronized Style getReferredStyle(String name) {
+		Style s = this.referredStyles.get(name);
+		if (s == null && !this.referredStyles.containsKey(name)) {
+			s = getUIStyle(name);
+			if (s == null) {
+				s = getIDStyle(name);
+			}
+			this.referredStyles.put(name, s);
 		}
 		return s;
 	}
 	
+	/**
+	 * Gives an immutable AttributeSet holding 'directFormatting' 
+	 * whose resolve parent is the style whose id is 'styleId'.
+	 * Those who ask for the same style id and equal direct formatting 
+	 * share the same instance.
+	 * 
+	 * The resolve parent is the style itself as given by getIDStyle() 
+	 * so that a change to the style is seen by every element
+	 * resolving through it.
+	 * 
+	 * @param styleId the style id. May be null.
+	 * @param directFormatting attributes that have no resolve parent
+	 * @return the shared formatting
+	 */
+	public synchronized AttributeSet getSharedFormatting(
+		String styleId, 
+		AttributeSet directFormatting) {
+		
+		FormattingKey key = new FormattingKey(styleId, directFormatting);
+		AttributeSet theAttrs = this.sharedFormatting.get(key);
+		if (theAttrs == null) {
+			Style s = (styleId == null) ? null : getIDStyle(styleId);
+			theAttrs = new SharedFormatting(directFormatting, s);
+			//Key on a copy. 'directFormatting' may be mutable.
+			key = new FormattingKey(styleId, theAttrs);
+			this.sharedFormatting.put(key, theAttrs);
+			
+			if (log.isDebugEnabled()) {
+				log.debug("getSharedFormatting(): styleId=" + styleId 
+					+ " style=" + s
+					+ " count=" + this.sharedFormatting.size());
+			}
+		}
+		return theAttrs;
+	}
+	
+	private synchronized void clearSharedFormatting() {
+		this.sharedFormatting.clear();
+		this.referredStyles.clear();
+	}
+	
 	protected void initDefaultStyle(org.docx4j.wml.Styles docxStyles) {
 		Style defaultStyle = getStyle(DEFAULT_STYLE);
+		defaultStyle.addChangeListener(this.styleChangeListener);
 		
 		StyleConstants.setFontFamily(
 				defaultStyle, 
@@ -791,6 +856,7 @@ public class StyleSheet extends StyleContext {
 	protected void initLatentStyles(org.docx4j.wml.Styles docxStyles) {
 		Style defaultStyle = getStyle(DEFAULT_STYLE);
 		Style latentStyles = addStyle(LATENT_STYLES, defaultStyle);
+		latentStyles.addChangeListener(this.styleChangeListener);
 		
 		org.docx4j.wml.Styles.LatentStyles latent = docxStyles.getLatentStyles();
 		
@@ -851,6 +917,8 @@ public class StyleSheet extends StyleContext {
 		
 		Style idStyles = addStyle(ID_STYLES, defaultStyle);
 		Style uiStyles = addStyle(UI_STYLES, defaultStyle);
+		idStyles.addChangeListener(this.styleChangeListener);
+		uiStyles.addChangeListener(this.styleChangeListener);
 		
 		int i=0;
 		List<Style> stylesWithBasedOn = new ArrayList<Style>();
@@ -868,6 +936,7 @@ public class StyleSheet extends StyleContext {
 			}
 			if (tmpStyle == null) {
 				tmpStyle = new NamedStyle(st.getStyleId(), latentStyles);
+				tmpStyle.addChangeListener(this.styleChangeListener);
 			}
 			
 			tmpStyle.addAttribute(
@@ -994,6 +1063,7 @@ public class StyleSheet extends StyleContext {
 	
 	private Style addChildStyle(Style parent, String childName) {
 		Style child = new NamedStyle(childName, parent);
+		child.addChangeListener(this.styleChangeListener);
 		parent.addAttribute(childName, child);
 		return child;
 	}
@@ -1016,6 +1086,147 @@ public class StyleSheet extends StyleContext {
 	    }
 	} //StyleUIComparator inner class
 	
+	/**
+	 * Style id and direct formatting.  The hash code is a fingerprint
+	 * of the direct formatting that does not depend on the kind of 
+	 * AttributeSet holding it.
+	 */
+	private final static class FormattingKey {
+		private final String styleId;
+		private final AttributeSet attrs;
+		private final int fingerprint;
+		
+		FormattingKey(String styleId, AttributeSet attrs) {
+			this.styleId = styleId;
+			this.attrs = attrs;
+			
+			int hash = (styleId == null) ? 0 : styleId.hashCode();
+			Enumeration<?> names = attrs.getAttributeNames();
+			while (names.hasMoreElements()) {
+				Object name = names.nextElement();
+				if (name != StyleConstants.ResolveAttribute) {
+					Object value = attrs.getAttribute(name);
+					hash += name.hashCode() ^ ((value == null) ? 0 : value.hashCode());
+				}
+			}
+			this.fingerprint = hash;
+		}
+		
+		public int hashCode() {
+			return this.fingerprint;
+		}
+		
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof FormattingKey)) {
+				return false;
+			}
+			
+			FormattingKey other = (FormattingKey) obj;
+			if (this.fingerprint != other.fingerprint
+				|| (this.styleId == null 
+						? other.styleId != null 
+						: !this.styleId.equals(other.styleId))) {
+				return false;
+			}
+			
+			//Compare direct formatting only
+			int count = this.attrs.getAttributeCount();
+			if (this.attrs.isDefined(StyleConstants.ResolveAttribute)) {
+				count--;
+			}
+			int otherCount = other.attrs.getAttributeCount();
+			if (other.attrs.isDefined(StyleConstants.ResolveAttribute)) {
+				otherCount--;
+			}
+			if (count != otherCount) {
+				return false;
+			}
+			
+			Enumeration<?> names = this.attrs.getAttributeNames();
+			while (names.hasMoreElements()) {
+				Object name = names.nextElement();
+				if (name != StyleConstants.ResolveAttribute) {
+					Object value = this.attrs.getAttribute(name);
+					if (!other.attrs.isDefined(name)
+						|| (value == null 
+								? other.attrs.getAttribute(name) != null
+								: !value.equals(other.attrs.getAttribute(name)))) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+	}// FormattingKey inner class
+	
+	/**
+	 * Direct formatting that resolves through a style.
+	 * It cannot be modified once created.
+	 */
+	private final static class SharedFormatting extends SimpleAttributeSet {
+		private boolean sealed = false;
+		
+		SharedFormatting(AttributeSet directFormatting, Style style) {
+			super();
+			
+			Enumeration<?> names = directFormatting.getAttributeNames();
+			while (names.hasMoreElements()) {
+				Object name = names.nextElement();
+				if (name != StyleConstants.ResolveAttribute) {
+					super.addAttribute(name, directFormatting.getAttribute(name));
+				}
+			}
+			if (style != null) {
+				super.setResolveParent(style);
+			}
+			this.sealed = true;
+		}
+		
+		public void addAttribute(Object name, Object value) {
+			checkSealed();
+			super.addAttribute(name, value);
+		}
+		
+		public void addAttributes(AttributeSet attributes) {
+			checkSealed();
+			super.addAttributes(attributes);
+		}
+		
+		public void removeAttribute(Object name) {
+			checkSealed();
+			super.removeAttribute(name);
+		}
+		
+		public void removeAttributes(Enumeration<?> names) {
+			checkSealed();
+			super.removeAttributes(names);
+		}
+		
+		public void removeAttributes(AttributeSet attributes) {
+			checkSealed();
+			super.removeAttributes(attributes);
+		}
+		
+		public void setResolveParent(AttributeSet parent) {
+			checkSealed();
+			super.setResolveParent(parent);
+		}
+		
+		public AttributeSet copyAttributes() {
+			//A copy can be modified
+			return new SimpleAttributeSet(this);
+		}
+		
+		private void checkSealed() {
+			if (this.sealed) {
+				throw new UnsupportedOperationException("A shared formatting cannot be modified.");
+			}
+		}
+	}// SharedFormatting inner class
+	
 }// StyleSheet class
 
 
@@ -76,6 +76,29 @@ public class TableView extends BoxView {
     boolean gridValid;
     static final private BitSet EMPTY = new BitSet();
 
+    /**
+     * The column requirements of the single column cells.  These are
+     * the column maximum of TableRowView.columnMinimum and 
+     * TableRowView.columnPreferred.  Once calculated only the rows in 
+     * changedRows are checked again.
+     */
+    int[] singleColumnMinimum;
+    int[] singleColumnPreferred;
+    boolean columnRequirementsValid;
+    BitSet changedRows = new BitSet();
+
+    /**
+     * Have columnSpans and columnOffsets been laid out since
+     * the grid was last updated?
+     */
+    boolean columnsLaidOut;
+
+    /**
+     * Tables with at least this many rows only lay out again the rows
+     * that are painted or located when their column spans change.
+     */
+    static final private int MIN_DEFERRED_LAYOUT_ROWS = 50;
+
     /**
      * Constructs a TableView for the given element.
      *
@@ -157,7 +180,12 @@ public class TableView extends BoxView {
     		childAllocation(i, allocation);
     		v = getView(i);
     		if (v instanceof TableRowView) {
-    			v = ((TableRowView)v).findViewAtPoint(x, y, allocation);
+    			TableRowView rv = (TableRowView) v;
+    			if (rv.layoutDeferred 
+    				&& allocation.y <= y && y < allocation.y + allocation.height) {
+    				rv.validateLayout(allocation);
+    			}
+    			v = rv.findViewAtPoint(x, y, allocation);
     			if (v != null) {
     				alloc.setBounds(allocation);
     				return v;
@@ -317,6 +345,12 @@ public class TableView extends BoxView {
 				columnRequirements[i] = new SizeRequirements();
 				columnRequirements[i].maximum = Integer.MAX_VALUE;
 			}
+			singleColumnMinimum = new int[maxColumns];
+			singleColumnPreferred = new int[maxColumns];
+			columnRequirementsValid = false;
+			changedRows.clear();
+			columnsLaidOut = false;
+			colIterator.invalidateWeights();
 			gridValid = true;
 		}
 	}
@@ -358,44 +392,91 @@ public class TableView extends BoxView {
      * The calculation of the multi-column distribution is based upon
      * the proportions of the existing column requirements and taking
      * into consideration any constraining maximums.
+     * <p>
+     * The single column requirements of each row are kept.  Only the 
+     * rows whose cells have changed their width preference since the
+     * last calculation are checked again in the first pass.
      */
     void calculateColumnRequirements(int axis) {
-		// clean columnRequirements
-		for (SizeRequirements req : columnRequirements) {
-			req.minimum = 0;
-			req.preferred = 0;
-			req.maximum = Integer.MAX_VALUE;
-		}
+		int ncols = columnRequirements.length;
+		int nrows = getRowCount();
 
 		// pass 1 - single column cells
-		boolean hasMultiColumn = false;
-		int nrows = getRowCount();
-		for (int i = 0; i < nrows; i++) {
-			TableRowView row = getRow(i);
-			int col = 0;
-			int ncells = row.getViewCount();
-			for (int cell = 0; cell < ncells; cell++) {
-				TableCellView cv = (TableCellView) row.getView(cell);
-				if (!cv.isHidden()) {
-					for (; row.isFilled(col); col++)
-						; // advance to a free column
-				
-					int colSpan = getColumnGridSpan(cv);
-					if (colSpan == 1) {
-						checkSingleColumnCell(axis, col, cv);
-					} else {
-						hasMultiColumn = true;
-						col += colSpan - 1;
+		if (!columnRequirementsValid) {
+			Arrays.fill(singleColumnMinimum, 0);
+			Arrays.fill(singleColumnPreferred, 0);
+			for (int i = 0; i < nrows; i++) {
+				TableRowView row = getRow(i);
+				row.updateColumnRequirements(axis, ncols);
+				for (int col = 0; col < ncols; col++) {
+					singleColumnMinimum[col] = 
+						Math.max(row.columnMinimum[col], singleColumnMinimum[col]);
+					singleColumnPreferred[col] = 
+						Math.max(row.columnPreferred[col], singleColumnPreferred[col]);
+				}
+			}
+			columnRequirementsValid = true;
+			
+		} else if (!changedRows.isEmpty()) {
+			// Only the changed rows are checked again.
+			// A column whose requirement may have shrunk is 
+			// checked again in all rows.
+			BitSet shrunkColumns = new BitSet();
+			for (int i = changedRows.nextSetBit(0); 
+				0 <= i && i < nrows; 
+				i = changedRows.nextSetBit(i + 1)) {
+				TableRowView row = getRow(i);
+				int[] oldMinimum = row.columnMinimum;
+				int[] oldPreferred = row.columnPreferred;
+				row.updateColumnRequirements(axis, ncols);
+				for (int col = 0; col < ncols; col++) {
+					if (row.columnMinimum[col] >= singleColumnMinimum[col]) {
+						singleColumnMinimum[col] = row.columnMinimum[col];
+					} else if (oldMinimum[col] == singleColumnMinimum[col]) {
+						shrunkColumns.set(col);
 					}
-					col++;
+					if (row.columnPreferred[col] >= singleColumnPreferred[col]) {
+						singleColumnPreferred[col] = row.columnPreferred[col];
+					} else if (oldPreferred[col] == singleColumnPreferred[col]) {
+						shrunkColumns.set(col);
+					}
+				}
+			}
+			
+			for (int col = shrunkColumns.nextSetBit(0); 
+				col >= 0; 
+				col = shrunkColumns.nextSetBit(col + 1)) {
+				singleColumnMinimum[col] = 0;
+				singleColumnPreferred[col] = 0;
+				for (int i = 0; i < nrows; i++) {
+					TableRowView row = getRow(i);
+					singleColumnMinimum[col] = 
+						Math.max(row.columnMinimum[col], singleColumnMinimum[col]);
+					singleColumnPreferred[col] = 
+						Math.max(row.columnPreferred[col], singleColumnPreferred[col]);
 				}
 			}
 		}
+		changedRows.clear();
+		
+		boolean hasMultiColumn = false;
+		for (int col = 0; col < ncols; col++) {
+			SizeRequirements req = columnRequirements[col];
+			req.minimum = singleColumnMinimum[col];
+			req.preferred = singleColumnPreferred[col];
+			req.maximum = Integer.MAX_VALUE;
+		}
+		for (int i = 0; i < nrows && !hasMultiColumn; i++) {
+			hasMultiColumn = getRow(i).multiColumnCells;
+		}
 
 		// pass 2 - multi-column cells
 		if (hasMultiColumn) {
 			for (int i = 0; i < nrows; i++) {
 				TableRowView row = getRow(i);
+				if (!row.multiColumnCells) {
+					continue;
+				}
 				int col = 0;
 				int ncells = row.getViewCount();
 				for (int cell = 0; cell < ncells; cell++) {
@@ -415,18 +496,6 @@ public class TableView extends BoxView {
 		}
 	}
 
-    /**
-     * check the requirements of a table cell that spans a single column.
-     */
-    void checkSingleColumnCell(int axis, int col, View v) {
-    	SizeRequirements req = columnRequirements[col];
-    	int vspan = (int) v.getMinimumSpan(axis);
-    	req.minimum = Math.max(vspan, req.minimum);
-	
-    	vspan = (int) v.getPreferredSpan(axis);
-    	req.preferred = Math.max(vspan, req.preferred);
-    }
-
     /**
      * check the requirements of a table cell that spans multiple
      * columns.
@@ -611,16 +680,34 @@ public class TableView extends BoxView {
 		// make grid is properly represented
 		updateGrid();
 
-		// all of the row layouts are invalid, so mark them that way
-		int n = getRowCount();
-		for (int i = 0; i < n; i++) {
-			TableRowView row = getRow(i);
-			row.layoutChanged(axis);
-		}
-
 		// calculate column spans
-		layoutColumns(targetSpan, columnOffsets, columnSpans,
-				columnRequirements);
+		int ncols = columnRequirements.length;
+		int[] newOffsets = new int[ncols];
+		int[] newSpans = new int[ncols];
+		layoutColumns(targetSpan, newOffsets, newSpans, columnRequirements);
+
+		if (!columnsLaidOut
+			|| !Arrays.equals(newSpans, columnSpans)
+			|| !Arrays.equals(newOffsets, columnOffsets)) {
+			// all of the row layouts are invalid, so mark them that way.
+			// The rows of a long table are only laid out again 
+			// once they are painted or located.
+			boolean defer = 
+				columnsLaidOut && getRowCount() >= MIN_DEFERRED_LAYOUT_ROWS;
+			columnOffsets = newOffsets;
+			columnSpans = newSpans;
+			columnsLaidOut = true;
+			
+			int n = getRowCount();
+			for (int i = 0; i < n; i++) {
+				TableRowView row = getRow(i);
+				if (defer) {
+					row.deferLayout();
+				} else {
+					row.layoutChanged(axis);
+				}
+			}
+		}
 
 		// continue normal layout
 		super.layoutMinorAxis(targetSpan, axis, offsets, spans);
@@ -679,6 +766,7 @@ public class TableView extends BoxView {
 				// it's in this view.
 				if (a != null) {
 					childAllocation(i, a);
+					validateRowLayout(v, a);
 				}
 				return v;
 			}
@@ -687,12 +775,19 @@ public class TableView extends BoxView {
 			View v = getView(n - 1);
 			if (a != null) {
 				this.childAllocation(n - 1, a);
+				validateRowLayout(v, a);
 			}
 			return v;
 		}
 		return null;
 	}
 
+    private void validateRowLayout(View v, Shape a) {
+    	if (v instanceof TableRowView) {
+    		((TableRowView) v).validateLayout(a);
+    	}
+    }
+
     // --- View methods ---------------------------------------------
 
     /**
@@ -743,11 +838,32 @@ public class TableView extends BoxView {
     		}
     	}*/
     	
-        // paint interior
+        // paint interior.
+        // Rows whose layout has been deferred are laid out 
+        // if they are to be painted.
+        Rectangle clip = g.getClipBounds();
+        boolean rowsLaidOut = false;
         int n = getViewCount();
         for (int i = 0; i < n; i++) {
         	View v = getView(i);
-        	v.paint(g, getChildAllocation(i, allocation));
+        	Shape ca = getChildAllocation(i, allocation);
+        	if (v instanceof TableRowView) {
+        		TableRowView rv = (TableRowView) v;
+        		if (rv.layoutDeferred
+        			&& (clip == null || ca.intersects(clip) || rv.multiRowCells)) {
+        			rv.validateLayout(ca);
+        			rowsLaidOut = true;
+        		}
+        	}
+        	v.paint(g, ca);
+        }
+        
+        if (rowsLaidOut && !(isLayoutValid(X_AXIS) && isLayoutValid(Y_AXIS))) {
+        	// Those rows have changed their height.
+        	Component c = getContainer();
+        	if (c != null) {
+        		c.repaint(alloc.x, alloc.y, alloc.width, alloc.height);
+        	}
         }
         
     }
@@ -822,12 +938,27 @@ public class TableView extends BoxView {
     	private int[] offsets;
     	private int[] spans;
     	
+    	/**
+    	 * The target span that percentages and adjustmentWeights
+    	 * have been calculated for.  -1 if they are to be calculated.
+    	 */
+    	private int weightsSpan = -1;
+    	
     	/**
     	 * Disable percentage adjustments which should only apply
     	 * when calculating layout, not requirements.
     	 */
     	void disablePercentages() {
     		percentages = null;
+    		weightsSpan = -1;
+    	}
+
+    	/**
+    	 * Have the percentages and adjustment weights calculated again.
+    	 * The cell widths they come from change with the grid.
+    	 */
+    	void invalidateWeights() {
+    		weightsSpan = -1;
     	}
 
     	/**
@@ -888,7 +1019,10 @@ public class TableView extends BoxView {
 		public void setLayoutArrays(int offsets[], int spans[], int targetSpan) {
 			this.offsets = offsets;
 			this.spans = spans;
-			updatePercentagesAndAdjustmentWeights(targetSpan);
+			if (targetSpan != weightsSpan) {
+				updatePercentagesAndAdjustmentWeights(targetSpan);
+				weightsSpan = targetSpan;
+			}
 		}
 
 		// --- TileIterator methods -------------------
@@ -1130,6 +1264,26 @@ public class TableView extends BoxView {
 		 */
 		boolean multiRowCells;
 
+		/**
+		 * Does this table row have cells that span multiple columns?
+		 * This is set by the updateColumnRequirements method.
+		 */
+		boolean multiColumnCells;
+
+		/**
+		 * The requirements of the single column cells of this row 
+		 * indexed by column.  This is set by the updateColumnRequirements
+		 * method.
+		 */
+		int[] columnMinimum;
+		int[] columnPreferred;
+
+		/**
+		 * Has laying out this row along the columns been put off
+		 * until it is painted or located?
+		 */
+		boolean layoutDeferred;
+
 		/**
 		 * Constructs a TableView for the given element.
 		 * 
@@ -1189,6 +1343,63 @@ public class TableView extends BoxView {
 			return theCell;
 		}
 		
+		/**
+		 * Calculate the requirements of the single column cells
+		 * of this row.
+		 */
+		void updateColumnRequirements(int axis, int ncols) {
+			int[] minimum = new int[ncols];
+			int[] preferred = new int[ncols];
+			multiColumnCells = false;
+			
+			int col = 0;
+			int ncells = getViewCount();
+			for (int cell = 0; cell < ncells; cell++) {
+				TableCellView cv = (TableCellView) getView(cell);
+				if (!cv.isHidden()) {
+					for (; isFilled(col); col++)
+						; // advance to a free column
+					
+					int colSpan = getColumnGridSpan(cv);
+					if (colSpan == 1) {
+						int vspan = (int) cv.getMinimumSpan(axis);
+						minimum[col] = Math.max(vspan, minimum[col]);
+						vspan = (int) cv.getPreferredSpan(axis);
+						preferred[col] = Math.max(vspan, preferred[col]);
+					} else {
+						multiColumnCells = true;
+						col += colSpan - 1;
+					}
+					col++;
+				}
+			}
+			
+			columnMinimum = minimum;
+			columnPreferred = preferred;
+		}
+
+		/**
+		 * Keep the current layout of the cells until this row
+		 * is painted or located.  See: validateLayout()
+		 */
+		void deferLayout() {
+			layoutDeferred = true;
+		}
+		
+		/**
+		 * Lay out this row again if its layout has been deferred.
+		 * 
+		 * @param alloc the allocation of this row
+		 */
+		void validateLayout(Shape alloc) {
+			if (layoutDeferred) {
+				layoutDeferred = false;
+				layoutChanged(X_AXIS);
+				Rectangle r = alloc.getBounds();
+				setSize(r.width, r.height);
+			}
+		}
+		
 		View findViewAtPoint(int x, int y, Rectangle alloc) {
 			int n = getViewCount();
 			for (int i = 0; i < n; i++) {
@@ -1217,6 +1428,9 @@ public class TableView extends BoxView {
 		 */
 		public void preferenceChanged(View child, boolean width, boolean height) {
 			super.preferenceChanged(child, width, height);
+			if (width && gridValid) {
+				changedRows.set(rowIndex);
+			}
 			if (TableView.this.multiRowCells && height) {
 				for (int i = rowIndex - 1; i >= 0; i--) {
 					TableRowView rv = TableView.this.getRow(i);
@@ -1287,6 +1501,19 @@ public class TableView extends BoxView {
 			invalidateGrid();
 		}
 
+		/**
+		 * Cell attributes such as widths and paragraph insets may have
+		 * changed without a change of preference.  Have the column 
+		 * requirements of this row checked again.
+		 */
+		public void changedUpdate(DocumentEvent e, Shape a, ViewFactory f) {
+			super.changedUpdate(e, a, f);
+			if (gridValid) {
+				changedRows.set(rowIndex);
+			}
+			colIterator.invalidateWeights();
+		}
+
 		/**
 		 * Calculate the height requirements of the table row. The requirements
 		 * of multi-row cells are not considered for this calculation. The table
@@ -1353,6 +1580,8 @@ public class TableView extends BoxView {
 		 */
 		protected void layoutMajorAxis(int targetSpan, int axis, int[] offsets,
 				int[] spans) {
+			layoutDeferred = false;
+			
 			int col = 0;
 			int ncells = getViewCount();
 			for (int cell = 0; cell < ncells; cell++) {
@@ -1436,6 +1665,18 @@ public class TableView extends BoxView {
 			}
 		}
 
+		/**
+		 * Keeps the current width of a row whose layout has been deferred
+		 * so that its cells are not laid out again when the table width
+		 * changes.
+		 */
+		protected void layout(int width, int height) {
+			if (layoutDeferred && getWidth() > 0) {
+				width = getWidth();
+			}
+			super.layout(width, height);
+		}
+
 		/**
 		 * Determines the resizability of the view along the given axis. A value
 		 * of 0 or less is not resizable.
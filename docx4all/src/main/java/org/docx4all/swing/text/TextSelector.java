@@ -125,6 +125,12 @@ public class TextSelector {
     		throw new BadSelectionException("Bad Selection", p0, p1-p0);
     	}
     	
+    	if (doc.hasPlaceholders(p0, p1 - p0)) {
+    		//Placeholders have to be expanded before their content is selected.
+    		//See: WordMLDocument.expandPlaceholders()
+    		throw new BadSelectionException("Unexpanded Placeholder", p0, p1 - p0);
+    	}
+    	
     	DocumentElement firstLeaf = (DocumentElement) doc.getCharacterElement(p0);
     	
 		if (log.isDebugEnabled()) {
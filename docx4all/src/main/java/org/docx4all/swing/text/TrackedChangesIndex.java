@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.Element;
+
+import org.docx4all.util.XmlUtil;
+import org.docx4all.xml.ElementML;
+
+/**
+ * Which paragraphs of a WordMLDocument contain tracked changes.
+ *
+ * XmlUtil.containsTrackedChanges() marshals the paragraph it is given.
+ * Its answer is kept by the ElementML of the paragraph so that moving
+ * the caret around does not marshal the same paragraph again and again.
+ *
+ * The document tells this index about every change (see:
+ * WordMLDocument.fireInsertUpdate()).  Typing and formatting only forget
+ * the answers for the paragraphs they were in.  A change of body level
+ * elements forgets them all.
+ */
+public class TrackedChangesIndex {
+	private final WordMLDocument doc;
+
+	//Weak keys so that removed paragraphs are not kept alive
+	private final Map<ElementML, Boolean> trackedChanges =
+		new WeakHashMap<ElementML, Boolean>();
+
+	TrackedChangesIndex(WordMLDocument doc) {
+		this.doc = doc;
+	}
+
+	/**
+	 * Called by the document before its listeners are notified of 'e'.
+	 */
+	void documentChanged(DocumentEvent e) {
+		if (e.getChange(this.doc.getDefaultRootElement()) != null) {
+			clear();
+			return;
+		}
+
+		int end =
+			(e.getType() == DocumentEvent.EventType.REMOVE)
+				? e.getOffset()
+				: e.getOffset() + e.getLength();
+		end = Math.min(end, this.doc.getLength());
+
+		int pos = e.getOffset();
+		while (pos <= end) {
+			Element paraE = this.doc.getParagraphMLElement(pos, false);
+			if (paraE == null) {
+				clear();
+				return;
+			}
+			synchronized (this) {
+				this.trackedChanges.remove(((DocumentElement) paraE).getElementML());
+			}
+			pos = Math.max(pos + 1, paraE.getEndOffset());
+		}
+	}
+
+	/**
+	 * @param pos a position in the document
+	 * @return true if the paragraph at 'pos' contains tracked changes;
+	 *         false, otherwise.
+	 */
+	public boolean hasTrackedChanges(int pos) {
+		//The read lock keeps the paragraph from being changed
+		//while it is marshalled.  This index is only locked briefly
+		//as documentChanged() is called with the write lock held.
+		this.doc.readLock();
+		try {
+			DocumentElement paraE =
+				(DocumentElement) this.doc.getParagraphMLElement(pos, false);
+			ElementML paraML = paraE.getElementML();
+
+			synchronized (this) {
+				Boolean b = this.trackedChanges.get(paraML);
+				if (b != null) {
+					return b.booleanValue();
+				}
+			}
+
+			boolean hasChanges = XmlUtil.containsTrackedChanges(paraML.getDocxObject());
+			synchronized (this) {
+				this.trackedChanges.put(paraML, Boolean.valueOf(hasChanges));
+			}
+			return hasChanges;
+		} finally {
+			this.doc.readUnlock();
+		}
+	}
+
+	private synchronized void clear() {
+		this.trackedChanges.clear();
+	}
+
+}// TrackedChangesIndex class
@@ -26,6 +26,7 @@ import javax.swing.text.View;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.docx4all.xml.DocumentML;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.InlineDrawingML;
 import org.docx4all.xml.ParagraphML;
@@ -55,6 +56,11 @@ public class ViewFactory implements javax.swing.text.ViewFactory {
 		AttributeSet attrs = elem.getAttributes();
 		ElementML elementML = WordMLStyleConstants.getElementML(attrs);
 
+		if (WordMLStyleConstants.isPlaceholder(attrs)) {
+			//Body level element whose structure has not been built yet.
+			return new PlaceholderView(elem);
+		}
+
 		//TODO: Don't quite like this temporary solution
 		if (elementML instanceof InlineDrawingML) {
 			theView = new InlineImageView(elem);
@@ -75,6 +81,8 @@ public class ViewFactory implements javax.swing.text.ViewFactory {
 			theView = tableView.new TableRowView(elem);
 		} else if (elementML instanceof TableCellML) {
 			theView = new TableCellView(elem);
+		} else if (elementML instanceof DocumentML) {
+			theView = new DocumentView(elem);
 		} else {
 			theView = new BoxView(elem, View.Y_AXIS);
 		}
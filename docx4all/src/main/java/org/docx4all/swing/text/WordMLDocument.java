@@ -23,16 +23,20 @@ import java.awt.Font;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Stack;
 
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
+import javax.swing.event.UndoableEditEvent;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultStyledDocument;
 import javax.swing.text.Element;
 import javax.swing.text.MutableAttributeSet;
+import javax.swing.text.Segment;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.Style;
 import javax.swing.text.StyleConstants;
@@ -60,7 +64,7 @@ import org.docx4all.xml.RunContentML;
 import org.docx4all.xml.RunML;
 import org.docx4all.xml.RunPropertiesML;
 import org.docx4all.xml.SdtBlockML;
-import org.docx4j.XmlUtils;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.SdtBlock;
 
@@ -73,6 +77,18 @@ public class WordMLDocument extends DefaultStyledDocument {
 	
 	public boolean snapshotFireBan;
 	
+	private boolean expandingPlaceholders = false;
+	
+	//Recording of undoable edits. See: beginBlockEdit()
+	private int blockEditDepth = 0;
+	private BlockUndoableEdit blockEdit;
+	private BlockUndoableEdit lastBlockEdit;
+	private boolean undoingBlockEdit = false;
+	private int unrecordedChangeCount = 0;
+	
+	private NumberingIndex numberingIndex;
+	private TrackedChangesIndex trackedChangesIndex;
+	
 	public WordMLDocument() {
 		super();
 		this.snapshotFireBan = false;		
@@ -87,24 +103,120 @@ public class WordMLDocument extends DefaultStyledDocument {
 	}
 	
 	public synchronized boolean isSnapshotFireBan() {
-		//TODO: Uncomment this if needed.
-		//return snapshotFireBan;
-		//Currently we are not using this feature.
-		//By returning true we are applying snapshotFireBan
-		//and thus, preventing this WordMLDocument from
-		//firing snapshot change event (see: fireSnapshotChanged()).
-		return true;
+		//Taking snapshots is not cheap. Therefore, do not take
+		//them when there is no one to fire snapshot change event to
+		//(see: fireSnapshotChanged()).
+		return snapshotFireBan || !hasSnapshotListeners();
+	}
+	
+	/**
+	 * @return true if a WordMLDocumentListener has been added
+	 * to this document; false, otherwise.
+	 */
+	public boolean hasSnapshotListeners() {
+		Object[] listeners = listenerList.getListenerList();
+		for (int i = listeners.length - 2; i >= 0; i -= 2) {
+			if (listeners[i] == DocumentListener.class
+				&& listeners[i + 1] instanceof WordMLDocumentListener) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	public synchronized void setSnapshotFireBan(boolean b) {
 		snapshotFireBan = b;
 	}
 	
+	/**
+	 * Starts recording the body level elements within [offset, offset + length]
+	 * that are about to be edited.  Nothing is recorded when there is no
+	 * UndoableEditListener or when the edit is part of another one.
+	 * Every call has to be followed by endBlockEdit().
+	 * 
+	 * @param offset
+	 * @param length
+	 * @param name See: BlockUndoableEdit.getPresentationName()
+	 */
+	void beginBlockEdit(int offset, int length, String name) {
+		if (this.blockEditDepth++ > 0 
+			|| this.undoingBlockEdit
+			|| getUndoableEditListeners().length == 0) {
+			return;
+		}
+		
+		if (this.lastBlockEdit != null
+			&& this.lastBlockEdit.canExtend(offset, length, name)) {
+			//eg: Typing on
+			this.blockEdit = this.lastBlockEdit;
+		} else {
+			this.blockEdit = BlockUndoableEdit.record(this, offset, length, name);
+			if (this.blockEdit == null) {
+				//Cannot be undone.  Neither can the edits before it.
+				this.unrecordedChangeCount++;
+			}
+		}
+	}
+	
+	/**
+	 * Fires an UndoableEditEvent for the edit started 
+	 * by the matching beginBlockEdit().
+	 */
+	void endBlockEdit() {
+		if (--this.blockEditDepth > 0 || this.blockEdit == null) {
+			return;
+		}
+		
+		BlockUndoableEdit edit = this.blockEdit;
+		this.blockEdit = null;
+		edit.end();
+		
+		if (edit != this.lastBlockEdit) {
+			this.lastBlockEdit = edit;
+			fireUndoableEditUpdate(new UndoableEditEvent(this, edit));
+		}
+	}
+	
+	void setUndoingBlockEdit(boolean b) {
+		this.undoingBlockEdit = b;
+		//Undone edits are not extended.
+		this.lastBlockEdit = null;
+	}
+	
+	/**
+	 * @return the number of changes to the ElementML structure 
+	 * that have not been recorded as BlockUndoableEdits.
+	 */
+	int getUnrecordedChangeCount() {
+		return this.unrecordedChangeCount;
+	}
+	
 	public StyleSheet getStyleSheet() {
 		DocumentElement root = (DocumentElement) getDefaultRootElement();
 		return root.getElementML().getStyleSheet();
 	}
 	
+	/**
+	 * @return the list numbering of the numbered paragraphs 
+	 * in this document
+	 */
+	public synchronized NumberingIndex getNumberingIndex() {
+		if (this.numberingIndex == null) {
+			this.numberingIndex = new NumberingIndex(this);
+		}
+		return this.numberingIndex;
+	}
+	
+	/**
+	 * @return which paragraphs of this document contain tracked changes
+	 */
+	public synchronized TrackedChangesIndex getTrackedChangesIndex() {
+		if (this.trackedChangesIndex == null) {
+			this.trackedChangesIndex = new TrackedChangesIndex(this);
+		}
+		return this.trackedChangesIndex;
+	}
+	
     public Font getFont(AttributeSet attr) {
     	return FontManager.getInstance().getFontInAction(attr);
     }
@@ -158,6 +270,7 @@ public class WordMLDocument extends DefaultStyledDocument {
     		return;
     	}
     	
+    	length += expandPlaceholders(offset, length);
     	length = Math.min(getLength() - offset, length);
     	
 		Map<BigInteger, SdtBlock> snapshots = null;
@@ -166,6 +279,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, length, BlockUndoableEdit.FORMATTING);
 
 			if (!isSnapshotFireBan()) {
 				DocumentElement rootE = (DocumentElement) getDefaultRootElement();
@@ -182,81 +296,10 @@ public class WordMLDocument extends DefaultStyledDocument {
 				//from the last character in document (offset == getLength())
 				blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);				
+				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, length);				
 			}
 			
-			int lastEnd = Integer.MAX_VALUE;
-			for (int pos = offset; pos < (offset + length); pos = lastEnd) {
-				DocumentElement runE = (DocumentElement) getRunMLElement(pos);
-				RunML runML = (RunML) runE.getElementML();
-				
-				if (!runE.isEditable()) {
-					;//pass
-					
-				} else if (offset <= runE.getStartOffset()
-					&& runE.getEndOffset() <= offset + length) {
-					runML.addAttributes(attrs, replace);
-					
-				} else if (runE.getStartOffset() < offset
-						&& offset + length < runE.getEndOffset()
-						&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())
-						&& DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
-					try {
-						//Firstly, make a copy of RunML that spans from
-						//(offset+length) to runE.getEndOffset().
-						int tempInt = runE.getEndOffset() - (offset + length);
-						TextSelector ts = 
-							new TextSelector(this, (offset+length), tempInt);
-						//Because [offset + length, tempInt] is inside runE,
-						//ts will definitely contain a single record whose
-						//ElementML is a RunML.
-						ElementML ml = ts.getElementMLRecords().get(0).getElementML();
-						//Put this copy to the right of runML
-						runML.addSibling(ml, true);
-						
-						//Secondly, make a copy of RunML that spans from
-						//offset to offset + length and apply 'attrs' to it
-						ts = new TextSelector(this, offset, length);
-						ml = ts.getElementMLRecords().get(0).getElementML();
-						((RunML) ml).addAttributes(attrs, replace);
-						//This copy has to be at the right of runML
-						runML.addSibling(ml, true);
-						
-						//Finally, chop runE from runE.getStartOffset()
-						//to offset position.
-						tempInt = offset - runE.getStartOffset();
-						RunML newSibling = 
-							(RunML) DocUtil.splitElementML(runE, tempInt);
-						newSibling.delete();
-					} catch (BadSelectionException exc) {
-						;//ignore
-					}
-					
-				} else if (runE.getStartOffset() < offset
-						&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())) {
-					int idx = offset - runE.getStartOffset();
-					RunML newSibling = 
-						(RunML) DocUtil.splitElementML(runE, idx);
-					newSibling.addAttributes(attrs, replace);
-					
-				} else if (DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
-					//ie: offset + length < runE.getEndOffset()
-					int idx = (offset + length) - runE.getStartOffset();
-					DocUtil.splitElementML(runE, idx);
-					runML.addAttributes(attrs, replace);
-					
-				} else {
-					;//pass
-				}
-				
-				lastEnd = runE.getEndOffset();
-				if (pos == lastEnd) {
-					//finish
-					break;
-				}
-			}
-
-			refreshParagraphs(offset, length);
+			applyRunMLAttributes(offset, length, attrs, replace);
 			
 		} finally {
 			if (!isSnapshotFireBan() && blockStart >= 0 && blockEnd >= 0) {
@@ -270,6 +313,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				fireSnapshotChanged(evt);
 			}
 
+			endBlockEdit();
 			writeUnlock();
 		}
 	}
@@ -286,6 +330,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 			return;
 		}
 
+		length += expandPlaceholders(offset, length);
 		length = Math.min(getLength() - offset, length);
 		length = Math.max(length, 1);
 		
@@ -295,6 +340,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, length, BlockUndoableEdit.FORMATTING);
 			
 			if (!isSnapshotFireBan()) {
 				DocumentElement rootE = (DocumentElement) getDefaultRootElement();
@@ -311,7 +357,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				//from the last character in document (offset == getLength())
 				blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);				
+				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, length);				
 			}
 			
 			DefaultDocumentEvent changes = 
@@ -353,6 +399,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				fireSnapshotChanged(evt);
 			}
 
+			endBlockEdit();
 			writeUnlock();
 		}
 	}
@@ -362,6 +409,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 			return;
 		}
 
+		length += expandPlaceholders(offset, length);
 		length = Math.min(getLength() - offset, length);
 		length = Math.max(length, 1);
 		
@@ -371,6 +419,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, length, BlockUndoableEdit.FORMATTING);
 			
 			Style style = getStyleSheet().getReferredStyle(styleId);
 			String type = 
@@ -394,7 +443,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 					//from the last character in document (offset == getLength())
 					blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-					snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);				
+					snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, length);				
 				}
 				
 				MutableAttributeSet newAttrs = new SimpleAttributeSet();
@@ -404,6 +453,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 					insertString(offset, Constants.NEWLINE, newAttrs);
 				}
 				
+				List<DocumentElement> changedParas = new ArrayList<DocumentElement>();
 				for (int pos = offset; pos < (offset + length);) {
 					DocumentElement paraE = (DocumentElement) getParagraphMLElement(pos, false);
 					ParagraphML paraML = (ParagraphML) paraE.getElementML();
@@ -417,10 +467,24 @@ public class WordMLDocument extends DefaultStyledDocument {
 						}
 					}
 					paraML.addAttributes(newAttrs, true);
+					changedParas.add(paraE);
 					pos = paraE.getEndOffset();
 				}				
 				
-				refreshParagraphs(offset, length);
+				//The structure of the paragraphs has not changed.
+				//Update their attributes in place rather than
+				//refreshing them.
+				if (!changedParas.isEmpty()) {
+					int start = changedParas.get(0).getStartOffset();
+					int end = changedParas.get(changedParas.size() - 1).getEndOffset();
+					DefaultDocumentEvent changes = 
+						new DefaultDocumentEvent(start, end - start, DocumentEvent.EventType.CHANGE);
+					for (DocumentElement paraE: changedParas) {
+						resetAttributes(paraE);
+					}
+					changes.end();
+					fireChangedUpdate(changes);
+				}
 				// fireUndoableEditUpdate(new UndoableEditEvent(this, changes));
 				
 			} //if (StyleSheet.PARAGRAPH_ATTR_VALUE.equals(type))
@@ -440,6 +504,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				fireSnapshotChanged(evt);
 			}
 
+			endBlockEdit();
 			writeUnlock();
 		}
     }
@@ -450,6 +515,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 			return;
 		}
 
+		length += expandPlaceholders(offset, length);
 		length = Math.min(getLength() - offset, length);
 
 		Map<BigInteger, SdtBlock> snapshots = null;
@@ -458,6 +524,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, length, BlockUndoableEdit.FORMATTING);
 
 			Style style = getStyleSheet().getReferredStyle(styleId);
 			String type = (style == null) ? null : (String) style
@@ -479,87 +546,13 @@ public class WordMLDocument extends DefaultStyledDocument {
 					//from the last character in document (offset == getLength())
 					blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-					snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);				
+					snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, length);				
 				}
 				
 				MutableAttributeSet newAttrs = new SimpleAttributeSet();
 				newAttrs.addAttribute(WordMLStyleConstants.RStyleAttribute, styleId);
 				
-				int lastEnd = Integer.MAX_VALUE;
-				for (int pos = offset; pos < (offset + length); pos = lastEnd) {
-					DocumentElement runE = (DocumentElement) getRunMLElement(pos);
-					RunML runML = (RunML) runE.getElementML();
-
-					if (!runE.isEditable()) {
-						;//pass
-						
-					} else if (offset <= runE.getStartOffset()
-							&& runE.getEndOffset() <= offset + length) {
-						runML.addAttributes(newAttrs, true);
-
-					} else if (runE.getStartOffset() < offset
-							&& offset + length < runE.getEndOffset()
-							&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())
-							&& DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
-						try {
-							// Firstly, make a copy of RunML that spans from
-							// (offset+length) to runE.getEndOffset().
-							int tempInt = runE.getEndOffset()
-									- (offset + length);
-							TextSelector ts = new TextSelector(this,
-									(offset + length), tempInt);
-							// Because [offset + length, tempInt] is inside
-							// runE,
-							// ts will definitely contain a single record whose
-							// ElementML is a RunML.
-							ElementML ml = ts.getElementMLRecords().get(0)
-									.getElementML();
-							// Put this copy to the right of runML
-							runML.addSibling(ml, true);
-
-							// Secondly, make a copy of RunML that spans from
-							// offset to offset + length and apply 'attrs' to it
-							ts = new TextSelector(this, offset, length);
-							ml = ts.getElementMLRecords().get(0).getElementML();
-							((RunML) ml).addAttributes(newAttrs, true);
-							// This copy has to be at the right of runML
-							runML.addSibling(ml, true);
-
-							// Finally, chop runE from runE.getStartOffset()
-							// to offset position.
-							tempInt = offset - runE.getStartOffset();
-							RunML newSibling = (RunML) DocUtil.splitElementML(
-									runE, tempInt);
-							newSibling.delete();
-						} catch (BadSelectionException exc) {
-							;// ignore
-						}
-
-					} else if (runE.getStartOffset() < offset
-							&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())) {
-						int idx = offset - runE.getStartOffset();
-						RunML newSibling = (RunML) DocUtil.splitElementML(runE,
-								idx);
-						newSibling.addAttributes(newAttrs, true);
-
-					} else if (DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
-						// ie: offset + length < runE.getEndOffset()
-						int idx = (offset + length) - runE.getStartOffset();
-						DocUtil.splitElementML(runE, idx);
-						runML.addAttributes(newAttrs, true);
-						
-					} else {
-						;//pass
-					}
-
-					lastEnd = runE.getEndOffset();
-					if (pos == lastEnd) {
-						// finish
-						break;
-					}
-				}
-
-				refreshParagraphs(offset, length);
+				applyRunMLAttributes(offset, length, newAttrs, true);
 				
 			} // if (StyleSheet.CHARACTER_ATTR_VALUE.equals(type))
 		} finally {
@@ -574,13 +567,269 @@ public class WordMLDocument extends DefaultStyledDocument {
 				fireSnapshotChanged(evt);
 			}
 
+			endBlockEdit();
 			writeUnlock();
 		}
 	}
   
+    /**
+     * Applies 'attrs' to the RunMLs within [offset, offset + length].
+     * 
+     * Only the runs at either end of the range may have to be split.
+     * The paragraphs holding them are given new run elements.  All other
+     * run elements keep their place in this document and have their
+     * attributes updated in place.  Formatting a large selection
+     * therefore does not rebuild the paragraphs in it.
+     * 
+     * The whole change is notified by a single CHANGE DocumentEvent 
+     * whose range spans the changed run elements and which carries 
+     * an ElementChange for each paragraph given new run elements.
+     * 
+     * Must be called under write lock.
+     */
+    private void applyRunMLAttributes(
+    	int offset, int length, AttributeSet attrs, boolean replace) {
+    	
+		List<DocumentElement> changedRuns = new ArrayList<DocumentElement>();
+		boolean splitFirst = false;
+		boolean splitLast = false;
+		
+		int lastEnd = Integer.MAX_VALUE;
+		for (int pos = offset; pos < (offset + length); pos = lastEnd) {
+			DocumentElement runE = (DocumentElement) getRunMLElement(pos);
+			RunML runML = (RunML) runE.getElementML();
+			
+			if (!runE.isEditable()) {
+				;//pass
+				
+			} else if (offset <= runE.getStartOffset()
+				&& runE.getEndOffset() <= offset + length) {
+				runML.addAttributes(attrs, replace);
+				changedRuns.add(runE);
+				
+			} else if (runE.getStartOffset() < offset
+					&& offset + length < runE.getEndOffset()
+					&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())
+					&& DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
+				try {
+					//Firstly, make a copy of RunML that spans from
+					//(offset+length) to runE.getEndOffset().
+					int tempInt = runE.getEndOffset() - (offset + length);
+					TextSelector ts = 
+						new TextSelector(this, (offset+length), tempInt);
+					//Because [offset + length, tempInt] is inside runE,
+					//ts will definitely contain a single record whose
+					//ElementML is a RunML.
+					ElementML ml = ts.getElementMLRecords().get(0).getElementML();
+					//Put this copy to the right of runML
+					runML.addSibling(ml, true);
+					
+					//Secondly, make a copy of RunML that spans from
+					//offset to offset + length and apply 'attrs' to it
+					ts = new TextSelector(this, offset, length);
+					ml = ts.getElementMLRecords().get(0).getElementML();
+					((RunML) ml).addAttributes(attrs, replace);
+					//This copy has to be at the right of runML
+					runML.addSibling(ml, true);
+					
+					//Finally, chop runE from runE.getStartOffset()
+					//to offset position.
+					tempInt = offset - runE.getStartOffset();
+					RunML newSibling = 
+						(RunML) DocUtil.splitElementML(runE, tempInt);
+					newSibling.delete();
+					splitFirst = true;
+				} catch (BadSelectionException exc) {
+					;//ignore
+				}
+				
+			} else if (runE.getStartOffset() < offset
+					&& DocUtil.canSplitElementML(runE, offset - runE.getStartOffset())) {
+				int idx = offset - runE.getStartOffset();
+				RunML newSibling = 
+					(RunML) DocUtil.splitElementML(runE, idx);
+				newSibling.addAttributes(attrs, replace);
+				splitFirst = true;
+				
+			} else if (DocUtil.canSplitElementML(runE, (offset+length) - runE.getStartOffset())) {
+				//ie: offset + length < runE.getEndOffset()
+				int idx = (offset + length) - runE.getStartOffset();
+				DocUtil.splitElementML(runE, idx);
+				runML.addAttributes(attrs, replace);
+				splitLast = true;
+				
+			} else {
+				;//pass
+			}
+			
+			lastEnd = runE.getEndOffset();
+			if (pos == lastEnd) {
+				//finish
+				break;
+			}
+		}
+		
+		//The paragraphs holding split runs
+		List<BranchElement> splitParas = new ArrayList<BranchElement>(2);
+		if (splitFirst) {
+			splitParas.add((BranchElement) getParagraphMLElement(offset, false));
+		}
+		if (splitLast) {
+			Element paraE = getParagraphMLElement(offset + length - 1, false);
+			if (!splitParas.contains(paraE)) {
+				splitParas.add((BranchElement) paraE);
+			}
+		}
+		
+		int changeStart = Integer.MAX_VALUE;
+		int changeEnd = -1;
+		
+		//The run elements in split paragraphs are replaced 
+		//and need no update.
+		for (DocumentElement runE: changedRuns) {
+			boolean inSplitPara = false;
+			for (Element paraE: splitParas) {
+				inSplitPara |=
+					(paraE.getStartOffset() <= runE.getStartOffset()
+						&& runE.getEndOffset() <= paraE.getEndOffset());
+			}
+			if (!inSplitPara) {
+				resetAttributes(runE);
+				changeStart = Math.min(changeStart, runE.getStartOffset());
+				changeEnd = Math.max(changeEnd, runE.getEndOffset());
+			}
+		}
+		
+		List<ElementEdit> edits = new ArrayList<ElementEdit>(splitParas.size());
+		List<Element> unreplaced = new ArrayList<Element>(0);
+		for (BranchElement paraE: splitParas) {
+			ElementEdit edit = replaceRunElements(paraE);
+			if (edit != null) {
+				edits.add(edit);
+				changeStart = Math.min(changeStart, paraE.getStartOffset());
+				changeEnd = Math.max(changeEnd, paraE.getEndOffset());
+			} else {
+				unreplaced.add(paraE);
+			}
+		}
+		
+		if (changeEnd >= 0) {
+			DefaultDocumentEvent changes = 
+				new DefaultDocumentEvent(
+					changeStart, 
+					changeEnd - changeStart, 
+					DocumentEvent.EventType.CHANGE);
+			for (ElementEdit edit: edits) {
+				changes.addEdit(edit);
+			}
+			changes.end();
+			fireChangedUpdate(changes);
+		}
+		
+		//Should not happen.  See: replaceRunElements()
+		//Refreshing does not change the length of this document.
+		for (Element paraE: unreplaced) {
+			refreshParagraphs(paraE.getStartOffset(), 1);
+		}
+    }
+    
+    /**
+     * Replaces the children of 'paraE' with those built from
+     * its ParagraphML, just as refreshParagraphs() would do.
+     * Must be called under write lock.
+     * 
+     * @param paraE a paragraph element
+     * @return the ElementEdit of the replacement; null if the ParagraphML
+     * does not hold the text of 'paraE' in which case nothing is replaced.
+     */
+    private ElementEdit replaceRunElements(BranchElement paraE) {
+    	List<ElementSpec> specs = 
+    		DocUtil.getElementSpecs(((DocumentElement) paraE).getElementML());
+    	//Excludes the opening and closing specs of paraE
+    	specs = specs.subList(1, specs.size() - 1);
+    	
+    	int length = 0;
+    	for (ElementSpec es: specs) {
+    		if (es.getType() == ElementSpec.ContentType) {
+    			length += es.getLength();
+    		}
+    	}
+    	if (length != paraE.getEndOffset() - paraE.getStartOffset()) {
+    		return null;
+    	}
+    	
+    	List<Element> children = new ArrayList<Element>();
+    	Stack<List<Element>> openChildren = new Stack<List<Element>>();
+    	BranchElement parent = paraE;
+    	int pos = paraE.getStartOffset();
+    	for (ElementSpec es: specs) {
+    		if (es.getType() == ElementSpec.StartTagType) {
+    			BranchElement branch = 
+    				(BranchElement) createBranchElement(parent, es.getAttributes());
+    			children.add(branch);
+    			openChildren.push(children);
+    			children = new ArrayList<Element>();
+    			parent = branch;
+    			
+    		} else if (es.getType() == ElementSpec.EndTagType) {
+    			parent.replace(0, 0, children.toArray(new Element[children.size()]));
+    			children = openChildren.pop();
+    			parent = (BranchElement) parent.getParentElement();
+    			
+    		} else {
+    			children.add(
+    				createLeafElement(parent, es.getAttributes(), pos, pos + es.getLength()));
+    			pos += es.getLength();
+    		}
+    	}
+    	
+    	Element[] removed = new Element[paraE.getElementCount()];
+    	for (int i = 0; i < removed.length; i++) {
+    		removed[i] = paraE.getElement(i);
+    	}
+    	Element[] added = children.toArray(new Element[children.size()]);
+    	paraE.replace(0, removed.length, added);
+    	
+    	return new ElementEdit(paraE, 0, removed, added);
+    }
+    
+    /**
+     * Gives 'elem' and the run and paragraph elements inside it 
+     * the attributes that refreshParagraphs() would have created 
+     * from their ElementMLs.
+     * 
+     * @param elem
+     */
+    private void resetAttributes(DocumentElement elem) {
+    	ElementML ml = elem.getElementML();
+    	MutableAttributeSet newAttrs = null;
+    	if (ml instanceof RunML && !ml.isImplied()) {
+    		newAttrs = ElementMLIteratorCallback.createRunAttributes((RunML) ml);
+    	} else if (ml instanceof ParagraphML && !ml.isImplied()) {
+    		newAttrs = ElementMLIteratorCallback.createParagraphAttributes((ParagraphML) ml);
+    	}
+    	
+    	if (newAttrs != null) {
+    		MutableAttributeSet elemAttrs = (MutableAttributeSet) elem.getAttributes();
+    		elemAttrs.removeAttributes(elemAttrs);
+    		elemAttrs.addAttributes(newAttrs);
+    	}
+    	
+    	if (!(ml instanceof RunML)) {
+    		for (int i = 0; i < elem.getElementCount(); i++) {
+    			Element child = elem.getElement(i);
+    			if (!child.isLeaf()) {
+    				resetAttributes((DocumentElement) child);
+    			}
+    		}
+    	}
+    }
+    
 	public void insertFragment(int offset, WordMLFragment fragment, AttributeSet attrs) 
 		throws BadLocationException {
 		
+		expandPlaceholders(offset, 0);
+		
 		List<ElementMLRecord> paraContentRecords = 
 			fragment.getParagraphContentRecords();
 		List<ElementMLRecord> paragraphRecords = 
@@ -631,6 +880,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, 0, BlockUndoableEdit.PASTE);
 			
 			DocumentElement rootE = 
 				(DocumentElement) getDefaultRootElement();
@@ -654,7 +904,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				//from the last character in document (offset == getLength())
 				blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);				
+				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, 0);				
 			}
 			
 			DocUtil.setUniqueSdtBlockId(this, fragment);
@@ -846,6 +1096,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				evt.setInitialSnapshots(snapshots);
 				fireSnapshotChanged(evt);
 			}		
+			endBlockEdit();
 			writeUnlock();
 		}
 	} //insertFragment
@@ -1138,6 +1389,10 @@ public class WordMLDocument extends DefaultStyledDocument {
      * Any paragraph within this range that has not been rendered 
      * will be rendered together with those paragraphs.
      * 
+     * Only those paragraphs whose structure has changed are replaced. 
+     * The others keep their elements, views and positions.
+     * See: replaceChangedParagraphs()
+     * 
      * @param offset offset position 
      * @param length specified range length
      */
@@ -1153,27 +1408,30 @@ public class WordMLDocument extends DefaultStyledDocument {
     	
     	writeLock();
     	try {
+    		if (this.blockEditDepth == 0 
+    			&& !this.undoingBlockEdit 
+    			&& !this.expandingPlaceholders) {
+    			//See: BlockUndoableEdit.isCurrent()
+    			this.unrecordedChangeCount++;
+    		}
+    		
     		DocumentElement rootE = (DocumentElement) getDefaultRootElement();
     		ElementML bodyML = rootE.getElementML().getChild(0);
     		
     		int idx = rootE.getElementIndex(offset);
-    		int startOffset = 0;
     		int topIdx = -1;
     		if (idx > 0) {
     			DocumentElement topParaE = 
     				(DocumentElement) rootE.getElement(idx - 1);
         		topIdx = bodyML.getChildIndex(topParaE.getElementML());
-        		startOffset = topParaE.getEndOffset();
     		}
     		
 			idx = rootE.getElementIndex(offset + length - 1);
-			int endOffset = getLength();
 			int bottomIdx = bodyML.getChildrenCount() - 1;
 			if (idx < rootE.getElementCount() - 1) {
 				DocumentElement bottomParaE = (DocumentElement) rootE
 						.getElement(idx + 1);
 				bottomIdx = bodyML.getChildIndex(bottomParaE.getElementML());
-				endOffset = bottomParaE.getStartOffset();
 			}
 
 			ElementML tempContainerML = new ImpliedContainerML();
@@ -1186,6 +1444,7 @@ public class WordMLDocument extends DefaultStyledDocument {
         	List<ElementSpec> tempSpecs = DocUtil.getElementSpecs(tempContainerML);
         	//Excludes the opening and closing specs
         	tempSpecs = tempSpecs.subList(1, tempSpecs.size() - 1);
+        	tempContainerML = null;
         	
         	if (log.isDebugEnabled()) {
             	log.debug("refreshParagraphs(): offset=" + offset 
@@ -1194,89 +1453,522 @@ public class WordMLDocument extends DefaultStyledDocument {
         		DocUtil.displayStructure(tempSpecs);
         	}
         	
-        	//The inserted ElementSpecs will consist of those that close the paragraph
-        	//at (offset - 1) and those kept in tempSpecs.
-    		List<ElementSpec> specList = new ArrayList<ElementSpec>();
-        	
         	filter.setEnabled(false);
         	
-        	if (startOffset == getLength()) {
-        		//Refreshing the last paragraph of this document.
-        		//if the last paragraph has an older sibling
-        		//then create ElementSpecs for closing older sibling element;
-        		//otherwise create ElementSpecs for closing the last paragraph.
-    			Element tempE = 
-    				rootE.getElement(Math.max(rootE.getElementCount() - 2, 0));
-    			while (!tempE.isLeaf()) {
-    				specList.add(new ElementSpec(null, ElementSpec.EndTagType));
-    				tempE = tempE.getElement(0);
-    			}
-        		
-        		//Add those kept in tempSpecs.
-        		specList.addAll(tempSpecs);
-        		
-        		tempSpecs = null;
-            	tempContainerML = null;
-            	
-        		final ElementSpec[] specsArray = new ElementSpec[specList.size()];
-        		specList.toArray(specsArray);
-        		specList = null;
-        		
-        		//Do not need to remove the last paragraph after this insertion
-				insert(startOffset, specsArray);
-        		
-				if (log.isDebugEnabled()) {
-					log.debug("refreshParagraphs(): offset=" + offset
-							+ " length=" + length
-							+ " After inserting new specs...");
-					DocUtil.displayStructure(this);
-				}
-				
+        	int firstIdx = rootE.getElementIndex(offset);
+        	int lastIdx = rootE.getElementIndex(offset + length - 1);
+        	if (lastIdx == rootE.getElementCount() - 1) {
+        		//The last paragraph has no ElementSpecs in tempSpecs.
+        		//See: bottomIdx above.
+        		replaceParagraphs(firstIdx, lastIdx, tempSpecs);
         	} else {
-        		//Create ElementSpecs for closing the last paragraph selected
-        		//in this refresh action.
-        		idx = rootE.getElementIndex(endOffset - 1);
-        		Element tempE = rootE.getElement(idx);
-        		while (!tempE.isLeaf()) {
-        			specList.add(new ElementSpec(null, ElementSpec.EndTagType));
-        			tempE = tempE.getElement(0);
-        		}
-        		
-        		specList.addAll(tempSpecs);
-        		
-        		tempSpecs = null;
-            	tempContainerML = null;
-            	
-        		final ElementSpec[] specsArray = new ElementSpec[specList.size()];
-        		specList.toArray(specsArray);
-        		specList = null;
-        		
-        		//The ElementSpecs is inserted right at the end of the last paragraph
-        		//selected in this refresh action.
-				insert(endOffset, specsArray);
+        		replaceChangedParagraphs(firstIdx, lastIdx, tempSpecs);
+        	}
+        	
+    	} catch (BadLocationException exc) {
+    		exc.printStackTrace();//ignore
+    	} finally {
+    		writeUnlock();
+    		filter.setEnabled(true);
+    	}
+    }
+    
+    /**
+     * Replaces those root's children in [firstIdx, lastIdx] whose structure
+     * differs from that described by 'specs'.  Unchanged paragraphs are kept 
+     * together with their views and positions.  A paragraph is unchanged 
+     * when its whole subtree has the same attributes (hence the same 
+     * ElementML) and text as its ElementSpecs.
+     * 
+     * @param firstIdx index of the first root's child being refreshed
+     * @param lastIdx index of the last root's child being refreshed
+     * @param specs the new ElementSpecs of those children, 
+     * excluding the opening and closing specs of their container.
+     * @throws BadLocationException
+     */
+    private void replaceChangedParagraphs(
+    	int firstIdx, 
+    	int lastIdx, 
+    	List<ElementSpec> specs) throws BadLocationException {
+    	
+    	DocumentElement rootE = (DocumentElement) getDefaultRootElement();
+    	List<int[]> groups = getTopLevelSpecGroups(specs);
+    	if (groups == null || groups.isEmpty()) {
+    		replaceParagraphs(firstIdx, lastIdx, specs);
+    		return;
+    	}
+    	
+    	Segment text = new Segment();
+    	int oldCount = lastIdx - firstIdx + 1;
+    	int newCount = groups.size();
+    	
+    	//Skip unchanged paragraphs at both ends
+    	int head = 0;
+    	while (head < oldCount && head < newCount
+    			&& isUnchanged(rootE.getElement(firstIdx + head), specs, groups.get(head), text)) {
+    		head++;
+    	}
+    	int tail = 0;
+    	while (tail < oldCount - head && tail < newCount - head
+    			&& isUnchanged(
+    					rootE.getElement(lastIdx - tail), 
+    					specs, 
+    					groups.get(newCount - 1 - tail), 
+    					text)) {
+    		tail++;
+    	}
+    	
+    	if (head == oldCount && head == newCount) {
+    		if (log.isDebugEnabled()) {
+    			log.debug("replaceChangedParagraphs(): No paragraph has changed.");
+    		}
+    		return;
+    	}
+    	
+    	//Both old and new paragraphs are needed for a replacement.
+    	while (head + tail >= oldCount || head + tail >= newCount) {
+    		if (head > 0) {
+    			head--;
+    		} else {
+    			tail--;
+    		}
+    	}
+    	
+    	if (oldCount == newCount) {
+    		//Paragraphs match one to one.  Replace each run of 
+    		//changed paragraphs from the bottom so that the offsets
+    		//of those above are not affected.
+    		int i = oldCount - tail - 1;
+    		while (i >= head) {
+    			if (isUnchanged(rootE.getElement(firstIdx + i), specs, groups.get(i), text)) {
+    				i--;
+    				continue;
+    			}
+    			int end = i;
+    			while (i > head 
+    				&& !isUnchanged(rootE.getElement(firstIdx + i - 1), specs, groups.get(i - 1), text)) {
+    				i--;
+    			}
+    			replaceParagraphs(
+    				firstIdx + i, 
+    				firstIdx + end, 
+    				specs.subList(groups.get(i)[0], groups.get(end)[1]));
+    			i--;
+    		}
+    	} else {
+    		replaceParagraphs(
+    			firstIdx + head, 
+    			lastIdx - tail, 
+    			specs.subList(groups.get(head)[0], groups.get(newCount - 1 - tail)[1]));
+    	}
+    }
+    
+    /**
+     * Replaces root's children in [firstIdx, lastIdx] with 'specs'.
+     */
+    private void replaceParagraphs(
+    	int firstIdx,
+    	int lastIdx,
+    	List<ElementSpec> specs) throws BadLocationException {
+    	
+		DocumentElement rootE = (DocumentElement) getDefaultRootElement();
+		int startOffset = rootE.getElement(firstIdx).getStartOffset();
+		int endOffset = getLength();
+		if (lastIdx < rootE.getElementCount() - 1) {
+			endOffset = rootE.getElement(lastIdx + 1).getStartOffset();
+		}
+		
+    	//The inserted ElementSpecs will consist of those that close the paragraph
+    	//at (offset - 1) and those kept in specs.
+		List<ElementSpec> specList = new ArrayList<ElementSpec>();
+		
+    	if (startOffset == getLength()) {
+    		//Refreshing the last paragraph of this document.
+    		//if the last paragraph has an older sibling
+    		//then create ElementSpecs for closing older sibling element;
+    		//otherwise create ElementSpecs for closing the last paragraph.
+			Element tempE = 
+				rootE.getElement(Math.max(rootE.getElementCount() - 2, 0));
+			while (!tempE.isLeaf()) {
+				specList.add(new ElementSpec(null, ElementSpec.EndTagType));
+				tempE = tempE.getElement(0);
+			}
+    		
+    		//Add those kept in specs.
+    		specList.addAll(specs);
+    		
+    		final ElementSpec[] specsArray = new ElementSpec[specList.size()];
+    		specList.toArray(specsArray);
+    		specList = null;
+    		
+    		//Do not need to remove the last paragraph after this insertion
+			insert(startOffset, specsArray);
+    		
+			if (log.isDebugEnabled()) {
+				log.debug("replaceParagraphs(): firstIdx=" + firstIdx
+						+ " lastIdx=" + lastIdx
+						+ " After inserting new specs...");
+				DocUtil.displayStructure(this);
+			}
+			
+    	} else {
+    		//Create ElementSpecs for closing the last paragraph selected
+    		//in this refresh action.
+    		int idx = rootE.getElementIndex(endOffset - 1);
+    		Element tempE = rootE.getElement(idx);
+    		while (!tempE.isLeaf()) {
+    			specList.add(new ElementSpec(null, ElementSpec.EndTagType));
+    			tempE = tempE.getElement(0);
+    		}
+    		
+    		specList.addAll(specs);
+    		
+    		final ElementSpec[] specsArray = new ElementSpec[specList.size()];
+    		specList.toArray(specsArray);
+    		specList = null;
+    		
+    		//The ElementSpecs is inserted right at the end of the last paragraph
+    		//selected in this refresh action.
+			insert(endOffset, specsArray);
+			
+			if (log.isDebugEnabled()) {
+				log.debug("replaceParagraphs(): firstIdx=" + firstIdx
+						+ " lastIdx=" + lastIdx
+						+ " After inserting new specs...");
 				
-				if (log.isDebugEnabled()) {
-					log.debug("refreshParagraphs(): offset=" + offset
-							+ " length=" + length
-							+ " After inserting new specs...");
-					
-					DocUtil.displayStructure(this);
-					
-					log.debug("refreshParagraphs(): offset=" + offset
-							+ " length=" + length
-							+ " About to remove old paragraph...");
-				}
+				DocUtil.displayStructure(this);
 				
-				//Remove all old paragraphs selected in this refresh action
-				remove(startOffset, endOffset - startOffset);
-
+				log.debug("replaceParagraphs(): firstIdx=" + firstIdx
+						+ " lastIdx=" + lastIdx
+						+ " About to remove old paragraph...");
 			}
+			
+			//Remove all old paragraphs selected in this refresh action
+			remove(startOffset, endOffset - startOffset);
+		}
+    }
+    
+    /**
+     * Splits 'specs' into the ElementSpecs of each top level element.
+     * 
+     * @param specs
+     * @return the [start, end) index range of each top level element in 'specs'
+     *         or null if 'specs' is not a sequence of whole elements.
+     */
+    private List<int[]> getTopLevelSpecGroups(List<ElementSpec> specs) {
+    	List<int[]> groups = new ArrayList<int[]>();
+    	int depth = 0;
+    	int start = 0;
+    	for (int i = 0; i < specs.size(); i++) {
+    		short type = specs.get(i).getType();
+    		if (type == ElementSpec.StartTagType) {
+    			if (depth == 0) {
+    				start = i;
+    			}
+    			depth++;
+    		} else if (type == ElementSpec.EndTagType) {
+    			depth--;
+    			if (depth < 0) {
+    				return null;
+    			} else if (depth == 0) {
+    				groups.add(new int[] {start, i + 1});
+    			}
+    		} else if (depth == 0) {
+    			return null;
+    		}
+    	}
+    	return (depth == 0) ? groups : null;
+    }
+    
+    private boolean isUnchanged(
+    	Element elem, 
+    	List<ElementSpec> specs, 
+    	int[] group, 
+    	Segment text) throws BadLocationException {
+    	return matchSpecs(elem, specs, group[0], group[1], text) == group[1];
+    }
+    
+    /**
+     * Matches the subtree of 'elem' against the ElementSpecs 
+     * starting at specs.get(idx).
+     * 
+     * @return the index of the ElementSpec following those matching 'elem' 
+     *         or -1 if they do not match.
+     */
+    private int matchSpecs(
+    	Element elem, 
+    	List<ElementSpec> specs, 
+    	int idx, 
+    	int end, 
+    	Segment text) throws BadLocationException {
+    	
+    	if (idx < 0 || idx >= end) {
+    		return -1;
+    	}
+    	
+    	ElementSpec spec = specs.get(idx);
+    	if (elem.isLeaf()) {
+    		int length = elem.getEndOffset() - elem.getStartOffset();
+    		if (spec.getType() != ElementSpec.ContentType
+    			|| spec.getLength() != length
+    			|| spec.getArray() == null
+    			|| !hasAttributes(elem, spec)) {
+    			return -1;
+    		}
+    		getText(elem.getStartOffset(), length, text);
+    		char[] chars = spec.getArray();
+    		for (int i = 0; i < length; i++) {
+    			if (text.array[text.offset + i] != chars[spec.getOffset() + i]) {
+    				return -1;
+    			}
+    		}
+    		return idx + 1;
+    	}
+    	
+    	if (spec.getType() != ElementSpec.StartTagType || !hasAttributes(elem, spec)) {
+    		return -1;
+    	}
+    	idx++;
+    	for (int i = 0; i < elem.getElementCount() && idx >= 0; i++) {
+    		idx = matchSpecs(elem.getElement(i), specs, idx, end, text);
+    	}
+    	if (idx < 0 || idx >= end || specs.get(idx).getType() != ElementSpec.EndTagType) {
+    		return -1;
+    	}
+    	return idx + 1;
+    }
+    
+    private boolean hasAttributes(Element elem, ElementSpec spec) {
+    	AttributeSet attrs = spec.getAttributes();
+    	if (attrs == null) {
+    		return elem.getAttributes().getAttributeCount() == 0;
+    	}
+    	return elem.getAttributes().isEqual(attrs);
+    }
+    
+    /**
+     * Builds the real structure of those placeholder elements that are
+     * within [offset, offset + length].  A placeholder is a body level 
+     * element whose structure was not built when this document was read.
+     * See: WordMLEditorKit.read(FileObject)
+     * 
+     * The DocumentEvents fired while expanding placeholders are not edits.
+     * See: isExpandingPlaceholders().
+     * 
+     * A placeholder holds the real ElementML of its body level element
+     * but only a single newline character in this document. Therefore
+     * those who read the text content or the elements of a range
+     * have to expand the placeholders in that range first. 
+     * TextSelector rejects a range that still has placeholders.
+     * Saving and the source view serialise the ElementML tree and
+     * need no expansion.
+     * 
+     * This method takes the write lock and must not be called 
+     * while holding the read lock.
+     * 
+     * @param offset
+     * @param length
+     * @return the number of characters by which this document has grown.
+     * The offsets before 'offset' are not affected.
+     */
+    public int expandPlaceholders(int offset, int length) {
+    	int oldLength = getLength();
+    	
+    	offset = Math.max(offset, 0);
+    	offset = Math.min(offset, getLength());
+    	
+    	length = Math.min(length, getLength() - offset);
+    	length = Math.max(length, 1);
+    	
+    	writeLock();
+    	try {
+    		DocumentElement rootE = (DocumentElement) getDefaultRootElement();
+    		int topIdx = rootE.getElementIndex(offset);
+    		int idx = rootE.getElementIndex(offset + length - 1);
+    		
+    		//Expand from the bottom so that the offsets of
+    		//the placeholders above are not affected.
+    		while (idx >= topIdx) {
+    			if (!WordMLStyleConstants.isPlaceholder(rootE.getElement(idx).getAttributes())) {
+    				idx--;
+    				continue;
+    			}
+    			
+    			//Expand contiguous placeholders in one go
+    			int endOffset = rootE.getElement(idx).getEndOffset();
+    			while (idx > topIdx 
+    				&& WordMLStyleConstants.isPlaceholder(
+    						rootE.getElement(idx - 1).getAttributes())) {
+    				idx--;
+    			}
+    			int startOffset = rootE.getElement(idx).getStartOffset();
+    			
+    			this.expandingPlaceholders = true;
+    			try {
+    				refreshParagraphs(startOffset, endOffset - startOffset);
+    			} finally {
+    				this.expandingPlaceholders = false;
+    			}
+    			idx--;
+    		}
+    	} finally {
+    		writeUnlock();
+    	}
+    	
+    	return getLength() - oldLength;
+    }
+    
+    /**
+     * @param offset
+     * @param length
+     * @return true if there is a placeholder within [offset, offset + length].
+     * See: expandPlaceholders()
+     */
+    public boolean hasPlaceholders(int offset, int length) {
+    	Element rootE = getDefaultRootElement();
+    	int topIdx = rootE.getElementIndex(offset);
+    	int idx = rootE.getElementIndex(offset + Math.max(length, 1) - 1);
+    	for (; topIdx <= idx; topIdx++) {
+    		if (WordMLStyleConstants.isPlaceholder(rootE.getElement(topIdx).getAttributes())) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * @return true if the DocumentEvent being fired comes from 
+     * expandPlaceholders() rather than from an edit.
+     */
+    public boolean isExpandingPlaceholders() {
+    	return this.expandingPlaceholders;
+    }
+    
+    /**
+     * Appends body level elements to this document while it is still being
+     * loaded.  The appended elements are placed right before the document's
+     * last paragraph.  See: StreamingDocumentLoader
+     * 
+     * @param children Each item is either a body level ElementML that has no
+     * parent or a docx object that is not represented by any ElementML;
+     * eg: &lt;w:bookmarkStart&gt;.  See: BodyML.createChildML(Object)
+     * @param placeholderIndex Appended ElementMLs whose index in 'children' 
+     * is at least placeholderIndex are given placeholder elements.
+     * See: expandPlaceholders()
+     */
+    public void appendBodyChildren(List<?> children, int placeholderIndex) {
+    	writeLock();
+    	try {
+    		DocumentElement rootE = (DocumentElement) getDefaultRootElement();
+    		BodyML bodyML = (BodyML) rootE.getElementML().getChild(0);
+    		ElementML lastParaML = bodyML.getChild(bodyML.getChildrenCount() - 1);
+    		
+    		//Keep the docx objects in the same order as 'children'
+    		org.docx4j.wml.Body body = (org.docx4j.wml.Body) bodyML.getDocxObject();
+    		List<Object> docxChildren = body.getEGBlockLevelElts();
+    		int docxIdx = docxChildren.indexOf(lastParaML.getDocxObject());
+    		if (docxIdx < 0) {
+    			docxIdx = docxChildren.size();
+    		}
+    		
+    		ElementML tempContainerML = new ImpliedContainerML();
+    		for (Object child: children) {
+    			if (child instanceof ElementML) {
+    				ElementML ml = (ElementML) child;
+    				docxChildren.add(docxIdx++, ml.getDocxObject());
+    				ml.setDocxParent(body);
+    				bodyML.addChild(bodyML.getChildrenCount() - 1, ml, false);
+    				ml.setParent(bodyML);
+    				tempContainerML.addChild(ml, false);
+    			} else {
+    				docxChildren.add(docxIdx++, child);
+    			}
+    		}
+    		
+    		if (tempContainerML.getChildrenCount() == 0) {
+    			return;
+    		}
+    		
+    		int offset = rootE.getElement(rootE.getElementCount() - 1).getStartOffset();
+    		if (offset == 0) {
+    			//Only the last paragraph has been built so far.
+    			refreshParagraphs(0, getLength());
+    			return;
+    		}
+    		
+        	List<ElementSpec> tempSpecs = 
+        		DocUtil.getElementSpecs(tempContainerML, placeholderIndex);
+        	//Excludes the opening and closing specs
+        	tempSpecs = tempSpecs.subList(1, tempSpecs.size() - 1);
         	
+        	//Close the paragraph at (offset - 1) before inserting tempSpecs.
+        	//See: refreshParagraphs()
+    		List<ElementSpec> specList = new ArrayList<ElementSpec>();
+    		Element tempE = rootE.getElement(rootE.getElementIndex(offset - 1));
+    		while (!tempE.isLeaf()) {
+    			specList.add(new ElementSpec(null, ElementSpec.EndTagType));
+    			tempE = tempE.getElement(0);
+    		}
+    		specList.addAll(tempSpecs);
+    		
+    		ElementSpec[] specsArray = new ElementSpec[specList.size()];
+    		specList.toArray(specsArray);
+    		insert(offset, specsArray);
+    		
     	} catch (BadLocationException exc) {
     		exc.printStackTrace();//ignore
     	} finally {
     		writeUnlock();
-    		filter.setEnabled(true);
+    	}
+    }
+    
+    /**
+     * Makes 'newDocML' the DocumentML of this document.
+     * The BodyML of this document is moved to 'newDocML' 
+     * which must not have any BodyML yet.
+     * Those body level elements that are not placeholders are rebuilt 
+     * so that they refer to the WordprocessingMLPackage of 'newDocML'.
+     * 
+     * This is used to complete a document loaded by StreamingDocumentLoader.
+     * 
+     * @param newDocML
+     */
+    public void adoptDocumentML(DocumentML newDocML) {
+    	if (newDocML.getChildrenCount() != 0) {
+    		throw new IllegalArgumentException("DocumentML already has a BodyML.");
+    	}
+    	
+    	writeLock();
+    	try {
+    		DocumentElement rootE = (DocumentElement) getDefaultRootElement();
+    		ElementML bodyML = rootE.getElementML().getChild(0);
+    		bodyML.delete();
+    		newDocML.addChild(bodyML);
+    		WordMLStyleConstants.setElementML(
+    			(MutableAttributeSet) rootE.getAttributes(), newDocML);
+    		
+    		//Rebuild from the bottom so that the offsets of
+    		//the elements above are not affected.
+    		int idx = rootE.getElementCount() - 1;
+    		while (idx >= 0) {
+    			if (WordMLStyleConstants.isPlaceholder(rootE.getElement(idx).getAttributes())) {
+    				idx--;
+    				continue;
+    			}
+    			
+    			int endOffset = rootE.getElement(idx).getEndOffset();
+    			while (idx > 0 
+    				&& !WordMLStyleConstants.isPlaceholder(
+    						rootE.getElement(idx - 1).getAttributes())) {
+    				idx--;
+    			}
+    			int startOffset = rootE.getElement(idx).getStartOffset();
+    			
+    			refreshParagraphs(startOffset, endOffset - startOffset);
+    			idx--;
+    		}
+    	} finally {
+    		writeUnlock();
     	}
     }
     
@@ -1300,13 +1992,15 @@ public class WordMLDocument extends DefaultStyledDocument {
 			throw new BadLocationException("Invalid replace", offset);
 		}
 		
+		length += expandPlaceholders(offset, length);
+		
 		if (length == 0) {
 			//No text deletion/replacement.
 			insertFragment(offset, frag, attrs);
 			return;
 		}
 		
-		boolean origFireBanState = isSnapshotFireBan();
+		boolean origFireBanState = this.snapshotFireBan;
 		
 		Map<BigInteger, SdtBlock> snapshots = null;
 		int blockStart = -1;
@@ -1314,6 +2008,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 		
 		try {
 			writeLock();
+			beginBlockEdit(offset, length, BlockUndoableEdit.PASTE);
 			
 			if (!isSnapshotFireBan()) {
 				DocumentElement rootE = (DocumentElement) getDefaultRootElement();
@@ -1332,7 +2027,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				//from the last character in document (offset == getLength())
 				blockEnd = Math.max(0, getLength() - elem.getEndOffset());
 
-				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart);
+				snapshots = getSnapshots(blockStart, (getLength() - blockEnd) - blockStart, offset, length);
 			}
 			
 			//We want to fire snapshot change event just once and
@@ -1392,6 +2087,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				fireSnapshotChanged(evt);
 			}
 			
+			endBlockEdit();
 			writeUnlock();
 		}
 
@@ -1472,6 +2168,33 @@ public class WordMLDocument extends DefaultStyledDocument {
      *         null, otherwise;
      */
     public Map<BigInteger, SdtBlock> getSnapshots(int offset, int length) {
+    	return getSnapshots(offset, length, offset, length);
+    }
+    
+    /**
+     * Take the current snapshots of content controls within [offset, offset + length]
+     * which are about to be edited within [editOffset, editOffset + editLength].
+     * 
+     * Only the block level children of a content control which are within
+     * or adjacent to the edited area are copied. The other children are shared
+     * with this document; ie: they are the very same docx objects. 
+     * Therefore, a WordMLDocumentListener that keeps a snapshot beyond 
+     * snapshotChangedUpdate() has to copy it first.
+     * 
+     * @param offset
+     * @param length
+     * @param editOffset
+     * @param editLength
+     * @return A Map whose key is SdtBlock Id and value is SdtBlock 
+     * if there are content controls within the specified area;
+     *         null, otherwise;
+     */
+    public Map<BigInteger, SdtBlock> getSnapshots(
+    	int offset, 
+    	int length, 
+    	int editOffset, 
+    	int editLength) {
+    	
     	offset = Math.max(offset, 0);
     	offset = Math.min(offset, getLength());
     	
@@ -1493,12 +2216,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				DocumentElement elem = (DocumentElement) rootE.getElement(i);
 				ElementML elemML = elem.getElementML();
 				if (elemML instanceof SdtBlockML) {
-					SdtBlockML elemSdt = (SdtBlockML) elemML;
-
-					Object cloneObj = XmlUtils
-							.deepCopy(elemSdt.getDocxObject());
-					org.docx4j.wml.SdtBlock snapshot = (org.docx4j.wml.SdtBlock) JAXBIntrospector
-							.getValue(cloneObj);
+					SdtBlock snapshot = createSnapshot(elem, editOffset, editLength);
 					theSnapshots.put(snapshot.getSdtPr().getId().getVal(),
 							snapshot);
 				}
@@ -1514,6 +2232,40 @@ public class WordMLDocument extends DefaultStyledDocument {
 		return theSnapshots;
     }
 
+    /**
+     * Copies the SdtBlock of 'sdtE'. Those of its children that are
+     * not within nor adjacent to [editOffset, editOffset + editLength]
+     * are not copied but shared.
+     */
+    private SdtBlock createSnapshot(DocumentElement sdtE, int editOffset, int editLength) {
+    	SdtBlock sdt = 
+    		(SdtBlock) JAXBIntrospector.getValue(sdtE.getElementML().getDocxObject());
+    	
+    	Map<Object, Object> edited = new IdentityHashMap<Object, Object>();
+    	for (int i = 0; i < sdtE.getElementCount(); i++) {
+    		DocumentElement childE = (DocumentElement) sdtE.getElement(i);
+    		Object child = childE.getElementML().getDocxObject();
+    		if (child != null
+    			&& editOffset <= childE.getEndOffset()
+    			&& childE.getStartOffset() <= editOffset + editLength) {
+    			edited.put(child, child);
+    		}
+    	}
+    	
+    	org.docx4j.wml.SdtContentBlock content = ObjectFactory.createSdtContentBlock();
+    	for (Object child: sdt.getSdtContent().getContent()) {
+    		if (edited.containsKey(child)) {
+    			child = WordMLCopier.copy(child);
+    		}
+    		content.getContent().add(child);
+    	}
+    	
+    	SdtBlock snapshot = ObjectFactory.createSdtBlock();
+    	snapshot.setSdtPr((org.docx4j.wml.SdtPr) WordMLCopier.copy(sdt.getSdtPr()));
+    	snapshot.setSdtContent(content);
+    	return snapshot;
+    }
+    
     /**
      * Take the current snapshots of content controls within [offset, offset + length].
      * Each snapshot is a clone of content control's SdtBlockML.
@@ -1548,8 +2300,7 @@ public class WordMLDocument extends DefaultStyledDocument {
 				if (elemML instanceof SdtBlockML) {
 					SdtBlockML elemSdt = (SdtBlockML) elemML;
 
-					Object cloneObj = XmlUtils
-							.deepCopy(elemSdt.getDocxObject());
+					Object cloneObj = WordMLCopier.copy(elemSdt.getDocxObject());
 					org.docx4j.wml.SdtBlock snapshot = (org.docx4j.wml.SdtBlock) JAXBIntrospector
 							.getValue(cloneObj);
 					theSnapshots.add(snapshot);
@@ -1567,6 +2318,39 @@ public class WordMLDocument extends DefaultStyledDocument {
     }
     
     
+    //NumberingIndex has to know about a change before
+    //the views that are created by listeners ask for numbers.
+    //So has TrackedChangesIndex before the caret listeners ask.
+    protected void fireInsertUpdate(DocumentEvent e) {
+    	if (this.numberingIndex != null) {
+    		this.numberingIndex.documentChanged(e);
+    	}
+    	if (this.trackedChangesIndex != null) {
+    		this.trackedChangesIndex.documentChanged(e);
+    	}
+    	super.fireInsertUpdate(e);
+    }
+    
+    protected void fireRemoveUpdate(DocumentEvent e) {
+    	if (this.numberingIndex != null) {
+    		this.numberingIndex.documentChanged(e);
+    	}
+    	if (this.trackedChangesIndex != null) {
+    		this.trackedChangesIndex.documentChanged(e);
+    	}
+    	super.fireRemoveUpdate(e);
+    }
+    
+    protected void fireChangedUpdate(DocumentEvent e) {
+    	if (this.numberingIndex != null) {
+    		this.numberingIndex.documentChanged(e);
+    	}
+    	if (this.trackedChangesIndex != null) {
+    		this.trackedChangesIndex.documentChanged(e);
+    	}
+    	super.fireChangedUpdate(e);
+    }
+    
     protected void fireSnapshotChanged(WordMLDocumentEvent e) {
     	if (isSnapshotFireBan()) {
     		return;
@@ -68,6 +68,16 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			return;
 		}
 		
+		//Placeholders reached by this removal are expanded first.
+		//Removing the only character of a placeholder means removing
+		//the last character of the expanded element.
+		int grown = doc.expandPlaceholders(offset, length);
+		if (grown > 0 && length == 1) {
+			offset += grown;
+		} else {
+			length += grown;
+		}
+		
 		Map<BigInteger, SdtBlock> snapshots = null;
 		int blockStart = -1;
 		int blockEnd = -1;
@@ -87,10 +97,12 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			//from the last character in document (offset == getLength())
 			blockEnd = Math.max(0, doc.getLength() - elem.getEndOffset());
 
-			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart);
+			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart, offset, length);
 		}
 		
 		try {
+			doc.beginBlockEdit(offset, length, BlockUndoableEdit.DELETION);
+			
 			TextRemover tr = new TextRemover(fb, offset, length);
 			tr.doAction();
 		} catch (BadSelectionException exc) {
@@ -100,6 +112,8 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			throw new BadLocationException("Unselectable range: offset="
 				+ offset + " length=" + length, offset);
 		} finally {
+			doc.endBlockEdit();
+			
 			if (!doc.isSnapshotFireBan() && blockStart >= 0 && blockEnd >= 0) {
 				WordMLDocument.WordMLDefaultDocumentEvent evt = 
 					doc.new WordMLDefaultDocumentEvent(
@@ -138,6 +152,8 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			return;
 		}
 		
+		length += doc.expandPlaceholders(offset, length);
+		
 		Map<BigInteger, SdtBlock> snapshots = null;
 		int blockStart = -1;
 		int blockEnd = -1;
@@ -159,10 +175,12 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			//from the last character in document (offset == getLength())
 			blockEnd = Math.max(0, doc.getLength() - elem.getEndOffset());
 
-			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart);
+			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart, offset, length);
 		}
 		
 		try {
+			doc.beginBlockEdit(offset, length, BlockUndoableEdit.REPLACEMENT);
+			
 			TextReplacer tr = new TextReplacer(fb, offset, length, text, attrs);
 			tr.doAction();
 			
@@ -174,6 +192,8 @@ public class WordMLDocumentFilter extends DocumentFilter {
 				+ offset + " length=" + length, offset);
 			
 		} finally {
+			doc.endBlockEdit();
+			
 			if (!doc.isSnapshotFireBan() && blockStart >= 0 && blockEnd >= 0) {
 				WordMLDocument.WordMLDefaultDocumentEvent evt = 
 					doc.new WordMLDefaultDocumentEvent(
@@ -204,6 +224,8 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			return;
 		}
 		
+		doc.expandPlaceholders(offset, 0);
+		
 		Map<BigInteger, SdtBlock> snapshots = null;
 		int blockStart = -1;
 		int blockEnd = -1;
@@ -220,13 +242,17 @@ public class WordMLDocumentFilter extends DocumentFilter {
 			//from the last character in document (offset == getLength())
 			blockEnd = Math.max(0, doc.getLength() - elem.getEndOffset());
 
-			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart);
+			snapshots = doc.getSnapshots(blockStart, (doc.getLength() - blockEnd) - blockStart, offset, 0);
 		}
 		
 		try {
+			doc.beginBlockEdit(offset, 0, BlockUndoableEdit.TYPING);
+			
 			TextInserter tr = new TextInserter(fb, offset, text, attrs);
 			tr.doAction();
 		} finally {
+			doc.endBlockEdit();
+			
 			if (!doc.isSnapshotFireBan() && blockStart >= 0 && blockEnd >= 0) {
 				WordMLDocument.WordMLDefaultDocumentEvent evt = 
 					doc.new WordMLDefaultDocumentEvent(
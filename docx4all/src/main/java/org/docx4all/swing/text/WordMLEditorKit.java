@@ -97,10 +97,18 @@ import org.docx4all.xml.SdtBlockML;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.plutext.client.Mediator;
 import org.plutext.client.Util;
+import org.plutext.client.webservice.PlutextWebService;
 
 public class WordMLEditorKit extends DefaultEditorKit {
 	private static Logger log = LoggerFactory.getLogger(WordMLEditorKit.class);
 
+	//Documents having more body level elements than LAZY_OPEN_THRESHOLD
+	//are opened with only the first EAGER_BLOCK_COUNT elements built.
+	//The others are built when they are about to be displayed or edited.
+	//See: read(FileObject)
+	private final static int LAZY_OPEN_THRESHOLD = 200;
+	private final static int EAGER_BLOCK_COUNT = 60;
+
     /**
      * Name of the action to place a soft line break into
      * the document.  If there is a selection, it is removed before
@@ -297,8 +305,13 @@ public class WordMLEditorKit extends DefaultEditorKit {
 		//liveStyles property will be populated correctly.
 		//See: StyleDefinitionsPart.unmarshall(java.io.InputStream)
 		WordMLDocument doc = (WordMLDocument) createDefaultDocument();
-		List<ElementSpec> specs = 
-			DocUtil.getElementSpecs(ElementMLFactory.createDocumentML(f));
+		DocumentML docML = ElementMLFactory.createDocumentML(f);
+		
+		int placeholderIndex = Integer.MAX_VALUE;
+		if (docML.getChild(0).getChildrenCount() > LAZY_OPEN_THRESHOLD) {
+			placeholderIndex = EAGER_BLOCK_COUNT;
+		}
+		List<ElementSpec> specs = DocUtil.getElementSpecs(docML, placeholderIndex);
 		doc.createElementStructure(specs);
 		
 		if (log.isDebugEnabled()) {
@@ -372,6 +385,10 @@ public class WordMLEditorKit extends DefaultEditorKit {
 		c.removeMouseMotionListener(mouseListener);
 		c.removePropertyChangeListener(caretListener);
 		
+		if (this.plutextClient != null) {
+			this.plutextClient.stopPrefetching();
+			this.plutextClient.closeJournal();
+		}
 		this.plutextClient = null;
 	}
 
@@ -383,6 +400,17 @@ public class WordMLEditorKit extends DefaultEditorKit {
 		} finally {
 			doc.readUnlock();
 		}
+		this.plutextClient.startPrefetching();
+	}
+	
+	public void initPlutextClient(WordMLTextPane editor, PlutextWebService service) {
+		WordMLDocument doc = (WordMLDocument) editor.getDocument();
+		try {
+			doc.readLock();
+			this.plutextClient = new Mediator(editor, service);
+		} finally {
+			doc.readUnlock();
+		}
 	}
 	
 	public Mediator getPlutextClient() {
@@ -699,6 +727,9 @@ public class WordMLEditorKit extends DefaultEditorKit {
 	
 	private class ContentControlTracker implements javax.swing.event.CaretListener, Serializable {
 		private Position lastSdtBlockPosition;
+		//The view of the content control at lastSdtBlockPosition.
+		//Looked at first when looking for a content control view.
+		private SdtBlockView lastSdtBlockView;
 		
 	    public void caretUpdate(CaretEvent evt) {			
 	    	WordMLTextPane editor = (WordMLTextPane) evt.getSource();
@@ -712,8 +743,8 @@ public class WordMLEditorKit extends DefaultEditorKit {
 			if (start == end) {
 				selectSdtBlock(editor, start);
 			} else {
-	    		View startV = SwingUtil.getSdtBlockView(editor, start);
-	    		View endV = SwingUtil.getSdtBlockView(editor, end - 1);
+	    		View startV = getSdtBlockView(editor, start);
+	    		View endV = getSdtBlockView(editor, end - 1);
 	    		if (startV == endV && startV != null) {
 	    			selectSdtBlock(editor, start);
 	    		} else {
@@ -723,34 +754,37 @@ public class WordMLEditorKit extends DefaultEditorKit {
 	    }
 	    
 	    private void selectSdtBlock(WordMLTextPane editor, int pos) {
-			SdtBlockView currentSdt = SwingUtil.getSdtBlockView(editor, pos);
+			SdtBlockView currentSdt = getSdtBlockView(editor, pos);
 			
 			SdtBlockView lastSdt = null;
 			if (lastSdtBlockPosition != null) {
 				int offset = lastSdtBlockPosition.getOffset();
-				lastSdt = SwingUtil.getSdtBlockView(editor, offset);
+				lastSdt = getSdtBlockView(editor, offset);
 			}
 
 			if (currentSdt != lastSdt) {
 				if (lastSdt != null) {
 					lastSdt.setBorderVisible(false);
-					editor.getUI().damageRange(editor, lastSdt.getStartOffset(), lastSdt
-							.getEndOffset(), Position.Bias.Forward,
-							Position.Bias.Forward);
+					damageBorder(editor, lastSdt);
 					lastSdtBlockPosition = null;
+					lastSdtBlockView = null;
 				}
 			}
 			
 			if (currentSdt != null) {
-				currentSdt.setBorderVisible(true);
-				editor.getUI().damageRange(editor, currentSdt.getStartOffset(),
-						currentSdt.getEndOffset(), Position.Bias.Forward,
-						Position.Bias.Forward);
+				//Moving within the same content control 
+				//does not change its border.
+				if (!currentSdt.isBorderVisible()) {
+					currentSdt.setBorderVisible(true);
+					damageBorder(editor, currentSdt);
+				}
 				
 				try {
 					lastSdtBlockPosition = editor.getDocument().createPosition(pos);
+					lastSdtBlockView = currentSdt;
 				} catch (BadLocationException exc) {
 					lastSdtBlockPosition = null;// should not happen
+					lastSdtBlockView = null;
 				}
 			}			
 		}
@@ -758,26 +792,60 @@ public class WordMLEditorKit extends DefaultEditorKit {
 	    private void resetLastSdtBlockPosition(WordMLTextPane editor) {
 	    	if (lastSdtBlockPosition != null) {
 	    		int offset = lastSdtBlockPosition.getOffset();
-				SdtBlockView sdt = SwingUtil.getSdtBlockView(editor, offset);
+				SdtBlockView sdt = getSdtBlockView(editor, offset);
 				if (sdt != null) {
 					sdt.setBorderVisible(false);
-					editor.getUI().damageRange(
-						editor, 
-						sdt.getStartOffset(), 
-						sdt.getEndOffset(), 
-						Position.Bias.Forward,
-						Position.Bias.Forward);
+					damageBorder(editor, sdt);
 				}
 				lastSdtBlockPosition = null;
+				lastSdtBlockView = null;
 			}
-	    }	    
+	    }
+	    
+	    /**
+	     * Looks at lastSdtBlockView first.  Consecutive caret moves are
+	     * mostly within the same content control.
+	     */
+	    private SdtBlockView getSdtBlockView(WordMLTextPane editor, int offset) {
+	    	SdtBlockView sdt = lastSdtBlockView;
+	    	if (sdt != null
+	    		&& sdt.getStartOffset() <= offset
+	    		&& offset < sdt.getEndOffset()
+	    		&& isShowing(editor, sdt)) {
+	    		return sdt;
+	    	}
+	    	return SwingUtil.getSdtBlockView(editor, offset);
+	    }
+	    
+	    /**
+	     * @return true if 'v' is still in the view hierarchy of 'editor'.
+	     *         Views that have been replaced are no longer.
+	     */
+	    private boolean isShowing(WordMLTextPane editor, View v) {
+	    	View root = editor.getUI().getRootView(editor);
+	    	while (v != null && v != root) {
+	    		v = v.getParent();
+	    	}
+	    	return v == root;
+	    }
+	    
+	    private void damageBorder(WordMLTextPane editor, SdtBlockView sdt) {
+	    	if (!sdt.damageBorder(editor)) {
+	    		editor.getUI().damageRange(
+	    			editor, 
+	    			sdt.getStartOffset(), 
+	    			sdt.getEndOffset(), 
+	    			Position.Bias.Forward,
+	    			Position.Bias.Forward);
+	    	}
+	    }
 	}// ContentControlTracker inner class
 	
 	private class CaretListener implements javax.swing.event.CaretListener, PropertyChangeListener, Serializable {
 		private WordMLDocument.TextElement caretElement;
 		
 	    public void caretUpdate(CaretEvent evt) {			
-	    	WordMLTextPane editor = (WordMLTextPane) evt.getSource();
+	    	final WordMLTextPane editor = (WordMLTextPane) evt.getSource();
     		int start = Math.min(evt.getDot(), evt.getMark());
     		int end = Math.max(evt.getDot(), evt.getMark());
     		
@@ -785,7 +853,16 @@ public class WordMLEditorKit extends DefaultEditorKit {
 	    	try {
 	    		doc.readLock();
 	    		
-				if (start != end) {
+				if (start != end && doc.hasPlaceholders(start, end - start)) {
+					//Expand the selected placeholders once the read lock
+					//and any document notification are over.
+					//The selection is validated again then.
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							editor.expandSelectedPlaceholders();
+						}
+					});
+				} else if (start != end) {
 		    		//Validate selected area if any
 					new TextSelector(doc, start, end - start);
 				}
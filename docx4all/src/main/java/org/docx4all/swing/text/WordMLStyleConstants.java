@@ -89,6 +89,8 @@ public class WordMLStyleConstants {
 	public static final Object TcGridSpanAttribute = new WordMLStyleConstants("tcGridSpan");
 	public static final Object TcVMergeAttribute = new WordMLStyleConstants("tcVMerge");
 	
+	public static final Object PlaceholderLinesAttribute = new WordMLStyleConstants("placeholderLines");
+	
     public static final Object DefaultParagraphStyleNameAttribute = 
     	new WordMLStyleConstants("defaultParagraphStyleName");
     
@@ -147,6 +149,38 @@ public class WordMLStyleConstants {
         return (val != null) ? val.booleanValue() : false;
     }
 
+    /**
+     * Marks the attribute list as that of a placeholder element;
+     * ie: a body level element whose structure has not been built yet.
+     *
+     * @param a the attribute set
+     * @param lines the estimated number of lines the element will take
+     */
+    public static void setPlaceholderLines(MutableAttributeSet a, int lines) {
+        a.addAttribute(PlaceholderLinesAttribute, Integer.valueOf(lines));
+    }
+
+    /**
+	 * Gets the PlaceholderLines setting from the attribute list.
+	 * 
+	 * @param a the attribute set
+	 * @return the estimated number of lines; -1 if 'a' is not the attribute
+	 * list of a placeholder element.
+	 */
+    public static int getPlaceholderLines(AttributeSet a) {
+        Integer val = (Integer) a.getAttribute(PlaceholderLinesAttribute);
+        return (val != null) ? val.intValue() : -1;
+    }
+
+    /**
+     * @param a the attribute set
+     * @return true if 'a' itself, not its resolve parent, 
+     * has PlaceholderLines attribute.
+     */
+    public static boolean isPlaceholder(AttributeSet a) {
+    	return a.isDefined(PlaceholderLinesAttribute);
+    }
+
     /**
      * Sets the CTBorder attribute.
      *
@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.swing.text;
+
+import javax.swing.event.UndoableEditEvent;
+import javax.swing.event.UndoableEditListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.Document;
+import javax.swing.undo.UndoManager;
+import javax.swing.undo.UndoableEdit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The undo history of a WordMLDocument.
+ *
+ * Only BlockUndoableEdits are kept.  The DefaultDocumentEvents fired by
+ * DefaultStyledDocument are ignored: they do not undo the ElementML tree
+ * and would keep the elements they removed alive.
+ *
+ * The history is bounded by a byte budget rather than by a number of
+ * edits.  The oldest edits are discarded whenever the estimated size of
+ * the history exceeds the budget.  The budget can be set with the
+ * "docx4all.undoByteBudget" system property.
+ */
+public class WordMLUndoManager extends UndoManager {
+	private static Logger log = LoggerFactory.getLogger(WordMLUndoManager.class);
+
+	private final static long DEFAULT_BYTE_BUDGET = 8 * 1024 * 1024;
+	//The byte budget is what limits the history.
+	private final static int EDIT_LIMIT = 1000;
+
+	private long byteBudget;
+
+	/**
+	 * @param doc
+	 * @return the WordMLUndoManager listening to 'doc' if any;
+	 *         null, otherwise.
+	 */
+	public final static WordMLUndoManager getUndoManager(Document doc) {
+		if (doc instanceof AbstractDocument) {
+			for (UndoableEditListener listener:
+					((AbstractDocument) doc).getUndoableEditListeners()) {
+				if (listener instanceof WordMLUndoManager) {
+					return (WordMLUndoManager) listener;
+				}
+			}
+		}
+		return null;
+	}
+
+	public WordMLUndoManager() {
+		this(Long.getLong("docx4all.undoByteBudget", DEFAULT_BYTE_BUDGET));
+	}
+
+	public WordMLUndoManager(long byteBudget) {
+		super();
+		this.byteBudget = byteBudget;
+		setLimit(EDIT_LIMIT);
+	}
+
+	public synchronized long getByteBudget() {
+		return this.byteBudget;
+	}
+
+	public synchronized void setByteBudget(long byteBudget) {
+		this.byteBudget = byteBudget;
+		trimForBudget();
+	}
+
+	/**
+	 * @return the estimated number of bytes taken by the undo history
+	 */
+	public synchronized long getMemoryUsage() {
+		long usage = 0;
+		for (UndoableEdit edit: this.edits) {
+			usage += getEstimatedSize(edit);
+		}
+		return usage;
+	}
+
+	public void undoableEditHappened(UndoableEditEvent e) {
+		if (e.getEdit() instanceof BlockUndoableEdit) {
+			addEdit(e.getEdit());
+		}
+	}
+
+	public synchronized boolean addEdit(UndoableEdit anEdit) {
+		UndoableEdit previous = editToBeUndone();
+		if (previous != null && !previous.canUndo()) {
+			//The document has been changed without being recorded.
+			//None of the edits can be undone any more.
+			discardAllEdits();
+		}
+
+		boolean added = super.addEdit(anEdit);
+		trimForBudget();
+		return added;
+	}
+
+	private void trimForBudget() {
+		long usage = getMemoryUsage();
+		//The latest edit is kept even if it is over budget on its own
+		int count = 0;
+		while (usage > this.byteBudget && count < this.edits.size() - 1) {
+			usage -= getEstimatedSize(this.edits.elementAt(count));
+			count++;
+		}
+		if (count > 0) {
+			trimEdits(0, count - 1);
+
+			if (log.isDebugEnabled()) {
+				log.debug("trimForBudget(): Discarded " + count
+					+ " edit(s). Memory usage=" + usage);
+			}
+		}
+	}
+
+	private final static long getEstimatedSize(UndoableEdit edit) {
+		return (edit instanceof BlockUndoableEdit)
+			? ((BlockUndoableEdit) edit).getEstimatedSize()
+			: 0;
+	}
+
+}// WordMLUndoManager class
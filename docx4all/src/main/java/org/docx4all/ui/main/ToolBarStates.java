@@ -22,6 +22,8 @@ package org.docx4all.ui.main;
 import java.awt.datatransfer.Clipboard;
 import java.awt.datatransfer.FlavorEvent;
 import java.awt.datatransfer.FlavorListener;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.beans.PropertyChangeListener;
@@ -32,6 +34,7 @@ import javax.swing.JEditorPane;
 import javax.swing.JInternalFrame;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
 import javax.swing.event.DocumentEvent;
@@ -58,14 +61,16 @@ import org.docx4all.swing.text.WordMLDocument;
 import org.docx4all.swing.text.WordMLStyleConstants;
 import org.docx4all.util.DocUtil;
 import org.docx4all.util.SwingUtil;
-import org.docx4all.util.XmlUtil;
 import org.plutext.client.Mediator;
+import org.plutext.client.RemoteChangesEvent;
+import org.plutext.client.RemoteChangesListener;
 
 /**
  *	@author Jojada Tirtowidjojo - 30/11/2007
  */
 public class ToolBarStates extends InternalFrameAdapter 
-	implements FocusListener, DocumentListener, InputAttributeListener, FlavorListener, CaretListener {
+	implements FocusListener, DocumentListener, InputAttributeListener, FlavorListener, CaretListener,
+		RemoteChangesListener {
 	
 	private static Logger log = LoggerFactory.getLogger(ToolBarStates.class);
 	
@@ -104,12 +109,19 @@ public class ToolBarStates extends InternalFrameAdapter
 	
 	public final static String LOCAL_EDITS_ENABLED_PROPERTY_NAME  = "localEditsEnabled";
 	public final static String HAS_NON_CONFLICTING_CHANGES_PROPERTY_NAME = "hasNonConflictingChanges";
+	public final static String REMOTE_CHANGES_AVAILABLE_PROPERTY_NAME = "remoteChangesAvailable";
 	
 	public final static String REVISION_SELECTED_PROPERTY_NAME = "revisionSelected";
 	public final static String REMOTE_REVISION_IN_PARA_PROPERTY_NAME = "remoteRevisionInPara";
 	
+	//A caret event is followed by the more costly updates 
+	//no sooner than this many milliseconds.  Any other caret
+	//event in between is covered by the same updates.
+	private final static int DEFAULT_CARET_UPDATE_DELAY = 20;
+	
 	private final Hashtable<JInternalFrame, Boolean> _dirtyTable;
 	private final Hashtable<JEditorPane, Boolean> _localEditsTable;
+	private final Hashtable<JEditorPane, Boolean> _remoteChangesTable;
 	
 	private volatile JEditorPane _currentEditor, _editorInFocus;
 	private volatile String _fontFamily;
@@ -130,9 +142,12 @@ public class ToolBarStates extends InternalFrameAdapter
 	
 	private PropertyChangeSupport changeSupport = null;
 	
+	private final Timer _caretUpdateTimer;
+	
 	public ToolBarStates() {
 		_dirtyTable = new Hashtable<JInternalFrame, Boolean>(5);
 		_localEditsTable = new Hashtable<JEditorPane, Boolean>(5);
+		_remoteChangesTable = new Hashtable<JEditorPane, Boolean>(5);
 		_fontBold = false;
 		_fontItalic = false;
 		_fontUnderlined = false;
@@ -145,6 +160,18 @@ public class ToolBarStates extends InternalFrameAdapter
 		_isRemoteRevisionInPara = false;
 		_iframeNumbers = 0;
 		_alignment = -1;
+		
+		_caretUpdateTimer = 
+			new Timer(
+				Integer.getInteger(
+					"docx4all.caretUpdateDelay", 
+					DEFAULT_CARET_UPDATE_DELAY).intValue(),
+				new ActionListener() {
+					public void actionPerformed(ActionEvent e) {
+						updateCaretStates();
+					}
+				});
+		_caretUpdateTimer.setRepeats(false);
 	}
 	
 	public boolean isDocumentDirty() {
@@ -306,6 +333,43 @@ public class ToolBarStates extends InternalFrameAdapter
 		}
 	}
 	
+	public boolean isRemoteChangesAvailable() {
+		return isRemoteChangesAvailable(getCurrentEditor());
+	}
+	
+	public boolean isRemoteChangesAvailable(JEditorPane editor) {
+		Boolean isAvailable = null;
+		if (editor != null) {
+			isAvailable = _remoteChangesTable.get(editor);
+		}
+		return (isAvailable == null) ? false : isAvailable.booleanValue();
+	}
+	
+	public void setRemoteChangesAvailable(JEditorPane editor, boolean available) {
+		Boolean isAvailable = Boolean.valueOf(isRemoteChangesAvailable(editor));
+		if (log.isDebugEnabled()) {
+			log.debug("setRemoteChangesAvailable():"
+				+ " isAvailable = " + isAvailable 
+				+ " param = " + available);
+		}
+		
+		Boolean newAvailable = Boolean.valueOf(available);
+		if (available) {
+			_remoteChangesTable.put(editor, Boolean.TRUE);
+		} else {
+			_remoteChangesTable.remove(editor);
+		}
+		
+		if (isAvailable == newAvailable) {
+			//no change
+			return;
+		}
+		
+		if (editor == getCurrentEditor()) {
+			firePropertyChange(REMOTE_CHANGES_AVAILABLE_PROPERTY_NAME, isAvailable, newAvailable);
+		}
+	}
+	
 	public boolean hasNonConflictingChanges() {
 		return (_hasNonConflictingChanges == null) ? false : _hasNonConflictingChanges.booleanValue();
 	}
@@ -632,6 +696,7 @@ public class ToolBarStates extends InternalFrameAdapter
 		//Hold the state of current editor.
 		Boolean currentDirty = isDocumentDirty();
 		Boolean currentLocalEditsEnabled = isLocalEditsEnabled();
+		Boolean currentRemoteChanges = isRemoteChangesAvailable();
 		
 		// Before calling setDocumentDirty(iframe, newDirty) below
 		// we need to satisfy its precondition first;
@@ -644,6 +709,14 @@ public class ToolBarStates extends InternalFrameAdapter
 		_dirtyTable.put(iframe, currentDirty);
 		setDocumentDirty(iframe, newDirty);
 		
+		Boolean newRemoteChanges = Boolean.valueOf(isRemoteChangesAvailable(editor));
+		if (currentRemoteChanges != newRemoteChanges) {
+			firePropertyChange(
+				REMOTE_CHANGES_AVAILABLE_PROPERTY_NAME, 
+				currentRemoteChanges, 
+				newRemoteChanges);
+		}
+		
     	setFormatInfo(editor);
     	
     	int start = editor.getSelectionStart();
@@ -887,6 +960,11 @@ public class ToolBarStates extends InternalFrameAdapter
 	    setAlignment(StyleConstants.getAlignment(attrs));
     }
     
+    private boolean isExpandingPlaceholders(DocumentEvent e) {
+    	return (e.getDocument() instanceof WordMLDocument
+    			&& ((WordMLDocument) e.getDocument()).isExpandingPlaceholders());
+    }
+    
     private JInternalFrame getInternalFrame(JEditorPane editor) {
 		return (JInternalFrame) SwingUtilities.getAncestorOfClass(
 				JInternalFrame.class, editor);
@@ -894,14 +972,9 @@ public class ToolBarStates extends InternalFrameAdapter
     
     private void setRemoteRevision(WordMLTextPane editor) {
     	WordMLDocument doc = (WordMLDocument) editor.getDocument();
-    	DocumentElement elem = 
-    		(DocumentElement) 
-    			doc.getParagraphMLElement(
-    				editor.getCaretPosition(), 
-    				false);
     	boolean hasRemoteRevision = 
-    		XmlUtil.containsTrackedChanges(
-    				elem.getElementML().getDocxObject());
+    		doc.getTrackedChangesIndex().hasTrackedChanges(
+    			editor.getCaretPosition());
 	    setRemoteRevisionInPara(hasRemoteRevision);
 
 	    Mediator client = editor.getWordMLEditorKit().getPlutextClient();
@@ -980,6 +1053,10 @@ public class ToolBarStates extends InternalFrameAdapter
     	if (log.isDebugEnabled()) {
     		log.debug("insertUpdate():");
     	}
+    	if (isExpandingPlaceholders(e)) {
+    		//Expanding placeholders does not change the content.
+    		return;
+    	}
     	if (_currentEditor != null 
         		&& _currentEditor.getDocument() == e.getDocument()) {
     		//Set a flag that signifies Editor View is not synchronised with Source View.
@@ -1013,6 +1090,10 @@ public class ToolBarStates extends InternalFrameAdapter
     	if (log.isDebugEnabled()) {
     		log.debug("removeUpdate():");
     	}
+    	if (isExpandingPlaceholders(e)) {
+    		//Expanding placeholders does not change the content.
+    		return;
+    	}
     	if (_currentEditor != null 
         		&& _currentEditor.getDocument() == e.getDocument()) {
     		//Set a flag that signifies Editor View is not synchronised with Source View.
@@ -1044,6 +1125,10 @@ public class ToolBarStates extends InternalFrameAdapter
     	if (log.isDebugEnabled()) {
     		log.debug("changedUpdate():");
     	}
+    	if (isExpandingPlaceholders(e)) {
+    		//Expanding placeholders does not change the content.
+    		return;
+    	}
     	if (_currentEditor != null 
     		&& _currentEditor.getDocument() == e.getDocument()) {
     		//Set a flag that signifies Editor View is not synchronised with Source View.
@@ -1090,6 +1175,11 @@ public class ToolBarStates extends InternalFrameAdapter
     	
 		setLocalEditsEnabled(iframe, false);
 		
+		JEditorPane view = SwingUtil.getWordMLTextPane(iframe);
+		if (view != null) {
+			setRemoteChangesAvailable(view, false);
+		}
+		
     	Integer oldNumbers = new Integer(_iframeNumbers);
     	Integer newNumbers = new Integer(--_iframeNumbers);
     	firePropertyChange(IFRAME_NUMBERS_PROPERTY_NAME, oldNumbers, newNumbers);
@@ -1148,23 +1238,66 @@ public class ToolBarStates extends InternalFrameAdapter
          	setCopyEnabled(hasSelection);
         	setCutEnabled(hasSelection);
         	
-        	if (_currentEditor instanceof WordMLTextPane) {
-        		WordMLDocument doc = (WordMLDocument) _currentEditor.getDocument();
-       			
-        		hasSelection = 
-        			hasSelection
-        				&& start == DocUtil.getRevisionStart(doc, start, SwingConstants.NEXT)
-        				&& end == DocUtil.getRevisionEnd(doc, start, SwingConstants.NEXT);
-            	setRevisionSelected(hasSelection);
-            	
-            	setRemoteRevision((WordMLTextPane) _currentEditor);
-            	
-        	} else {
-            	setRevisionSelected(Boolean.FALSE);	    
+        	//The revision states and the CARET_UPDATE_PROPERTY_NAME 
+        	//listeners are updated at most once per timer delay.
+        	//Holding down an arrow key therefore does not queue up 
+        	//an update for every caret move.
+        	if (!_caretUpdateTimer.isRunning()) {
+        		_caretUpdateTimer.start();
         	}
+    	}
+	}
+	
+	/**
+	 * Updates the states that depend on the caret of the current editor
+	 * as it is now, however many caret events there have been since
+	 * the last update.
+	 */
+	private void updateCaretStates() {
+		JEditorPane editor = _currentEditor;
+		if (editor == null) {
+			return;
+		}
+		
+		int start = editor.getSelectionStart();
+		int end = editor.getSelectionEnd();
+    	boolean hasSelection = (start != end);
+    	
+    	if (editor instanceof WordMLTextPane) {
+    		WordMLDocument doc = (WordMLDocument) editor.getDocument();
+   			
+    		//A revision can only start at 'start' if the paragraph 
+    		//there has tracked changes.  Otherwise there is no need 
+    		//to look for revisions along the document.
+    		hasSelection = 
+    			hasSelection
+    				&& doc.getTrackedChangesIndex().hasTrackedChanges(start)
+    				&& start == DocUtil.getRevisionStart(doc, start, SwingConstants.NEXT)
+    				&& end == DocUtil.getRevisionEnd(doc, start, SwingConstants.NEXT);
+        	setRevisionSelected(hasSelection);
+        	
+        	setRemoteRevision((WordMLTextPane) editor);
         	
-    		firePropertyChange(CARET_UPDATE_PROPERTY_NAME, null, e);
+    	} else {
+        	setRevisionSelected(Boolean.FALSE);	    
     	}
+    	
+		firePropertyChange(
+			CARET_UPDATE_PROPERTY_NAME, 
+			null, 
+			new CaretEventImpl(editor));
+	}
+	
+	//=============================================
+	//RemoteChangesListener Implementation
+	//=============================================
+	public void remoteChangesAvailable(RemoteChangesEvent e) {
+		final JEditorPane editor = e.getMediator().getWordMLTextPane();
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				setRemoteChangesAvailable(editor, true);
+			}
+		});
 	}
 	
 	private static class CaretEventImpl extends CaretEvent {
@@ -33,6 +33,8 @@ import java.awt.datatransfer.Clipboard;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.event.MouseMotionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.beans.PropertyVetoException;
 import java.io.File;
 import java.util.ArrayList;
@@ -51,6 +53,7 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JTabbedPane;
 import javax.swing.SwingUtilities;
 import javax.swing.WindowConstants;
@@ -85,9 +88,11 @@ import org.docx4all.script.FxScriptUIHelper;
 import org.docx4all.swing.WordMLTextPane;
 import org.docx4all.swing.text.DocumentElement;
 import org.docx4all.swing.text.FontManager;
+import org.docx4all.swing.text.StreamingDocumentLoader;
 import org.docx4all.swing.text.WordMLDocument;
 import org.docx4all.swing.text.WordMLDocumentFilter;
 import org.docx4all.swing.text.WordMLEditorKit;
+import org.docx4all.swing.text.WordMLUndoManager;
 import org.docx4all.ui.menu.ContentControlMenu;
 import org.docx4all.ui.menu.EditMenu;
 import org.docx4all.ui.menu.FileMenu;
@@ -333,7 +338,7 @@ public class WordMLEditor extends SingleFrameApplication {
         		northPane.addMouseMotionListener(_titleBarMouseListener);
         	}
         	
-        	JEditorPane editorView = createEditorView(f);
+        	JEditorPane editorView = createEditorView(f, iframe);
         	JPanel panel = FxScriptUIHelper.getInstance().createEditorPanel(editorView);
         	
         	iframe.getContentPane().add(panel);
@@ -658,9 +663,7 @@ public class WordMLEditor extends SingleFrameApplication {
 		return theView;
     }
     
-    private JEditorPane createEditorView(FileObject f) {
-    	String fileUri = f.getName().getURI();
-    	
+    private JEditorPane createEditorView(FileObject f, JInternalFrame iframe) {
     	WordMLTextPane editorView = new WordMLTextPane();
     	editorView.addFocusListener(_toolbarStates);
     	editorView.addCaretListener(_toolbarStates);
@@ -669,6 +672,66 @@ public class WordMLEditor extends SingleFrameApplication {
 		WordMLEditorKit editorKit = (WordMLEditorKit) editorView.getEditorKit();
 		editorKit.addInputAttributeListener(_toolbarStates);
 		
+		boolean canStream = false;
+		try {
+			canStream = f.exists() && StreamingDocumentLoader.canStream(f);
+		} catch (FileSystemException exc) {
+			;//read it in one go
+		}
+		
+		if (canStream) {
+			streamDocument(f, editorView, iframe);
+		} else {
+			initEditorDocument(editorView, readDocument(f, editorKit), f);
+		}
+		
+    	return editorView;
+    }
+    
+    /**
+     * Displays 'f' while it is being loaded by a StreamingDocumentLoader.
+     * The editor is read only until loading finishes.
+     */
+    private void streamDocument(
+    	final FileObject f, 
+    	final WordMLTextPane editorView, 
+    	final JInternalFrame iframe) {
+    	
+    	final JProgressBar progressBar = new JProgressBar(0, 100);
+    	iframe.getContentPane().add(progressBar, BorderLayout.SOUTH);
+    	
+    	final WordMLEditorKit editorKit = (WordMLEditorKit) editorView.getEditorKit();
+    	WordMLDocument doc = (WordMLDocument) editorKit.createDefaultDocument();
+    	doc.setDocumentFilter(new WordMLDocumentFilter());
+    	editorView.setDocument(doc);
+    	editorView.setEditable(false);
+    	
+    	StreamingDocumentLoader loader = new StreamingDocumentLoader(f, doc) {
+    		protected void loaded(Exception failure) {
+    			iframe.getContentPane().remove(progressBar);
+    			iframe.getContentPane().validate();
+    			
+    			WordMLDocument doc = getDocument();
+    			if (failure != null) {
+    				//Fall back to reading the whole file in one go
+    				doc = readDocument(f, editorKit);
+    			}
+    			
+    			editorView.setEditable(true);
+    			initEditorDocument(editorView, doc, f);
+    		}
+    	};
+    	loader.addPropertyChangeListener(new PropertyChangeListener() {
+    		public void propertyChange(PropertyChangeEvent evt) {
+    			if ("progress".equals(evt.getPropertyName())) {
+    				progressBar.setValue((Integer) evt.getNewValue());
+    			}
+    		}
+    	});
+    	loader.execute();
+    }
+    
+    private WordMLDocument readDocument(FileObject f, WordMLEditorKit editorKit) {
     	WordMLDocument doc = null;
     	
     	try {
@@ -683,7 +746,7 @@ public class WordMLEditor extends SingleFrameApplication {
 			StringBuffer msg = new StringBuffer();
 			msg.append(rm.getString(Constants.INIT_EDITOR_VIEW_IO_ERROR_MESSAGE));
 			msg.append(Constants.NEWLINE);
-			msg.append(VFSUtils.getFriendlyName(fileUri));
+			msg.append(VFSUtils.getFriendlyName(f.getName().getURI()));
 			showMessageDialog(title, msg.toString(), JOptionPane.ERROR_MESSAGE);
 			doc = null;
 		}
@@ -692,17 +755,23 @@ public class WordMLEditor extends SingleFrameApplication {
     		doc = (WordMLDocument) editorKit.createDefaultDocument();
     	}
     	
-		doc.putProperty(WordMLDocument.FILE_PATH_PROPERTY, fileUri);
+    	return doc;
+    }
+    
+    private void initEditorDocument(WordMLTextPane editorView, WordMLDocument doc, FileObject f) {
+    	WordMLEditorKit editorKit = (WordMLEditorKit) editorView.getEditorKit();
+    	
+		doc.putProperty(WordMLDocument.FILE_PATH_PROPERTY, f.getName().getURI());
     	doc.addDocumentListener(_toolbarStates);
+    	doc.addUndoableEditListener(new WordMLUndoManager());
     	doc.setDocumentFilter(new WordMLDocumentFilter());
     	editorView.setDocument(doc);
     	editorView.putClientProperty(Constants.LOCAL_VIEWS_SYNCHRONIZED_FLAG, Boolean.TRUE);
     	
     	if (DocUtil.isSharedDocument(doc)) {
     		editorKit.initPlutextClient(editorView);
+    		editorKit.getPlutextClient().addRemoteChangesListener(_toolbarStates);
     	}
-    	
-    	return editorView;
     }
     
     JComponent createMainPanel() {
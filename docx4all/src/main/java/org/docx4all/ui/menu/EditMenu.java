@@ -21,9 +21,11 @@ package org.docx4all.ui.menu;
 
 import java.awt.event.ActionEvent;
 
+import javax.swing.JEditorPane;
 import javax.swing.JMenuItem;
 import javax.swing.text.DefaultEditorKit;
 
+import org.docx4all.swing.text.WordMLUndoManager;
 import org.docx4all.ui.main.ToolBarStates;
 import org.docx4all.ui.main.WordMLEditor;
 import org.jdesktop.application.Action;
@@ -61,6 +63,16 @@ public class EditMenu extends UIMenu {
 	//in .properties file and get an Action object out of 
 	//Spring Application Framework
 	
+	/**
+	 * The action name of Undo edit menu
+	 */
+	public final static String UNDO_ACTION_NAME = "undo";
+	
+	/**
+	 * The action name of Redo edit menu
+	 */
+	public final static String REDO_ACTION_NAME = "redo";
+	
 	/**
 	 * The action name of Cut edit menu
 	 */
@@ -77,6 +89,9 @@ public class EditMenu extends UIMenu {
 	public final static String PASTE_ACTION_NAME = "paste";
 	
 	private static final String[] _menuItemActionNames = {
+		UNDO_ACTION_NAME,
+		REDO_ACTION_NAME,
+		SEPARATOR_CODE,
 		CUT_ACTION_NAME,
 		COPY_ACTION_NAME,
 		PASTE_ACTION_NAME
@@ -126,6 +141,20 @@ public class EditMenu extends UIMenu {
 		return theItem;
     }
     
+	@Action public void undo(ActionEvent evt) {
+		WordMLUndoManager undoManager = getUndoManager();
+		if (undoManager != null && undoManager.canUndo()) {
+			undoManager.undo();
+		}
+	}
+	
+	@Action public void redo(ActionEvent evt) {
+		WordMLUndoManager undoManager = getUndoManager();
+		if (undoManager != null && undoManager.canRedo()) {
+			undoManager.redo();
+		}
+	}
+	
 	@Action public void cut(ActionEvent evt) {
 		DefaultEditorKit.CutAction action = 
 			new DefaultEditorKit.CutAction();
@@ -144,6 +173,12 @@ public class EditMenu extends UIMenu {
 		action.actionPerformed(evt);
 	}
 	
+	private WordMLUndoManager getUndoManager() {
+		WordMLEditor editor = WordMLEditor.getInstance(WordMLEditor.class);
+		JEditorPane pane = editor.getCurrentEditor();
+		return (pane == null) ? null : WordMLUndoManager.getUndoManager(pane.getDocument());
+	}
+	
 }// EditMenu class
 
 
@@ -359,6 +359,8 @@ public class FileMenu extends UIMenu {
 
             	    	if (DocUtil.isSharedDocument(doc)) {
             	    		wmlTextPane.getWordMLEditorKit().initPlutextClient(wmlTextPane);
+            	    		wmlTextPane.getWordMLEditorKit().getPlutextClient()
+            	    			.addRemoteChangesListener(editor.getToolbarStates());
             	    	}
 	        		} catch (IOException exc) {
 	        			exc.printStackTrace();
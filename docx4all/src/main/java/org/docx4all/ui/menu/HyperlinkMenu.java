@@ -142,6 +142,7 @@ public class HyperlinkMenu extends UIMenu {
         WordMLTextPane textpane = (WordMLTextPane) editor.getCurrentEditor();
         WordMLDocument doc = (WordMLDocument) textpane.getDocument();
         textpane.saveCaretText();
+        textpane.expandSelectedPlaceholders();
         
 		HyperlinkML linkML = ElementMLFactory.createEmptyHyperlinkML();
 		String temp = textpane.getSelectedText();
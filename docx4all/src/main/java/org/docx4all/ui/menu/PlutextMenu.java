@@ -19,6 +19,10 @@
 
 package org.docx4all.ui.menu;
 
+import java.awt.Font;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
 import javax.swing.JInternalFrame;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
@@ -170,6 +174,9 @@ public class PlutextMenu extends UIMenu {
     		toolbarStates.addPropertyChangeListener(
     				ToolBarStates.DOC_SHARED_PROPERTY_NAME, 
     				new EnableOnEqual(theItem, Boolean.TRUE));
+    		toolbarStates.addPropertyChangeListener(
+    				ToolBarStates.REMOTE_CHANGES_AVAILABLE_PROPERTY_NAME, 
+    				new RemoteChangesIndicator(theItem));
     	} else if (COMMIT_LOCAL_EDITS_ACTION_NAME.equals(actionName)) {
     		theItem.setEnabled(false);
     		toolbarStates.addPropertyChangeListener(
@@ -332,6 +339,31 @@ public class PlutextMenu extends UIMenu {
     	return success;
  	}
 	
+    /**
+     * Shows the menu item in bold while there are
+     * remote changes waiting to be fetched.
+     */
+    private static class RemoteChangesIndicator implements PropertyChangeListener {
+    	private JMenuItem _menuItem;
+    	private Font _plainFont;
+    	
+    	RemoteChangesIndicator(JMenuItem item) {
+    		_menuItem = item;
+    		_plainFont = item.getFont();
+    	}
+    	
+        public void propertyChange(PropertyChangeEvent evt) {
+        	if (_plainFont == null) {
+        		_plainFont = _menuItem.getFont();
+        	}
+        	if (Boolean.TRUE.equals(evt.getNewValue())) {
+        		_menuItem.setFont(_plainFont.deriveFont(Font.BOLD));
+        	} else {
+        		_menuItem.setFont(_plainFont);
+        	}
+        }
+    } //RemoteChangesIndicator inner class
+    
 }// PlutextMenu class
 
 
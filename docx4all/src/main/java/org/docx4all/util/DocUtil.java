@@ -52,6 +52,7 @@ import org.docx4all.swing.WordMLTextPane;
 import org.docx4all.swing.text.BadSelectionException;
 import org.docx4all.swing.text.DocumentElement;
 import org.docx4all.swing.text.ElementMLIteratorCallback;
+import org.docx4all.swing.text.ParallelElementSpecBuilder;
 import org.docx4all.swing.text.SdtBlockInfo;
 import org.docx4all.swing.text.StyleSheet;
 import org.docx4all.swing.text.TextSelector;
@@ -1123,8 +1124,26 @@ public class DocUtil {
 	}
 
 	public final static List<ElementSpec> getElementSpecs(ElementML elem) {
+		return getElementSpecs(elem, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Gets the ElementSpecs of 'elem' whose body level elements,
+	 * starting from 'placeholderIndex', are represented by placeholders.
+	 * 
+	 * Large bodies are done in parallel.
+	 * 
+	 * @see ElementMLIteratorCallback#setPlaceholderIndex(int)
+	 * @see ParallelElementSpecBuilder
+	 */
+	public final static List<ElementSpec> getElementSpecs(ElementML elem, int placeholderIndex) {
+		if (ParallelElementSpecBuilder.isWorthIt(elem)) {
+			return ParallelElementSpecBuilder.getElementSpecs(elem, placeholderIndex);
+		}
+		
 		ElementMLIterator parser = new ElementMLIterator(elem);
 		ElementMLIteratorCallback result = new ElementMLIteratorCallback();
+		result.setPlaceholderIndex(placeholderIndex);
 		parser.cruise(result);
 		return result.getElementSpecs();
 	}
@@ -1248,6 +1267,9 @@ public class DocUtil {
 	public final static List<Integer> getOffsetsOfParagraphSignature(WordMLDocument doc) {
 		List<Integer> positions = new ArrayList<Integer>();
 		
+		//Search the real text content of placeholders
+		doc.expandPlaceholders(0, doc.getLength());
+		
 		try {
 			doc.readLock();
 			
@@ -1281,6 +1303,9 @@ public class DocUtil {
 		
 		List<Integer> thePositions = new ArrayList<Integer>();
 		
+		//Placeholders do not carry the attributes of their elements
+		doc.expandPlaceholders(0, doc.getLength());
+		
 		Style defaultStyle = 
 			doc.getStyleSheet().getStyle(StyleSheet.DEFAULT_STYLE);
 		String defaultPStyle = 
@@ -21,6 +21,7 @@ package org.docx4all.util;
 
 import java.awt.Component;
 import java.awt.Container;
+import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.event.ActionEvent;
@@ -36,6 +37,7 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.plaf.basic.BasicTextUI;
+import javax.swing.text.JTextComponent;
 import javax.swing.text.Position;
 import javax.swing.text.View;
 
@@ -187,6 +189,46 @@ public class SwingUtil {
 		return (v instanceof SdtBlockView) ? (SdtBlockView) v : null;
     }
 
+    /**
+     * Works out the allocation of view 'v' from those of its ancestors.
+     * 
+     * @param v a view in the view hierarchy of 'c'
+     * @param c the component hosting 'v'
+     * @return the allocation of 'v' in the coordinates of 'c';
+     *         null if it cannot be worked out.
+     */
+    public final static Shape getAllocation(View v, JTextComponent c) {
+    	View parent = v.getParent();
+    	if (parent == null) {
+    		//The root view is given what is inside the insets of 'c'.
+    		//See: BasicTextUI.getVisibleEditorRect()
+    		Insets insets = c.getInsets();
+    		Rectangle theAlloc = 
+    			new Rectangle(
+    				insets.left, 
+    				insets.top, 
+    				c.getWidth() - insets.left - insets.right,
+    				c.getHeight() - insets.top - insets.bottom);
+    		return (theAlloc.width > 0 && theAlloc.height > 0) ? theAlloc : null;
+    	}
+    	
+    	Shape alloc = getAllocation(parent, c);
+    	if (alloc == null) {
+    		return null;
+    	}
+    	
+    	int idx = parent.getViewIndex(v.getStartOffset(), Position.Bias.Forward);
+    	if (idx < 0 || idx >= parent.getViewCount() || parent.getView(idx) != v) {
+    		idx = -1;
+    		for (int i=0; i < parent.getViewCount() && idx == -1; i++) {
+    			if (parent.getView(i) == v) {
+    				idx = i;
+    			}
+    		}
+    	}
+    	return (idx == -1) ? null : parent.getChildAllocation(idx, alloc);
+    }
+
 	private SwingUtil() {
 		;//uninstantiable
 	}
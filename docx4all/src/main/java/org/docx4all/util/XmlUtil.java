@@ -51,6 +51,7 @@ import org.docx4all.xml.ParagraphML;
 import org.docx4all.xml.PropertiesContainerML;
 import org.docx4all.xml.RunContentML;
 import org.docx4all.xml.RunML;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.XmlUtils;
 import org.docx4j.convert.out.flatOpcXml.FlatOpcXmlCreator;
 import org.docx4j.diff.Differencer;
@@ -303,7 +304,7 @@ public class XmlUtil {
 				documentPart = new org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart();
 			Object jaxbElement;
 			if (copyMainDocumentPart) {
-				jaxbElement = org.docx4j.XmlUtils.deepCopy(srcDocumentPart.getJaxbElement());
+				jaxbElement = WordMLCopier.copy(srcDocumentPart.getJaxbElement());
 			} else if (isSharedDocumentPackage(source)) {
 				jaxbElement = ObjectFactory.createEmptySharedDocument();
 			} else {
@@ -650,7 +651,7 @@ public class XmlUtil {
      */
     public final static List<SdtBlock> chunk(SdtBlock cc)
     {
-    	SdtBlock copy = (SdtBlock) XmlUtils.deepCopy(cc);
+    	SdtBlock copy = (SdtBlock) WordMLCopier.copy(cc);
     	
     	List<SdtBlock> theChunks = new ArrayList<SdtBlock>();
 		theChunks.add(copy);
@@ -704,7 +705,7 @@ public class XmlUtil {
 		Changeset changeset) throws Exception {
 
 		org.docx4j.wml.SdtBlock theSdt = ObjectFactory.createSdtBlock();
-		theSdt.setSdtPr((org.docx4j.wml.SdtPr) XmlUtils.deepCopy(leftSdt
+		theSdt.setSdtPr((org.docx4j.wml.SdtPr) WordMLCopier.copy(leftSdt
 				.getSdtPr()));
 
 		// javax.xml.bind.util.JAXBResult result =
@@ -20,7 +20,6 @@
 package org.docx4all.xml;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -30,7 +29,6 @@ import javax.xml.namespace.QName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 
 /**
@@ -52,7 +50,7 @@ public class BodyML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		return new BodyML(obj, this.isDummy);
 	}
@@ -154,16 +152,17 @@ public class BodyML extends ElementML {
 		
 		List <Object> bodyChildren = body.getEGBlockLevelElts();
 		if (!bodyChildren.isEmpty()) {
-			this.children = new ArrayList<ElementML>(bodyChildren.size());
+			this.children = new ElementMLList(this, bodyChildren.size());
 			
-			ElementML ml = null;
 			for (Object obj : bodyChildren) {
-				Object value = JAXBIntrospector.getValue(obj);
+				ElementML ml = createChildML(obj);
+				if (ml == null) {
+					continue;
+				}
 				
-				if (value instanceof org.docx4j.wml.SdtBlock) {
-					SdtBlockML sdt = new SdtBlockML(obj);
+				if (ml instanceof SdtBlockML) {
+					SdtBlockML sdt = (SdtBlockML) ml;
 					String id = sdt.getSdtProperties().getPlutextId();
-					System.out.println(id); // 1,033,453,472
 					if (id != null) {
 						
 						if (sdtBlockIdSet==null) {
@@ -174,37 +173,48 @@ public class BodyML extends ElementML {
 						sdtBlockIdSet.add(
 							BigInteger.valueOf(Long.valueOf(id)));
 					}
-					ml = sdt;
-					ml.setParent(BodyML.this);
-					this.children.add(ml);
-					
-				} else if (value instanceof org.docx4j.wml.Tbl) {
-					ml = new TableML(obj);
-					ml.setParent(BodyML.this);
-					this.children.add(ml);
-					
-				} else if (value instanceof org.docx4j.wml.CTMarkupRange) {
-					//suppress <w:bookmarkStart> and <w:bookmarkEnd>
-					JAXBIntrospector inspector = Context.jc.createJAXBIntrospector();
-					QName name = inspector.getElementName(obj);
-					if (name != null 
-						&& (name.getLocalPart() == "bookmarkStart" 
-							|| name.getLocalPart() == "bookmarkEnd")) {
-						//suppress
-					} else {
-						ml = new ParagraphML(obj);
-						ml.setParent(BodyML.this);
-						this.children.add(ml);
-					}
-				} else {
-					ml = new ParagraphML(obj);
-					ml.setParent(BodyML.this);
-					this.children.add(ml);
 				}
+				ml.setParent(BodyML.this);
+				this.children.add(ml);
 			}
 		}
 	}// initChildren()
 	
+	/**
+	 * Creates the ElementML of a body level docx object.
+	 * 
+	 * @param obj a body level docx object
+	 * @return null if 'obj' is not represented by any ElementML;
+	 * eg: &lt;w:bookmarkStart&gt; and &lt;w:bookmarkEnd&gt;
+	 */
+	public final static ElementML createChildML(Object obj) {
+		ElementML ml = null;
+		
+		Object value = JAXBIntrospector.getValue(obj);
+		if (value instanceof org.docx4j.wml.SdtBlock) {
+			ml = new SdtBlockML(obj);
+			
+		} else if (value instanceof org.docx4j.wml.Tbl) {
+			ml = new TableML(obj);
+			
+		} else if (value instanceof org.docx4j.wml.CTMarkupRange) {
+			//suppress <w:bookmarkStart> and <w:bookmarkEnd>
+			JAXBIntrospector inspector = Context.jc.createJAXBIntrospector();
+			QName name = inspector.getElementName(obj);
+			if (name != null 
+				&& (name.getLocalPart() == "bookmarkStart" 
+					|| name.getLocalPart() == "bookmarkEnd")) {
+				//suppress
+			} else {
+				ml = new ParagraphML(obj);
+			}
+		} else {
+			ml = new ParagraphML(obj);
+		}
+		
+		return ml;
+	}
+	
 
 }// BodyML class
 
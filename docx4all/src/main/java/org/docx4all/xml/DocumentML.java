@@ -27,7 +27,6 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4all.swing.text.StyleSheet;
-import org.docx4j.XmlUtils;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 
@@ -65,7 +64,7 @@ public class DocumentML extends ElementML {
 				this.docPackage.getMainDocumentPart();			
 			org.docx4j.wml.Document doc = 
 				(org.docx4j.wml.Document)
-				XmlUtils.deepCopy(documentPart.getJaxbElement());
+				WordMLCopier.copy(documentPart.getJaxbElement());
 			clonedPackage = ObjectFactory.createDocumentPackage(doc);
 		}
 		
@@ -104,7 +103,7 @@ public class DocumentML extends ElementML {
 		}
 		
 		if (this.children == null) {
-			this.children = new ArrayList<ElementML>();
+			this.children = new ElementMLList(this);
 		}
 		
 		this.children.add(child);
@@ -177,7 +176,7 @@ public class DocumentML extends ElementML {
 		}
 		
 		if (doc.getBody() != null) {
-			this.children = new ArrayList<ElementML>(1);
+			this.children = new ElementMLList(this, 1);
 			BodyML bodyML = new BodyML(doc.getBody());
 			bodyML.setParent(DocumentML.this);
 			this.children.add(bodyML);
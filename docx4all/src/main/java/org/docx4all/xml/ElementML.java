@@ -20,7 +20,6 @@
 package org.docx4all.xml;
 
 import java.lang.reflect.InvocationTargetException;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.namespace.QName;
@@ -51,6 +50,10 @@ public abstract class ElementML implements Cloneable {
 	protected ElementML parent, godParent;
 	protected List<ElementML> children;
 	
+	//Position in the children list of parent.
+	//Maintained by ElementMLList.
+	int childIndex = -1;
+	
 	public ElementML() {
 		;//do nothing
 	}
@@ -182,7 +185,7 @@ public abstract class ElementML implements Cloneable {
 		if (this.children == null) {
 			if (idx == 0) {
 				//Add to this ElementML's children
-				this.children = new ArrayList<ElementML>();
+				this.children = new ElementMLList(this);
 				this.children.add(child);
 				
 				if (adopt) {
@@ -222,7 +225,7 @@ public abstract class ElementML implements Cloneable {
 						for (int i = idx - 1; 0 <= i && siblingIndex == -1; i--) {
 							Object obj = ((ElementML) this.children.get(i))
 									.getDocxObject();
-							siblingIndex = list.indexOf(obj);
+							siblingIndex = indexOfDocxChild(list, obj, i);
 						}
 					}
 
@@ -236,7 +239,7 @@ public abstract class ElementML implements Cloneable {
 								&& siblingIndex == -1; i++) {
 							Object obj = ((ElementML) this.children.get(i))
 									.getDocxObject();
-							siblingIndex = list.indexOf(obj);
+							siblingIndex = indexOfDocxChild(list, obj, i);
 						}
 
 						if (siblingIndex > -1) {
@@ -274,20 +277,60 @@ public abstract class ElementML implements Cloneable {
 			}
 		} else {
 			//Delete from this ElementML's children
-			this.children.remove(child);
+			int idx = this.children.indexOf(child);
+			if (idx > -1) {
+				this.children.remove(idx);
+			}
 			child.setParent(null);
 			
 			//delete from Docx structure
 			if (getDocxObject() != null && child.getDocxObject() != null) {
 				List<Object> list = getDocxChildren();
 				if (list != null) {
-					list.remove(child.getDocxObject());
+					int docxIdx = indexOfDocxChild(list, child.getDocxObject(), idx);
+					if (docxIdx > -1) {
+						list.remove(docxIdx);
+					}
 				}
 				child.setDocxParent(null);
 			}
 		}
 	}
 	
+	/**
+	 * Finds 'docxChild' in 'list' by looking outwards from 'guess'.
+	 * 
+	 * Docx children that have no ElementML (eg: bookmarks) make 
+	 * the index of a docx child differ from that of its ElementML.
+	 * The difference is usually small so that 'docxChild' is found
+	 * near the index of its ElementML without searching the whole list.
+	 * 
+	 * @param list the docx children list
+	 * @param docxChild the docx child to find
+	 * @param guess the likely index of 'docxChild'
+	 * @return the index of 'docxChild' in 'list' or -1 if not found
+	 */
+	protected final static int indexOfDocxChild(List<Object> list, Object docxChild, int guess) {
+		int size = list.size();
+		if (docxChild == null || size == 0) {
+			return -1;
+		}
+		
+		guess = Math.max(0, Math.min(guess, size - 1));
+		int maxDistance = Math.max(guess, size - 1 - guess);
+		for (int d = 0; d <= maxDistance; d++) {
+			int i = guess + d;
+			if (i < size && list.get(i) == docxChild) {
+				return i;
+			}
+			i = guess - d;
+			if (d > 0 && 0 <= i && list.get(i) == docxChild) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
 	public int getChildIndex(ElementML elem) {
 		return (this.children != null && elem != null) ? this.children.indexOf(elem) : -1;
 	}
@@ -19,92 +19,144 @@
 
 package org.docx4all.xml;
 
-import java.util.Stack;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Iterates an ElementML tree in document order, ie: an ElementML 
+ * comes before its children.
+ * 
+ * The path from the root to the current ElementML is kept in arrays 
+ * that only grow when the tree is deeper than ever seen before.
+ * Neither next() nor cruise() allocate anything and cruise() does not
+ * recurse.  An iterator can be reused for another tree by calling
+ * reset(ElementML).
+ * 
  *	@author Jojada Tirtowidjojo - 30/11/2007
  */
 public class ElementMLIterator {
 	private static Logger log = LoggerFactory.getLogger(ElementMLIterator.class);
 
-	private final ElementML root;
+	private final static int INITIAL_CAPACITY = 16;
 	
-	private Stack<StackEntry> stack;
+	private ElementML root;
+	
+	//The path from root to the current ElementML.
+	//childIndices[i] is the index of the last visited child of path[i].
+	private ElementML[] path = new ElementML[INITIAL_CAPACITY];
+	private int[] childIndices = new int[INITIAL_CAPACITY];
+	//-1 means the iteration has not started
+	private int depth = -1;
 	
 	public ElementMLIterator(ElementML root) throws IllegalArgumentException {
+		reset(root);
+	}
+	
+	/**
+	 * Restarts iteration on 'root' while reusing the internal
+	 * arrays of this iterator.
+	 * 
+	 * @param root
+	 * @throws IllegalArgumentException if root is null
+	 */
+	public void reset(ElementML root) throws IllegalArgumentException {
 		if (root == null) {
 			throw new IllegalArgumentException("Root is NULL");
 		}
+		
+		if (this.depth > 0) {
+			//Do not keep the previous tree reachable
+			Arrays.fill(this.path, 0, this.depth, null);
+		}
 		this.root = root;
+		this.depth = -1;
 	}
 	
-    public boolean hasNext() {
-    	boolean hasNext = false;
-    	
-    	if (stack == null) {
-    		hasNext = true;
-    		
-    	} else if (stack.isEmpty()) {
-    		;//false
-    		
-    	} else {
-    		for (int i=stack.size()-1; 0 <= i && !hasNext; i--) {
-    			StackEntry se = stack.elementAt(i);
-    			hasNext = se.hasNext();
-    		}
-    	}
-    	
-    	return hasNext;
-    }
-    
-    public ElementML next() {
-    	if (stack == null) {
-       		stack = new Stack<StackEntry>();
-       		stack.push(new StackEntry(root));
-    		return root;
-    	}
-    	
-    	if (stack.isEmpty()) {
-    		return null;
-    	}
-    	
-    	ElementML theElem = null;
-    	
-    	StackEntry se = stack.peek();
-    	if (se.hasNext()) {
-    		theElem = se.next();
-    		stack.push(new StackEntry(theElem));
-    	} else {
-    		stack.pop();
-    		theElem = next();
-    	}
-    	return theElem;
-    }
-    
-    public void cruise(Callback callback) {
-    	if (stack == null) {
-       		stack = new Stack<StackEntry>();
-       		stack.push(new StackEntry(root));
-       		callback.handleStartElement(root);
-    		cruise(callback);
-    		
-    	} else if (!stack.isEmpty()) {
-			StackEntry se = stack.peek();
-			if (se.hasNext()) {
-				ElementML elem = se.next();
-				stack.push(new StackEntry(elem));
-				callback.handleStartElement(elem);
+	public boolean hasNext() {
+		if (this.depth == -1) {
+			return true;
+		}
+		
+		//Exhausted ElementMLs are forgotten once and for all
+		//so that this takes constant time on average.
+		while (this.depth > 0 && !hasNextChild(this.depth - 1)) {
+			pop();
+		}
+		
+		return (this.depth > 0);
+	}
+	
+	public ElementML next() {
+		if (this.depth == -1) {
+			this.depth = 0;
+			push(this.root);
+			return this.root;
+		}
+		
+		while (this.depth > 0) {
+			int top = this.depth - 1;
+			if (hasNextChild(top)) {
+				ElementML theElem = this.path[top].getChild(++this.childIndices[top]);
+				push(theElem);
+				return theElem;
+			}
+			pop();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * @return the number of ancestors of the ElementML last returned
+	 * by next() that are within the iterated tree; 0 for root.
+	 */
+	public int getDepth() {
+		return Math.max(this.depth - 1, 0);
+	}
+	
+	public void cruise(Callback callback) {
+		if (this.depth == -1) {
+			this.depth = 0;
+			push(this.root);
+			callback.handleStartElement(this.root);
+		}
+		
+		while (this.depth > 0) {
+			int top = this.depth - 1;
+			ElementML elem = this.path[top];
+			if (hasNextChild(top)) {
+				ElementML child = elem.getChild(++this.childIndices[top]);
+				push(child);
+				callback.handleStartElement(child);
 			} else {
-				stack.pop();
-				callback.handleEndElement(se.elem);
+				pop();
+				callback.handleEndElement(elem);
 			}
-			cruise(callback);
 		}
-    }
-    
+	}
+	
+	private boolean hasNextChild(int level) {
+		return (this.childIndices[level] + 1) < this.path[level].getChildrenCount();
+	}
+	
+	private void push(ElementML elem) {
+		if (this.depth == this.path.length) {
+			int capacity = this.path.length * 2;
+			this.path = Arrays.copyOf(this.path, capacity);
+			this.childIndices = Arrays.copyOf(this.childIndices, capacity);
+		}
+		this.path[this.depth] = elem;
+		this.childIndices[this.depth] = -1;
+		this.depth++;
+	}
+	
+	private void pop() {
+		this.depth--;
+		this.path[this.depth] = null;
+	}
+	
     public static class Callback {
     	public void handleStartElement(ElementML elem) {
     		;//method template
@@ -115,49 +167,4 @@ public class ElementMLIterator {
     	}
     }// Callback inner class
     
-    private final class StackEntry {
-    	private ElementML elem;
-    	private int childIdx;
-    	
-    	private StackEntry(ElementML elem) {
-    		this.elem = elem;
-    		this.childIdx = -1;
-    	}
-    	
-    	private boolean hasNext() {
-    		return (childIdx + 1) < elem.getChildrenCount();
-    	}
-    	
-    	private ElementML next() {
-    		return elem.getChild(++childIdx);
-    	}
-    }// StackEntry inner class
-    
 }// ElementMLIterator class
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,162 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.xml;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * The children list of an ElementML.
+ *
+ * Each child whose parent is the owner of this list remembers its
+ * position in ElementML.childIndex so that indexOf() does not have to
+ * search the list.  Positions are renumbered lazily: an insertion or
+ * removal only marks the positions from its index onwards as stale and
+ * they are renumbered on the next indexOf() that needs them.  Editing
+ * near the end of a long body therefore costs little to renumber.
+ *
+ * Elements whose parent is another ElementML (eg: those held by an
+ * ImpliedContainerML without being adopted) are searched as in an
+ * ArrayList.
+ */
+class ElementMLList extends AbstractList<ElementML> implements RandomAccess {
+	private final ElementML owner;
+	private final ArrayList<ElementML> elements;
+
+	//Positions below this index have an up to date ElementML.childIndex
+	private int validCount = 0;
+
+	ElementMLList(ElementML owner) {
+		this(owner, 10);
+	}
+
+	ElementMLList(ElementML owner, int initialCapacity) {
+		this.owner = owner;
+		this.elements = new ArrayList<ElementML>(initialCapacity);
+	}
+
+	ElementMLList(ElementML owner, Collection<? extends ElementML> c) {
+		this.owner = owner;
+		this.elements = new ArrayList<ElementML>(c);
+	}
+
+	public ElementML get(int index) {
+		return this.elements.get(index);
+	}
+
+	public int size() {
+		return this.elements.size();
+	}
+
+	public ElementML set(int index, ElementML elem) {
+		ElementML old = this.elements.set(index, elem);
+		invalidateFrom(index);
+		return old;
+	}
+
+	public void add(int index, ElementML elem) {
+		this.elements.add(index, elem);
+		modCount++;
+		if (index < this.elements.size() - 1) {
+			invalidateFrom(index);
+		}
+	}
+
+	public boolean add(ElementML elem) {
+		//Appending does not move any other element.
+		this.elements.add(elem);
+		modCount++;
+		return true;
+	}
+
+	public ElementML remove(int index) {
+		ElementML old = this.elements.remove(index);
+		modCount++;
+		invalidateFrom(index);
+		return old;
+	}
+
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		if (index < 0) {
+			return false;
+		}
+		remove(index);
+		return true;
+	}
+
+	public void clear() {
+		this.elements.clear();
+		modCount++;
+		this.validCount = 0;
+	}
+
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	public int indexOf(Object o) {
+		if (!(o instanceof ElementML)) {
+			return -1;
+		}
+
+		ElementML elem = (ElementML) o;
+		if (elem.getParent() != this.owner || this.owner == null) {
+			return this.elements.indexOf(elem);
+		}
+
+		int idx = elem.childIndex;
+		if (isAt(elem, idx)) {
+			return idx;
+		}
+
+		renumber();
+		idx = elem.childIndex;
+		if (!isAt(elem, idx)) {
+			//'elem' was adopted after its position had been renumbered.
+			idx = this.elements.indexOf(elem);
+			elem.childIndex = idx;
+		}
+		return idx;
+	}
+
+	private boolean isAt(ElementML elem, int idx) {
+		return 0 <= idx && idx < this.elements.size() && this.elements.get(idx) == elem;
+	}
+
+	private void invalidateFrom(int index) {
+		if (index < this.validCount) {
+			this.validCount = index;
+		}
+	}
+
+	private void renumber() {
+		for (int i = this.validCount; i < this.elements.size(); i++) {
+			ElementML elem = this.elements.get(i);
+			if (elem.getParent() == this.owner) {
+				elem.childIndex = i;
+			}
+		}
+		this.validCount = this.elements.size();
+	}
+
+}// ElementMLList class
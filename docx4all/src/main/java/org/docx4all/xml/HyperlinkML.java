@@ -21,7 +21,6 @@ package org.docx4all.xml;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.text.SimpleAttributeSet;
@@ -35,7 +34,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4all.swing.text.WordMLStyleConstants;
 import org.docx4all.util.XmlUtil;
-import org.docx4j.XmlUtils;
 import org.docx4j.openpackaging.parts.relationships.Namespaces;
 
 /**
@@ -288,7 +286,7 @@ public class HyperlinkML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new HyperlinkML(obj, this.isDummy);
@@ -360,7 +358,7 @@ public class HyperlinkML extends ElementML {
 		
 		List<Object> pKids = link.getParagraphContent();
 		if (!pKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(pKids.size());
+			this.children = new ElementMLList(this, pKids.size());
 			
 			for (Object o : pKids) {
 				RunML run = new RunML(o, this.isDummy);
@@ -19,7 +19,6 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -49,7 +48,7 @@ public class ImpliedContainerML extends ElementML {
 	public Object clone() {
 		ImpliedContainerML ml = new ImpliedContainerML();
 		if (this.children != null) {
-			ml.children = new ArrayList<ElementML>(this.children);
+			ml.children = new ElementMLList(ml, this.children);
 			ml.isDummy = this.isDummy;
 		}
 		return ml;
@@ -27,7 +27,6 @@ import org.docx4all.ui.main.Constants;
 import org.docx4all.xml.drawing.Graphic;
 import org.docx4all.xml.drawing.type.CTEffectExtent;
 //import org.docx4all.xml.drawing.type.CTEffectExtent;
-import org.docx4j.XmlUtils;
 
 /**
  *	@author Jojada Tirtowidjojo - 15/12/2008
@@ -78,7 +77,7 @@ public class InlineDrawingML extends RunContentML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		return new InlineDrawingML(obj, this.isDummy);
 	}
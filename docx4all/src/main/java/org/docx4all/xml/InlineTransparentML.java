@@ -48,7 +48,7 @@ public class InlineTransparentML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		return new InlineTransparentML(obj, this.isDummy);
 	}
@@ -154,7 +154,7 @@ public class InlineTransparentML extends ElementML {
 		
 		List<Object> pKids = smartTag.getParagraphContent();
 		if (!pKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(pKids.size());
+			this.children = new ElementMLList(this, pKids.size());
 
 			ElementML ml = null;
 			for (Object o : pKids) {
@@ -99,7 +99,7 @@ public class ParagraphML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new ParagraphML(obj, this.isDummy);
@@ -224,7 +224,7 @@ public class ParagraphML extends ElementML {
 		
 		List<Object> pKids = para.getParagraphContent();
 		if (!pKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(pKids.size());
+			this.children = new ElementMLList(this, pKids.size());
 
 			ElementML ml = null;
 			for (Object o : pKids) {
@@ -30,7 +30,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4all.swing.text.StyleSheet;
 import org.docx4all.swing.text.WordMLStyleConstants;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.PPr;
 
 /**
@@ -102,7 +101,7 @@ public class ParagraphPropertiesML extends ElementML implements PropertiesContai
 	public Object clone() {
 		PPr obj = null;
 		if (this.docxObject != null) {
-			obj = (PPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (PPr) WordMLCopier.copy(this.docxObject);
 		}
 		return new ParagraphPropertiesML(obj);
 	}
@@ -71,7 +71,7 @@ public class RunContentML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		return new RunContentML(obj, this.isDummy);
 	}
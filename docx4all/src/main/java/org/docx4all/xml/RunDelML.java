@@ -20,12 +20,10 @@
 package org.docx4all.xml;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
-import org.docx4j.XmlUtils;
 
 /**
  *	@author Jojada Tirtowidjojo - 17/06/2008
@@ -80,7 +78,7 @@ public class RunDelML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new RunDelML(obj, this.isDummy);
@@ -152,7 +150,7 @@ public class RunDelML extends ElementML {
 		
 		List<Object> pKids = del.getCustomXmlOrSmartTagOrSdt();
 		if (!pKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(pKids.size());
+			this.children = new ElementMLList(this, pKids.size());
 			for (Object o : pKids) {
 				RunML run = new RunML(o, this.isDummy);
 				run.setParent(RunDelML.this);
@@ -20,12 +20,10 @@
 package org.docx4all.xml;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 
-import org.docx4j.XmlUtils;
 
 
 /**
@@ -81,7 +79,7 @@ public class RunInsML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new RunInsML(obj, this.isDummy);
@@ -153,7 +151,7 @@ public class RunInsML extends ElementML {
 		
 		List<Object> pKids = ins.getCustomXmlOrSmartTagOrSdt();
 		if (!pKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(pKids.size());
+			this.children = new ElementMLList(this, pKids.size());
 			for (Object o : pKids) {
 				RunML run = new RunML(o, this.isDummy);
 				run.setParent(RunInsML.this);
@@ -19,7 +19,6 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.text.AttributeSet;
@@ -101,7 +100,7 @@ public class RunML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		return new RunML(obj, this.isDummy);
 	}
@@ -230,7 +229,7 @@ public class RunML extends ElementML {
 
 		List<Object> rKids = run.getRunContent();
 		if (!rKids.isEmpty()) {
-			this.children = new ArrayList<ElementML>(rKids.size());
+			this.children = new ElementMLList(this, rKids.size());
 			for (Object o : rKids) {
 				Object value = JAXBIntrospector.getValue(o);
 
@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.xml;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.SimpleAttributeSet;
+
+import net.sf.vfsjfilechooser.utils.VFSUtils;
+
+import org.apache.commons.vfs.FileObject;
+
+/**
+ * Compares the heap taken by the run property attribute sets of the
+ * sample documents when every run has its own SimpleAttributeSet, as
+ * it used to, with that taken by the shared attribute sets of
+ * RunPropertiesML.
+ *
+ * Each document is loaded 'copies' times so that the difference is
+ * large enough to be measured.  The heap is measured after a full
+ * garbage collection, so run it with a fixed heap size, eg: -Xms512m
+ *
+ * Usage: RunPropertiesHeapBenchmark [sampleDocsDir] [copies]
+ *
+ * To test properly, make sure logging is quiet, eg:
+ *    -Dlog4j.configuration=conf/log4j.properties
+ */
+public class RunPropertiesHeapBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		File dir = new File((args.length > 0) ? args[0] : "sample-docs");
+		int copies = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+		List<File> files = new ArrayList<File>();
+		collectDocx(dir, files);
+		if (files.isEmpty()) {
+			System.out.println("No .docx file in " + dir.getAbsolutePath());
+			System.exit(1);
+		}
+
+		System.out.println("Documents=" + files.size() + " copies=" + copies);
+
+		List<RunPropertiesML> allProps = new ArrayList<RunPropertiesML>();
+		for (File f: files) {
+			List<RunPropertiesML> props = new ArrayList<RunPropertiesML>();
+			for (int i = 0; i < copies; i++) {
+				FileObject fo =
+					VFSUtils.getFileSystemManager().resolveFile(f.getAbsolutePath());
+				collectRunProperties(ElementMLFactory.createDocumentML(fo), props);
+			}
+			System.out.println(f.getName()
+				+ ": runProperties=" + (props.size() / copies)
+				+ " distinctAttributeSets=" + countDistinct(props));
+			allProps.addAll(props);
+		}
+
+		long base = usedMemory();
+		List<AttributeSet> perRun = new ArrayList<AttributeSet>(allProps.size());
+		for (RunPropertiesML rPr: allProps) {
+			//What every run used to hold
+			perRun.add(new SimpleAttributeSet(rPr.getSharedAttributeSet()));
+		}
+		long perRunBytes = usedMemory() - base;
+		perRun.clear();
+
+		base = usedMemory();
+		List<AttributeSet> shared = new ArrayList<AttributeSet>(allProps.size());
+		for (RunPropertiesML rPr: allProps) {
+			shared.add(rPr.getSharedAttributeSet());
+		}
+		//The shared sets already exist; only the references are new.
+		long sharedBytes = usedMemory() - base;
+
+		System.out.println("Total: runProperties=" + allProps.size()
+			+ " distinctAttributeSets=" + countDistinct(allProps));
+		System.out.println("Per run SimpleAttributeSets: " + (perRunBytes / 1024) + "KB");
+		System.out.println("Shared attribute sets: " + (sharedBytes / 1024) + "KB");
+		System.out.println("(Both include the " + (allProps.size() * 4 / 1024)
+			+ "KB or so of the list holding them)");
+
+		System.exit(0);
+	}
+
+	private static void collectDocx(File dir, List<File> list) {
+		File[] children = dir.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File f: children) {
+			if (f.isDirectory()) {
+				collectDocx(f, list);
+			} else if (f.getName().endsWith(".docx")) {
+				list.add(f);
+			}
+		}
+	}
+
+	private static void collectRunProperties(ElementML elem, List<RunPropertiesML> list) {
+		if (elem instanceof RunML) {
+			RunPropertiesML rPr = (RunPropertiesML) ((RunML) elem).getRunProperties();
+			if (rPr != null) {
+				list.add(rPr);
+			}
+		}
+		for (int i = 0; i < elem.getChildrenCount(); i++) {
+			collectRunProperties(elem.getChild(i), list);
+		}
+	}
+
+	private static int countDistinct(List<RunPropertiesML> list) {
+		Map<AttributeSet, Boolean> sets = new IdentityHashMap<AttributeSet, Boolean>();
+		for (RunPropertiesML rPr: list) {
+			sets.put(rPr.getSharedAttributeSet(), Boolean.TRUE);
+		}
+		return sets.size();
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}// RunPropertiesHeapBenchmark class
@@ -26,47 +26,64 @@ import javax.swing.text.AttributeSet;
 import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
+import javax.swing.text.StyleContext;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4all.swing.text.StyleSheet;
 import org.docx4all.swing.text.WordMLStyleConstants;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.BooleanDefaultTrue;
 import org.docx4j.wml.HpsMeasure;
 import org.docx4j.wml.RFonts;
 import org.docx4j.wml.RPr;
 
 /**
+ * The attributes of a run property element are kept in an immutable
+ * attribute set taken from a shared pool.  Run property elements whose
+ * attributes are equal share the same attribute set.  Changing the
+ * attributes of one element gives it another set from the pool.
+ *
  *	@author Jojada Tirtowidjojo - 30/11/2007
  */
 public class RunPropertiesML extends ElementML implements PropertiesContainerML {
 	private static Logger log = LoggerFactory.getLogger(RunPropertiesML.class);
 	
-	private MutableAttributeSet attrs;
+	//StyleContext keeps small attribute sets in a weak pool
+	//keyed by their attributes.
+	private final static StyleContext attributePool = new StyleContext();
+	
+	private AttributeSet attrs;
 	
 	public RunPropertiesML(RPr rPr) {
 		super(rPr, false);
 	}
 	
     public void addAttribute(Object name, Object value) {
-    	this.attrs.addAttribute(name, value);
+    	this.attrs = attributePool.addAttribute(this.attrs, name, value);
     }
     
 	public void addAttributes(AttributeSet attrs) {
-		this.attrs.addAttributes(attrs);
+		this.attrs = attributePool.addAttributes(this.attrs, attrs);
 	}
 	
 	public MutableAttributeSet getAttributeSet() {
 		return new SimpleAttributeSet(this.attrs);
 	}
 	
+	/**
+	 * @return the attribute set of this element.  It is immutable
+	 *         and may be shared with other run property elements.
+	 */
+	public AttributeSet getSharedAttributeSet() {
+		return this.attrs;
+	}
+	
     public void removeAttributes(AttributeSet attributes) {
-    	attrs.removeAttributes(attributes);
+    	this.attrs = attributePool.removeAttributes(this.attrs, attributes);
 	}
 
     public void removeAttribute(Object name) {
-    	attrs.removeAttribute(name);
+    	this.attrs = attributePool.removeAttribute(this.attrs, name);
     }
 
 	public void save() {
@@ -167,7 +184,7 @@ public class RunPropertiesML extends ElementML implements PropertiesContainerML
 	public Object clone() {
 		RPr obj = null;
 		if (this.docxObject != null) {
-			obj = (RPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (RPr) WordMLCopier.copy(this.docxObject);
 		}
 		return new RunPropertiesML(obj);
 	}
@@ -192,10 +209,12 @@ public class RunPropertiesML extends ElementML implements PropertiesContainerML
 	}
 		
 	protected void init(Object docxObject) {
-		this.attrs = new SimpleAttributeSet();
+		this.attrs = attributePool.getEmptySet();
 		
 		if (docxObject != null) {
-			StyleSheet.addAttributes(this.attrs, (RPr) docxObject);
+			SimpleAttributeSet temp = new SimpleAttributeSet();
+			StyleSheet.addAttributes(temp, (RPr) docxObject);
+			this.attrs = attributePool.addAttributes(this.attrs, temp);
 		}
 	}
 	
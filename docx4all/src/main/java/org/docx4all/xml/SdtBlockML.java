@@ -19,7 +19,6 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.bind.JAXBIntrospector;
@@ -27,7 +26,6 @@ import javax.xml.namespace.QName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 
 /**
@@ -82,7 +80,7 @@ public class SdtBlockML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 
 		return new SdtBlockML(obj, this.isDummy);
@@ -217,7 +215,7 @@ public class SdtBlockML extends ElementML {
 
 		List<Object> list = sdtBlock.getSdtContent().getContent();
 		if (!list.isEmpty()) {
-			this.children = new ArrayList<ElementML>(list.size());
+			this.children = new ElementMLList(this, list.size());
 			for (Object obj : list) {
 				Object value = JAXBIntrospector.getValue(obj);
 				
@@ -24,7 +24,6 @@ import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.Id;
 import org.plutext.client.SdtWrapper;
 
@@ -84,7 +83,7 @@ public class SdtPrML  extends ElementML {
 	public Object clone() {
 		org.docx4j.wml.SdtPr obj = null;
 		if (this.docxObject != null) {
-			obj = (org.docx4j.wml.SdtPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (org.docx4j.wml.SdtPr) WordMLCopier.copy(this.docxObject);
 		}
 
 		return new SdtPrML(obj, this.isDummy);
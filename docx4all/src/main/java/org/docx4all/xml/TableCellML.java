@@ -19,13 +19,11 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.bind.JAXBIntrospector;
 import javax.xml.namespace.QName;
 
-import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 import org.docx4j.wml.TcPr;
 
@@ -74,7 +72,7 @@ public class TableCellML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new TableCellML(obj, this.isDummy);
@@ -168,7 +166,7 @@ public class TableCellML extends ElementML {
 		
 		List<Object> list = cell.getEGBlockLevelElts();
 		if (!list.isEmpty()) {
-			this.children = new ArrayList<ElementML>(list.size());
+			this.children = new ElementMLList(this, list.size());
 			
 			ElementML ml = null;
 			for (Object obj : list) {
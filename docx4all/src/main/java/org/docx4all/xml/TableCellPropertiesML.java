@@ -26,7 +26,6 @@ import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 
 import org.docx4all.swing.text.StyleSheet;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.TcPr;
 
 /**
@@ -70,7 +69,7 @@ public class TableCellPropertiesML extends ElementML implements PropertiesContai
 	public Object clone() {
 		TcPr obj = null;
 		if (this.docxObject != null) {
-			obj = (TcPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (TcPr) WordMLCopier.copy(this.docxObject);
 		}
 		return new TableCellPropertiesML(obj);
 	}
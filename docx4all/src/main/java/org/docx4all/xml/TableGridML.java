@@ -21,7 +21,6 @@ package org.docx4all.xml;
 
 import java.util.List;
 
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.TblGrid;
 
 /**
@@ -36,7 +35,7 @@ public class TableGridML extends ElementML {
 	public Object clone() {
 		TblGrid obj = null;
 		if (this.docxObject != null) {
-			obj = (TblGrid) XmlUtils.deepCopy(this.docxObject);
+			obj = (TblGrid) WordMLCopier.copy(this.docxObject);
 		}
 		return new TableGridML(obj);
 	}
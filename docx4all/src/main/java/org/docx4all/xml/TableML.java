@@ -19,12 +19,10 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.bind.JAXBIntrospector;
 
-import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 import org.docx4j.wml.TblGrid;
 import org.docx4j.wml.TblPr;
@@ -104,7 +102,7 @@ public class TableML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new TableML(obj, this.isDummy);
@@ -207,7 +205,7 @@ public class TableML extends ElementML {
 		
 		List<Object> list = table.getEGContentRowContent();
 		if (!list.isEmpty()) {
-			this.children = new ArrayList<ElementML>(list.size());
+			this.children = new ElementMLList(this, list.size());
 			for (Object obj : list) {
 				if (obj instanceof org.docx4j.wml.Tr) {
 					ElementML ml = new TableRowML(obj);
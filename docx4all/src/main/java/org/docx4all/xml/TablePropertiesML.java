@@ -26,7 +26,6 @@ import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 
 import org.docx4all.swing.text.StyleSheet;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.TblPr;
 
 /**
@@ -70,7 +69,7 @@ public class TablePropertiesML extends ElementML implements PropertiesContainerM
 	public Object clone() {
 		TblPr obj = null;
 		if (this.docxObject != null) {
-			obj = (TblPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (TblPr) WordMLCopier.copy(this.docxObject);
 		}
 		return new TablePropertiesML(obj);
 	}
@@ -19,12 +19,10 @@
 
 package org.docx4all.xml;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.bind.JAXBIntrospector;
 
-import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 import org.docx4j.wml.TrPr;
 
@@ -73,7 +71,7 @@ public class TableRowML extends ElementML {
 	public Object clone() {
 		Object obj = null;
 		if (this.docxObject != null) {
-			obj = XmlUtils.deepCopy(this.docxObject);
+			obj = WordMLCopier.copy(this.docxObject);
 		}
 		
 		return new TableRowML(obj, this.isDummy);
@@ -164,7 +162,7 @@ public class TableRowML extends ElementML {
 		
 		List<Object> list = row.getEGContentCellContent();
 		if (!list.isEmpty()) {
-			this.children = new ArrayList<ElementML>(list.size());
+			this.children = new ElementMLList(this, list.size());
 			for (Object obj : list) {
 				Object value = JAXBIntrospector.getValue(obj);
 				
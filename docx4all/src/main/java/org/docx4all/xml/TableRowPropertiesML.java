@@ -26,7 +26,6 @@ import javax.swing.text.MutableAttributeSet;
 import javax.swing.text.SimpleAttributeSet;
 
 import org.docx4all.swing.text.StyleSheet;
-import org.docx4j.XmlUtils;
 import org.docx4j.wml.TrPr;
 
 /**
@@ -70,7 +69,7 @@ public class TableRowPropertiesML extends ElementML implements PropertiesContain
 	public Object clone() {
 		TrPr obj = null;
 		if (this.docxObject != null) {
-			obj = (TrPr) XmlUtils.deepCopy(this.docxObject);
+			obj = (TrPr) WordMLCopier.copy(this.docxObject);
 		}
 		return new TableRowPropertiesML(obj);
 	}
@@ -0,0 +1,896 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.xml;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.BooleanDefaultTrue;
+import org.docx4j.wml.Br;
+import org.docx4j.wml.CTBorder;
+import org.docx4j.wml.CTLanguage;
+import org.docx4j.wml.CTSdtEndPr;
+import org.docx4j.wml.CTShd;
+import org.docx4j.wml.CTSignedHpsMeasure;
+import org.docx4j.wml.CTTabStop;
+import org.docx4j.wml.CTTblPrBase;
+import org.docx4j.wml.CTTrPrBase;
+import org.docx4j.wml.CTVerticalAlignRun;
+import org.docx4j.wml.Color;
+import org.docx4j.wml.DelText;
+import org.docx4j.wml.Document;
+import org.docx4j.wml.Highlight;
+import org.docx4j.wml.HpsMeasure;
+import org.docx4j.wml.Id;
+import org.docx4j.wml.Jc;
+import org.docx4j.wml.P;
+import org.docx4j.wml.PPr;
+import org.docx4j.wml.PPrBase;
+import org.docx4j.wml.ParaRPr;
+import org.docx4j.wml.R;
+import org.docx4j.wml.RFonts;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.RStyle;
+import org.docx4j.wml.SdtBlock;
+import org.docx4j.wml.SdtContentBlock;
+import org.docx4j.wml.SdtPr;
+import org.docx4j.wml.Tabs;
+import org.docx4j.wml.Tag;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.TblGrid;
+import org.docx4j.wml.TblGridCol;
+import org.docx4j.wml.TblPr;
+import org.docx4j.wml.TblWidth;
+import org.docx4j.wml.Tc;
+import org.docx4j.wml.TcPr;
+import org.docx4j.wml.TcPrInner;
+import org.docx4j.wml.Text;
+import org.docx4j.wml.Tr;
+import org.docx4j.wml.TrPr;
+import org.docx4j.wml.U;
+import org.jvnet.jaxb2_commons.ppp.Child;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deep copier of the WordML objects that docx4all edits.
+ *
+ * XmlUtils.deepCopy() marshals an object to xml and unmarshals it back.
+ * WordMLCopier copies paragraphs, runs, tables, content controls and
+ * their commonest properties by calling their getters and setters instead.
+ * Parent references of the copies are set the way unmarshalling does.
+ *
+ * Any object of a class WordMLCopier does not know is copied with
+ * XmlUtils.deepCopy().  So is any object of a known class which turns out
+ * to have more fields than WordMLCopier copies; eg: after docx4j is upgraded.
+ * The fields are counted once when this class is initialised.
+ */
+public class WordMLCopier {
+	private static Logger log = LoggerFactory.getLogger(WordMLCopier.class);
+
+	private final static Map<Class<?>, Copier<?>> copiers =
+		new HashMap<Class<?>, Copier<?>>();
+
+	static {
+		registerContentCopiers();
+		registerPropertiesCopiers();
+	}
+
+	private WordMLCopier() {
+		;//uninstantiable
+	}
+
+	/**
+	 * Makes a deep copy of a WordML object.
+	 *
+	 * @param src The object to copy.  It may be a JAXBElement.
+	 * @return the copy; null if 'src' is null.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T copy(T src) {
+		if (src == null) {
+			return null;
+		}
+		if (src instanceof JAXBElement) {
+			return (T) copyJAXBElement((JAXBElement<?>) src);
+		}
+
+		Copier<T> copier = (Copier<T>) copiers.get(src.getClass());
+		if (copier == null) {
+			return (T) XmlUtils.deepCopy(src);
+		}
+		return copier.copy(src);
+	}
+
+	/**
+	 * @param clazz
+	 * @return true if objects of 'clazz' are copied without marshalling.
+	 */
+	public static boolean canCopy(Class<?> clazz) {
+		return copiers.containsKey(clazz);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JAXBElement<?> copyJAXBElement(JAXBElement<?> src) {
+		Object value = src.getValue();
+		Object copy = null;
+		if (value == null || isImmutable(value)) {
+			copy = value;
+		} else if (copiers.containsKey(value.getClass())) {
+			copy = copy(value);
+		} else {
+			return (JAXBElement<?>) XmlUtils.deepCopy(src);
+		}
+
+		JAXBElement<Object> theElem =
+			new JAXBElement<Object>(
+				src.getName(),
+				(Class<Object>) src.getDeclaredType(),
+				src.getScope(),
+				copy);
+		theElem.setNil(src.isNil());
+		return theElem;
+	}
+
+	private static boolean isImmutable(Object obj) {
+		return (obj instanceof String
+				|| obj instanceof Number
+				|| obj instanceof Boolean
+				|| obj instanceof Enum<?>);
+	}
+
+	private static <T> T child(T src, Object parent) {
+		T copy = copy(src);
+		setParent(copy, parent);
+		return copy;
+	}
+
+	private static <E> void copyList(List<E> src, List<E> dest, Object parent) {
+		for (E obj: src) {
+			dest.add(child(obj, parent));
+		}
+	}
+
+	private static void setParent(Object child, Object parent) {
+		if (child instanceof JAXBElement) {
+			child = ((JAXBElement<?>) child).getValue();
+		}
+		if (child instanceof Child) {
+			((Child) child).setParent(parent);
+		}
+	}
+
+	private static <T> void register(Copier<T> copier) {
+		int count = countFields(copier.type);
+		if (count == copier.fieldCount) {
+			copiers.put(copier.type, copier);
+		} else {
+			log.warn("register(): " + copier.type.getName()
+				+ " has " + count + " fields instead of " + copier.fieldCount
+				+ ". It will be copied by XmlUtils.deepCopy().");
+		}
+	}
+
+	/**
+	 * Counts the instance fields of 'clazz' and its superclasses,
+	 * leaving out the parent references that are not marshalled.
+	 */
+	private static int countFields(Class<?> clazz) {
+		int count = 0;
+		for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field f: c.getDeclaredFields()) {
+				if (!Modifier.isStatic(f.getModifiers())
+					&& !"parent".equals(f.getName())) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static void registerContentCopiers() {
+		register(new Copier<Document>(Document.class, 2) {
+			Document copy(Document src) {
+				Document theCopy = new Document();
+				theCopy.setBackground(child(src.getBackground(), theCopy));
+				theCopy.setBody(child(src.getBody(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Body>(Body.class, 2) {
+			Body copy(Body src) {
+				Body theCopy = new Body();
+				copyList(src.getEGBlockLevelElts(), theCopy.getEGBlockLevelElts(), theCopy);
+				theCopy.setSectPr(child(src.getSectPr(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<SdtBlock>(SdtBlock.class, 3) {
+			SdtBlock copy(SdtBlock src) {
+				SdtBlock theCopy = new SdtBlock();
+				theCopy.setSdtPr(child(src.getSdtPr(), theCopy));
+				theCopy.setSdtEndPr(child(src.getSdtEndPr(), theCopy));
+				theCopy.setSdtContent(child(src.getSdtContent(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<SdtContentBlock>(SdtContentBlock.class, 1) {
+			SdtContentBlock copy(SdtContentBlock src) {
+				SdtContentBlock theCopy = new SdtContentBlock();
+				copyList(src.getContent(), theCopy.getContent(), theCopy);
+				return theCopy;
+			}
+		});
+
+		register(new Copier<SdtPr>(SdtPr.class, 1) {
+			SdtPr copy(SdtPr src) {
+				SdtPr theCopy = new SdtPr();
+				copyList(src.getRPrOrAliasOrLock(), theCopy.getRPrOrAliasOrLock(), theCopy);
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTSdtEndPr>(CTSdtEndPr.class, 1) {
+			CTSdtEndPr copy(CTSdtEndPr src) {
+				CTSdtEndPr theCopy = new CTSdtEndPr();
+				copyList(src.getRPr(), theCopy.getRPr(), theCopy);
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Tag>(Tag.class, 1) {
+			Tag copy(Tag src) {
+				Tag theCopy = new Tag();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Id>(Id.class, 1) {
+			Id copy(Id src) {
+				Id theCopy = new Id();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<P>(P.class, 7) {
+			P copy(P src) {
+				P theCopy = new P();
+				theCopy.setPPr(child(src.getPPr(), theCopy));
+				copyList(src.getParagraphContent(), theCopy.getParagraphContent(), theCopy);
+				theCopy.setRsidRPr(src.getRsidRPr());
+				theCopy.setRsidR(src.getRsidR());
+				theCopy.setRsidDel(src.getRsidDel());
+				theCopy.setRsidP(src.getRsidP());
+				theCopy.setRsidRDefault(src.getRsidRDefault());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<P.Hyperlink>(P.Hyperlink.class, 7) {
+			P.Hyperlink copy(P.Hyperlink src) {
+				P.Hyperlink theCopy = new P.Hyperlink();
+				copyList(src.getParagraphContent(), theCopy.getParagraphContent(), theCopy);
+				theCopy.setTgtFrame(src.getTgtFrame());
+				theCopy.setTooltip(src.getTooltip());
+				theCopy.setDocLocation(src.getDocLocation());
+				theCopy.setHistory(src.isHistory());
+				theCopy.setAnchor(src.getAnchor());
+				theCopy.setId(src.getId());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<R>(R.class, 5) {
+			R copy(R src) {
+				R theCopy = new R();
+				theCopy.setRPr(child(src.getRPr(), theCopy));
+				copyList(src.getRunContent(), theCopy.getRunContent(), theCopy);
+				theCopy.setRsidRPr(src.getRsidRPr());
+				theCopy.setRsidDel(src.getRsidDel());
+				theCopy.setRsidR(src.getRsidR());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Text>(Text.class, 2) {
+			Text copy(Text src) {
+				Text theCopy = new Text();
+				theCopy.setValue(src.getValue());
+				theCopy.setSpace(src.getSpace());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<DelText>(DelText.class, 2) {
+			DelText copy(DelText src) {
+				DelText theCopy = new DelText();
+				theCopy.setValue(src.getValue());
+				theCopy.setSpace(src.getSpace());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Br>(Br.class, 2) {
+			Br copy(Br src) {
+				Br theCopy = new Br();
+				theCopy.setType(src.getType());
+				theCopy.setClear(src.getClear());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<R.Tab>(R.Tab.class, 0) {
+			R.Tab copy(R.Tab src) {
+				return new R.Tab();
+			}
+		});
+
+		register(new Copier<R.Cr>(R.Cr.class, 0) {
+			R.Cr copy(R.Cr src) {
+				return new R.Cr();
+			}
+		});
+
+		register(new Copier<Tbl>(Tbl.class, 3) {
+			Tbl copy(Tbl src) {
+				Tbl theCopy = new Tbl();
+				theCopy.setTblPr(child(src.getTblPr(), theCopy));
+				theCopy.setTblGrid(child(src.getTblGrid(), theCopy));
+				copyList(src.getEGContentRowContent(), theCopy.getEGContentRowContent(), theCopy);
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TblGrid>(TblGrid.class, 2) {
+			TblGrid copy(TblGrid src) {
+				TblGrid theCopy = new TblGrid();
+				copyList(src.getGridCol(), theCopy.getGridCol(), theCopy);
+				theCopy.setTblGridChange(child(src.getTblGridChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TblGridCol>(TblGridCol.class, 1) {
+			TblGridCol copy(TblGridCol src) {
+				TblGridCol theCopy = new TblGridCol();
+				theCopy.setW(src.getW());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Tr>(Tr.class, 7) {
+			Tr copy(Tr src) {
+				Tr theCopy = new Tr();
+				theCopy.setTblPrEx(child(src.getTblPrEx(), theCopy));
+				theCopy.setTrPr(child(src.getTrPr(), theCopy));
+				copyList(src.getEGContentCellContent(), theCopy.getEGContentCellContent(), theCopy);
+				theCopy.setRsidRPr(src.getRsidRPr());
+				theCopy.setRsidR(src.getRsidR());
+				theCopy.setRsidDel(src.getRsidDel());
+				theCopy.setRsidTr(src.getRsidTr());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Tc>(Tc.class, 2) {
+			Tc copy(Tc src) {
+				Tc theCopy = new Tc();
+				theCopy.setTcPr(child(src.getTcPr(), theCopy));
+				copyList(src.getEGBlockLevelElts(), theCopy.getEGBlockLevelElts(), theCopy);
+				return theCopy;
+			}
+		});
+	}
+
+	private static void registerPropertiesCopiers() {
+		register(new Copier<PPr>(PPr.class, 36) {
+			PPr copy(PPr src) {
+				PPr theCopy = new PPr();
+				copyPPrBase(src, theCopy);
+				theCopy.setRPr(child(src.getRPr(), theCopy));
+				theCopy.setSectPr(child(src.getSectPr(), theCopy));
+				theCopy.setPPrChange(child(src.getPPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.PStyle>(PPrBase.PStyle.class, 1) {
+			PPrBase.PStyle copy(PPrBase.PStyle src) {
+				PPrBase.PStyle theCopy = new PPrBase.PStyle();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.Spacing>(PPrBase.Spacing.class, 8) {
+			PPrBase.Spacing copy(PPrBase.Spacing src) {
+				PPrBase.Spacing theCopy = new PPrBase.Spacing();
+				theCopy.setBefore(src.getBefore());
+				theCopy.setBeforeLines(src.getBeforeLines());
+				theCopy.setBeforeAutospacing(src.isBeforeAutospacing());
+				theCopy.setAfter(src.getAfter());
+				theCopy.setAfterLines(src.getAfterLines());
+				theCopy.setAfterAutospacing(src.isAfterAutospacing());
+				theCopy.setLine(src.getLine());
+				theCopy.setLineRule(src.getLineRule());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.Ind>(PPrBase.Ind.class, 8) {
+			PPrBase.Ind copy(PPrBase.Ind src) {
+				PPrBase.Ind theCopy = new PPrBase.Ind();
+				theCopy.setLeft(src.getLeft());
+				theCopy.setLeftChars(src.getLeftChars());
+				theCopy.setRight(src.getRight());
+				theCopy.setRightChars(src.getRightChars());
+				theCopy.setHanging(src.getHanging());
+				theCopy.setHangingChars(src.getHangingChars());
+				theCopy.setFirstLine(src.getFirstLine());
+				theCopy.setFirstLineChars(src.getFirstLineChars());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.NumPr>(PPrBase.NumPr.class, 4) {
+			PPrBase.NumPr copy(PPrBase.NumPr src) {
+				PPrBase.NumPr theCopy = new PPrBase.NumPr();
+				theCopy.setIlvl(child(src.getIlvl(), theCopy));
+				theCopy.setNumId(child(src.getNumId(), theCopy));
+				theCopy.setNumberingChange(child(src.getNumberingChange(), theCopy));
+				theCopy.setIns(child(src.getIns(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.NumPr.Ilvl>(PPrBase.NumPr.Ilvl.class, 1) {
+			PPrBase.NumPr.Ilvl copy(PPrBase.NumPr.Ilvl src) {
+				PPrBase.NumPr.Ilvl theCopy = new PPrBase.NumPr.Ilvl();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<PPrBase.NumPr.NumId>(PPrBase.NumPr.NumId.class, 1) {
+			PPrBase.NumPr.NumId copy(PPrBase.NumPr.NumId src) {
+				PPrBase.NumPr.NumId theCopy = new PPrBase.NumPr.NumId();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Jc>(Jc.class, 1) {
+			Jc copy(Jc src) {
+				Jc theCopy = new Jc();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Tabs>(Tabs.class, 1) {
+			Tabs copy(Tabs src) {
+				Tabs theCopy = new Tabs();
+				copyList(src.getTab(), theCopy.getTab(), theCopy);
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTTabStop>(CTTabStop.class, 3) {
+			CTTabStop copy(CTTabStop src) {
+				CTTabStop theCopy = new CTTabStop();
+				theCopy.setVal(src.getVal());
+				theCopy.setLeader(src.getLeader());
+				theCopy.setPos(src.getPos());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<RPr>(RPr.class, 40) {
+			RPr copy(RPr src) {
+				RPr theCopy = new RPr();
+				theCopy.setRStyle(child(src.getRStyle(), theCopy));
+				theCopy.setRFonts(child(src.getRFonts(), theCopy));
+				theCopy.setB(child(src.getB(), theCopy));
+				theCopy.setBCs(child(src.getBCs(), theCopy));
+				theCopy.setI(child(src.getI(), theCopy));
+				theCopy.setICs(child(src.getICs(), theCopy));
+				theCopy.setCaps(child(src.getCaps(), theCopy));
+				theCopy.setSmallCaps(child(src.getSmallCaps(), theCopy));
+				theCopy.setStrike(child(src.getStrike(), theCopy));
+				theCopy.setDstrike(child(src.getDstrike(), theCopy));
+				theCopy.setOutline(child(src.getOutline(), theCopy));
+				theCopy.setShadow(child(src.getShadow(), theCopy));
+				theCopy.setEmboss(child(src.getEmboss(), theCopy));
+				theCopy.setImprint(child(src.getImprint(), theCopy));
+				theCopy.setNoProof(child(src.getNoProof(), theCopy));
+				theCopy.setSnapToGrid(child(src.getSnapToGrid(), theCopy));
+				theCopy.setVanish(child(src.getVanish(), theCopy));
+				theCopy.setWebHidden(child(src.getWebHidden(), theCopy));
+				theCopy.setColor(child(src.getColor(), theCopy));
+				theCopy.setSpacing(child(src.getSpacing(), theCopy));
+				theCopy.setW(child(src.getW(), theCopy));
+				theCopy.setKern(child(src.getKern(), theCopy));
+				theCopy.setPosition(child(src.getPosition(), theCopy));
+				theCopy.setSz(child(src.getSz(), theCopy));
+				theCopy.setSzCs(child(src.getSzCs(), theCopy));
+				theCopy.setHighlight(child(src.getHighlight(), theCopy));
+				theCopy.setU(child(src.getU(), theCopy));
+				theCopy.setEffect(child(src.getEffect(), theCopy));
+				theCopy.setBdr(child(src.getBdr(), theCopy));
+				theCopy.setShd(child(src.getShd(), theCopy));
+				theCopy.setFitText(child(src.getFitText(), theCopy));
+				theCopy.setVertAlign(child(src.getVertAlign(), theCopy));
+				theCopy.setRtl(child(src.getRtl(), theCopy));
+				theCopy.setCs(child(src.getCs(), theCopy));
+				theCopy.setEm(child(src.getEm(), theCopy));
+				theCopy.setLang(child(src.getLang(), theCopy));
+				theCopy.setEastAsianLayout(child(src.getEastAsianLayout(), theCopy));
+				theCopy.setSpecVanish(child(src.getSpecVanish(), theCopy));
+				theCopy.setOMath(child(src.getOMath(), theCopy));
+				theCopy.setRPrChange(child(src.getRPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		//ParaRPr has the fields of RPr but is not an RPr.
+		register(new Copier<ParaRPr>(ParaRPr.class, 44) {
+			ParaRPr copy(ParaRPr src) {
+				ParaRPr theCopy = new ParaRPr();
+				theCopy.setIns(child(src.getIns(), theCopy));
+				theCopy.setDel(child(src.getDel(), theCopy));
+				theCopy.setMoveFrom(child(src.getMoveFrom(), theCopy));
+				theCopy.setMoveTo(child(src.getMoveTo(), theCopy));
+				theCopy.setRStyle(child(src.getRStyle(), theCopy));
+				theCopy.setRFonts(child(src.getRFonts(), theCopy));
+				theCopy.setB(child(src.getB(), theCopy));
+				theCopy.setBCs(child(src.getBCs(), theCopy));
+				theCopy.setI(child(src.getI(), theCopy));
+				theCopy.setICs(child(src.getICs(), theCopy));
+				theCopy.setCaps(child(src.getCaps(), theCopy));
+				theCopy.setSmallCaps(child(src.getSmallCaps(), theCopy));
+				theCopy.setStrike(child(src.getStrike(), theCopy));
+				theCopy.setDstrike(child(src.getDstrike(), theCopy));
+				theCopy.setOutline(child(src.getOutline(), theCopy));
+				theCopy.setShadow(child(src.getShadow(), theCopy));
+				theCopy.setEmboss(child(src.getEmboss(), theCopy));
+				theCopy.setImprint(child(src.getImprint(), theCopy));
+				theCopy.setNoProof(child(src.getNoProof(), theCopy));
+				theCopy.setSnapToGrid(child(src.getSnapToGrid(), theCopy));
+				theCopy.setVanish(child(src.getVanish(), theCopy));
+				theCopy.setWebHidden(child(src.getWebHidden(), theCopy));
+				theCopy.setColor(child(src.getColor(), theCopy));
+				theCopy.setSpacing(child(src.getSpacing(), theCopy));
+				theCopy.setW(child(src.getW(), theCopy));
+				theCopy.setKern(child(src.getKern(), theCopy));
+				theCopy.setPosition(child(src.getPosition(), theCopy));
+				theCopy.setSz(child(src.getSz(), theCopy));
+				theCopy.setSzCs(child(src.getSzCs(), theCopy));
+				theCopy.setHighlight(child(src.getHighlight(), theCopy));
+				theCopy.setU(child(src.getU(), theCopy));
+				theCopy.setEffect(child(src.getEffect(), theCopy));
+				theCopy.setBdr(child(src.getBdr(), theCopy));
+				theCopy.setShd(child(src.getShd(), theCopy));
+				theCopy.setFitText(child(src.getFitText(), theCopy));
+				theCopy.setVertAlign(child(src.getVertAlign(), theCopy));
+				theCopy.setRtl(child(src.getRtl(), theCopy));
+				theCopy.setCs(child(src.getCs(), theCopy));
+				theCopy.setEm(child(src.getEm(), theCopy));
+				theCopy.setLang(child(src.getLang(), theCopy));
+				theCopy.setEastAsianLayout(child(src.getEastAsianLayout(), theCopy));
+				theCopy.setSpecVanish(child(src.getSpecVanish(), theCopy));
+				theCopy.setOMath(child(src.getOMath(), theCopy));
+				theCopy.setRPrChange(child(src.getRPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<RStyle>(RStyle.class, 1) {
+			RStyle copy(RStyle src) {
+				RStyle theCopy = new RStyle();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<RFonts>(RFonts.class, 9) {
+			RFonts copy(RFonts src) {
+				RFonts theCopy = new RFonts();
+				theCopy.setHint(src.getHint());
+				theCopy.setAscii(src.getAscii());
+				theCopy.setHAnsi(src.getHAnsi());
+				theCopy.setEastAsia(src.getEastAsia());
+				theCopy.setCs(src.getCs());
+				theCopy.setAsciiTheme(src.getAsciiTheme());
+				theCopy.setHAnsiTheme(src.getHAnsiTheme());
+				theCopy.setEastAsiaTheme(src.getEastAsiaTheme());
+				theCopy.setCstheme(src.getCstheme());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<BooleanDefaultTrue>(BooleanDefaultTrue.class, 1) {
+			BooleanDefaultTrue copy(BooleanDefaultTrue src) {
+				BooleanDefaultTrue theCopy = new BooleanDefaultTrue();
+				theCopy.setVal(src.isVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<HpsMeasure>(HpsMeasure.class, 1) {
+			HpsMeasure copy(HpsMeasure src) {
+				HpsMeasure theCopy = new HpsMeasure();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTSignedHpsMeasure>(CTSignedHpsMeasure.class, 1) {
+			CTSignedHpsMeasure copy(CTSignedHpsMeasure src) {
+				CTSignedHpsMeasure theCopy = new CTSignedHpsMeasure();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Color>(Color.class, 4) {
+			Color copy(Color src) {
+				Color theCopy = new Color();
+				theCopy.setVal(src.getVal());
+				theCopy.setThemeColor(src.getThemeColor());
+				theCopy.setThemeTint(src.getThemeTint());
+				theCopy.setThemeShade(src.getThemeShade());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<Highlight>(Highlight.class, 1) {
+			Highlight copy(Highlight src) {
+				Highlight theCopy = new Highlight();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<U>(U.class, 5) {
+			U copy(U src) {
+				U theCopy = new U();
+				theCopy.setVal(src.getVal());
+				theCopy.setColor(src.getColor());
+				theCopy.setThemeColor(src.getThemeColor());
+				theCopy.setThemeTint(src.getThemeTint());
+				theCopy.setThemeShade(src.getThemeShade());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTVerticalAlignRun>(CTVerticalAlignRun.class, 1) {
+			CTVerticalAlignRun copy(CTVerticalAlignRun src) {
+				CTVerticalAlignRun theCopy = new CTVerticalAlignRun();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTLanguage>(CTLanguage.class, 3) {
+			CTLanguage copy(CTLanguage src) {
+				CTLanguage theCopy = new CTLanguage();
+				theCopy.setVal(src.getVal());
+				theCopy.setEastAsia(src.getEastAsia());
+				theCopy.setBidi(src.getBidi());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTBorder>(CTBorder.class, 9) {
+			CTBorder copy(CTBorder src) {
+				CTBorder theCopy = new CTBorder();
+				theCopy.setVal(src.getVal());
+				theCopy.setColor(src.getColor());
+				theCopy.setThemeColor(src.getThemeColor());
+				theCopy.setThemeTint(src.getThemeTint());
+				theCopy.setThemeShade(src.getThemeShade());
+				theCopy.setSz(src.getSz());
+				theCopy.setSpace(src.getSpace());
+				theCopy.setShadow(src.isShadow());
+				theCopy.setFrame(src.isFrame());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<CTShd>(CTShd.class, 9) {
+			CTShd copy(CTShd src) {
+				CTShd theCopy = new CTShd();
+				theCopy.setVal(src.getVal());
+				theCopy.setColor(src.getColor());
+				theCopy.setThemeColor(src.getThemeColor());
+				theCopy.setThemeTint(src.getThemeTint());
+				theCopy.setThemeShade(src.getThemeShade());
+				theCopy.setFill(src.getFill());
+				theCopy.setThemeFill(src.getThemeFill());
+				theCopy.setThemeFillTint(src.getThemeFillTint());
+				theCopy.setThemeFillShade(src.getThemeFillShade());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TblPr>(TblPr.class, 16) {
+			TblPr copy(TblPr src) {
+				TblPr theCopy = new TblPr();
+				copyTblPrBase(src, theCopy);
+				theCopy.setTblPrChange(child(src.getTblPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TblWidth>(TblWidth.class, 2) {
+			TblWidth copy(TblWidth src) {
+				TblWidth theCopy = new TblWidth();
+				theCopy.setW(src.getW());
+				theCopy.setType(src.getType());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TrPr>(TrPr.class, 4) {
+			TrPr copy(TrPr src) {
+				TrPr theCopy = new TrPr();
+				copyTrPrBase(src, theCopy);
+				theCopy.setIns(child(src.getIns(), theCopy));
+				theCopy.setDel(child(src.getDel(), theCopy));
+				theCopy.setTrPrChange(child(src.getTrPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TcPr>(TcPr.class, 17) {
+			TcPr copy(TcPr src) {
+				TcPr theCopy = new TcPr();
+				copyTcPrInner(src, theCopy);
+				theCopy.setTcPrChange(child(src.getTcPrChange(), theCopy));
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TcPrInner.GridSpan>(TcPrInner.GridSpan.class, 1) {
+			TcPrInner.GridSpan copy(TcPrInner.GridSpan src) {
+				TcPrInner.GridSpan theCopy = new TcPrInner.GridSpan();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+
+		register(new Copier<TcPrInner.VMerge>(TcPrInner.VMerge.class, 1) {
+			TcPrInner.VMerge copy(TcPrInner.VMerge src) {
+				TcPrInner.VMerge theCopy = new TcPrInner.VMerge();
+				theCopy.setVal(src.getVal());
+				return theCopy;
+			}
+		});
+	}
+
+	private static void copyPPrBase(PPrBase src, PPrBase dest) {
+		dest.setPStyle(child(src.getPStyle(), dest));
+		dest.setKeepNext(child(src.getKeepNext(), dest));
+		dest.setKeepLines(child(src.getKeepLines(), dest));
+		dest.setPageBreakBefore(child(src.getPageBreakBefore(), dest));
+		dest.setFramePr(child(src.getFramePr(), dest));
+		dest.setWidowControl(child(src.getWidowControl(), dest));
+		dest.setNumPr(child(src.getNumPr(), dest));
+		dest.setSuppressLineNumbers(child(src.getSuppressLineNumbers(), dest));
+		dest.setPBdr(child(src.getPBdr(), dest));
+		dest.setShd(child(src.getShd(), dest));
+		dest.setTabs(child(src.getTabs(), dest));
+		dest.setSuppressAutoHyphens(child(src.getSuppressAutoHyphens(), dest));
+		dest.setKinsoku(child(src.getKinsoku(), dest));
+		dest.setWordWrap(child(src.getWordWrap(), dest));
+		dest.setOverflowPunct(child(src.getOverflowPunct(), dest));
+		dest.setTopLinePunct(child(src.getTopLinePunct(), dest));
+		dest.setAutoSpaceDE(child(src.getAutoSpaceDE(), dest));
+		dest.setAutoSpaceDN(child(src.getAutoSpaceDN(), dest));
+		dest.setBidi(child(src.getBidi(), dest));
+		dest.setAdjustRightInd(child(src.getAdjustRightInd(), dest));
+		dest.setSnapToGrid(child(src.getSnapToGrid(), dest));
+		dest.setSpacing(child(src.getSpacing(), dest));
+		dest.setInd(child(src.getInd(), dest));
+		dest.setContextualSpacing(child(src.getContextualSpacing(), dest));
+		dest.setMirrorIndents(child(src.getMirrorIndents(), dest));
+		dest.setSuppressOverlap(child(src.getSuppressOverlap(), dest));
+		dest.setJc(child(src.getJc(), dest));
+		dest.setTextDirection(child(src.getTextDirection(), dest));
+		dest.setTextAlignment(child(src.getTextAlignment(), dest));
+		dest.setTextboxTightWrap(child(src.getTextboxTightWrap(), dest));
+		dest.setOutlineLvl(child(src.getOutlineLvl(), dest));
+		dest.setDivId(child(src.getDivId(), dest));
+		dest.setCnfStyle(child(src.getCnfStyle(), dest));
+	}
+
+	private static void copyTblPrBase(CTTblPrBase src, CTTblPrBase dest) {
+		dest.setTblStyle(child(src.getTblStyle(), dest));
+		dest.setTblpPr(child(src.getTblpPr(), dest));
+		dest.setTblOverlap(child(src.getTblOverlap(), dest));
+		dest.setBidiVisual(child(src.getBidiVisual(), dest));
+		dest.setTblStyleRowBandSize(child(src.getTblStyleRowBandSize(), dest));
+		dest.setTblStyleColBandSize(child(src.getTblStyleColBandSize(), dest));
+		dest.setTblW(child(src.getTblW(), dest));
+		dest.setJc(child(src.getJc(), dest));
+		dest.setTblCellSpacing(child(src.getTblCellSpacing(), dest));
+		dest.setTblInd(child(src.getTblInd(), dest));
+		dest.setTblBorders(child(src.getTblBorders(), dest));
+		dest.setShd(child(src.getShd(), dest));
+		dest.setTblLayout(child(src.getTblLayout(), dest));
+		dest.setTblCellMar(child(src.getTblCellMar(), dest));
+		dest.setTblLook(child(src.getTblLook(), dest));
+	}
+
+	private static void copyTrPrBase(CTTrPrBase src, CTTrPrBase dest) {
+		copyList(
+			src.getCnfStyleOrDivIdOrGridBefore(),
+			dest.getCnfStyleOrDivIdOrGridBefore(),
+			dest);
+	}
+
+	private static void copyTcPrInner(TcPrInner src, TcPrInner dest) {
+		dest.setCnfStyle(child(src.getCnfStyle(), dest));
+		dest.setTcW(child(src.getTcW(), dest));
+		dest.setGridSpan(child(src.getGridSpan(), dest));
+		dest.setHMerge(child(src.getHMerge(), dest));
+		dest.setVMerge(child(src.getVMerge(), dest));
+		dest.setTcBorders(child(src.getTcBorders(), dest));
+		dest.setShd(child(src.getShd(), dest));
+		dest.setNoWrap(child(src.getNoWrap(), dest));
+		dest.setTcMar(child(src.getTcMar(), dest));
+		dest.setTextDirection(child(src.getTextDirection(), dest));
+		dest.setTcFitText(child(src.getTcFitText(), dest));
+		dest.setVAlign(child(src.getVAlign(), dest));
+		dest.setHideMark(child(src.getHideMark(), dest));
+		dest.setCellIns(child(src.getCellIns(), dest));
+		dest.setCellDel(child(src.getCellDel(), dest));
+		dest.setCellMerge(child(src.getCellMerge(), dest));
+	}
+
+	private static abstract class Copier<T> {
+		final Class<T> type;
+		final int fieldCount;
+
+		/**
+		 * @param type The class whose objects are copied
+		 * @param fieldCount The number of fields copy() copies
+		 */
+		Copier(Class<T> type, int fieldCount) {
+			this.type = type;
+			this.fieldCount = fieldCount;
+		}
+
+		abstract T copy(T src);
+	}// Copier class
+
+}// WordMLCopier class
@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.docx4all.xml;
+
+import javax.swing.text.StyleConstants;
+
+import org.docx4all.ui.main.Constants;
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.P;
+import org.docx4j.wml.PPr;
+import org.docx4j.wml.R;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.SdtBlock;
+import org.docx4j.wml.SdtContentBlock;
+import org.docx4j.wml.SdtPr;
+import org.plutext.client.SdtWrapper;
+
+/**
+ * Compares WordMLCopier.copy() with XmlUtils.deepCopy() on content
+ * controls shaped like those of a typical shared document.
+ *
+ * Each copier is warmed up first and then timed over a number of
+ * rounds.  The copies made by both are marshalled and compared so that
+ * a copier which drops content shows up as a failure rather than a gain.
+ *
+ * Usage: WordMLCopierBenchmark [paragraphsPerSdt] [sdts] [rounds]
+ *
+ * To test properly, make sure logging is quiet, eg:
+ *    -Dlog4j.configuration=conf/log4j.properties
+ */
+public class WordMLCopierBenchmark {
+
+	private final static int WARM_UP_ROUNDS = 20;
+
+	public static void main(String[] args) throws Exception {
+		int paragraphs = (args.length > 0) ? Integer.parseInt(args[0]) : 10;
+		int sdtCount = (args.length > 1) ? Integer.parseInt(args[1]) : 100;
+		int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 50;
+
+		System.out.println("ParagraphsPerSdt=" + paragraphs
+			+ " sdts=" + sdtCount
+			+ " rounds=" + rounds);
+
+		SdtBlock[] sdts = new SdtBlock[sdtCount];
+		for (int i = 0; i < sdtCount; i++) {
+			sdts[i] = createSdt(i, paragraphs);
+		}
+
+		for (int i = 0; i < sdtCount; i++) {
+			String expected = XmlUtils.marshaltoString(XmlUtils.deepCopy(sdts[i]), true);
+			String actual = XmlUtils.marshaltoString(WordMLCopier.copy(sdts[i]), true);
+			if (!expected.equals(actual)) {
+				System.out.println("Copies of sdt " + i + " differ:");
+				System.out.println("deepCopy:     " + expected);
+				System.out.println("WordMLCopier: " + actual);
+				System.exit(1);
+			}
+		}
+
+		run(new DeepCopy(), sdts, WARM_UP_ROUNDS);
+		run(new Copier(), sdts, WARM_UP_ROUNDS);
+
+		long deepCopyNanos = run(new DeepCopy(), sdts, rounds);
+		long copierNanos = run(new Copier(), sdts, rounds);
+
+		long copies = (long) rounds * sdtCount;
+		report("XmlUtils.deepCopy()", deepCopyNanos, copies);
+		report("WordMLCopier.copy()", copierNanos, copies);
+		System.out.println("Speed up: "
+			+ (copierNanos == 0 ? "n/a" : String.format("%.1fx", (double) deepCopyNanos / copierNanos)));
+	}
+
+	private static long run(Copy copy, SdtBlock[] sdts, int rounds) {
+		Object sink = null;
+		long start = System.nanoTime();
+		for (int round = 0; round < rounds; round++) {
+			for (SdtBlock sdt: sdts) {
+				sink = copy.copy(sdt);
+			}
+		}
+		long elapsed = System.nanoTime() - start;
+		if (sink == null) {
+			throw new IllegalStateException("Nothing copied");
+		}
+		return elapsed;
+	}
+
+	private static void report(String name, long nanos, long copies) {
+		System.out.println(name
+			+ ": total=" + (nanos / 1000000) + "ms"
+			+ " perCopy=" + (nanos / copies / 1000) + "us");
+	}
+
+	private static SdtBlock createSdt(int idx, int paragraphs) {
+		SdtContentBlock content = ObjectFactory.createSdtContentBlock();
+		for (int i = 0; i < paragraphs; i++) {
+			P p = ObjectFactory.createP(null);
+
+			PPr pPr = ObjectFactory.createPPr();
+			pPr.setPStyle(ObjectFactory.createPStyle((i == 0) ? "Heading1" : "Normal"));
+			pPr.setJc(ObjectFactory.createJc(Integer.valueOf(StyleConstants.ALIGN_JUSTIFIED)));
+			p.setPPr(pPr);
+
+			for (int j = 0; j < 4; j++) {
+				R r = ObjectFactory.createR("Paragraph " + i + " of sdt " + idx + ", run " + j + ". ");
+				RPr rPr = ObjectFactory.createRPr();
+				rPr.setRFonts(ObjectFactory.createRPrRFonts("Times New Roman"));
+				rPr.setSz(ObjectFactory.createHpsMeasure(Integer.valueOf(24)));
+				if (j % 2 == 1) {
+					rPr.setB(ObjectFactory.createBooleanDefaultTrue(Boolean.TRUE));
+					rPr.setU(ObjectFactory.createUnderline("single", "000000"));
+				}
+				r.setRPr(rPr);
+				p.getParagraphContent().add(r);
+			}
+			p.getParagraphContent().add(ObjectFactory.createR(Constants.NEWLINE));
+			content.getContent().add(p);
+		}
+
+		SdtPr sdtPr = ObjectFactory.createSdtPr();
+		sdtPr.setId();
+		String id = sdtPr.getId().getVal().toString();
+		sdtPr.setTag(ObjectFactory.createTag(SdtWrapper.generateTag(id, "1")));
+
+		SdtBlock sdt = ObjectFactory.createSdtBlock();
+		sdt.setSdtPr(sdtPr);
+		sdt.setSdtContent(content);
+		return sdt;
+	}
+
+	private interface Copy {
+		public Object copy(SdtBlock sdt);
+	}
+
+	private static class DeepCopy implements Copy {
+		public Object copy(SdtBlock sdt) {
+			return XmlUtils.deepCopy(sdt);
+		}
+	}
+
+	private static class Copier implements Copy {
+		public Object copy(SdtBlock sdt) {
+			return WordMLCopier.copy(sdt);
+		}
+	}
+
+}// WordMLCopierBenchmark class
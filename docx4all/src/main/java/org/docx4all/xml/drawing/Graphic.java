@@ -24,6 +24,7 @@ import java.awt.Toolkit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
 import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
 
 /**
@@ -46,7 +47,7 @@ public class Graphic {
 	public java.awt.Image getImage(WordprocessingMLPackage wmlPkg) {
 		
 		java.awt.Image theImage = null;	
-    	byte[] bytes = BinaryPartAbstractImage.getImage(wmlPkg, graphic);
+    	byte[] bytes = getImageData(wmlPkg);
     	if (bytes!=null) {
     		theImage = Toolkit.getDefaultToolkit().createImage(bytes);		
     		return theImage;
@@ -54,6 +55,44 @@ public class Graphic {
     		return null;
     	}
 	}
+	
+	/**
+	 * @param wmlPkg
+	 * @return the undecoded bytes of this graphic's image if any;
+	 *         null, otherwise.
+	 */
+	public byte[] getImageData(WordprocessingMLPackage wmlPkg) {
+		return BinaryPartAbstractImage.getImage(wmlPkg, graphic);
+	}
+	
+	/**
+	 * @param wmlPkg
+	 * @return the name of the part holding this graphic's image if it 
+	 *         can be found; otherwise, the relationship id of the image.
+	 *         Null if there is no image.
+	 */
+	public String getImagePartName(WordprocessingMLPackage wmlPkg) {
+		String relId = null;
+		if (this.graphic.getGraphicData() != null
+			&& this.graphic.getGraphicData().getPic() != null
+			&& this.graphic.getGraphicData().getPic().getBlipFill() != null
+			&& this.graphic.getGraphicData().getPic().getBlipFill().getBlip() != null) {
+			org.docx4j.dml.CTBlip blip = 
+				this.graphic.getGraphicData().getPic().getBlipFill().getBlip();
+			relId = blip.getEmbed();
+			if (relId == null || relId.length() == 0) {
+				relId = blip.getLink();
+			}
+		}
+		
+		if (relId == null || relId.length() == 0) {
+			return null;
+		}
+		
+		Part part = 
+			wmlPkg.getMainDocumentPart().getRelationshipsPart().getPart(relId);
+		return (part != null) ? part.getPartName().getName() : relId;
+	}
 
 //	private org.docx4j.dml.Pic getPic() {
 //		return this.graphic.getGraphicData().getPic();
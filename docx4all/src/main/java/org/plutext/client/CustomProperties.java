@@ -30,6 +30,9 @@ public class CustomProperties
 
         public static final String PROMPT_FOR_CHECKIN_MESSAGE = "plutext:CheckinMessageEnabled";
 
+        // Set by servers which accept op="delta" transforms
+        public static final String DELTA_TRANSFORMS_ENABLED = "plutext:DeltaTransformsEnabled";
+
         // TODO - is this still used??
         public static final String DOCUMENT_ID = "DealerID";
 
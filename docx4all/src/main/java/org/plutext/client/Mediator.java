@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.swing.SwingUtilities;
 import javax.xml.bind.JAXBContext;
@@ -62,6 +63,7 @@ import org.docx4all.xml.BodyML;
 import org.docx4all.xml.DocumentML;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.SdtBlockML;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.NamespacePrefixMappings;
 import org.docx4j.openpackaging.exceptions.InvalidFormatException;
@@ -91,9 +93,11 @@ import org.plutext.client.partWrapper.SequencedPartRels;
 import org.plutext.client.state.PartVersionList;
 import org.plutext.client.state.StateChunk;
 import org.plutext.client.state.StateDocx;
+import org.plutext.client.state.StateJournal;
 import org.plutext.client.webservice.PlutextService_ServiceLocator;
 import org.plutext.client.webservice.PlutextWebService;
 import org.plutext.client.wrappedTransforms.TransformAbstract;
+import org.plutext.client.wrappedTransforms.TransformDelta;
 import org.plutext.client.wrappedTransforms.TransformDelete;
 import org.plutext.client.wrappedTransforms.TransformHelper;
 import org.plutext.client.wrappedTransforms.TransformInsert;
@@ -174,12 +178,140 @@ public class Mediator {
 		}
 
 		this.textPane = textPane;
-		this.stateDocx = new StateDocx(doc);
-		
+		this.stateDocx = 
+			new StateDocx(
+				doc, 
+				StateJournal.open(
+					(String) doc.getProperty(WordMLDocument.FILE_PATH_PROPERTY)));
+		this.localService = null;
 		
 	}
 
+	/**
+	 * Creates a Mediator which talks to 'service' rather than to
+	 * the Alfresco endpoint derived from the document's webdav uri.
+	 * No Alfresco session is started in this case.
+	 * 
+	 * @param textPane
+	 * @param service eg: a LocalPlutextService session
+	 */
+	public Mediator(WordMLTextPane textPane, PlutextWebService service) {
+		WordMLDocument doc = (WordMLDocument) textPane.getDocument();
+		DocumentElement root = (DocumentElement) doc.getDefaultRootElement();
+		WordprocessingMLPackage wmlPackage = 
+			((DocumentML) root.getElementML()).getWordprocessingMLPackage();
+		if (wmlPackage == null || !XmlUtil.isSharedDocumentPackage(wmlPackage)) {
+			throw new IllegalArgumentException("Not a shared WordMLDocument");
+		}
+
+		this.textPane = textPane;
+		this.stateDocx = new StateDocx(doc);
+		this.localService = service;
+	}
+
 	private PlutextWebService ws = null;
+	
+	private final PlutextWebService localService;
+
+	private RemoteEditsPrefetcher prefetcher = null;
+	
+	private RemoteChangesWatcher watcher = null;
+	
+	private final List<RemoteChangesListener> remoteChangesListeners =
+		new CopyOnWriteArrayList<RemoteChangesListener>();
+	
+	/**
+	 * Starts fetching remote transforms in the background.
+	 * fetchUpdates() then commits whatever has been prefetched
+	 * instead of asking the server.
+	 * 
+	 * The prefetcher is driven by a RemoteChangesWatcher, and
+	 * only polls by itself if the server cannot notify us.
+	 */
+	public synchronized void startPrefetching() {
+		if (this.prefetcher == null) {
+			this.prefetcher = new RemoteEditsPrefetcher(this);
+			this.prefetcher.setNotified(true);
+			this.prefetcher.start();
+			
+			this.watcher = new RemoteChangesWatcher(this);
+			this.watcher.start();
+		}
+	}
+	
+	public synchronized void stopPrefetching() {
+		if (this.watcher != null) {
+			this.watcher.stop();
+			this.watcher = null;
+		}
+		if (this.prefetcher != null) {
+			this.prefetcher.stop();
+			this.prefetcher = null;
+		}
+	}
+	
+	public void addRemoteChangesListener(RemoteChangesListener listener) {
+		this.remoteChangesListeners.add(listener);
+	}
+	
+	public void removeRemoteChangesListener(RemoteChangesListener listener) {
+		this.remoteChangesListeners.remove(listener);
+	}
+	
+	/**
+	 * Called by RemoteChangesWatcher when the server has transforms
+	 * we haven't fetched yet.
+	 */
+	void fireRemoteChangesAvailable(long sequenceNumber) {
+		RemoteEditsPrefetcher thePrefetcher = getPrefetcher();
+		if (thePrefetcher != null) {
+			thePrefetcher.pollNow();
+		}
+		
+		RemoteChangesEvent e = new RemoteChangesEvent(this, sequenceNumber);
+		for (RemoteChangesListener listener: this.remoteChangesListeners) {
+			listener.remoteChangesAvailable(e);
+		}
+	}
+	
+	/**
+	 * Called by RemoteChangesWatcher when it gives up, 
+	 * eg: because the server does not support waitForChanges().
+	 */
+	synchronized void remoteChangesWatcherStopped() {
+		this.watcher = null;
+		if (this.prefetcher != null) {
+			this.prefetcher.setNotified(false);
+		}
+	}
+	
+	public synchronized RemoteEditsPrefetcher getPrefetcher() {
+		return this.prefetcher;
+	}
+
+	/**
+	 * Records the sync state in the document's journal, if there is one.
+	 * Has to be called in the event dispatching thread.
+	 */
+	private void checkpointJournal() {
+		StateJournal journal = stateDocx.getJournal();
+		if (journal != null) {
+			journal.checkpoint(stateDocx, Util.getPlutextIds(getWordMLDocument()));
+		}
+	}
+	
+	/**
+	 * Records the sync state in the document's journal, if there is one,
+	 * and closes the journal.
+	 * Has to be called in the event dispatching thread.
+	 */
+	public void closeJournal() {
+		StateJournal journal = stateDocx.getJournal();
+		if (journal != null) {
+			checkpointJournal();
+			journal.close();
+		}
+	}
 
 	private Skeleton currentClientSkeleleton = null;
 
@@ -216,16 +348,22 @@ public class Mediator {
 	
     AuthenticationDetails authDetails; 
 	
-	public void startSession() throws ServiceException {
-		
-		log.info("starting session");
-		
-        try {
-			WordMLDocument doc = getWordMLDocument();
+	/**
+	 * Opens a connection to the web service of this Mediator.
+	 * When talking to Alfresco, this starts an Alfresco session
+	 * in the calling thread. See closeWebService().
+	 * 
+	 * @return the PlutextWebService to use
+	 * @throws Exception
+	 */
+	PlutextWebService openWebService() throws Exception {
+		if (this.localService != null) {
+			return this.localService;
+		} else {
 			WebdavUri uri =
 				new WebdavUri(
-				(String) doc.getProperty(WordMLDocument.FILE_PATH_PROPERTY));
-			
+				(String) getWordMLDocument().getProperty(WordMLDocument.FILE_PATH_PROPERTY));
+		
 		    StringBuilder endPointAddress = new StringBuilder("http://");
 		    endPointAddress.append(uri.getHost());
 		    if (uri.getPort() != null) {
@@ -233,7 +371,7 @@ public class Mediator {
 		    	endPointAddress.append(uri.getPort());
 		    }
 		    endPointAddress.append("/alfresco/api");
-		    			
+	    			
             org.alfresco.webservice.util.WebServiceFactory.setEndpointAddress(
             		endPointAddress.toString());
 
@@ -255,7 +393,7 @@ public class Mediator {
              * they can be set on other threads as necessary.
              */
             authDetails = AuthenticationUtils.getAuthenticationDetails();
-		      
+	      
             PlutextService_ServiceLocator locator = 
             	new PlutextService_ServiceLocator(
             			AuthenticationUtils.getEngineConfiguration());
@@ -263,7 +401,27 @@ public class Mediator {
             locator.setPlutextServiceEndpointAddress(
             	endPointAddress + "/" + locator.getPlutextServiceWSDDServiceName());
 
-            ws = locator.getPlutextService();
+            return locator.getPlutextService();
+		}
+	}
+	
+	/**
+	 * Ends the Alfresco session, if any, started in the calling thread
+	 * by openWebService().
+	 */
+	void closeWebService() {
+		if (this.localService == null) {
+			AuthenticationUtils.endSession();
+		}
+	}
+
+	public void startSession() throws ServiceException {
+		
+		log.info("starting session");
+		
+        try {
+			WordMLDocument doc = getWordMLDocument();
+			ws = openWebService();
 
 			this.updateStartOffset = doc.getLength();
 			this.updateEndOffset = 0;
@@ -294,7 +452,7 @@ public class Mediator {
 	public void endSession() {
 		log.info("Ending session.");		
 		
-		AuthenticationUtils.endSession();
+		closeWebService();
 		currentClientSkeleleton = null;
 		ws = null;
 		changeSets = null;
@@ -317,12 +475,27 @@ public class Mediator {
 		
 		worker.setProgress(FetchProgress.START_FETCHING, "Fetch updates");
 		
+		Map<String, Changeset> journaledChangeSets = registerJournaledUpdates();
+		
 		log.debug(".. .. fetchUpdates, from "
 				+ stateDocx.getTransforms().getTSequenceNumberHighestFetched());
 
+		RemoteEditsPrefetcher thePrefetcher = getPrefetcher();
+		if (thePrefetcher != null) {
+			RemoteEditsPrefetcher.StagedUpdates staged = 
+				thePrefetcher.takeStaged(
+					stateDocx.getTransforms().getTSequenceNumberHighestFetched());
+			if (staged != null) {
+				commitStagedUpdates(worker, staged);
+				commitJournaledUpdates(worker, journaledChangeSets);
+				return;
+			}
+		}
+		
+		int fetchedFrom = stateDocx.getTransforms().getTSequenceNumberHighestFetched();
+		
 		// ws = ChunkServiceOverride.getWebService();
-		String[] updates = ws.getTransforms(stateDocx.getDocID(), stateDocx
-				.getTransforms().getTSequenceNumberHighestFetched());
+		String[] updates = ws.getTransforms(stateDocx.getDocID(), fetchedFrom);
 
         /* Returns an array containing the current sequence number, and an XML document:
          * 
@@ -364,6 +537,7 @@ public class Mediator {
 						appliedFalse, 
 						localFalse, 
 						updateHighestFetchedTrue);
+				journalUpdates(fetchedFrom, Integer.parseInt(updates[0]), updates[1]);
 				
 				if (needToFetchSkel || oldServer == null) {
                     worker.setProgress(
@@ -380,6 +554,150 @@ public class Mediator {
 				worker.setProgress(FetchProgress.FETCHING_DONE, "No remote updates");
 			}	
 		}
+		
+		commitJournaledUpdates(worker, journaledChangeSets);
+	}
+	
+	/**
+	 * Registers transforms fetched by the prefetcher, as fetchUpdates()
+	 * would have done had it fetched them itself.
+	 */
+	private void commitStagedUpdates(
+		FetchRemoteEditsWorker worker, 
+		RemoteEditsPrefetcher.StagedUpdates staged) throws RemoteException {
+		
+        worker.setProgress(FetchProgress.REGISTERING_UPDATES, "Registering updates");
+        
+		log.debug(stateDocx.getDocID() + " committing prefetched transforms up to " 
+			+ staged.getSequenceNumber());
+		
+		int fetchedFrom = stateDocx.getTransforms().getTSequenceNumberHighestFetched();
+		stateDocx.getTransforms().setTSequenceNumberHighestFetched(
+			(int) staged.getSequenceNumber());
+		for (TransformAbstract ta: staged.getTransforms()) {
+			registerTransform(ta, false, false, true);
+		}
+		this.changeSets = new HashMap<String, Changeset>(staged.getChangesets());
+		
+		if (stateDocx.getJournal() != null) {
+			org.plutext.transforms.Updates updatesObj = new org.plutext.transforms.Updates();
+			updatesObj.setTransforms(new Transforms());
+			updatesObj.setChangesets(new org.plutext.transforms.Changesets());
+			for (TransformAbstract ta: staged.getTransforms()) {
+				updatesObj.getTransforms().getT().add(ta.t);
+			}
+			updatesObj.getChangesets().getChangeset().addAll(staged.getChangesets().values());
+			journalUpdates(
+				fetchedFrom, 
+				(int) staged.getSequenceNumber(), 
+				XmlUtils.marshaltoString(updatesObj, true, false, Context.jcTransforms));
+		}
+		
+		if (staged.getSkeleton() != null) {
+			oldServer = staged.getSkeleton();
+		} else if (oldServer == null) {
+            worker.setProgress(
+            	FetchProgress.FETCHING_REMOTE_DOC_STRUCTURE, 
+            	"Fetching remote document structure");
+			oldServer = new Skeleton(ws.getSkeletonDocument(stateDocx.getDocID()));
+		}
+		worker.setProgress(FetchProgress.FETCHING_DONE, "About to apply remote edits to local document");
+	}
+	
+	/**
+	 * Keeps the updates just fetched in the document's journal, 
+	 * if there is one, so that they need not be fetched again
+	 * when the document is reopened.
+	 * 
+	 * @param from The highest sequence number fetched before
+	 * @param to The highest sequence number fetched now
+	 * @param updates The updates xml, as returned by the server
+	 */
+	private void journalUpdates(int from, int to, String updates) {
+		StateJournal journal = stateDocx.getJournal();
+		if (journal != null) {
+			journal.appendUpdates(from, to, updates);
+		}
+	}
+	
+	/**
+	 * Registers the transforms which the journal kept from when this
+	 * document was last open.  StateDocx counts them as fetched already.
+	 * 
+	 * @return the changesets of the transforms registered; 
+	 * null if none was registered.
+	 */
+	private Map<String, Changeset> registerJournaledUpdates() {
+		List<String> journaled = stateDocx.takeJournaledUpdates();
+		if (journaled.isEmpty()) {
+			return null;
+		}
+		
+		int from = stateDocx.getJournaledUpdatesFrom();
+		List<TransformAbstract> theTransforms = new ArrayList<TransformAbstract>();
+		Map<String, Changeset> theChangeSets = new HashMap<String, Changeset>();
+		try {
+			Unmarshaller u = Context.jcTransforms.createUnmarshaller();
+			u.setEventHandler(new org.docx4j.jaxb.JaxbValidationEventHandler());
+			for (String updates: journaled) {
+				org.plutext.transforms.Updates updatesObj = 
+					(org.plutext.transforms.Updates) u.unmarshal(
+						new java.io.StringReader(updates));
+				for (T t: updatesObj.getTransforms().getT()) {
+					// The document already has the earlier ones
+					if (t.getSnum() > from) {
+						theTransforms.add(TransformHelper.construct(t));
+					}
+				}
+				for (Changeset c: updatesObj.getChangesets().getChangeset()) {
+					theChangeSets.put(Long.toString(c.getNumber()), c);
+				}
+			}
+		} catch (JAXBException e) {
+			log.error("registerJournaledUpdates(): Fetching from " + from + " instead.", e);
+			stateDocx.getTransforms().setTSequenceNumberHighestFetched(from);
+			return null;
+		}
+		
+		if (theTransforms.isEmpty()) {
+			return null;
+		}
+		
+		log.debug(stateDocx.getDocID() + " registering " + theTransforms.size() 
+			+ " journaled transforms after " + from);
+		for (TransformAbstract ta: theTransforms) {
+			registerTransform(ta, false, false, false);
+		}
+		return theChangeSets;
+	}
+	
+	/**
+	 * Adds the changesets of the journaled transforms to those fetched
+	 * and makes sure there is a server skeleton to apply them against.
+	 * 
+	 * @param worker
+	 * @param journaledChangeSets as returned by registerJournaledUpdates()
+	 */
+	private void commitJournaledUpdates(
+		FetchRemoteEditsWorker worker, 
+		Map<String, Changeset> journaledChangeSets) throws RemoteException {
+		
+		if (journaledChangeSets == null) {
+			return;
+		}
+		
+		if (this.changeSets != null) {
+			journaledChangeSets.putAll(this.changeSets);
+		}
+		this.changeSets = journaledChangeSets;
+		
+		if (oldServer == null) {
+            worker.setProgress(
+            	FetchProgress.FETCHING_REMOTE_DOC_STRUCTURE, 
+            	"Fetching remote document structure");
+			oldServer = new Skeleton(ws.getSkeletonDocument(stateDocx.getDocID()));
+		}
+		worker.setProgress(FetchProgress.FETCHING_DONE, "About to apply remote edits to local document");
 	}
 	
     /**
@@ -644,6 +962,8 @@ public class Mediator {
 		}
 		
 		this.oldServer = null;
+		
+		checkpointJournal();
 	}
 	
 	static Templates xsltReferenceMap;		
@@ -1703,6 +2023,16 @@ private void updateDocx4jPart(
 		}
 	}
 
+	/**
+	 * Marks up t, reusing the markup computed by the prefetcher
+	 * if it was computed from the same original.
+	 */
+	private void markupChanges(TransformAbstract t, String original, Changeset changeset) {
+		if (!t.usePremarkup(original, changeset)) {
+			t.markupChanges(original, changeset);
+		}
+	}
+	
 	/* On success, returns the transformation's tSequenceNumber; otherwise, 0 */
 	private long applyUpdate(TransformAbstract t) {
 		long resultCode;
@@ -1727,7 +2057,7 @@ private void updateDocx4jPart(
 			// handled like a TransformUpdate.
 
 			// Mark it up
-			t.markupChanges(null, changeset);
+			markupChanges(t, null, changeset);
 
 			resultCode = t.apply(this, stateDocx.getStateChunks());
 			t.setApplied(true);
@@ -1765,7 +2095,7 @@ private void updateDocx4jPart(
 
 				// In this case we have already put it in stateDocx.StateChunks,
 				// so we can do:
-				t.markupChanges(stateDocxSC.getXml(), changeset);
+				markupChanges(t, stateDocxSC.getXml(), changeset);
 
 			} else {
 				boolean conflict = isConflict(currentChunk, stateDocxSC);
@@ -1794,16 +2124,16 @@ private void updateDocx4jPart(
 						return CANT_OVERWRITE;
 						
 					} else {
-						t.markupChanges(currentChunk.getXml(), changeset);
+						markupChanges(t, currentChunk.getXml(), changeset);
 					}
 					
 				} else if (matchedOnMarkedUpVersion(currentChunk, stateDocxSC)) {
 					// Compare it to non-marked up
-					t.markupChanges(stateDocxSC.getXml(), changeset);
+					markupChanges(t, stateDocxSC.getXml(), changeset);
 					
 				} else {
 					// Easy - they are the same
-					t.markupChanges(currentChunk.getXml(), changeset);
+					markupChanges(t, currentChunk.getXml(), changeset);
 				}
 			} // if (currentChunk == null)
 
@@ -1860,6 +2190,20 @@ private void updateDocx4jPart(
 		} else if ((t instanceof TransformUpdate)
 				|| (t instanceof TransformInsert)) {
 			
+			if (t instanceof TransformDelta) {
+				// Rebuild the whole sdt out of the version it was made from.
+				// If we haven't got that version, the delta is not applied;
+				// splicing it into another version would give wrong content.
+				StateChunk baseSC = stateDocx.getStateChunks().get(plutextId);
+				if (baseSC == null 
+					|| !((TransformDelta) t).expand(baseSC)) {
+					log.debug("Delta " + t.getSequenceNumber() 
+						+ " needs version " + ((TransformDelta) t).getBaseVersion()
+						+ " of Sdt Id=" + plutextId + ". Not applied.");
+					return CANT_OVERWRITE;
+				}
+			}
+			
 	        // Special handling for document level sectPr
 	        if (t.getPlutextId().equals(SECTPR_MAGIC_ID ))
 	        {
@@ -1892,7 +2236,7 @@ private void updateDocx4jPart(
 
 				// So user hasn't seen it before, so
 				// handle this like we handle a TransformInsert.
-				((TransformUpdate) t).markupChanges(null, changeset);
+				markupChanges(t, null, changeset);
 
 			} else {
 				conflict = isConflict(currentChunk, stateDocxSC);
@@ -1921,17 +2265,17 @@ private void updateDocx4jPart(
 						return CANT_OVERWRITE;
 
 					} else {
-						t.markupChanges(currentChunk.getXml(), changeset);
+						markupChanges(t, currentChunk.getXml(), changeset);
 
 						// We could warn the user here that their stuff has been
 						// redlined as a deletion.
 					}
 				} else if (matchedOnMarkedUpVersion(currentChunk, stateDocxSC)) {
 					// Compare it to non-marked up
-					t.markupChanges(stateDocxSC.getXml(), changeset);
+					markupChanges(t, stateDocxSC.getXml(), changeset);
 				} else {
 					// Easy
-					t.markupChanges(currentChunk.getXml(), changeset);
+					markupChanges(t, currentChunk.getXml(), changeset);
 				}
 			}
 
@@ -2555,10 +2899,18 @@ private void updateDocx4jPart(
 					// tu.setId( chunkCurrent.getId() );
 					// transformsToSend.add(tu);
 
-					T t = transformsFactory.createTransformsT();
-					t.setOp("update");
-					t.setIdref(chunkCurrent.getIdAsLong() );
-					t.setSdt(chunkCurrent.getSdt());
+					// Where the server accepts them, send only the
+					// children which changed.
+					T t = null;
+					if (stateDocx.getDeltaTransformsEnabled()) {
+						t = TransformDelta.createDelta(chunkOlder, chunkCurrent);
+					}
+					if (t == null) {
+						t = transformsFactory.createTransformsT();
+						t.setOp("update");
+						t.setIdref(chunkCurrent.getIdAsLong() );
+						t.setSdt(chunkCurrent.getSdt());
+					}
 					transformsToSend.add(t);
 				}
 			}// for (idx) loop
@@ -2741,11 +3093,29 @@ private void updateDocx4jPart(
 			                // Set the in-document tag to match the one we got back 
 			                // unless its just the sectPr
 			                if (!ta.getPlutextId().equals(SECTPR_MAGIC_ID))
-			                {							
+			                {
+			                	org.docx4j.wml.SdtBlock echoed = ta.getSdt();
+			                	if (ta instanceof TransformDelta) {
+			                		// The server only echoes the children we sent
+			                		StateChunk baseSC = 
+			                			this.stateDocx.getStateChunks().get(ta.getPlutextId());
+			                		if (baseSC == null
+			                			|| !((TransformDelta) ta).expand(baseSC)) {
+			                			// What the server holds now is what we sent.
+			                			// Take the whole content control from the
+			                			// document once its tag is updated below.
+			                			echoed = null;
+			                		} else {
+			                			echoed = ta.getSdt();
+			                		}
+			                	}
 								updateLocalContentControlTag(ta.getPlutextId(), ta.getTag());
+								if (echoed == null) {
+									echoed = getLocalContentControl(ta.getPlutextId());
+								}
 								this.stateDocx.getStateChunks().put(
 									ta.getPlutextId(),
-									new StateChunk(ta.getSdt()));
+									new StateChunk(echoed));
 			                }
 						} else {
 							// Assumption is that chunking is done locally,
@@ -3429,6 +3799,12 @@ private void updateDocx4jPart(
 		ml.getSdtProperties().setTagValue(tag.getVal());
 	}
 
+	private org.docx4j.wml.SdtBlock getLocalContentControl(String sdtId) {
+		WordMLDocument doc = getWordMLDocument();
+		DocumentElement elem = Util.getDocumentElement(doc, sdtId);
+		return (org.docx4j.wml.SdtBlock) WordMLCopier.copy(elem.getElementML().getDocxObject());
+	}
+	
 	private void refreshLocalDocument() {
     	WordMLDocument doc = getWordMLDocument();
 		int start = getUpdateStartOffset();
@@ -27,7 +27,7 @@ import org.docx4all.swing.text.DocumentElement;
 import org.docx4all.swing.text.WordMLDocument;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.SdtBlockML;
-import org.docx4j.XmlUtils;
+import org.docx4all.xml.WordMLCopier;
 import org.plutext.client.state.StateChunk;
 
 /*
@@ -61,7 +61,7 @@ public class Pkg implements Cloneable {
 			if (ml instanceof SdtBlockML) {
 				org.docx4j.wml.SdtBlock sdt = 
 					(org.docx4j.wml.SdtBlock) ml.getDocxObject();
-				sdt = (org.docx4j.wml.SdtBlock) XmlUtils.deepCopy(sdt);
+				sdt = (org.docx4j.wml.SdtBlock) WordMLCopier.copy(sdt);
 				StateChunk sc = new StateChunk(sdt);
 				stateChunks.put(sc.getIdAsString(), sc);
 
@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client;
+
+import java.util.EventObject;
+
+public class RemoteChangesEvent extends EventObject {
+
+	private final long sequenceNumber;
+
+	public RemoteChangesEvent(Mediator source, long sequenceNumber) {
+		super(source);
+		this.sequenceNumber = sequenceNumber;
+	}
+
+	public Mediator getMediator() {
+		return (Mediator) getSource();
+	}
+
+	/**
+	 * @return the server's sequence number at the time of notification
+	 */
+	public long getSequenceNumber() {
+		return this.sequenceNumber;
+	}
+
+}// RemoteChangesEvent class
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client;
+
+import java.util.EventListener;
+
+/**
+ * Notified by a Mediator when the server holds transforms
+ * which have not been fetched yet.
+ */
+public interface RemoteChangesListener extends EventListener {
+	/**
+	 * Gives notification that remote changes are available.
+	 * This is NOT called in the event dispatching thread.
+	 *
+	 * @param e the remote changes event
+	 */
+	public void remoteChangesAvailable(RemoteChangesEvent e);
+
+}// RemoteChangesListener class
@@ -0,0 +1,136 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client;
+
+import org.plutext.client.webservice.PlutextWebService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits on the server for transforms newer than the ones
+ * the Mediator has fetched, using the waitForChanges() long poll.
+ *
+ * Each call is held by the server until a transform is accepted
+ * or until WAIT_TIMEOUT elapses, so an idle document costs one
+ * request per WAIT_TIMEOUT.  The Mediator is told when new
+ * transforms exist; fetching them is left to it.
+ *
+ * If the server does not support waitForChanges() the watcher
+ * gives up and the Mediator falls back to polling.
+ */
+public class RemoteChangesWatcher implements Runnable {
+
+	private static Logger log = LoggerFactory.getLogger(RemoteChangesWatcher.class);
+
+	public final static long WAIT_TIMEOUT = 60000;
+	public final static int MAX_FAILURES = 3;
+
+	private final Mediator mediator;
+	private volatile Thread thread;
+
+	public RemoteChangesWatcher(Mediator mediator) {
+		this.mediator = mediator;
+	}
+
+	public synchronized void start() {
+		if (this.thread == null) {
+			this.thread = new Thread(this, "RemoteChangesWatcher");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+	}
+
+	public synchronized void stop() {
+		Thread t = this.thread;
+		this.thread = null;
+		if (t != null) {
+			t.interrupt();
+		}
+	}
+
+	public boolean isRunning() {
+		return (this.thread != null);
+	}
+
+	public void run() {
+		PlutextWebService ws = null;
+		long lastNotified = -1;
+		int failures = 0;
+
+		try {
+			while (this.thread == Thread.currentThread()) {
+				try {
+					if (ws == null) {
+						ws = mediator.openWebService();
+					}
+
+					long since =
+						Math.max(
+							lastNotified,
+							mediator.getStateDocx().getTransforms().getTSequenceNumberHighestFetched());
+					long snum =
+						ws.waitForChanges(
+							mediator.getStateDocx().getDocID(), since, WAIT_TIMEOUT);
+					failures = 0;
+
+					if (snum > since && this.thread == Thread.currentThread()) {
+						lastNotified = snum;
+						mediator.fireRemoteChangesAvailable(snum);
+					}
+
+				} catch (Exception exc) {
+					if (this.thread != Thread.currentThread()) {
+						//Stopped
+						break;
+					}
+
+					log.error("run(): " + exc.getMessage(), exc);
+					if (ws != null) {
+						ws = null;
+						mediator.closeWebService();
+					}
+
+					if (++failures >= MAX_FAILURES) {
+						log.warn("run(): Giving up waiting for changes.");
+						break;
+					}
+					Thread.sleep(WAIT_TIMEOUT / 4);
+				}
+			}
+		} catch (InterruptedException exc) {
+			//Stopped
+		} finally {
+			if (ws != null) {
+				mediator.closeWebService();
+			}
+			boolean gaveUp = false;
+			synchronized (this) {
+				if (this.thread == Thread.currentThread()) {
+					this.thread = null;
+					gaveUp = true;
+				}
+			}
+			if (gaveUp) {
+				mediator.remoteChangesWatcherStopped();
+			}
+		}
+	}
+
+}// RemoteChangesWatcher class
@@ -0,0 +1,501 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.xml.bind.Unmarshaller;
+
+import org.plutext.Context;
+import org.plutext.client.state.StateChunk;
+import org.plutext.client.webservice.PlutextWebService;
+import org.plutext.client.wrappedTransforms.TransformAbstract;
+import org.plutext.client.wrappedTransforms.TransformAbstract.Premarkup;
+import org.plutext.client.wrappedTransforms.TransformDelete;
+import org.plutext.client.wrappedTransforms.TransformDelta;
+import org.plutext.client.wrappedTransforms.TransformHelper;
+import org.plutext.client.wrappedTransforms.TransformInsert;
+import org.plutext.client.wrappedTransforms.TransformMove;
+import org.plutext.client.wrappedTransforms.TransformUpdate;
+import org.plutext.transforms.Changesets.Changeset;
+import org.plutext.transforms.Transforms.T;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the server for remote transforms in the background
+ * while the user edits.
+ *
+ * Transforms newer than the ones the Mediator has fetched are parsed
+ * and marked up into a staging area without touching the document.
+ * Mediator.fetchUpdates() then only has to commit what is staged.
+ *
+ * Polling runs on a single daemon thread of its own.  The interval
+ * doubles each time nothing new is found, up to MAX_INTERVAL, and
+ * drops back to MIN_INTERVAL when something is.  A poll that finds
+ * new transforms is followed by another after COALESCE_DELAY, and
+ * markup is only computed once a burst of changes has ended.
+ *
+ * Staged transforms are not changed by this thread.  Markup is computed
+ * without holding any lock, from a snapshot of what is staged, and kept
+ * apart (see: TransformAbstract.Premarkup).  It is attached to the
+ * transforms when they are handed over, provided nothing was staged in
+ * the meantime.  Delta transforms are left for the Mediator to expand
+ * in the event dispatching thread.
+ * Polling pauses when the document has not been edited for
+ * IDLE_TIMEOUT and resumes on the next edit.
+ *
+ * When the server notifies us of new transforms (see setNotified()
+ * and RemoteChangesWatcher), there is no polling at all between
+ * notifications.
+ */
+public class RemoteEditsPrefetcher {
+
+	private static Logger log = LoggerFactory.getLogger(RemoteEditsPrefetcher.class);
+
+	public final static long MIN_INTERVAL = 2000;
+	public final static long MAX_INTERVAL = 60000;
+	public final static long COALESCE_DELAY = 500;
+	public final static long IDLE_TIMEOUT = 5 * 60000;
+
+	private final Mediator mediator;
+	private final ScheduledExecutorService executor;
+	private final DocumentListener activityListener;
+
+	private PlutextWebService ws;
+	private ScheduledFuture<?> nextPoll;
+	private long interval;
+	private long lastActivity;
+	private boolean paused;
+	private boolean stopped;
+	private boolean notified;
+
+	private StagedUpdates staged;
+
+	public RemoteEditsPrefetcher(Mediator mediator) {
+		this.mediator = mediator;
+		this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "RemoteEditsPrefetcher");
+				t.setDaemon(true);
+				t.setPriority(Thread.MIN_PRIORITY);
+				return t;
+			}
+		});
+		this.activityListener = new DocumentListener() {
+			public void changedUpdate(DocumentEvent e) {
+				activity();
+			}
+			public void insertUpdate(DocumentEvent e) {
+				activity();
+			}
+			public void removeUpdate(DocumentEvent e) {
+				activity();
+			}
+		};
+		this.interval = MIN_INTERVAL;
+		this.lastActivity = System.currentTimeMillis();
+		this.paused = false;
+		this.stopped = false;
+		this.notified = false;
+		this.staged = null;
+	}
+
+	public synchronized void start() {
+		mediator.getWordMLTextPane().getDocument().addDocumentListener(activityListener);
+		schedule(0);
+	}
+
+	public void stop() {
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+			stopped = true;
+			if (nextPoll != null) {
+				nextPoll.cancel(false);
+			}
+			staged = null;
+		}
+		mediator.getWordMLTextPane().getDocument().removeDocumentListener(activityListener);
+		executor.execute(new Runnable() {
+			public void run() {
+				disconnect();
+			}
+		});
+		executor.shutdown();
+	}
+
+	/**
+	 * @param notified true if pollNow() will be called whenever the
+	 * server has new transforms.  Polling then stops each time nothing
+	 * new is found, instead of backing off.
+	 */
+	public synchronized void setNotified(boolean notified) {
+		this.notified = notified;
+		if (!notified && !paused) {
+			schedule(interval);
+		}
+	}
+
+	/**
+	 * Polls as soon as possible, eg: because the server has
+	 * notified us of a change.
+	 */
+	public synchronized void pollNow() {
+		this.interval = MIN_INTERVAL;
+		this.lastActivity = System.currentTimeMillis();
+		this.paused = false;
+		schedule(0);
+	}
+
+	/**
+	 * Called in the event dispatching thread whenever the document changes.
+	 */
+	synchronized void activity() {
+		this.lastActivity = System.currentTimeMillis();
+		if (this.paused && !this.notified) {
+			log.debug("Resuming after idle.");
+			this.paused = false;
+			this.interval = MIN_INTERVAL;
+			schedule(0);
+		}
+	}
+
+	/**
+	 * Hands over what has been staged, provided that it continues
+	 * on from 'highestFetched'.  The staging area is emptied either way.
+	 *
+	 * @param highestFetched The Mediator's tSequenceNumberHighestFetched
+	 * @return StagedUpdates if any; null, otherwise.
+	 */
+	public StagedUpdates takeStaged(long highestFetched) {
+		StagedUpdates theStaged = null;
+		synchronized (this) {
+			theStaged = this.staged;
+			this.staged = null;
+		}
+
+		if (theStaged == null
+			|| theStaged.fromSequenceNumber > highestFetched
+			|| theStaged.sequenceNumber <= highestFetched) {
+			return null;
+		}
+
+		//From now on, the staged transforms are the caller's.
+		for (Map.Entry<TransformAbstract, Premarkup> e: theStaged.premarkups.entrySet()) {
+			e.getKey().setPremarkup(e.getValue());
+		}
+		return theStaged;
+	}
+
+	public synchronized boolean hasStaged() {
+		return (this.staged != null);
+	}
+
+	private synchronized void schedule(long delay) {
+		if (stopped) {
+			return;
+		}
+		if (nextPoll != null) {
+			nextPoll.cancel(false);
+		}
+		nextPoll = executor.schedule(new Runnable() {
+			public void run() {
+				poll();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void poll() {
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+			if (System.currentTimeMillis() - lastActivity > IDLE_TIMEOUT) {
+				log.debug("Document idle.  Pausing.");
+				paused = true;
+				return;
+			}
+		}
+
+		long delay = MAX_INTERVAL;
+		try {
+			delay = fetch();
+			if (delay < 0) {
+				//Wait to be notified
+				return;
+			}
+		} catch (Exception exc) {
+			log.error("poll(): " + exc.getMessage(), exc);
+			disconnect();
+			synchronized (this) {
+				interval = Math.min(interval * 2, MAX_INTERVAL);
+				delay = interval;
+			}
+		}
+		schedule(delay);
+	}
+
+	/**
+	 * @return the delay before the next poll; 
+	 *         -1 if the next poll should wait for pollNow().
+	 */
+	private long fetch() throws Exception {
+		if (ws == null) {
+			ws = mediator.openWebService();
+		}
+
+		long from;
+		synchronized (this) {
+			from =
+				mediator.getStateDocx().getTransforms().getTSequenceNumberHighestFetched();
+			if (staged != null && staged.fromSequenceNumber <= from) {
+				from = Math.max(from, staged.sequenceNumber);
+			} else {
+				staged = null;
+			}
+		}
+
+		String docID = mediator.getStateDocx().getDocID();
+		String[] updates = ws.getTransforms(docID, from);
+		if (updates.length < 2 || Long.parseLong(updates[0]) <= from) {
+			//Nothing new.  If a burst has ended, mark it up.
+			premarkup();
+			synchronized (this) {
+				interval = Math.min(interval * 2, MAX_INTERVAL);
+				return (notified) ? -1 : interval;
+			}
+		}
+
+		Unmarshaller u = Context.jcTransforms.createUnmarshaller();
+		u.setEventHandler(new org.docx4j.jaxb.JaxbValidationEventHandler());
+		org.plutext.transforms.Updates updatesObj =
+			(org.plutext.transforms.Updates)
+				u.unmarshal(new java.io.StringReader(updates[1]));
+
+		List<TransformAbstract> transforms = new ArrayList<TransformAbstract>();
+		boolean structural = false;
+		for (T t : updatesObj.getTransforms().getT()) {
+			TransformAbstract ta = TransformHelper.construct(t);
+			if (ta instanceof TransformInsert
+				|| ta instanceof TransformDelete
+				|| ta instanceof TransformMove) {
+				structural = true;
+			}
+			transforms.add(ta);
+		}
+
+		Skeleton skeleton = null;
+		if (structural) {
+			skeleton = new Skeleton(ws.getSkeletonDocument(docID));
+		}
+
+		synchronized (this) {
+			if (staged == null) {
+				staged = new StagedUpdates(from);
+			}
+			staged.add(Long.parseLong(updates[0]), transforms, updatesObj, skeleton);
+			interval = MIN_INTERVAL;
+
+			log.debug("Staged " + transforms.size() + " transforms up to " + updates[0]);
+		}
+
+		return COALESCE_DELAY;
+	}
+
+	/**
+	 * Computes markup of staged transforms against the non-marked up
+	 * state of each chunk, as Mediator.applyUpdate() would if the user
+	 * did not touch those chunks in the meantime.
+	 */
+	private void premarkup() throws Exception {
+		final StagedUpdates theStaged;
+		final List<TransformAbstract> theTransforms;
+		final Map<String, Changeset> theChangesets;
+		synchronized (this) {
+			if (staged == null || staged.premarkedUp) {
+				return;
+			}
+			theStaged = staged;
+			theTransforms = new ArrayList<TransformAbstract>(staged.transforms);
+			theChangesets = new HashMap<String, Changeset>(staged.changesets);
+		}
+
+		//Take a copy of the StateChunks xml we need in the event
+		//dispatching thread, which is where StateChunks are maintained.
+		final Map<String, String> originals = new HashMap<String, String>();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				for (TransformAbstract ta: theTransforms) {
+					if (ta instanceof TransformUpdate || ta instanceof TransformDelete) {
+						StateChunk sc =
+							mediator.getStateDocx().getStateChunks().get(ta.getPlutextId());
+						if (sc != null) {
+							originals.put(ta.getPlutextId(), sc.getXml());
+						}
+					}
+				}
+			}
+		});
+
+		Map<TransformAbstract, Premarkup> thePremarkups =
+			new IdentityHashMap<TransformAbstract, Premarkup>();
+		for (TransformAbstract ta: theTransforms) {
+			synchronized (this) {
+				if (staged != theStaged) {
+					//Handed over or dropped in the meantime
+					return;
+				}
+			}
+
+			Changeset changeset =
+				theChangesets.get(Long.toString(ta.getChangesetNumber()));
+			if (changeset == null) {
+				continue;
+			}
+
+			if (ta instanceof TransformInsert) {
+				put(thePremarkups, ta, ta.computePremarkup(null, changeset));
+				originals.put(ta.getPlutextId(), new StateChunk(ta.getSdt()).getXml());
+
+			} else if (ta instanceof TransformDelta) {
+				//Expanded against the document by Mediator.applyUpdate(),
+				//so what follows it cannot be marked up here.
+				originals.remove(ta.getPlutextId());
+
+			} else if (ta instanceof TransformUpdate) {
+				String original = originals.get(ta.getPlutextId());
+				if (original != null) {
+					put(thePremarkups, ta, ta.computePremarkup(original, changeset));
+				}
+				originals.put(ta.getPlutextId(), new StateChunk(ta.getSdt()).getXml());
+
+			} else if (ta instanceof TransformDelete) {
+				String original = originals.remove(ta.getPlutextId());
+				if (original != null) {
+					put(thePremarkups, ta, ta.computePremarkup(original, changeset));
+				}
+			}
+		}
+
+		synchronized (this) {
+			//Transforms staged since the snapshot have not been marked up
+			if (staged == theStaged && staged.transforms.size() == theTransforms.size()) {
+				theStaged.premarkups = thePremarkups;
+				theStaged.premarkedUp = true;
+			}
+		}
+	}
+
+	private final static void put(
+		Map<TransformAbstract, Premarkup> map,
+		TransformAbstract ta,
+		Premarkup premarkup) {
+		if (premarkup != null) {
+			map.put(ta, premarkup);
+		}
+	}
+
+	private void disconnect() {
+		if (ws != null) {
+			ws = null;
+			try {
+				mediator.closeWebService();
+			} catch (Exception exc) {
+				log.error("disconnect(): " + exc.getMessage(), exc);
+			}
+		}
+	}
+
+	/**
+	 * Transforms, changesets and server skeleton fetched by the prefetcher
+	 * but not yet committed to the Mediator.
+	 */
+	public static class StagedUpdates {
+		private final long fromSequenceNumber;
+		private long sequenceNumber;
+		private final List<TransformAbstract> transforms;
+		private final Map<String, Changeset> changesets;
+		private Skeleton skeleton;
+		private boolean premarkedUp;
+		private Map<TransformAbstract, Premarkup> premarkups;
+
+		StagedUpdates(long fromSequenceNumber) {
+			this.fromSequenceNumber = fromSequenceNumber;
+			this.sequenceNumber = fromSequenceNumber;
+			this.transforms = new ArrayList<TransformAbstract>();
+			this.changesets = new HashMap<String, Changeset>();
+			this.skeleton = null;
+			this.premarkedUp = false;
+			this.premarkups = new IdentityHashMap<TransformAbstract, Premarkup>(0);
+		}
+
+		void add(
+			long sequenceNumber,
+			List<TransformAbstract> newTransforms,
+			org.plutext.transforms.Updates updatesObj,
+			Skeleton newSkeleton) {
+
+			this.sequenceNumber = sequenceNumber;
+			this.transforms.addAll(newTransforms);
+			for (Changeset c: updatesObj.getChangesets().getChangeset()) {
+				this.changesets.put(Long.toString(c.getNumber()), c);
+			}
+			if (newSkeleton != null) {
+				this.skeleton = newSkeleton;
+			}
+			this.premarkedUp = false;
+		}
+
+		public long getSequenceNumber() {
+			return this.sequenceNumber;
+		}
+
+		public List<TransformAbstract> getTransforms() {
+			return this.transforms;
+		}
+
+		public Map<String, Changeset> getChangesets() {
+			return this.changesets;
+		}
+
+		/**
+		 * @return The server skeleton fetched after the last structural
+		 * transform was staged; null if no structural transform was staged.
+		 */
+		public Skeleton getSkeleton() {
+			return this.skeleton;
+		}
+	}// StagedUpdates class
+
+}// RemoteEditsPrefetcher class
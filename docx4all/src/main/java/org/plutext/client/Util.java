@@ -20,8 +20,10 @@
 package org.plutext.client;
 
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.transform.Source;
@@ -36,6 +38,7 @@ import org.docx4all.ui.main.Constants;
 import org.docx4all.xml.DocumentML;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.SdtBlockML;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.XmlUtils;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.DocPropsCustomPart;
@@ -119,6 +122,32 @@ public class Util {
 		return elem;
 	}
 
+	/**
+	 * @return the plutext ids of the content controls of 'doc'
+	 * in document order.
+	 */
+	public static List<String> getPlutextIds(WordMLDocument doc) {
+		List<String> theList = new ArrayList<String>();
+
+		try {
+			doc.readLock();
+
+			DocumentElement root = (DocumentElement) doc
+					.getDefaultRootElement();
+
+			for (int i = 0; i < root.getElementCount(); i++) {
+				ElementML ml = ((DocumentElement) root.getElement(i)).getElementML();
+				if (ml instanceof SdtBlockML) {
+					theList.add(((SdtBlockML) ml).getSdtProperties().getPlutextId());
+				}
+			}
+		} finally {
+			doc.readUnlock();
+		}
+
+		return theList;
+	}
+
 	public static StateChunk getStateChunk(WordMLDocument doc, String sdtBlockId) {
 
 		StateChunk theChunk = null;
@@ -161,7 +190,7 @@ public class Util {
 			if (ml instanceof SdtBlockML) {
 				org.docx4j.wml.SdtBlock sdt = (org.docx4j.wml.SdtBlock) ml
 						.getDocxObject();
-				sdt = (org.docx4j.wml.SdtBlock) XmlUtils.deepCopy(sdt);
+				sdt = (org.docx4j.wml.SdtBlock) WordMLCopier.copy(sdt);
 				StateChunk sc = new StateChunk(sdt);
 				stateChunks.put(sc.getIdAsString(), sc);
 			}
@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.loadtest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.docx4all.ui.main.Constants;
+import org.docx4all.util.XmlUtil;
+import org.docx4all.xml.ObjectFactory;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.DocPropsCustomPart;
+import org.plutext.client.Skeleton;
+import org.plutext.client.SdtWrapper;
+import org.plutext.client.webservice.LocalPlutextService;
+
+/**
+ * Multi-client convergence load test of the Plutext client.
+ *
+ * N SimulatedClients share one document hosted by a LocalPlutextService.
+ * Each client repeatedly edits, transmits and fetches in its own thread.
+ * When all rounds are done, every client transmits and fetches until
+ * they have all caught up with the server, and their documents are
+ * compared with each other and with the server skeleton.
+ *
+ * Usage: LoadTest [clients] [rounds] [chunks] [editsPerRound] [thinkTimeMillis]
+ *
+ * To test properly, make sure logging is quiet, eg:
+ *    -Dlog4j.configuration=conf/log4j.properties
+ */
+public class LoadTest {
+
+	public final static String DOC_ID = "/alfresco/plutextwebdav/loadtest.docx";
+
+	public static void main(String[] args) throws Exception {
+		if (System.getProperty("java.awt.headless") == null) {
+			System.setProperty("java.awt.headless", "true");
+		}
+
+		int clientCount = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+		int chunkCount = (args.length > 2) ? Integer.parseInt(args[2]) : 20;
+		int editsPerRound = (args.length > 3) ? Integer.parseInt(args[3]) : 2;
+		long thinkTime = (args.length > 4) ? Long.parseLong(args[4]) : 50;
+
+		System.out.println("Clients=" + clientCount
+			+ " rounds=" + rounds
+			+ " chunks=" + chunkCount
+			+ " editsPerRound=" + editsPerRound
+			+ " thinkTime=" + thinkTime);
+
+		LocalPlutextService server = new LocalPlutextService();
+		List<String> chunkIds = new ArrayList<String>();
+		server.createDocument(DOC_ID, createSharedPackage(chunkCount, chunkIds));
+
+		File root = new File(System.getProperty("java.io.tmpdir"), "docx4all-loadtest-" + System.currentTimeMillis());
+		LoadTestStatistics stats = new LoadTestStatistics();
+
+		List<SimulatedClient> clients = new ArrayList<SimulatedClient>(clientCount);
+		for (int i = 0; i < clientCount; i++) {
+			SimulatedClient client =
+				new SimulatedClient("client" + i, server, DOC_ID, stats, i);
+			client.open(new File(root, client.getName()));
+			clients.add(client);
+		}
+		for (int i = 0; i < chunkIds.size(); i++) {
+			clients.get(i % clientCount).getOwnChunks().add(chunkIds.get(i));
+		}
+
+		long start = System.currentTimeMillis();
+
+		List<ClientThread> threads = new ArrayList<ClientThread>(clientCount);
+		for (SimulatedClient client: clients) {
+			ClientThread t = new ClientThread(client, rounds, editsPerRound, thinkTime);
+			threads.add(t);
+			t.start();
+		}
+		for (ClientThread t: threads) {
+			t.join();
+		}
+
+		boolean converged = settle(server, clients);
+
+		long elapsed = System.currentTimeMillis() - start;
+
+		for (ClientThread t: threads) {
+			if (t.exc != null) {
+				System.out.println(t.client.getName() + " failed: " + t.exc);
+				converged = false;
+			}
+		}
+
+		stats.report(System.out, elapsed, server.getSequenceNumber(DOC_ID), converged);
+		System.exit(converged ? 0 : 1);
+	}
+
+	/**
+	 * Lets every client transmit and fetch until all of them
+	 * have fetched the server's last transform.
+	 *
+	 * @return true if all clients end up with the same chunks, in the
+	 * same order and with the versions the server has.
+	 */
+	private static boolean settle(LocalPlutextService server, List<SimulatedClient> clients)
+		throws Exception {
+
+		for (int pass = 0; pass < 10; pass++) {
+			for (SimulatedClient client: clients) {
+				client.transmit();
+			}
+			boolean caughtUp = true;
+			for (SimulatedClient client: clients) {
+				client.fetch();
+				caughtUp = caughtUp
+					&& client.getHighestFetched() == server.getSequenceNumber(DOC_ID);
+			}
+			if (caughtUp) {
+				break;
+			}
+		}
+
+		Skeleton serverSkeleton = new Skeleton(server.getSkeletonDocument(DOC_ID));
+
+		List<String> expected = null;
+		for (SimulatedClient client: clients) {
+			List<String> chunks = client.describeChunks();
+			if (expected == null) {
+				expected = chunks;
+			} else if (!expected.equals(chunks)) {
+				System.out.println(client.getName() + " differs from " + clients.get(0).getName());
+				return false;
+			}
+			if (chunks.size() != serverSkeleton.count()) {
+				System.out.println(client.getName() + " has " + chunks.size()
+					+ " chunks; server has " + serverSkeleton.count());
+				return false;
+			}
+			for (String chunk: chunks) {
+				String id = chunk.substring(0, chunk.indexOf('@'));
+				String version = chunk.substring(chunk.indexOf('@') + 1, chunk.indexOf(':'));
+				Long serverVersion = serverSkeleton.getVersion(id);
+				if (serverVersion == null || !serverVersion.toString().equals(version)) {
+					System.out.println(client.getName() + " has " + id + " version " + version
+						+ "; server has version " + serverVersion);
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static WordprocessingMLPackage createSharedPackage(int chunkCount, List<String> chunkIds)
+		throws Exception {
+
+		org.docx4j.wml.Document doc = ObjectFactory.createEmptyDocument();
+		List<Object> blocks = doc.getBody().getEGBlockLevelElts();
+		blocks.clear();
+
+		for (int i = 0; i < chunkCount; i++) {
+			org.docx4j.wml.SdtContentBlock sdtContent = ObjectFactory.createSdtContentBlock();
+			sdtContent.getEGContentBlockContent().add(ObjectFactory.createP("Chunk " + i));
+
+			org.docx4j.wml.SdtPr sdtPr = ObjectFactory.createSdtPr();
+			sdtPr.setId();
+			String id = sdtPr.getId().getVal().toString();
+			sdtPr.setTag(ObjectFactory.createTag(SdtWrapper.generateTag(id, "1")));
+
+			org.docx4j.wml.SdtBlock sdtBlock = ObjectFactory.createSdtBlock();
+			sdtBlock.setSdtPr(sdtPr);
+			sdtBlock.setSdtContent(sdtContent);
+			blocks.add(sdtBlock);
+			chunkIds.add(id);
+		}
+
+		WordprocessingMLPackage wmlPackage = ObjectFactory.createDocumentPackage(doc);
+		if (wmlPackage.getDocPropsCustomPart() == null) {
+			DocPropsCustomPart customPart = new DocPropsCustomPart();
+			customPart.setJaxbElement(
+				new org.docx4j.docProps.custom.ObjectFactory().createProperties());
+			wmlPackage.addTargetPart(customPart);
+		}
+		XmlUtil.setPlutextGroupingProperty(wmlPackage, Constants.EACH_BLOCK_GROUPING_STRATEGY);
+		XmlUtil.setPlutextCheckinMessageEnabledProperty(wmlPackage, false);
+
+		return wmlPackage;
+	}
+
+	private static class ClientThread extends Thread {
+		private final SimulatedClient client;
+		private final int rounds;
+		private final int editsPerRound;
+		private final long thinkTime;
+		private Exception exc;
+
+		ClientThread(SimulatedClient client, int rounds, int editsPerRound, long thinkTime) {
+			super(client.getName());
+			this.client = client;
+			this.rounds = rounds;
+			this.editsPerRound = editsPerRound;
+			this.thinkTime = thinkTime;
+		}
+
+		public void run() {
+			try {
+				for (int round = 0; round < rounds; round++) {
+					for (int i = 0; i < editsPerRound; i++) {
+						client.edit();
+					}
+					client.transmit();
+					client.fetch();
+					if (thinkTime > 0) {
+						Thread.sleep(thinkTime);
+					}
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				this.exc = e;
+			}
+		}
+	}// ClientThread class
+
+}// LoadTest class
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.loadtest;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counters and timings collected by the SimulatedClients of a LoadTest.
+ */
+public class LoadTestStatistics {
+
+	private long edits = 0;
+	private long transmissions = 0;
+	private long failedTransmissions = 0;
+	private long transmitMillis = 0;
+	private long fetches = 0;
+	private long transformsFetched = 0;
+	private long fetchMillis = 0;
+	private final List<Long> convergenceLatencies = new ArrayList<Long>();
+
+	public synchronized void edited() {
+		edits++;
+	}
+
+	public synchronized void transmitted(long millis, boolean success) {
+		transmissions++;
+		transmitMillis += millis;
+		if (!success) {
+			failedTransmissions++;
+		}
+	}
+
+	public synchronized void fetched(long millis, long transformCount) {
+		fetches++;
+		fetchMillis += millis;
+		transformsFetched += transformCount;
+	}
+
+	/**
+	 * @param latency Time in milliseconds between the server accepting
+	 * a transform and a remote client having applied it.
+	 */
+	public synchronized void applied(long latency) {
+		convergenceLatencies.add(Long.valueOf(latency));
+	}
+
+	public synchronized void report(
+		PrintStream out,
+		long elapsedMillis,
+		long serverTransforms,
+		boolean converged) {
+
+		List<Long> sorted = new ArrayList<Long>(convergenceLatencies);
+		Collections.sort(sorted);
+
+		double seconds = Math.max(elapsedMillis, 1) / 1000.0;
+
+		out.println("Elapsed time (ms)           : " + elapsedMillis);
+		out.println("Edits                       : " + edits);
+		out.println("Transmissions (failed)      : " + transmissions + " (" + failedTransmissions + ")");
+		out.println("Mean transmit time (ms)     : " + mean(transmitMillis, transmissions));
+		out.println("Fetches                     : " + fetches);
+		out.println("Mean fetch+apply time (ms)  : " + mean(fetchMillis, fetches));
+		out.println("Transforms on server        : " + serverTransforms);
+		out.println("Transforms fetched          : " + transformsFetched);
+		out.println("Remote transforms applied   : " + sorted.size());
+		out.println("Throughput (transforms/s)   : " + (serverTransforms / seconds));
+		out.println("Convergence latency p50 (ms): " + percentile(sorted, 50));
+		out.println("Convergence latency p90 (ms): " + percentile(sorted, 90));
+		out.println("Convergence latency p99 (ms): " + percentile(sorted, 99));
+		out.println("Convergence latency max (ms): " + percentile(sorted, 100));
+		out.println("Converged                   : " + converged);
+	}
+
+	private long mean(long total, long count) {
+		return (count == 0) ? 0 : total / count;
+	}
+
+	private long percentile(List<Long> sorted, int p) {
+		if (sorted.isEmpty()) {
+			return 0;
+		}
+		int idx = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+		idx = Math.max(0, Math.min(idx, sorted.size() - 1));
+		return sorted.get(idx).longValue();
+	}
+
+}// LoadTestStatistics class
@@ -0,0 +1,257 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.loadtest;
+
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+import javax.swing.text.BadLocationException;
+
+import org.apache.commons.vfs.FileObject;
+import org.apache.commons.vfs.VFS;
+import org.docx4all.swing.FetchRemoteEditsWorker;
+import org.docx4all.swing.TransmitLocalEditsWorker;
+import org.docx4all.swing.WordMLTextPane;
+import org.docx4all.swing.text.DocumentElement;
+import org.docx4all.swing.text.WordMLDocument;
+import org.docx4all.swing.text.WordMLDocumentFilter;
+import org.docx4all.swing.text.WordMLEditorKit;
+import org.docx4all.xml.ElementML;
+import org.docx4all.xml.SdtBlockML;
+import org.docx4j.openpackaging.io.SaveToVFSZipFile;
+import org.plutext.client.Mediator;
+import org.plutext.client.SdtWrapper;
+import org.plutext.client.Util;
+import org.plutext.client.webservice.LocalPlutextService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One editor of a LoadTest.
+ *
+ * Each client opens its own copy of the shared document in a
+ * WordMLTextPane and drives its Mediator through the same workers
+ * the editor uses: TransmitLocalEditsWorker, FetchRemoteEditsWorker
+ * and AcceptNonConflictingRevisionsAction.
+ * Document changes are made in the event dispatching thread;
+ * web service calls are made in the calling thread.
+ *
+ * A client only edits the chunks it owns so that no conflict
+ * has to be resolved by hand.
+ */
+public class SimulatedClient {
+	private static Logger log = LoggerFactory.getLogger(SimulatedClient.class);
+
+	private final String name;
+	private final LocalPlutextService server;
+	private final String docID;
+	private final Random random;
+	private final List<String> ownChunks;
+	private final LoadTestStatistics stats;
+
+	private WordMLTextPane textPane;
+	private Mediator mediator;
+
+	public SimulatedClient(
+		String name,
+		LocalPlutextService server,
+		String docID,
+		LoadTestStatistics stats,
+		long seed) {
+
+		this.name = name;
+		this.server = server;
+		this.docID = docID;
+		this.stats = stats;
+		this.random = new Random(seed);
+		this.ownChunks = new ArrayList<String>();
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public List<String> getOwnChunks() {
+		return this.ownChunks;
+	}
+
+	public WordMLTextPane getWordMLTextPane() {
+		return this.textPane;
+	}
+
+	/**
+	 * Saves the server copy of the document under 'root' and opens it.
+	 * The file path ends with docID so that StateDocx computes the same
+	 * document id as the server uses.
+	 *
+	 * @param root Local directory of this client
+	 * @throws Exception
+	 */
+	public void open(File root) throws Exception {
+		File f = new File(root, docID.replace('/', File.separatorChar));
+		f.getParentFile().mkdirs();
+
+		final FileObject fo = VFS.getManager().resolveFile(f.toURI().toString());
+		new SaveToVFSZipFile(server.getDocumentPackage(docID)).save(fo);
+
+		final Exception[] exc = new Exception[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				try {
+					textPane = new WordMLTextPane();
+					WordMLEditorKit editorKit = textPane.getWordMLEditorKit();
+					WordMLDocument doc = editorKit.read(fo);
+					doc.putProperty(WordMLDocument.FILE_PATH_PROPERTY, fo.getName().getURI());
+					doc.setDocumentFilter(new WordMLDocumentFilter());
+					textPane.setDocument(doc);
+					editorKit.initPlutextClient(textPane, server.getSession(name));
+					mediator = editorKit.getPlutextClient();
+				} catch (Exception e) {
+					exc[0] = e;
+				}
+			}
+		});
+		if (exc[0] != null) {
+			throw exc[0];
+		}
+	}
+
+	/**
+	 * Types a word at the start of one of the chunks this client owns.
+	 */
+	public void edit() throws Exception {
+		if (ownChunks.isEmpty()) {
+			return;
+		}
+
+		final String chunkId = ownChunks.get(random.nextInt(ownChunks.size()));
+		final String word = name + random.nextInt(1000) + " ";
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				WordMLDocument doc = (WordMLDocument) textPane.getDocument();
+				DocumentElement elem = Util.getDocumentElement(doc, chunkId);
+				if (elem == null) {
+					log.warn(name + ": chunk " + chunkId + " not found");
+					return;
+				}
+				textPane.setCaretPosition(elem.getStartOffset());
+				textPane.replaceSelection(word);
+			}
+		});
+		stats.edited();
+	}
+
+	/**
+	 * @return true if local edits were transmitted, false otherwise.
+	 */
+	public boolean transmit() {
+		long start = System.currentTimeMillis();
+
+		TransmitLocalEditsWorker worker = new TransmitLocalEditsWorker(mediator, null);
+		boolean success = worker.doInBackground().booleanValue();
+
+		stats.transmitted(System.currentTimeMillis() - start, success);
+		return success;
+	}
+
+	/**
+	 * Fetches and applies remote edits, then accepts them so that
+	 * the next transmission is not blocked by pending revisions.
+	 * The convergence latency of every remote transform applied is
+	 * recorded as the time elapsed since the server accepted it.
+	 */
+	public void fetch() throws Exception {
+		long start = System.currentTimeMillis();
+		long before =
+			mediator.getStateDocx().getTransforms().getTSequenceNumberHighestFetched();
+
+		final FetchRemoteEditsWorker worker = new FetchRemoteEditsWorker(mediator, null);
+		worker.doInBackground();
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				worker.done();
+				new WordMLEditorKit.AcceptNonConflictingRevisionsAction().actionPerformed(
+					new ActionEvent(textPane, ActionEvent.ACTION_PERFORMED, "accept"));
+			}
+		});
+
+		long now = System.currentTimeMillis();
+		long after =
+			mediator.getStateDocx().getTransforms().getTSequenceNumberHighestFetched();
+		for (long snum = before + 1; snum <= after; snum++) {
+			if (!name.equals(server.getModifier(docID, snum))) {
+				stats.applied(now - server.getTimestamp(docID, snum));
+			}
+		}
+
+		stats.fetched(now - start, after - before);
+	}
+
+	public long getHighestFetched() {
+		return mediator.getStateDocx().getTransforms().getTSequenceNumberHighestFetched();
+	}
+
+	/**
+	 * @return A description of each chunk of the local document
+	 * in document order, as 'plutextId@version:text'.
+	 */
+	public List<String> describeChunks() throws Exception {
+		final List<String> theList = new ArrayList<String>();
+		final BadLocationException[] exc = new BadLocationException[1];
+		SwingUtilities.invokeAndWait(new Runnable() {
+			public void run() {
+				WordMLDocument doc = (WordMLDocument) textPane.getDocument();
+				DocumentElement root = (DocumentElement) doc.getDefaultRootElement();
+				for (int idx = 0; idx < root.getElementCount(); idx++) {
+					DocumentElement elem = (DocumentElement) root.getElement(idx);
+					ElementML ml = elem.getElementML();
+					if (ml instanceof SdtBlockML) {
+						SdtBlockML sdt = (SdtBlockML) ml;
+						StringBuilder sb = new StringBuilder();
+						sb.append(sdt.getSdtProperties().getPlutextId());
+						sb.append("@");
+						sb.append(
+							SdtWrapper.getVersionNumber(
+								sdt.getSdtProperties().getTagValue()));
+						sb.append(":");
+						try {
+							sb.append(
+								doc.getText(
+									elem.getStartOffset(),
+									elem.getEndOffset() - elem.getStartOffset()));
+						} catch (BadLocationException e) {
+							exc[0] = e;
+						}
+						theList.add(sb.toString());
+					}
+				}
+			}
+		});
+		if (exc[0] != null) {
+			throw exc[0];
+		}
+		return theList;
+	}
+
+}// SimulatedClient class
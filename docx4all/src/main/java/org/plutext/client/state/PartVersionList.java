@@ -2,9 +2,11 @@ package org.plutext.client.state;
 
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -214,6 +216,10 @@ public class PartVersionList {
             return versions.get(partname);
         }
 
+        public Map<String, String> getVersions() {
+            return Collections.unmodifiableMap(versions);
+        }
+
 //        public boolean isPartPresent(String partname)
 //        {
 //            // We need this method in order to determine
@@ -20,6 +20,8 @@ package org.plutext.client.state;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.xml.transform.Source;
@@ -84,6 +86,158 @@ public class StateChunk
     public String getXml() {
     	return xml; 
     }
+    
+    // Where the block level children are in xml and their hashes;
+    // worked out when first asked for.  See: getChildBounds()
+    private int[] childBounds = null;
+    private int[] childHashes = null;
+    
+    /**
+     * @return the number of block level children of the content control
+     * as found in getXml(); -1 if they cannot be made out.
+     */
+    public int getChildCount() {
+    	if (childHashes == null) {
+    		childBounds = getChildBounds(xml);
+    		if (childBounds == null) {
+    			return -1;
+    		}
+    		childHashes = new int[childBounds.length / 2 - 1];
+    		for (int i = 0; i < childHashes.length; i++) {
+    			childHashes[i] = 
+    				hash(xml, childBounds[2 * i + 2], childBounds[2 * i + 3]);
+    		}
+    	}
+    	return childHashes.length;
+    }
+    
+    /**
+     * Compares the xml of a block level child of this chunk with that
+     * of a child of 'other' without marshalling either of them.
+     * getChildCount() of both chunks has to be positive.
+     * 
+     * @param i index of a child of this chunk
+     * @param other
+     * @param j index of a child of 'other'
+     * @return true if both children have the same xml.
+     */
+    public boolean isSameChild(int i, StateChunk other, int j) {
+    	int start = childBounds[2 * i + 2];
+    	int length = childBounds[2 * i + 3] - start;
+    	int otherStart = other.childBounds[2 * j + 2];
+    	return childHashes[i] == other.childHashes[j]
+    		&& length == other.childBounds[2 * j + 3] - otherStart
+    		&& xml.regionMatches(start, other.xml, otherStart, length);
+    }
+    
+    /**
+     * @param i index of a child of this chunk
+     * @param otherXml
+     * @param start start offset of a child in 'otherXml'
+     * @param end end offset of that child
+     * @return true if the i-th child of this chunk has the xml
+     * found in 'otherXml' between 'start' and 'end'.
+     */
+    public boolean isSameChild(int i, String otherXml, int start, int end) {
+    	int length = childBounds[2 * i + 3] - childBounds[2 * i + 2];
+    	return length == end - start
+    		&& xml.regionMatches(childBounds[2 * i + 2], otherXml, start, length);
+    }
+    
+    /**
+     * Finds the block level children of the content control
+     * in 'sdtXml' by scanning its tags.
+     * 
+     * @param sdtXml Xml of an SdtBlock as marshalled
+     * @return the offsets in 'sdtXml' of the start and end of the
+     * content of w:sdtContent followed by those of each of its children;
+     * null if w:sdtContent cannot be found or has no content.
+     */
+    public static int[] getChildBounds(String sdtXml) {
+    	int open = sdtXml.indexOf("<w:sdtContent");
+    	int pos = (open < 0) ? -1 : endOfTag(sdtXml, open);
+    	if (pos < 0 || sdtXml.charAt(pos - 1) == '/') {
+    		return null;
+    	}
+    	
+    	List<Integer> bounds = new ArrayList<Integer>();
+    	bounds.add(Integer.valueOf(pos + 1));
+    	bounds.add(null);
+    	
+    	int depth = 0;
+    	int childStart = -1;
+    	pos++;
+    	while (true) {
+    		int lt = sdtXml.indexOf('<', pos);
+    		int gt = (lt < 0) ? -1 : endOfTag(sdtXml, lt);
+    		if (gt < 0) {
+    			return null;
+    		}
+    		
+    		char c = sdtXml.charAt(lt + 1);
+    		if (c == '/') {
+    			if (depth == 0) {
+    				//</w:sdtContent>
+    				bounds.set(1, Integer.valueOf(lt));
+    				break;
+    			}
+    			if (--depth == 0) {
+    				bounds.add(Integer.valueOf(childStart));
+    				bounds.add(Integer.valueOf(gt + 1));
+    			}
+    		} else if (c == '?' || c == '!') {
+    			//Neither a child nor part of one
+    		} else if (sdtXml.charAt(gt - 1) == '/') {
+    			if (depth == 0) {
+    				bounds.add(Integer.valueOf(lt));
+    				bounds.add(Integer.valueOf(gt + 1));
+    			}
+    		} else {
+    			if (depth++ == 0) {
+    				childStart = lt;
+    			}
+    		}
+    		pos = gt + 1;
+    	}
+    	
+    	int[] theBounds = new int[bounds.size()];
+    	for (int i = 0; i < theBounds.length; i++) {
+    		theBounds[i] = bounds.get(i).intValue();
+    	}
+    	return theBounds;
+    }
+    
+    /* @return the offset of the '>' ending the tag or comment
+     * that starts at 'lt'; -1 if there is none.
+     */
+    private static int endOfTag(String s, int lt) {
+    	if (s.startsWith("<!--", lt)) {
+    		int end = s.indexOf("-->", lt + 4);
+    		return (end < 0) ? -1 : end + 2;
+    	}
+    	char quote = 0;
+    	for (int i = lt + 1; i < s.length(); i++) {
+    		char c = s.charAt(i);
+    		if (quote != 0) {
+    			if (c == quote) {
+    				quote = 0;
+    			}
+    		} else if (c == '"' || c == '\'') {
+    			quote = c;
+    		} else if (c == '>') {
+    			return i;
+    		}
+    	}
+    	return -1;
+    }
+    
+    private static int hash(String s, int start, int end) {
+    	int h = 0;
+    	for (int i = start; i < end; i++) {
+    		h = 31 * h + s.charAt(i);
+    	}
+    	return h;
+    }
             
 //            set { xml = value; }
 //        }
@@ -184,6 +338,8 @@ public class StateChunk
 
         // Ouptut
         xml = sw.toString();
+        childBounds = null;
+        childHashes = null;
 
         log.debug("Transformed: " + xml);
     }
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -55,6 +56,56 @@ public class StateDocx {
     	init(doc);		
 	}
 
+	/**
+	 * @param doc
+	 * @param journal The journal of this document; may be null.
+	 * If the document matches it, the highest fetched sequence number 
+	 * is taken from the journal rather than from the document.
+	 * Updates the journal kept after that are taken as fetched
+	 * (see: takeJournaledUpdates()).
+	 */
+	public StateDocx(WordMLDocument doc, StateJournal journal) {
+    	init(doc);
+    	this.journal = journal;
+    	if (journal != null) {
+    		int snum = journal.resume(
+    			this, 
+    			transforms.getTSequenceNumberHighestFetched(), 
+    			Util.getPlutextIds(doc));
+    		this.journaledUpdatesFrom = snum;
+    		transforms.setTSequenceNumberHighestFetched(
+    			journal.getUpdates(snum, this.journaledUpdates));
+    	}
+	}
+	
+	private StateJournal journal = null;
+	public StateJournal getJournal() {
+		return journal;
+	}
+
+	private List<String> journaledUpdates = new ArrayList<String>();
+	private int journaledUpdatesFrom = -1;
+	
+	/**
+	 * @return the updates xml which the journal kept from when this 
+	 * document was last open.  They are counted as fetched already but 
+	 * are not registered yet.  Empty after the first call.
+	 */
+	public List<String> takeJournaledUpdates() {
+		List<String> theList = this.journaledUpdates;
+		this.journaledUpdates = new ArrayList<String>();
+		return theList;
+	}
+	
+	/**
+	 * @return the sequence number up to which the document reflects
+	 * every transform; transforms in the journaled updates up to
+	 * and including it are not to be applied.
+	 */
+	public int getJournaledUpdatesFrom() {
+		return journaledUpdatesFrom;
+	}
+
 	WordprocessingMLPackage wordMLPackage = null;
 	
 	private void init(WordMLDocument doc) {
@@ -83,6 +134,16 @@ public class StateDocx {
 			this.promptForCheckinMessage = Boolean.FALSE;
 		}
 		
+		// Optional; absent unless the server understands delta transforms
+		this.deltaTransformsEnabled = Boolean.FALSE;
+		for (org.docx4j.docProps.custom.Properties.Property prop : 
+				((org.docx4j.docProps.custom.Properties) 
+					wordMLPackage.getDocPropsCustomPart().getJaxbElement()).getProperty()) {
+			if (CustomProperties.DELTA_TRANSFORMS_ENABLED.equals(prop.getName())) {
+				this.deltaTransformsEnabled = Boolean.valueOf("true".equals(prop.getLpwstr()));
+			}
+		}
+		
 		// Expected values: EachBlock, Heading1
 		this.chunkingStrategy = Util.getCustomDocumentProperty(
 				wordMLPackage.getDocPropsCustomPart(),
@@ -198,6 +259,11 @@ public class StateDocx {
     		this.promptForCheckinMessage = promptForCheckinMessage;
     	}
 
+        private Boolean deltaTransformsEnabled;
+    	public Boolean getDeltaTransformsEnabled() {
+    		return deltaTransformsEnabled;
+    	}
+
         private String chunkingStrategy;
     	public String getChunkingStrategy() {
     		return chunkingStrategy;
@@ -254,7 +320,8 @@ public class StateDocx {
     						.getDocPropsCustomPart(),
     						CustomProperties.DOCUMENT_TRANSFORM_SEQUENCENUMBER));
 
-        	private int tSequenceNumberHighestFetched = this.tSequenceNumberAtLoadTime;
+        	//Also read by the RemoteEditsPrefetcher thread
+        	private volatile int tSequenceNumberHighestFetched = this.tSequenceNumberAtLoadTime;
         	
         	
 			public int getTSequenceNumberHighestFetched() {
@@ -0,0 +1,731 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.state;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.plutext.client.Mediator;
+import org.plutext.client.wrappedTransforms.TransformAbstract;
+import org.plutext.client.wrappedTransforms.TransformStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of the sync state of a shared document,
+ * kept in a memory mapped file under ~/.docx4all/journal.
+ *
+ * As of the last checkpoint, the journal knows the version and
+ * a hash of the xml of each state chunk, the order of the state chunks
+ * in the document, the part versions and the resume point; ie: the
+ * sequence number up to which every transform has been applied.
+ *
+ * When the document is opened again, resume() compares it with the
+ * journal. If they match, the document already reflects every transform
+ * up to the resume point and those transforms need not be fetched again.
+ * Otherwise, a new baseline is appended.
+ *
+ * The journal also keeps the updates fetched from the server.  The
+ * document downloaded from the server is usually older than the last
+ * fetch, so getUpdates() hands back the ones after the point the
+ * document resumes from and only newer transforms have to be fetched.
+ *
+ * Each record is written as: type (byte), payload length (int),
+ * payload, CRC32 of type and payload (int). A zero type byte ends
+ * the journal, and so does a record whose checksum does not match
+ * (eg: one being written when the editor died).
+ */
+public class StateJournal {
+	private static Logger log = LoggerFactory.getLogger(StateJournal.class);
+
+	private final static int MAGIC = 0x504A4E4C; // "PJNL"
+	private final static int FORMAT_VERSION = 1;
+	private final static int HEADER_SIZE = 8;
+
+	private final static int INITIAL_CAPACITY = 64 * 1024;
+
+	// Journals bigger than this are compacted when opened.
+	private final static long COMPACT_THRESHOLD = 4 * 1024 * 1024;
+
+	private final static byte END = 0;
+	private final static byte BASELINE = 1;
+	private final static byte CHUNK = 2;
+	private final static byte CHUNK_REMOVED = 3;
+	private final static byte PART = 4;
+	private final static byte CHECKPOINT = 5;
+	private final static byte UNVERIFIABLE = 6;
+	private final static byte UPDATES = 7;
+
+	public static File getJournalDirectory() {
+		return new File(System.getProperty("user.home"), ".docx4all/journal");
+	}
+
+	/**
+	 * Opens the journal of the document at 'documentUri'.
+	 *
+	 * @param documentUri
+	 * @return the journal; null if it cannot be opened,
+	 * eg: because another editor has it open.
+	 */
+	public static StateJournal open(String documentUri) {
+		File dir = getJournalDirectory();
+		File file = new File(dir, digest(documentUri) + ".journal");
+		try {
+			dir.mkdirs();
+			return new StateJournal(file);
+		} catch (IOException exc) {
+			log.warn("open(): Cannot open " + file.getPath()
+				+ ". Carrying on without a journal.", exc);
+			return null;
+		}
+	}
+
+	private final File file;
+	private FileChannel lockChannel;
+	private FileLock lock;
+	private RandomAccessFile raf;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int capacity;
+
+	// State as of the last record
+	private String docID = null;
+	private int resumePoint = -1;
+	private long orderHash = 0;
+	private final Map<String, ChunkEntry> chunks = new HashMap<String, ChunkEntry>();
+	private final Map<String, String> partVersions = new HashMap<String, String>();
+	private final List<Integer> unverifiable = new ArrayList<Integer>();
+	private final List<UpdatesEntry> updates = new ArrayList<UpdatesEntry>();
+
+	private StateJournal(File file) throws IOException {
+		this.file = file;
+
+		File lockFile = new File(file.getPath() + ".lock");
+		this.lockChannel = new RandomAccessFile(lockFile, "rw").getChannel();
+		try {
+			this.lock = this.lockChannel.tryLock();
+		} catch (OverlappingFileLockException exc) {
+			//Locked by this JVM
+			this.lock = null;
+		}
+		if (this.lock == null) {
+			this.lockChannel.close();
+			throw new IOException("Journal in use");
+		}
+
+		try {
+			if (file.length() > COMPACT_THRESHOLD) {
+				compact();
+			}
+			map();
+		} catch (IOException exc) {
+			close();
+			throw exc;
+		}
+	}
+
+	private void map() throws IOException {
+		this.raf = new RandomAccessFile(this.file, "rw");
+		this.channel = raf.getChannel();
+		this.capacity = (int) Math.max(channel.size(), INITIAL_CAPACITY);
+		this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+			log.debug("map(): Starting new journal " + file.getPath());
+			buffer.putInt(0, MAGIC);
+			buffer.putInt(4, FORMAT_VERSION);
+			buffer.put(HEADER_SIZE, END);
+		}
+
+		buffer.position(HEADER_SIZE);
+		replay(buffer);
+		buffer.put(buffer.position(), END);
+	}
+
+	/**
+	 * Rewrites the journal with one record per chunk and part.
+	 * This is done before the journal is mapped.
+	 */
+	private void compact() throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(bytes);
+		} finally {
+			in.close();
+		}
+
+		ByteBuffer old = ByteBuffer.wrap(bytes);
+		if (old.getInt(0) != MAGIC || old.getInt(4) != FORMAT_VERSION) {
+			file.delete();
+			return;
+		}
+		old.position(HEADER_SIZE);
+		replay(old);
+
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			if (this.docID != null) {
+				out.write(encodeBaseline(this.docID, this.resumePoint));
+				for (Map.Entry<String, ChunkEntry> e: chunks.entrySet()) {
+					out.write(encodeChunk(e.getKey(), e.getValue().version, e.getValue().hash));
+				}
+				for (Map.Entry<String, String> e: partVersions.entrySet()) {
+					out.write(encodePart(e.getKey(), e.getValue()));
+				}
+				for (Integer snum: unverifiable) {
+					out.write(encodeInt(UNVERIFIABLE, snum.intValue()));
+				}
+				for (UpdatesEntry e: updates) {
+					out.write(encodeUpdates(e.from, e.to, e.xml));
+				}
+				out.write(encodeCheckpoint(this.resumePoint, this.orderHash));
+			}
+		} finally {
+			out.close();
+		}
+
+		log.info("compact(): " + file.getPath() + " from " + bytes.length
+			+ " to " + tmp.length() + " bytes");
+
+		if (!file.delete() || !tmp.renameTo(file)) {
+			throw new IOException("Cannot replace " + file.getPath());
+		}
+		reset(null, -1);
+	}
+
+	public synchronized void close() {
+		try {
+			if (this.buffer != null) {
+				this.buffer.force();
+				this.buffer = null;
+			}
+			if (this.channel != null) {
+				this.channel.close();
+				this.channel = null;
+			}
+			if (this.raf != null) {
+				this.raf.close();
+				this.raf = null;
+			}
+			if (this.lock != null) {
+				this.lock.release();
+				this.lock = null;
+			}
+			if (this.lockChannel != null) {
+				this.lockChannel.close();
+				this.lockChannel = null;
+			}
+		} catch (IOException exc) {
+			log.error("close(): " + file.getPath(), exc);
+		}
+	}
+
+	/**
+	 * Works out where a freshly opened document can resume syncing from.
+	 *
+	 * @param stateDocx The state of the document as loaded
+	 * @param snumAtLoad The sequence number recorded in the document
+	 * @param documentOrder The plutext ids of the document's content controls
+	 * in document order
+	 * @return the journal's resume point if the document matches the journal;
+	 * 'snumAtLoad' otherwise.
+	 */
+	public synchronized int resume(StateDocx stateDocx, int snumAtLoad, List<String> documentOrder) {
+		if (this.buffer == null) {
+			return snumAtLoad;
+		}
+
+		if (matches(stateDocx, snumAtLoad, documentOrder)) {
+			log.info("resume(): " + stateDocx.getDocID() + " resumes from " + this.resumePoint
+				+ " instead of " + snumAtLoad);
+			return this.resumePoint;
+		}
+
+		try {
+			appendBaseline(stateDocx, snumAtLoad, documentOrder);
+		} catch (IOException exc) {
+			log.error("resume(): Cannot write baseline. Closing journal.", exc);
+			close();
+		}
+		return snumAtLoad;
+	}
+
+	/**
+	 * Adds to 'list' the updates journaled after 'snum', oldest first.
+	 * Stops at the first gap, ie: at the first sequence number
+	 * which no journaled fetch covers.
+	 *
+	 * @param snum The sequence number the document resumes from
+	 * @param list The server's updates xml; transforms up to and including
+	 * 'snum' in there have to be skipped.
+	 * @return the sequence number up to which the updates added to 'list'
+	 * hold every transform; 'snum' if none was added.
+	 */
+	public synchronized int getUpdates(int snum, List<String> list) {
+		int reach = snum;
+		for (UpdatesEntry e: chain(snum)) {
+			list.add(e.xml);
+			reach = e.to;
+		}
+		if (reach > snum) {
+			log.info("getUpdates(): " + this.docID + " has journaled updates from "
+				+ snum + " to " + reach);
+		}
+		return reach;
+	}
+
+	/**
+	 * Journals updates fetched from the server.
+	 *
+	 * @param from The highest sequence number fetched before
+	 * @param to The server's sequence number at the time
+	 * @param xml Every transform after 'from' up to and including 'to'
+	 * and their changesets
+	 */
+	public synchronized void appendUpdates(int from, int to, String xml) {
+		if (this.buffer == null || to <= from) {
+			return;
+		}
+
+		try {
+			append(encodeUpdates(from, to, xml));
+			this.buffer.force();
+		} catch (IOException exc) {
+			log.error("appendUpdates(): Closing journal.", exc);
+			close();
+		}
+	}
+
+	/**
+	 * @return the journaled updates which, one after the other,
+	 * cover every sequence number after 'snum' up to the last of them.
+	 */
+	private List<UpdatesEntry> chain(int snum) {
+		List<UpdatesEntry> list = new ArrayList<UpdatesEntry>();
+		int reach = snum;
+		for (UpdatesEntry e: this.updates) {
+			if (e.from <= reach && e.to > reach) {
+				list.add(e);
+				reach = e.to;
+			}
+		}
+		return list;
+	}
+
+	private boolean matches(StateDocx stateDocx, int snumAtLoad, List<String> documentOrder) {
+		if (!stateDocx.getDocID().equals(this.docID)) {
+			return false;
+		}
+
+		if (this.resumePoint < snumAtLoad) {
+			log.debug("matches(): Document is newer than journal");
+			return false;
+		}
+
+		for (Integer snum: this.unverifiable) {
+			if (snum.intValue() > snumAtLoad && snum.intValue() <= this.resumePoint) {
+				log.debug("matches(): Cannot verify transform " + snum);
+				return false;
+			}
+		}
+
+		HashMap<String, StateChunk> stateChunks = stateDocx.getStateChunks();
+		if (stateChunks.size() != this.chunks.size()
+			|| hashOrder(documentOrder, stateChunks) != this.orderHash
+			|| !stateDocx.getPartVersionList().getVersions().equals(this.partVersions)) {
+			return false;
+		}
+
+		for (StateChunk sc: stateChunks.values()) {
+			ChunkEntry entry = this.chunks.get(sc.getIdAsString());
+			if (entry == null
+				|| !entry.version.equals(sc.getVersionAsString())
+				|| entry.hash != hash(sc.getXml())) {
+				return false;
+			}
+			entry.xml = sc.getXml();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Appends whatever has changed since the last checkpoint.
+	 *
+	 * @param stateDocx
+	 * @param documentOrder The plutext ids of the document's content controls
+	 * in document order
+	 */
+	public synchronized void checkpoint(StateDocx stateDocx, List<String> documentOrder) {
+		if (this.buffer == null) {
+			return;
+		}
+
+		try {
+			HashMap<String, StateChunk> stateChunks = stateDocx.getStateChunks();
+			for (StateChunk sc: stateChunks.values()) {
+				ChunkEntry entry = this.chunks.get(sc.getIdAsString());
+				if (entry != null && entry.xml == sc.getXml()) {
+					//Unchanged since last checked
+					continue;
+				}
+
+				long hash = hash(sc.getXml());
+				if (entry == null
+					|| entry.hash != hash
+					|| !entry.version.equals(sc.getVersionAsString())) {
+					append(encodeChunk(sc.getIdAsString(), sc.getVersionAsString(), hash));
+					entry = this.chunks.get(sc.getIdAsString());
+				}
+				entry.xml = sc.getXml();
+			}
+
+			List<String> removed = new ArrayList<String>();
+			for (String id: this.chunks.keySet()) {
+				if (!stateChunks.containsKey(id)) {
+					removed.add(id);
+				}
+			}
+			for (String id: removed) {
+				append(encodeString(CHUNK_REMOVED, id));
+			}
+
+			for (Map.Entry<String, String> e:
+					stateDocx.getPartVersionList().getVersions().entrySet()) {
+				if (!e.getValue().equals(this.partVersions.get(e.getKey()))) {
+					append(encodePart(e.getKey(), e.getValue()));
+				}
+			}
+
+			// Advance the resume point past every transform applied
+			// since, as long as there is no gap.
+			Map<Long, TransformAbstract> applied = new HashMap<Long, TransformAbstract>();
+			for (TransformAbstract ta:
+					stateDocx.getTransforms().getTransformsBySeqNum()) {
+				if (ta.getApplied()) {
+					applied.put(Long.valueOf(ta.getSequenceNumber()), ta);
+				}
+			}
+			int point = this.resumePoint;
+			TransformAbstract ta = null;
+			while ((ta = applied.get(Long.valueOf(point + 1))) != null) {
+				point++;
+				if (ta instanceof TransformStyle
+					|| Mediator.SECTPR_MAGIC_ID.equals(ta.getPlutextId())) {
+					// The document cannot tell us whether it has this one
+					append(encodeInt(UNVERIFIABLE, point));
+				}
+			}
+
+			long hash = hashOrder(documentOrder, stateChunks);
+			if (point != this.resumePoint || hash != this.orderHash) {
+				append(encodeCheckpoint(point, hash));
+			}
+
+			this.buffer.force();
+
+		} catch (IOException exc) {
+			log.error("checkpoint(): Closing journal.", exc);
+			close();
+		}
+	}
+
+	private void appendBaseline(StateDocx stateDocx, int snumAtLoad, List<String> documentOrder)
+		throws IOException {
+
+		// The updates after the document are still wanted;
+		// the others go with the old baseline.
+		List<UpdatesEntry> kept =
+			stateDocx.getDocID().equals(this.docID)
+				? chain(snumAtLoad)
+				: new ArrayList<UpdatesEntry>();
+
+		append(encodeBaseline(stateDocx.getDocID(), snumAtLoad));
+		for (StateChunk sc: stateDocx.getStateChunks().values()) {
+			append(encodeChunk(sc.getIdAsString(), sc.getVersionAsString(), hash(sc.getXml())));
+			this.chunks.get(sc.getIdAsString()).xml = sc.getXml();
+		}
+		for (Map.Entry<String, String> e:
+				stateDocx.getPartVersionList().getVersions().entrySet()) {
+			append(encodePart(e.getKey(), e.getValue()));
+		}
+		append(encodeCheckpoint(snumAtLoad, hashOrder(documentOrder, stateDocx.getStateChunks())));
+		for (UpdatesEntry e: kept) {
+			append(encodeUpdates(e.from, e.to, e.xml));
+		}
+		this.buffer.force();
+	}
+
+	/**
+	 * Writes 'record' at the end of the journal and applies it
+	 * to the in-memory state.
+	 */
+	private void append(byte[] record) throws IOException {
+		if (this.buffer.remaining() < record.length + 1) {
+			int position = this.buffer.position();
+			this.capacity = Math.max(this.capacity * 2, position + record.length + 1);
+			this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+			this.buffer.position(position);
+		}
+		this.buffer.put(record);
+		this.buffer.put(this.buffer.position(), END);
+
+		apply(record[0], record, 5, record.length - 9);
+	}
+
+	/**
+	 * Applies the records from the current position of 'records' on,
+	 * and leaves 'records' positioned at the end of the last good one.
+	 */
+	private void replay(ByteBuffer records) throws IOException {
+		while (records.remaining() >= 9) {
+			int start = records.position();
+			byte type = records.get();
+			if (type == END) {
+				records.position(start);
+				return;
+			}
+
+			int length = records.getInt();
+			if (length < 0 || length + 4 > records.remaining()) {
+				log.warn("replay(): Truncated record at " + start);
+				records.position(start);
+				return;
+			}
+
+			byte[] payload = new byte[length];
+			records.get(payload);
+			if (records.getInt() != checksum(type, payload, 0, length)) {
+				log.warn("replay(): Bad checksum at " + start);
+				records.position(start);
+				return;
+			}
+
+			apply(type, payload, 0, length);
+		}
+	}
+
+	private void apply(byte type, byte[] bytes, int offset, int length) throws IOException {
+		DataInputStream in =
+			new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+		switch (type) {
+			case BASELINE:
+				String id = in.readUTF();
+				reset(id, in.readInt());
+				break;
+			case CHUNK:
+				id = in.readUTF();
+				this.chunks.put(id, new ChunkEntry(in.readUTF(), in.readLong()));
+				break;
+			case CHUNK_REMOVED:
+				this.chunks.remove(in.readUTF());
+				break;
+			case PART:
+				id = in.readUTF();
+				this.partVersions.put(id, in.readUTF());
+				break;
+			case CHECKPOINT:
+				this.resumePoint = in.readInt();
+				this.orderHash = in.readLong();
+				break;
+			case UNVERIFIABLE:
+				this.unverifiable.add(Integer.valueOf(in.readInt()));
+				break;
+			case UPDATES:
+				int from = in.readInt();
+				int to = in.readInt();
+				byte[] xml = new byte[in.readInt()];
+				in.readFully(xml);
+				this.updates.add(new UpdatesEntry(from, to, new String(xml, "UTF-8")));
+				break;
+			default:
+				log.warn("apply(): Ignoring record of type " + type);
+		}
+	}
+
+	private void reset(String docID, int snum) {
+		this.docID = docID;
+		this.resumePoint = snum;
+		this.orderHash = 0;
+		this.chunks.clear();
+		this.partVersions.clear();
+		this.unverifiable.clear();
+		this.updates.clear();
+	}
+
+	private static byte[] encodeBaseline(String docID, int snum) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(docID);
+		out.writeInt(snum);
+		return encode(BASELINE, bytes.toByteArray());
+	}
+
+	private static byte[] encodeChunk(String id, String version, long hash) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(id);
+		out.writeUTF(version);
+		out.writeLong(hash);
+		return encode(CHUNK, bytes.toByteArray());
+	}
+
+	private static byte[] encodePart(String name, String version) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF(name);
+		out.writeUTF(version);
+		return encode(PART, bytes.toByteArray());
+	}
+
+	private static byte[] encodeCheckpoint(int snum, long orderHash) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(snum);
+		out.writeLong(orderHash);
+		return encode(CHECKPOINT, bytes.toByteArray());
+	}
+
+	private static byte[] encodeUpdates(int from, int to, String xml) throws IOException {
+		// Too long for writeUTF()
+		byte[] utf8 = xml.getBytes("UTF-8");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(utf8.length + 12);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(from);
+		out.writeInt(to);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+		return encode(UPDATES, bytes.toByteArray());
+	}
+
+	private static byte[] encodeString(byte type, String s) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeUTF(s);
+		return encode(type, bytes.toByteArray());
+	}
+
+	private static byte[] encodeInt(byte type, int i) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeInt(i);
+		return encode(type, bytes.toByteArray());
+	}
+
+	private static byte[] encode(byte type, byte[] payload) {
+		ByteBuffer record = ByteBuffer.allocate(payload.length + 9);
+		record.put(type);
+		record.putInt(payload.length);
+		record.put(payload);
+		record.putInt(checksum(type, payload, 0, payload.length));
+		return record.array();
+	}
+
+	private static int checksum(byte type, byte[] payload, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload, offset, length);
+		return (int) crc.getValue();
+	}
+
+	/* 64 bit FNV-1a */
+	private static long hash(String s) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	private static long hashOrder(List<String> documentOrder, Map<String, StateChunk> stateChunks) {
+		StringBuilder sb = new StringBuilder();
+		for (String id: documentOrder) {
+			// Content controls the server doesn't know about yet
+			// are not part of the state.
+			if (stateChunks.containsKey(id)) {
+				sb.append(id);
+				sb.append('\n');
+			}
+		}
+		return hash(sb.toString());
+	}
+
+	private static String digest(String s) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			StringBuilder sb = new StringBuilder();
+			for (byte b: md.digest(s.getBytes("UTF-8"))) {
+				sb.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return sb.toString();
+		} catch (Exception exc) {
+			// MD5 and UTF-8 are always there
+			throw new RuntimeException(exc);
+		}
+	}
+
+	private static class ChunkEntry {
+		final String version;
+		final long hash;
+
+		// The xml last hashed; so that unchanged chunks
+		// need not be hashed at each checkpoint.
+		String xml = null;
+
+		ChunkEntry(String version, long hash) {
+			this.version = version;
+			this.hash = hash;
+		}
+	}// ChunkEntry class
+
+	private static class UpdatesEntry {
+		final int from;
+		final int to;
+		final String xml;
+
+		UpdatesEntry(int from, int to, String xml) {
+			this.from = from;
+			this.to = to;
+			this.xml = xml;
+		}
+	}// UpdatesEntry class
+
+}// StateJournal class
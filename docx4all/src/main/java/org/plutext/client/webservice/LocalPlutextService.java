@@ -0,0 +1,890 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.webservice;
+
+import java.io.ByteArrayInputStream;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.namespace.QName;
+
+import org.docx4all.util.XmlUtil;
+import org.docx4all.xml.WordMLCopier;
+import org.docx4j.XmlUtils;
+import org.docx4j.convert.out.flatOpcXml.FlatOpcXmlCreator;
+import org.docx4j.model.datastorage.CustomXmlDataStorageImpl;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.wml.SdtBlock;
+import org.docx4j.wml.SectPr;
+import org.plutext.Context;
+import org.plutext.client.CustomProperties;
+import org.plutext.client.Mediator;
+import org.plutext.client.Namespaces;
+import org.plutext.client.SdtWrapper;
+import org.plutext.client.wrappedTransforms.TransformDelta;
+import org.plutext.server.transitions.Transitions;
+import org.plutext.transforms.Changesets;
+import org.plutext.transforms.Transforms;
+import org.plutext.transforms.Updates;
+import org.plutext.transforms.Changesets.Changeset;
+import org.plutext.transforms.Transforms.T;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An in-process stand-in for the Plutext server.
+ *
+ * Skeleton, transforms, changesets and part versions of each document
+ * are kept in memory.  Sequencing follows the server: every transform
+ * which is accepted is allocated the next sequence number of its document,
+ * every call to transform() is one changeset, an "update" is answered with
+ * the transform carrying the new chunk version, a "move" to the position
+ * a chunk already occupies is answered with "0", and an "update" based
+ * on a stale chunk version rejects the whole call.
+ *
+ * Clients are given a view of this service by getSession() so that
+ * changesets can record who made them.
+ */
+public class LocalPlutextService implements PlutextWebService {
+
+	private static Logger log = LoggerFactory.getLogger(LocalPlutextService.class);
+
+	private static DatatypeFactory datatypeFactory;
+
+	static {
+		try {
+			datatypeFactory = DatatypeFactory.newInstance();
+		} catch (DatatypeConfigurationException exc) {
+			exc.printStackTrace();
+		}
+	}
+
+	public final static String PART_VERSIONS_PART_NAME = "/part-versions.xml";
+
+	private final static String ANONYMOUS = "anonymous";
+
+	private final Map<String, DocumentState> documents =
+		new HashMap<String, DocumentState>();
+
+	public LocalPlutextService() {
+		;//do nothing
+	}
+
+	/**
+	 * Registers a new document with this service.
+	 * Every SdtBlock in the body of wmlPackage becomes a rib of
+	 * the document skeleton.  Its plutext id and version number are
+	 * read from the SdtBlock tag.
+	 *
+	 * @param docID Document id as computed by StateDocx; ie: the part of
+	 * the document's webdav uri starting with "/alfresco/".
+	 * @param wmlPackage A shared document package.
+	 * @throws RemoteException if docID is already registered.
+	 */
+	public synchronized void createDocument(String docID, WordprocessingMLPackage wmlPackage)
+		throws RemoteException {
+
+		if (documents.containsKey(docID)) {
+			throw new RemoteException("Document " + docID + " already exists");
+		}
+
+		org.docx4j.wml.Document wmlDoc =
+			(org.docx4j.wml.Document)
+			wmlPackage.getMainDocumentPart().getJaxbElement();
+
+		DocumentState state = new DocumentState(wmlPackage);
+		for (Object obj: wmlDoc.getBody().getEGBlockLevelElts()) {
+			obj = XmlUtils.unwrap(obj);
+			if (obj instanceof SdtBlock) {
+				SdtBlock sdt = (SdtBlock) WordMLCopier.copy(obj);
+				Rib rib = new Rib(sdt);
+				state.ribs.add(rib);
+			}
+		}
+
+		if (wmlDoc.getBody().getSectPr() != null) {
+			state.sectPr = (SectPr) WordMLCopier.copy(wmlDoc.getBody().getSectPr());
+		}
+
+		documents.put(docID, state);
+
+		log.debug("createDocument(): " + docID + " has " + state.ribs.size() + " ribs");
+	}
+
+	/**
+	 * Builds a package of the current server copy of a document
+	 * in the form a client would get when opening it: with plutext
+	 * custom properties and a part version list CustomXml part.
+	 *
+	 * @param docID
+	 * @return a new WordprocessingMLPackage
+	 * @throws RemoteException if the document does not exist.
+	 */
+	public synchronized WordprocessingMLPackage getDocumentPackage(String docID)
+		throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+		try {
+			WordprocessingMLPackage thePack =
+				XmlUtil.createNewPackage(state.template, false, true, true);
+
+			org.docx4j.wml.Document wmlDoc =
+				(org.docx4j.wml.Document)
+				thePack.getMainDocumentPart().getJaxbElement();
+			List<Object> blocks = wmlDoc.getBody().getEGBlockLevelElts();
+			blocks.clear();
+			for (Rib rib: state.ribs) {
+				if (!rib.deleted) {
+					blocks.add(WordMLCopier.copy(rib.sdt));
+				}
+			}
+			if (state.sectPr != null) {
+				wmlDoc.getBody().setSectPr((SectPr) WordMLCopier.copy(state.sectPr));
+			}
+
+			setCustomProperty(
+				thePack,
+				CustomProperties.DOCUMENT_TRANSFORM_SEQUENCENUMBER,
+				Long.toString(state.sequenceNumber));
+			setCustomProperty(
+				thePack,
+				CustomProperties.DELTA_TRANSFORMS_ENABLED,
+				Boolean.TRUE.toString());
+
+			CustomXmlDataStoragePart pvlPart =
+				new CustomXmlDataStoragePart(new PartName("/customXml/item1.xml"));
+			CustomXmlDataStorageImpl data = new CustomXmlDataStorageImpl();
+			data.setDocument(
+				new ByteArrayInputStream(createPartVersionList(state).getBytes("UTF-8")));
+			pvlPart.setData(data);
+			thePack.getMainDocumentPart().addTargetPart(pvlPart);
+
+			return thePack;
+
+		} catch (Exception exc) {
+			log.error(exc.getMessage(), exc);
+			throw new RemoteException("Cannot create package of " + docID, exc);
+		}
+	}
+
+	/**
+	 * @param userName
+	 * @return a PlutextWebService which records userName as the modifier
+	 * of the changesets it creates.
+	 */
+	public PlutextWebService getSession(String userName) {
+		return new Session(userName);
+	}
+
+	/**
+	 * @param docID
+	 * @return the highest sequence number allocated in the document.
+	 * @throws RemoteException if the document does not exist.
+	 */
+	public synchronized long getSequenceNumber(String docID) throws RemoteException {
+		return getDocumentState(docID).sequenceNumber;
+	}
+
+	/**
+	 * @param docID
+	 * @return the time in milliseconds at which the transform with
+	 * sequence number 'snum' was accepted; -1 if there is no such transform.
+	 * @throws RemoteException if the document does not exist.
+	 */
+	public synchronized long getTimestamp(String docID, long snum) throws RemoteException {
+		for (T t: getDocumentState(docID).transforms) {
+			if (t.getSnum() == snum) {
+				return t.getTstamp();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param docID
+	 * @return the modifier of the changeset to which the transform with
+	 * sequence number 'snum' belongs; null if there is no such transform.
+	 * @throws RemoteException if the document does not exist.
+	 */
+	public synchronized String getModifier(String docID, long snum) throws RemoteException {
+		DocumentState state = getDocumentState(docID);
+		for (T t: state.transforms) {
+			if (t.getSnum() == snum) {
+				return state.changesets.get(Long.valueOf(t.getChangeset())).getModifier();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param docID
+	 * @return a map whose key is plutext id and value is the marshalled
+	 * SdtBlock of each live rib, in document order.
+	 * @throws RemoteException if the document does not exist.
+	 */
+	public synchronized Map<String, String> getChunks(String docID) throws RemoteException {
+		Map<String, String> theChunks = new LinkedHashMap<String, String>();
+		for (Rib rib: getDocumentState(docID).ribs) {
+			if (!rib.deleted) {
+				theChunks.put(Long.toString(rib.id), XmlUtils.marshaltoString(rib.sdt, true));
+			}
+		}
+		return theChunks;
+	}
+
+	public String[] transform(String docID, String xml, String message)
+		throws RemoteException {
+		return transform(docID, xml, message, ANONYMOUS);
+	}
+
+	private synchronized String[] transform(
+		String docID,
+		String xml,
+		String message,
+		String modifier) throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+
+		Transforms transforms = null;
+		try {
+			Unmarshaller u = Context.jcTransforms.createUnmarshaller();
+			u.setEventHandler(new org.docx4j.jaxb.JaxbValidationEventHandler());
+			transforms = (Transforms) u.unmarshal(new java.io.StringReader(xml));
+		} catch (JAXBException exc) {
+			log.error(exc.getMessage(), exc);
+			throw new RemoteException("Cannot read transforms", exc);
+		}
+
+		//An update based on a version older than the server's
+		//rejects the whole call so that no transform is half applied.
+		//So does a delta not based on the server's version.
+		for (T t: transforms.getT()) {
+			if ("update".equals(t.getOp()) || TransformDelta.OP.equals(t.getOp())) {
+				String id = SdtWrapper.getPlutextId(t.getSdt().getSdtPr());
+				if (Mediator.SECTPR_MAGIC_ID.equals(id)) {
+					continue;
+				}
+				Rib rib = state.getRib(Long.parseLong(id));
+				if (rib == null || rib.deleted) {
+					throw new RemoteException("Update of unknown chunk " + id);
+				}
+				long version =
+					Long.parseLong(SdtWrapper.getVersionNumber(t.getSdt().getSdtPr()));
+				if (version < rib.version) {
+					throw new RemoteException(
+						"Conflict: chunk " + id + " version " + version
+						+ " is older than server version " + rib.version);
+				}
+				if (TransformDelta.OP.equals(t.getOp())
+					&& (t.getBase() == null
+						|| t.getBase().longValue() != rib.version
+						|| TransformDelta.splice(
+							rib.sdt, t.getSdt(), getPosition(t), getLength(t)) == null)) {
+					throw new RemoteException(
+						"Conflict: delta of chunk " + id + " made from version " + t.getBase()
+						+ " does not apply to server version " + rib.version);
+				}
+			}
+		}
+
+		long tstamp = System.currentTimeMillis();
+
+		Changeset changeset = new Changeset();
+		changeset.setNumber(++state.changesetNumber);
+		changeset.setModifier(modifier);
+		changeset.setValue(message);
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(tstamp);
+		changeset.setDate(datatypeFactory.newXMLGregorianCalendar(cal).toXMLFormat());
+		state.changesets.put(Long.valueOf(changeset.getNumber()), changeset);
+
+		String[] result = new String[transforms.getT().size()];
+		int i = 0;
+		for (T t: transforms.getT()) {
+			String op = t.getOp();
+			if ("update".equals(op)) {
+				result[i] = update(state, t, changeset.getNumber(), tstamp);
+			} else if (TransformDelta.OP.equals(op)) {
+				result[i] = delta(state, t, changeset.getNumber(), tstamp);
+			} else if ("insert".equals(op)) {
+				result[i] = insert(state, t, changeset.getNumber(), tstamp);
+			} else if ("delete".equals(op)) {
+				result[i] = delete(state, t, changeset.getNumber(), tstamp);
+			} else if ("move".equals(op)) {
+				result[i] = move(state, t, changeset.getNumber(), tstamp);
+			} else {
+				log.warn("transform(): Unsupported op=" + op);
+				result[i] = "0";
+			}
+			i++;
+		}
+
+		notifyAll();
+
+		return result;
+	}
+
+	private String update(DocumentState state, T t, long changeset, long tstamp) {
+		SdtBlock sdt = (SdtBlock) WordMLCopier.copy(t.getSdt());
+		String id = SdtWrapper.getPlutextId(sdt.getSdtPr());
+
+		long version;
+		Rib rib;
+		if (Mediator.SECTPR_MAGIC_ID.equals(id)) {
+			//The document level sectPr is not a rib
+			//that clients diff against their skeleton.
+			if (state.sectPrRib == null) {
+				state.sectPrRib = new Rib(sdt);
+			}
+			rib = state.sectPrRib;
+			version = ++rib.version;
+		} else {
+			rib = state.getRib(Long.parseLong(id));
+			version = ++rib.version;
+		}
+
+		new SdtWrapper(sdt).setVersionNumber(version);
+		rib.sdt = sdt;
+
+		T serverT = createT("update", state, changeset, tstamp);
+		serverT.setSdt((SdtBlock) WordMLCopier.copy(sdt));
+		rib.addTransition(serverT);
+
+		return toXml(serverT);
+	}
+
+	/**
+	 * Splices the children carried by a delta into the chunk.
+	 * Like an update, this is answered with the transform carrying
+	 * the new chunk version; but only the children carried are echoed.
+	 */
+	private String delta(DocumentState state, T t, long changeset, long tstamp) {
+		String id = SdtWrapper.getPlutextId(t.getSdt().getSdtPr());
+		Rib rib = state.getRib(Long.parseLong(id));
+
+		SdtBlock sdt = TransformDelta.splice(rib.sdt, t.getSdt(), getPosition(t), getLength(t));
+		long base = rib.version;
+		long version = ++rib.version;
+		new SdtWrapper(sdt).setVersionNumber(version);
+		rib.sdt = sdt;
+
+		SdtBlock carried = (SdtBlock) WordMLCopier.copy(t.getSdt());
+		new SdtWrapper(carried).setVersionNumber(version);
+
+		T serverT = createT(TransformDelta.OP, state, changeset, tstamp);
+		serverT.setPosition(Long.valueOf(getPosition(t)));
+		serverT.setLength(Long.valueOf(getLength(t)));
+		serverT.setBase(Long.valueOf(base));
+		serverT.setSdt(carried);
+		rib.addTransition(serverT);
+
+		return toXml(serverT);
+	}
+
+	private int getPosition(T t) {
+		return (t.getPosition() == null) ? 0 : t.getPosition().intValue();
+	}
+
+	private int getLength(T t) {
+		return (t.getLength() == null) ? 0 : t.getLength().intValue();
+	}
+
+	private String toXml(T t) {
+		JAXBElement<T> elem =
+			new JAXBElement<T>(
+				new QName(Namespaces.PLUTEXT_TRANSFORMS_NAMESPACE, "t"),
+				T.class,
+				t);
+		return XmlUtils.marshaltoString(elem, true, false, Context.jcTransforms);
+	}
+
+	private String insert(DocumentState state, T t, long changeset, long tstamp) {
+		SdtBlock sdt = (SdtBlock) WordMLCopier.copy(t.getSdt());
+		long id = Long.parseLong(SdtWrapper.getPlutextId(sdt.getSdtPr()));
+
+		Rib rib = state.getRib(id);
+		if (rib != null) {
+			//Reinstatement of a deleted chunk
+			state.ribs.remove(rib);
+			rib.sdt = sdt;
+			rib.deleted = false;
+		} else {
+			rib = new Rib(sdt);
+		}
+
+		long position = (t.getPosition() == null) ? Long.MAX_VALUE : t.getPosition();
+		state.ribs.add(state.toRibsIndex(position), rib);
+
+		T serverT = createT("insert", state, changeset, tstamp);
+		serverT.setPosition(Long.valueOf(position));
+		serverT.setSdt((SdtBlock) WordMLCopier.copy(sdt));
+		rib.addTransition(serverT);
+
+		return Long.toString(serverT.getSnum());
+	}
+
+	private String delete(DocumentState state, T t, long changeset, long tstamp) {
+		Rib rib = state.getRib(t.getIdref());
+		if (rib == null || rib.deleted) {
+			return "0";
+		}
+
+		rib.deleted = true;
+
+		T serverT = createT("delete", state, changeset, tstamp);
+		serverT.setIdref(t.getIdref());
+		rib.addTransition(serverT);
+
+		return Long.toString(serverT.getSnum());
+	}
+
+	private String move(DocumentState state, T t, long changeset, long tstamp) {
+		Rib rib = state.getRib(t.getIdref());
+		if (rib == null || rib.deleted || t.getPosition() == null) {
+			return "0";
+		}
+
+		long position = t.getPosition();
+		if (state.getLivePosition(rib) == position) {
+			//Redundant
+			return "0";
+		}
+
+		state.ribs.remove(rib);
+		state.ribs.add(state.toRibsIndex(position), rib);
+
+		T serverT = createT("move", state, changeset, tstamp);
+		serverT.setIdref(t.getIdref());
+		serverT.setPosition(Long.valueOf(position));
+		rib.addTransition(serverT);
+
+		return Long.toString(serverT.getSnum());
+	}
+
+	private T createT(String op, DocumentState state, long changeset, long tstamp) {
+		T theT = new T();
+		theT.setOp(op);
+		theT.setSnum(++state.sequenceNumber);
+		theT.setChangeset(changeset);
+		theT.setTstamp(tstamp);
+		state.transforms.add(theT);
+		return theT;
+	}
+
+	public synchronized String[] getTransforms(String docID, long firstSequenceNumber)
+		throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+
+		Updates updates = new Updates();
+		updates.setTransforms(new Transforms());
+		updates.setChangesets(new Changesets());
+
+		List<Long> changesetNumbers = new ArrayList<Long>();
+		for (T t: state.transforms) {
+			if (t.getSnum() > firstSequenceNumber) {
+				updates.getTransforms().getT().add(t);
+				Long num = Long.valueOf(t.getChangeset());
+				if (!changesetNumbers.contains(num)) {
+					changesetNumbers.add(num);
+					updates.getChangesets().getChangeset().add(state.changesets.get(num));
+				}
+			}
+		}
+
+		String[] result = new String[2];
+		result[0] = Long.toString(state.sequenceNumber);
+		result[1] = XmlUtils.marshaltoString(updates, true, false, Context.jcTransforms);
+		return result;
+	}
+
+	public synchronized String getSkeletonDocument(String docID) throws RemoteException {
+		DocumentState state = getDocumentState(docID);
+
+		Transitions transitions = new Transitions();
+		transitions.setRibs(new Transitions.Ribs());
+		transitions.setStyles(new Transitions.Styles());
+
+		for (Rib rib: state.ribs) {
+			transitions.getRibs().getRib().add(rib.toTransitionsRib());
+		}
+		if (state.sectPrRib != null) {
+			transitions.getRibs().getRib().add(state.sectPrRib.toTransitionsRib());
+		}
+
+		return XmlUtils.marshaltoString(transitions, true, false, Context.jcTransitions);
+	}
+
+	public synchronized String[][] getParts(String docID, String[] partNames)
+		throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+
+		String[][] result = new String[partNames.length][];
+		for (int i = 0; i < partNames.length; i++) {
+			if (PART_VERSIONS_PART_NAME.equals(partNames[i])) {
+				result[i] = new String[] {
+					Long.toString(state.sequenceNumber),
+					FlatOpcXmlCreator.wrapInXmlPart(
+						createPartVersionList(state),
+						PART_VERSIONS_PART_NAME,
+						"text/xml")
+				};
+			} else {
+				PartRecord part = state.parts.get(partNames[i]);
+				if (part == null) {
+					result[i] = new String[] {"", ""};
+				} else {
+					result[i] = new String[] {
+						Long.toString(part.version),
+						FlatOpcXmlCreator.wrapInXmlPart(
+							part.content,
+							partNames[i],
+							part.contentType)
+					};
+				}
+			}
+		}
+		return result;
+	}
+
+	public synchronized String injectPart(
+		String docID,
+		String partName,
+		String version,
+		String contentType,
+		String content) throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+		PartRecord part = state.parts.get(partName);
+		if (part == null) {
+			//The first version on the server is numbered 0.
+			part = new PartRecord(contentType, content);
+			state.parts.put(partName, part);
+
+		} else if (part.version == Long.parseLong(version)) {
+			part.version++;
+			part.contentType = contentType;
+			part.content = content;
+
+		} else {
+			throw new RemoteException(
+				"Conflict: part " + partName + " version " + version
+				+ " is not server version " + part.version);
+		}
+
+		notifyAll();
+
+		return Long.toString(part.version);
+	}
+
+	public synchronized boolean removePart(String docID, String partName, String version)
+		throws RemoteException {
+
+		DocumentState state = getDocumentState(docID);
+		PartRecord part = state.parts.get(partName);
+		if (part == null || part.version != Long.parseLong(version)) {
+			return false;
+		}
+		state.parts.remove(partName);
+		return true;
+	}
+
+	public String[] putMainDocumentPart(String docID, String xml, String message)
+		throws RemoteException {
+
+		try {
+			org.docx4j.wml.Document wmlDoc =
+				(org.docx4j.wml.Document) XmlUtils.unmarshalString(xml);
+			WordprocessingMLPackage thePack = WordprocessingMLPackage.createPackage();
+			thePack.getMainDocumentPart().setJaxbElement(wmlDoc);
+			createDocument(docID, thePack);
+
+		} catch (RemoteException exc) {
+			throw exc;
+		} catch (Exception exc) {
+			log.error(exc.getMessage(), exc);
+			throw new RemoteException("Cannot put main document part", exc);
+		}
+
+		return new String[] {Long.toString(getSequenceNumber(docID))};
+	}
+
+	/**
+	 * Blocks until the sequence number of the document exceeds
+	 * 'sinceSequenceNumber' or until 'timeout' milliseconds have elapsed.
+	 * 
+	 * @return the sequence number of the document at that time
+	 */
+	public synchronized long waitForChanges(String docID, long sinceSequenceNumber, long timeout)
+		throws RemoteException {
+
+		long deadline = System.currentTimeMillis() + timeout;
+		DocumentState state = getDocumentState(docID);
+		while (state.sequenceNumber <= sinceSequenceNumber) {
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				break;
+			}
+			try {
+				wait(remaining);
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new RemoteException("Interrupted", exc);
+			}
+		}
+		return state.sequenceNumber;
+	}
+
+	public String reportRecentChanges(String docID) throws RemoteException {
+		throw new RemoteException("reportRecentChanges() is not supported");
+	}
+
+	public String reportVersionHistory(String docID, String chunkID)
+		throws RemoteException {
+		throw new RemoteException("reportVersionHistory() is not supported");
+	}
+
+	private DocumentState getDocumentState(String docID) throws RemoteException {
+		DocumentState state = documents.get(docID);
+		if (state == null) {
+			throw new RemoteException("Unknown document " + docID);
+		}
+		return state;
+	}
+
+	private String createPartVersionList(DocumentState state) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<parts>");
+		for (Map.Entry<String, PartRecord> entry: state.parts.entrySet()) {
+			sb.append("<part name=\"");
+			sb.append(entry.getKey());
+			sb.append("\" version=\"");
+			sb.append(entry.getValue().version);
+			sb.append("\" ContentType=\"");
+			sb.append(entry.getValue().contentType);
+			sb.append("\"/>");
+		}
+		sb.append("</parts>");
+		return sb.toString();
+	}
+
+	private void setCustomProperty(
+		WordprocessingMLPackage wmlPackage,
+		String name,
+		String value) {
+
+		org.docx4j.docProps.custom.Properties customProps =
+			(org.docx4j.docProps.custom.Properties)
+			wmlPackage.getDocPropsCustomPart().getJaxbElement();
+
+		org.docx4j.docProps.custom.Properties.Property prop =
+			XmlUtil.getCustomProperty(wmlPackage, name);
+		if (prop == null) {
+			prop = new org.docx4j.docProps.custom.ObjectFactory().createPropertiesProperty();
+			prop.setName(name);
+			prop.setFmtid(
+				org.docx4j.openpackaging.parts.DocPropsCustomPart.fmtidValLpwstr); // Magic string
+			prop.setPid(customProps.getNextId());
+			customProps.getProperty().add(prop);
+		}
+		prop.setLpwstr(value);
+	}
+
+	private static class DocumentState {
+		private final WordprocessingMLPackage template;
+		private final List<Rib> ribs = new ArrayList<Rib>();
+		private final List<T> transforms = new ArrayList<T>();
+		private final Map<Long, Changeset> changesets = new HashMap<Long, Changeset>();
+		private final Map<String, PartRecord> parts = new LinkedHashMap<String, PartRecord>();
+		private Rib sectPrRib;
+		private SectPr sectPr;
+		private long sequenceNumber;
+		private long changesetNumber;
+
+		DocumentState(WordprocessingMLPackage template) {
+			this.template = template;
+			this.sequenceNumber = 0;
+			this.changesetNumber = 0;
+		}
+
+		Rib getRib(long id) {
+			for (Rib rib: ribs) {
+				if (rib.id == id) {
+					return rib;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Positions sent by clients count live ribs only.
+		 */
+		long getLivePosition(Rib target) {
+			long pos = 0;
+			for (Rib rib: ribs) {
+				if (rib == target) {
+					return pos;
+				}
+				if (!rib.deleted) {
+					pos++;
+				}
+			}
+			return -1;
+		}
+
+		int toRibsIndex(long livePosition) {
+			long pos = 0;
+			for (int idx = 0; idx < ribs.size(); idx++) {
+				if (ribs.get(idx).deleted) {
+					continue;
+				}
+				if (pos == livePosition) {
+					return idx;
+				}
+				pos++;
+			}
+			return ribs.size();
+		}
+	}// DocumentState class
+
+	private static class Rib {
+		private final long id;
+		private long version;
+		private boolean deleted;
+		private SdtBlock sdt;
+		private final List<Transitions.Ribs.Rib.T> transitions =
+			new ArrayList<Transitions.Ribs.Rib.T>();
+
+		Rib(SdtBlock sdt) {
+			this.id = Long.parseLong(SdtWrapper.getPlutextId(sdt.getSdtPr()));
+			String v = SdtWrapper.getVersionNumber(sdt.getSdtPr());
+			this.version = (v == null) ? 1 : Long.parseLong(v);
+			this.deleted = false;
+			this.sdt = sdt;
+		}
+
+		void addTransition(T t) {
+			Transitions.Ribs.Rib.T ribT = new Transitions.Ribs.Rib.T();
+			ribT.setSnum(t.getSnum());
+			ribT.setOp(t.getOp());
+			ribT.setChangeset(t.getChangeset());
+			ribT.setTstamp(t.getTstamp());
+			transitions.add(ribT);
+		}
+
+		Transitions.Ribs.Rib toTransitionsRib() {
+			Transitions.Ribs.Rib theRib = new Transitions.Ribs.Rib();
+			theRib.setId(id);
+			theRib.setVersion(version);
+			if (deleted) {
+				theRib.setDeleted(Boolean.TRUE);
+			}
+			theRib.getT().addAll(transitions);
+			return theRib;
+		}
+	}// Rib class
+
+	private static class PartRecord {
+		private long version;
+		private String contentType;
+		private String content;
+
+		PartRecord(String contentType, String content) {
+			this.version = 0;
+			this.contentType = contentType;
+			this.content = content;
+		}
+	}// PartRecord class
+
+	private class Session implements PlutextWebService {
+		private final String userName;
+
+		Session(String userName) {
+			this.userName = userName;
+		}
+
+		public String[] transform(String docID, String xml, String message)
+			throws RemoteException {
+			return LocalPlutextService.this.transform(docID, xml, message, userName);
+		}
+
+		public String[][] getParts(String docID, String[] partNames)
+			throws RemoteException {
+			return LocalPlutextService.this.getParts(docID, partNames);
+		}
+
+		public String[] getTransforms(String docID, long firstSequenceNumber)
+			throws RemoteException {
+			return LocalPlutextService.this.getTransforms(docID, firstSequenceNumber);
+		}
+
+		public String getSkeletonDocument(String docID) throws RemoteException {
+			return LocalPlutextService.this.getSkeletonDocument(docID);
+		}
+
+		public String[] putMainDocumentPart(String docID, String xml, String message)
+			throws RemoteException {
+			return LocalPlutextService.this.putMainDocumentPart(docID, xml, message);
+		}
+
+		public String reportRecentChanges(String docID) throws RemoteException {
+			return LocalPlutextService.this.reportRecentChanges(docID);
+		}
+
+		public String reportVersionHistory(String docID, String chunkID)
+			throws RemoteException {
+			return LocalPlutextService.this.reportVersionHistory(docID, chunkID);
+		}
+
+		public String injectPart(
+			String docID,
+			String partName,
+			String version,
+			String contentType,
+			String content) throws RemoteException {
+			return LocalPlutextService.this.injectPart(
+					docID, partName, version, contentType, content);
+		}
+
+		public boolean removePart(String docID, String partName, String version)
+			throws RemoteException {
+			return LocalPlutextService.this.removePart(docID, partName, version);
+		}
+
+		public long waitForChanges(String docID, long sinceSequenceNumber, long timeout)
+			throws RemoteException {
+			return LocalPlutextService.this.waitForChanges(docID, sinceSequenceNumber, timeout);
+		}
+	}// Session class
+
+}// LocalPlutextService class
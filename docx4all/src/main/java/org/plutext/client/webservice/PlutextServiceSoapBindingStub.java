@@ -28,7 +28,7 @@ public class PlutextServiceSoapBindingStub extends org.apache.axis.client.Stub i
     static org.apache.axis.description.OperationDesc [] _operations;
 
     static {
-        _operations = new org.apache.axis.description.OperationDesc[9];
+        _operations = new org.apache.axis.description.OperationDesc[10];
         _initOperationDesc1();
     }
 
@@ -160,6 +160,21 @@ public class PlutextServiceSoapBindingStub extends org.apache.axis.client.Stub i
         oper.setUse(org.apache.axis.constants.Use.LITERAL);
         _operations[8] = oper;
 
+        oper = new org.apache.axis.description.OperationDesc();
+        oper.setName("waitForChanges");
+        param = new org.apache.axis.description.ParameterDesc(new javax.xml.namespace.QName("http://server.plutext.org/", "docID"), org.apache.axis.description.ParameterDesc.IN, new javax.xml.namespace.QName("http://www.w3.org/2001/XMLSchema", "string"), java.lang.String.class, false, false);
+        oper.addParameter(param);
+        param = new org.apache.axis.description.ParameterDesc(new javax.xml.namespace.QName("http://server.plutext.org/", "sinceSequenceNumber"), org.apache.axis.description.ParameterDesc.IN, new javax.xml.namespace.QName("http://www.w3.org/2001/XMLSchema", "long"), long.class, false, false);
+        oper.addParameter(param);
+        param = new org.apache.axis.description.ParameterDesc(new javax.xml.namespace.QName("http://server.plutext.org/", "timeout"), org.apache.axis.description.ParameterDesc.IN, new javax.xml.namespace.QName("http://www.w3.org/2001/XMLSchema", "long"), long.class, false, false);
+        oper.addParameter(param);
+        oper.setReturnType(new javax.xml.namespace.QName("http://www.w3.org/2001/XMLSchema", "long"));
+        oper.setReturnClass(long.class);
+        oper.setReturnQName(new javax.xml.namespace.QName("http://server.plutext.org/", "waitForChangesReturn"));
+        oper.setStyle(org.apache.axis.constants.Style.WRAPPED);
+        oper.setUse(org.apache.axis.constants.Use.LITERAL);
+        _operations[9] = oper;
+
     }
 
     public PlutextServiceSoapBindingStub() throws org.apache.axis.AxisFault {
@@ -572,4 +587,41 @@ public class PlutextServiceSoapBindingStub extends org.apache.axis.client.Stub i
 }
     }
 
+    public long waitForChanges(java.lang.String docID, long sinceSequenceNumber, long timeout) throws java.rmi.RemoteException {
+        if (super.cachedEndpoint == null) {
+            throw new org.apache.axis.NoEndPointException();
+        }
+        org.apache.axis.client.Call _call = createCall();
+        _call.setOperation(_operations[9]);
+        _call.setUseSOAPAction(true);
+        _call.setSOAPActionURI("");
+        _call.setEncodingStyle(null);
+        _call.setProperty(org.apache.axis.client.Call.SEND_TYPE_ATTR, Boolean.FALSE);
+        _call.setProperty(org.apache.axis.AxisEngine.PROP_DOMULTIREFS, Boolean.FALSE);
+        _call.setSOAPVersion(org.apache.axis.soap.SOAPConstants.SOAP11_CONSTANTS);
+        _call.setOperationName(new javax.xml.namespace.QName("http://server.plutext.org/", "waitForChanges"));
+        // The server holds the request for up to 'timeout' milliseconds,
+        // so don't let the socket time out before it answers.
+        _call.setTimeout(new java.lang.Integer((int) Math.min(java.lang.Integer.MAX_VALUE, timeout + 30000)));
+
+        setRequestHeaders(_call);
+        setAttachments(_call);
+ try {        java.lang.Object _resp = _call.invoke(new java.lang.Object[] {docID, new java.lang.Long(sinceSequenceNumber), new java.lang.Long(timeout)});
+
+        if (_resp instanceof java.rmi.RemoteException) {
+            throw (java.rmi.RemoteException)_resp;
+        }
+        else {
+            extractAttachments(_call);
+            try {
+                return ((java.lang.Long) _resp).longValue();
+            } catch (java.lang.Exception _exception) {
+                return ((java.lang.Long) org.apache.axis.utils.JavaUtils.convert(_resp, long.class)).longValue();
+            }
+        }
+  } catch (org.apache.axis.AxisFault axisFaultException) {
+  throw axisFaultException;
+}
+    }
+
 }
@@ -29,4 +29,5 @@ public interface PlutextWebService extends java.rmi.Remote {
     public java.lang.String reportVersionHistory(java.lang.String docID, java.lang.String chunkID) throws java.rmi.RemoteException;
     public java.lang.String injectPart(java.lang.String docID, java.lang.String partName, java.lang.String version, java.lang.String contentType, java.lang.String content) throws java.rmi.RemoteException;
     public boolean removePart(java.lang.String docID, java.lang.String partName, java.lang.String version) throws java.rmi.RemoteException;
+    public long waitForChanges(java.lang.String docID, long sinceSequenceNumber, long timeout) throws java.rmi.RemoteException;
 }
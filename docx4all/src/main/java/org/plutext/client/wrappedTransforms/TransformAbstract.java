@@ -168,6 +168,59 @@ public abstract class TransformAbstract {
 		return this.markedUpSdt;
 	}
 
+	// Markup computed ahead of applying this transform
+	// (see RemoteEditsPrefetcher)
+	private Premarkup premarkup = null;
+	
+	/**
+	 * Computes the markup of this transform against 'original' in advance.
+	 * This touches neither the document nor this transform, so it can be
+	 * done on another thread.  Markup only reads the SdtBlock of 'T';
+	 * it is done by a transform of its own constructed from the same 'T'.
+	 * 
+	 * @param original Xml of the SdtBlock this transform is expected to apply to
+	 * @param changeset
+	 * @return the markup; null if it could not be computed.
+	 */
+	public Premarkup computePremarkup(String original, Changeset changeset) {
+		TransformAbstract scratch = TransformHelper.construct(this.t);
+		scratch.markupChanges(original, changeset);
+		if (scratch.getMarkedUpSdt() == null) {
+			return null;
+		}
+		return new Premarkup(original, changeset.getNumber(), scratch.getMarkedUpSdt());
+	}
+	
+	public void setPremarkup(Premarkup premarkup) {
+		this.premarkup = premarkup;
+	}
+	
+	/**
+	 * Sets the marked up SdtBlock of this transform to the one computed
+	 * by computePremarkup() if that one was computed from the same inputs.
+	 * 
+	 * @param original
+	 * @param changeset
+	 * @return true if premarkup could be used;
+	 *         false, otherwise.
+	 */
+	public boolean usePremarkup(String original, Changeset changeset) {
+		if (this.premarkup == null
+			|| changeset == null
+			|| changeset.getNumber() != this.premarkup.changesetNumber) {
+			return false;
+		}
+		
+		boolean sameOriginal = 
+			(original == null) 
+				? (this.premarkup.original == null) 
+				: original.equals(this.premarkup.original);
+		if (sameOriginal) {
+			this.markedUpSdt = this.premarkup.markedUpSdt;
+		}
+		return sameOriginal;
+	}
+
     protected void updateRefreshOffsets(Mediator mediator, int start, int end) {
 		int offset = mediator.getUpdateStartOffset();
 		offset = Math.min(offset, start);
@@ -178,6 +231,22 @@ public abstract class TransformAbstract {
 		mediator.setUpdateEndOffset(offset);
     }
 
+	/**
+	 * Markup computed by computePremarkup(), together with the inputs
+	 * it was computed from.
+	 */
+	public final static class Premarkup {
+		private final String original;
+		private final long changesetNumber;
+		private final org.docx4j.wml.SdtBlock markedUpSdt;
+		
+		Premarkup(String original, long changesetNumber, org.docx4j.wml.SdtBlock markedUpSdt) {
+			this.original = original;
+			this.changesetNumber = changesetNumber;
+			this.markedUpSdt = markedUpSdt;
+		}
+	}// Premarkup inner class
+	
 }// TransformAbstract class
 
 
@@ -29,6 +29,7 @@ import org.docx4all.swing.text.WordMLDocument;
 import org.docx4all.util.XmlUtil;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.SdtBlockML;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.XmlUtils;
 import org.plutext.client.Mediator;
 import org.plutext.client.Util;
@@ -40,8 +41,6 @@ public class TransformDelete extends TransformAbstract {
 
 	private static Logger log = LoggerFactory.getLogger(TransformDelete.class);
 
-	private org.docx4j.wml.SdtBlock markedUpSdt;
-	
 	public TransformDelete(T t) {
 		super(t);
 		idref = Long.toString(t.getIdref() );
@@ -121,7 +120,7 @@ public class TransformDelete extends TransformAbstract {
 		ElementML markedUpML = 
 			new SdtBlockML(
 				(org.docx4j.wml.SdtBlock) 
-				XmlUtils.deepCopy(this.markedUpSdt));
+				WordMLCopier.copy(this.markedUpSdt));
 		sdtBlockML.addSibling(markedUpML, true);
 		sdtBlockML.delete();
 
@@ -143,9 +142,5 @@ public class TransformDelete extends TransformAbstract {
 		return sequenceNumber;
 	}
 
-	public org.docx4j.wml.SdtBlock getMarkedUpSdt() {
-		return this.markedUpSdt;
-	}
-	
 } // TransformDelete class
 
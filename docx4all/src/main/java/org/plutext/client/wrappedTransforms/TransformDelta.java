@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2008, Plutext Pty Ltd.
+ *
+ *  This file is part of Docx4all.
+
+    Docx4all is free software: you can redistribute it and/or modify
+    it under the terms of version 3 of the GNU General Public License
+    as published by the Free Software Foundation.
+
+    Docx4all is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Docx4all.  If not, see <http://www.gnu.org/licenses/>.
+
+ */
+
+package org.plutext.client.wrappedTransforms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.docx4all.util.XmlUtil;
+import org.docx4all.xml.ObjectFactory;
+import org.docx4all.xml.WordMLCopier;
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.SdtBlock;
+import org.plutext.client.Mediator;
+import org.plutext.client.state.StateChunk;
+import org.plutext.transforms.Changesets.Changeset;
+import org.plutext.transforms.Transforms.T;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An update which carries only the block level children of the
+ * content control that changed.
+ *
+ * The sdt of a delta transform holds the sdtPr of the updated
+ * content control and, in its sdtContent, the children which
+ * replace 'length' children of version 'base' starting at
+ * index 'position'.
+ *
+ * Children are compared by the xml their StateChunk already has
+ * (see: StateChunk.isSameChild()) rather than by marshalling them.
+ *
+ * Once expanded against the previous version of the content control
+ * (see expand()), a TransformDelta behaves as a TransformUpdate
+ * whose markup is restricted to the replaced children.
+ */
+public class TransformDelta extends TransformUpdate {
+
+	private static Logger log = LoggerFactory.getLogger(TransformDelta.class);
+
+	public final static String OP = "delta";
+
+	//The sdt as received; ie: the replacing children only.
+	private final SdtBlock delta;
+
+	//The state chunk that was expanded against
+	private StateChunk base = null;
+
+	public TransformDelta(T t) {
+		super(t);
+		this.delta = t.getSdt();
+	}
+
+	public int getPosition() {
+		return (t.getPosition() == null) ? 0 : t.getPosition().intValue();
+	}
+
+	public int getLength() {
+		return (t.getLength() == null) ? 0 : t.getLength().intValue();
+	}
+
+	public boolean isExpanded() {
+		return (this.base != null);
+	}
+
+	/**
+	 * @return the version of the content control this delta was made
+	 *         from; -1 if the transform does not say.
+	 */
+	public long getBaseVersion() {
+		return (t.getBase() == null) ? -1 : t.getBase().longValue();
+	}
+
+	/**
+	 * Rebuilds the whole updated sdt out of 'baseChunk', which has
+	 * to be the version of the content control this delta was made from.
+	 * getSdt() returns the whole sdt afterwards.
+	 *
+	 * @param baseChunk
+	 * @return true if this delta could be expanded; false if 'baseChunk'
+	 *         is not the version this delta was made from or does not
+	 *         have the children to replace.
+	 */
+	public boolean expand(StateChunk baseChunk) {
+		if (baseChunk == null) {
+			log.error("expand(): No base chunk. Sdt Id=" + getPlutextId());
+			return false;
+		}
+
+		String version = baseChunk.getVersionAsString();
+		long expected = getBaseVersion();
+		if (expected < 0 || parseVersion(version) != expected) {
+			//Splicing into any other version would silently
+			//give the wrong content.
+			log.debug("expand(): Delta of Sdt Id=" + getPlutextId()
+				+ " was made from version " + expected
+				+ " not from version " + version);
+			return false;
+		}
+
+		if (this.base == baseChunk) {
+			//Already expanded against this chunk
+			return true;
+		}
+
+		SdtBlock whole = splice(baseChunk.getSdt(), this.delta, getPosition(), getLength());
+		if (whole == null) {
+			log.error("expand(): Cannot splice delta into version " + version
+				+ " of Sdt Id=" + getPlutextId());
+			return false;
+		}
+
+		this.sdt = whole;
+		this.base = baseChunk;
+		return true;
+	}
+
+	/* Marks up the replaced children only, provided the children
+	 * of 'original' outside of them are those of the base version.
+	 */
+	@Override
+	public String markupChanges(String original, Changeset changeset) {
+		if (original == null
+			|| this.base == null
+			|| this.delta.getSdtContent().getContent().isEmpty()
+			|| getLength() == 0) {
+			return super.markupChanges(original, changeset);
+		}
+
+		try {
+			int[] origBounds = StateChunk.getChildBounds(original);
+			if (!isSameOutside(original, origBounds, this.base, getPosition(), getLength())) {
+				return super.markupChanges(original, changeset);
+			}
+
+			//Only the replaced children of 'original' are unmarshalled
+			int first = 2 * getPosition() + 2;
+			int last = 2 * (getPosition() + getLength()) + 1;
+			SdtBlock origPart =
+				(SdtBlock) XmlUtils.unmarshalString(
+					original.substring(0, origBounds[0])
+					+ original.substring(origBounds[first], origBounds[last])
+					+ original.substring(origBounds[1]));
+			SdtBlock markedUpPart = XmlUtil.markupDifference(this.delta, origPart, changeset);
+
+			List<Object> carried = this.delta.getSdtContent().getContent();
+			List<Object> children = new ArrayList<Object>(this.sdt.getSdtContent().getContent());
+			List<Object> replaced = children.subList(getPosition(), getPosition() + carried.size());
+			replaced.clear();
+			replaced.addAll(markedUpPart.getSdtContent().getContent());
+
+			this.markedUpSdt = copyWithChildren(this.sdt, children);
+
+		} catch (Exception exc) {
+			log.error("markupChanges(): Exception caught during marking up:");
+			exc.printStackTrace();
+			this.markedUpSdt = null;
+		}
+
+		String result = null;
+		if (this.markedUpSdt != null) {
+			result = XmlUtils.marshaltoString(this.markedUpSdt, true);
+		}
+        return result;
+	}
+
+	@Override
+	public long apply(Mediator mediator, HashMap<String, StateChunk> stateChunks) {
+		if (!isExpanded()) {
+			log.error("apply(): Delta has not been expanded. Sdt Id=" + getPlutextId());
+			return -1;
+		}
+		return super.apply(mediator, stateChunks);
+	}
+
+	/**
+	 * Creates a delta transform out of the difference between
+	 * two versions of a content control.  Leading and trailing
+	 * block level children common to both are left out.
+	 *
+	 * @param older The version known to the server
+	 * @param current The version to transmit
+	 * @return a T whose op is "delta" if it carries fewer children
+	 * than 'current' has; null if the whole sdt should be sent instead.
+	 */
+	public static T createDelta(StateChunk older, StateChunk current) {
+		int olderCount = older.getChildCount();
+		int currentCount = current.getChildCount();
+		List<Object> currentChildren = current.getSdt().getSdtContent().getContent();
+		if (olderCount <= 0
+			|| currentCount != currentChildren.size()
+			|| olderCount != older.getSdt().getSdtContent().getContent().size()) {
+			return null;
+		}
+
+		int prefix = 0;
+		int max = Math.min(olderCount, currentCount);
+		while (prefix < max && older.isSameChild(prefix, current, prefix)) {
+			prefix++;
+		}
+
+		int suffix = 0;
+		max -= prefix;
+		while (suffix < max
+			&& older.isSameChild(olderCount - 1 - suffix, current, currentCount - 1 - suffix)) {
+			suffix++;
+		}
+
+		if (prefix + suffix == 0) {
+			//Nothing in common
+			return null;
+		}
+
+		int carried = currentCount - prefix - suffix;
+
+		T t = new org.plutext.transforms.ObjectFactory().createTransformsT();
+		t.setOp(OP);
+		t.setIdref(Long.valueOf(current.getIdAsString()));
+		t.setBase(Long.valueOf(older.getVersionAsLong()));
+		t.setPosition(Long.valueOf(prefix));
+		t.setLength(Long.valueOf(olderCount - prefix - suffix));
+		t.setSdt(
+			copyWithChildren(
+				current.getSdt(),
+				currentChildren.subList(prefix, prefix + carried)));
+		return t;
+	}
+
+	/**
+	 * Replaces 'length' children of 'baseSdt' starting at 'position'
+	 * with the children of 'deltaSdt'.  The sdtPr of the result is
+	 * that of 'deltaSdt'.  Neither argument is modified.
+	 *
+	 * @return the resulting SdtBlock; null if 'baseSdt' does not have
+	 * the children to replace.
+	 */
+	public static SdtBlock splice(SdtBlock baseSdt, SdtBlock deltaSdt, int position, int length) {
+		List<Object> baseChildren = baseSdt.getSdtContent().getContent();
+		if (position < 0 || length < 0 || position + length > baseChildren.size()) {
+			return null;
+		}
+
+		List<Object> children = new ArrayList<Object>(baseChildren);
+		List<Object> replaced = children.subList(position, position + length);
+		replaced.clear();
+		replaced.addAll(deltaSdt.getSdtContent().getContent());
+
+		return copyWithChildren(deltaSdt, children);
+	}
+
+	/**
+	 * @return a deep copy of an sdt having 'sdtPr' of 'sdt' and 'children'
+	 * as its content.
+	 */
+	private static SdtBlock copyWithChildren(SdtBlock sdt, List<Object> children) {
+		SdtBlock result = ObjectFactory.createSdtBlock();
+		result.setSdtPr((org.docx4j.wml.SdtPr) WordMLCopier.copy(sdt.getSdtPr()));
+
+		org.docx4j.wml.SdtContentBlock content = ObjectFactory.createSdtContentBlock();
+		for (Object child: children) {
+			content.getContent().add(WordMLCopier.copy(child));
+		}
+		result.setSdtContent(content);
+
+		return result;
+	}
+
+	/* @return true if the children of 'xml' found at 'bounds'
+	 * (see: StateChunk.getChildBounds()) are those of 'baseChunk'
+	 * except for the 'length' children starting at 'position'.
+	 */
+	private static boolean isSameOutside(
+		String xml,
+		int[] bounds,
+		StateChunk baseChunk,
+		int position,
+		int length) {
+
+		int count = baseChunk.getChildCount();
+		if (bounds == null || count < 0 || bounds.length / 2 - 1 != count) {
+			return false;
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (i == position) {
+				i += length - 1;
+				continue;
+			}
+			int start = bounds[2 * i + 2];
+			int end = bounds[2 * i + 3];
+			if (!baseChunk.isSameChild(i, xml, start, end)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long parseVersion(String version) {
+		if (version == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(version.trim());
+		} catch (NumberFormatException exc) {
+			return -1;
+		}
+	}
+
+} // TransformDelta class
@@ -38,6 +38,8 @@ public class TransformHelper {
 			return new TransformInsert(t);
 		} else if (operation.equals("move")) {
 			return new TransformMove(t);
+		} else if (operation.equals(TransformDelta.OP)) {
+			return new TransformDelta(t);
 		} else if (operation.equals("style")) {
 			return new TransformStyle(t);
 		} else if (operation.equals("failed")) {
@@ -28,6 +28,7 @@ import org.docx4all.swing.text.WordMLDocument;
 import org.docx4all.util.XmlUtil;
 import org.docx4all.xml.ElementML;
 import org.docx4all.xml.SdtBlockML;
+import org.docx4all.xml.WordMLCopier;
 import org.docx4j.XmlUtils;
 import org.plutext.client.Mediator;
 import org.plutext.client.Util;
@@ -155,7 +156,7 @@ public class TransformInsert extends TransformAbstract {
 		SdtBlockML markedUpML = 
 			new SdtBlockML(
 				(org.docx4j.wml.SdtBlock) 
-				XmlUtils.deepCopy(this.markedUpSdt));
+				WordMLCopier.copy(this.markedUpSdt));
 		ml.addSibling(markedUpML, false);
 
 		elem = (DocumentElement) root.getElement(idx);
@@ -56,6 +56,7 @@ import org.docx4j.wml.Style;
  *                 &lt;attribute name="op" use="required" type="{http://www.w3.org/2001/XMLSchema}string" />
  *                 &lt;attribute name="idref" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
  *                 &lt;attribute name="position" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
+ *                 &lt;attribute name="length" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
  *               &lt;/restriction>
  *             &lt;/complexContent>
  *           &lt;/complexType>
@@ -126,6 +127,8 @@ public class Transforms {
      *       &lt;attribute name="op" use="required" type="{http://www.w3.org/2001/XMLSchema}string" />
      *       &lt;attribute name="idref" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
      *       &lt;attribute name="position" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
+     *       &lt;attribute name="length" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
+     *       &lt;attribute name="base" type="{http://www.w3.org/2001/XMLSchema}unsignedInt" />
      *     &lt;/restriction>
      *   &lt;/complexContent>
      * &lt;/complexType>
@@ -161,6 +164,12 @@ public class Transforms {
         @XmlAttribute(namespace = "http://www.plutext.org/transforms")
         @XmlSchemaType(name = "unsignedInt")
         protected Long position;
+        @XmlAttribute(namespace = "http://www.plutext.org/transforms")
+        @XmlSchemaType(name = "unsignedInt")
+        protected Long length;
+        @XmlAttribute(namespace = "http://www.plutext.org/transforms")
+        @XmlSchemaType(name = "unsignedInt")
+        protected Long base;
 
         /**
          * Gets the value of the style property.
@@ -330,6 +339,54 @@ public class Transforms {
             this.position = value;
         }
 
+        /**
+         * Gets the value of the length property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Long }
+         *     
+         */
+        public Long getLength() {
+            return length;
+        }
+
+        /**
+         * Sets the value of the length property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Long }
+         *     
+         */
+        public void setLength(Long value) {
+            this.length = value;
+        }
+
+        /**
+         * Gets the value of the base property.
+         * 
+         * @return
+         *     possible object is
+         *     {@link Long }
+         *     
+         */
+        public Long getBase() {
+            return base;
+        }
+
+        /**
+         * Sets the value of the base property.
+         * 
+         * @param value
+         *     allowed object is
+         *     {@link Long }
+         *     
+         */
+        public void setBase(Long value) {
+            this.base = value;
+        }
+
     }
 
 }